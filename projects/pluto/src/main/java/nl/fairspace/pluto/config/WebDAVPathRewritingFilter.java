@@ -2,21 +2,10 @@ package nl.fairspace.pluto.config;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Objects;
-import java.util.regex.Pattern;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLStreamException;
 
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
@@ -25,14 +14,11 @@ import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -42,6 +28,8 @@ import static nl.fairspace.pluto.config.ExtendedHttpMethod.PROPFIND;
 
 @Slf4j
 public class WebDAVPathRewritingFilter implements GlobalFilter, Ordered {
+    private static final int BUFFER_SIZE = 8192;
+
     private final PlutoConfig plutoConfig;
     private final GatewayProperties gatewayProperties;
 
@@ -68,37 +56,17 @@ public class WebDAVPathRewritingFilter implements GlobalFilter, Ordered {
             String routePrefix,
             String storageRootIri,
             String storageRoot,
-            Writer writer)
-            throws ParserConfigurationException, IOException, SAXException, XPathExpressionException,
-                    TransformerException {
-        var documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-        var webDavResponse = documentBuilderFactory.newDocumentBuilder().parse(in);
-        var xpath = XPathFactory.newInstance().newXPath();
-        {
-            var nodes = (NodeList) xpath.evaluate("/multistatus/response/href", webDavResponse, XPathConstants.NODESET);
-            for (int i = 0; i < nodes.getLength(); i++) {
-                var node = nodes.item(i);
-                if (node.getTextContent() != null) {
-                    node.setTextContent(node.getTextContent().replaceFirst(Pattern.quote(remotePrefix), routePrefix));
-                }
-            }
-        }
-        if (storageRootIri != null) {
-            var nodes = (NodeList) xpath.evaluate(
-                    "/multistatus/response/propstat/prop/getetag", webDavResponse, XPathConstants.NODESET);
-            for (int i = 0; i < nodes.getLength(); i++) {
-                var node = nodes.item(i);
-                if (node.getTextContent() != null) {
-                    node.setTextContent(node.getTextContent().replaceFirst(Pattern.quote(storageRootIri), storageRoot));
-                }
-            }
+            OutputStream out)
+            throws IOException, XMLStreamException {
+        var transformer = new WebDAVResponseTransformer(remotePrefix, routePrefix, storageRootIri, storageRoot);
+        var buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            transformer.feed(ByteBuffer.wrap(buffer, 0, read));
+            out.write(transformer.drain());
         }
-        var transformerFactory = TransformerFactory.newInstance();
-        transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        var transformer = transformerFactory.newTransformer();
-        transformer.transform(new DOMSource(webDavResponse), new StreamResult(writer));
+        transformer.finish();
+        out.write(transformer.drain());
     }
 
     @Override
@@ -107,55 +75,22 @@ public class WebDAVPathRewritingFilter implements GlobalFilter, Ordered {
             @Override
             public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
                 if (shouldFilter(exchange)) {
-                    return join(body).flatMap(db -> {
-                        var uri = exchange.getRequest().getURI();
-                        // /api/storages/$storage/webdav/
-                        var parts = uri.getPath().split("/");
-                        if (parts.length < 5 || !"webdav".equals(parts[4])) {
-                            return Mono.error(new ResponseStatusException(
-                                    HttpStatus.METHOD_NOT_ALLOWED, "Not a Webdav endpoint."));
-                        }
-                        var storageName = parts[3];
-                        var storage = plutoConfig.getStorages().get(storageName);
-                        if (storage == null) {
-                            return Mono.error(new ResponseStatusException(
-                                    HttpStatus.BAD_GATEWAY, "Missing storage configuration"));
-                        }
-
-                        String routePrefix = "/api/storages/%s/webdav".formatted(storageName);
-                        var storageRoot =
-                                "%s://%s:%s%s".formatted(uri.getScheme(), uri.getHost(), uri.getPort(), routePrefix);
-                        var route = gatewayProperties.getRoutes().stream()
-                                .filter(r -> r.getPredicates().stream()
-                                        .anyMatch(predicateDefinition ->
-                                                Objects.equals(predicateDefinition.getName(), "Path")
-                                                        && predicateDefinition.getArgs().values().stream()
-                                                                .anyMatch(v -> v.startsWith(routePrefix))))
-                                .findFirst()
-                                .orElseThrow(() -> new ResponseStatusException(
-                                        HttpStatus.NOT_FOUND, "No such webdav route configured"));
-                        String remotePrefix = route.getUri().getPath();
-                        var writer = new StringWriter();
-                        try {
-                            transform(
-                                    db.asInputStream(),
-                                    remotePrefix,
-                                    routePrefix,
-                                    storage.getRootDirectoryIri(),
-                                    storageRoot,
-                                    writer);
-                        } catch (Exception e) {
-                            log.error("Error translating webdav response", e);
-                            return Mono.error(new ResponseStatusException(
-                                    HttpStatus.BAD_GATEWAY, "Error translating webdav response"));
-                        }
-                        var newContent = writer.toString();
-                        exchange.getResponse().getHeaders().setContentLength(newContent.length());
-                        return getDelegate()
-                                .writeWith(Mono.just(exchange.getResponse()
-                                        .bufferFactory()
-                                        .wrap(newContent.getBytes(StandardCharsets.UTF_8))));
-                    });
+                    WebDAVResponseTransformer transformer;
+                    try {
+                        transformer = createTransformer(exchange);
+                    } catch (ResponseStatusException e) {
+                        return Mono.error(e);
+                    }
+                    // The length of the rewritten response is not known in advance
+                    getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+                    return getDelegate()
+                            .writeWith(transformer
+                                    .transform(Flux.from(body), bufferFactory())
+                                    .onErrorMap(e -> !(e instanceof ResponseStatusException), e -> {
+                                        log.error("Error translating webdav response", e);
+                                        return new ResponseStatusException(
+                                                HttpStatus.BAD_GATEWAY, "Error translating webdav response");
+                                    }));
                 } else {
                     return getDelegate().writeWith(body);
                 }
@@ -164,12 +99,36 @@ public class WebDAVPathRewritingFilter implements GlobalFilter, Ordered {
         return chain.filter(exchange.mutate().response(responseMutated).build());
     }
 
-    private Mono<? extends DataBuffer> join(Publisher<? extends DataBuffer> dataBuffers) {
-        return Flux.from(dataBuffers)
-                .collectList()
-                .filter((list) -> !list.isEmpty())
-                .map((list) -> list.get(0).factory().join(list))
-                .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release);
+    private WebDAVResponseTransformer createTransformer(ServerWebExchange exchange) {
+        var uri = exchange.getRequest().getURI();
+        // /api/storages/$storage/webdav/
+        var parts = uri.getPath().split("/");
+        if (parts.length < 5 || !"webdav".equals(parts[4])) {
+            throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED, "Not a Webdav endpoint.");
+        }
+        var storageName = parts[3];
+        var storage = plutoConfig.getStorages().get(storageName);
+        if (storage == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Missing storage configuration");
+        }
+
+        String routePrefix = "/api/storages/%s/webdav".formatted(storageName);
+        var storageRoot = "%s://%s:%s%s".formatted(uri.getScheme(), uri.getHost(), uri.getPort(), routePrefix);
+        var route = gatewayProperties.getRoutes().stream()
+                .filter(r -> r.getPredicates().stream()
+                        .anyMatch(predicateDefinition -> Objects.equals(predicateDefinition.getName(), "Path")
+                                && predicateDefinition.getArgs().values().stream()
+                                        .anyMatch(v -> v.startsWith(routePrefix))))
+                .findFirst()
+                .orElseThrow(
+                        () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No such webdav route configured"));
+        String remotePrefix = route.getUri().getPath();
+        try {
+            return new WebDAVResponseTransformer(remotePrefix, routePrefix, storage.getRootDirectoryIri(), storageRoot);
+        } catch (XMLStreamException e) {
+            log.error("Error translating webdav response", e);
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Error translating webdav response");
+        }
     }
 
     @Override
@@ -0,0 +1,191 @@
+package nl.fairspace.pluto.config;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+import com.fasterxml.aalto.stax.OutputFactoryImpl;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Rewrites a WebDAV multistatus response while it is being received, using a non-blocking XML parser.
+ * Replaces in DAV:multistatus -> DAV:response -> DAV:href the remote prefix with the route prefix,
+ * and in DAV:multistatus -> DAV:response -> DAV:propstat -> DAV:prop -> DAV:getetag the storage root IRI
+ * with the storage root.
+ * Only the text of the element being rewritten is buffered, so memory use does not depend on the response size.
+ */
+public class WebDAVResponseTransformer {
+    private static final AsyncXMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final OutputFactoryImpl OUTPUT_FACTORY = new OutputFactoryImpl();
+    private static final List<String> HREF_PATH = List.of("multistatus", "response", "href");
+    private static final List<String> ETAG_PATH = List.of("multistatus", "response", "propstat", "prop", "getetag");
+
+    private final String remotePrefix;
+    private final String routePrefix;
+    private final String storageRootIri;
+    private final String storageRoot;
+    private final AsyncXMLStreamReader<AsyncByteBufferFeeder> reader = INPUT_FACTORY.createAsyncForByteBuffer();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final XMLStreamWriter writer;
+    private final List<String> path = new ArrayList<>();
+    // The text of the element being rewritten, if any
+    private StringBuilder text;
+
+    public WebDAVResponseTransformer(
+            String remotePrefix, String routePrefix, String storageRootIri, String storageRoot)
+            throws XMLStreamException {
+        this.remotePrefix = remotePrefix;
+        this.routePrefix = routePrefix;
+        this.storageRootIri = storageRootIri;
+        this.storageRoot = storageRoot;
+        this.writer = OUTPUT_FACTORY.createXMLStreamWriter(output, "UTF-8");
+    }
+
+    /**
+     * Rewrites the response body. Every input buffer is released as soon as it has been parsed,
+     * and results in an output buffer with the part of the response that could be rewritten so far.
+     */
+    public Flux<DataBuffer> transform(Flux<? extends DataBuffer> body, DataBufferFactory bufferFactory) {
+        return body.<DataBuffer>handle((buffer, sink) -> {
+                    try (var iterator = buffer.readableByteBuffers()) {
+                        while (iterator.hasNext()) {
+                            feed(iterator.next());
+                        }
+                        var bytes = drain();
+                        if (bytes.length > 0) {
+                            sink.next(bufferFactory.wrap(bytes));
+                        }
+                    } catch (XMLStreamException e) {
+                        sink.error(e);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .concatWith(Mono.fromCallable(() -> {
+                    finish();
+                    return bufferFactory.wrap(drain());
+                }));
+    }
+
+    /**
+     * Parses the input and writes the rewritten XML of all events that could be parsed so far.
+     */
+    public void feed(ByteBuffer input) throws XMLStreamException {
+        reader.getInputFeeder().feedInput(input);
+        process();
+    }
+
+    /**
+     * Signals the end of the input.
+     */
+    public void finish() throws XMLStreamException {
+        reader.getInputFeeder().endOfInput();
+        process();
+        writer.close();
+    }
+
+    /**
+     * @return the bytes written since the previous call.
+     */
+    public byte[] drain() throws XMLStreamException {
+        writer.flush();
+        var bytes = output.toByteArray();
+        output.reset();
+        return bytes;
+    }
+
+    private void process() throws XMLStreamException {
+        while (reader.hasNext()) {
+            var event = reader.next();
+            if (event == AsyncXMLStreamReader.EVENT_INCOMPLETE) {
+                return;
+            }
+            switch (event) {
+                case START_DOCUMENT -> writer.writeStartDocument("UTF-8", "1.0");
+                case START_ELEMENT -> {
+                    path.add(reader.getLocalName());
+                    writeStartElement();
+                    if (path.equals(HREF_PATH) || (storageRootIri != null && path.equals(ETAG_PATH))) {
+                        text = new StringBuilder();
+                    }
+                }
+                case CHARACTERS, SPACE, CDATA -> {
+                    if (text != null) {
+                        text.append(reader.getText());
+                    } else if (event == CDATA) {
+                        writer.writeCData(reader.getText());
+                    } else {
+                        writer.writeCharacters(reader.getText());
+                    }
+                }
+                case END_ELEMENT -> {
+                    if (text != null) {
+                        writer.writeCharacters(
+                                path.equals(HREF_PATH)
+                                        ? replaceFirst(text.toString(), remotePrefix, routePrefix)
+                                        : replaceFirst(text.toString(), storageRootIri, storageRoot));
+                        text = null;
+                    }
+                    writer.writeEndElement();
+                    path.removeLast();
+                }
+                case COMMENT -> writer.writeComment(reader.getText());
+                case PROCESSING_INSTRUCTION -> writer.writeProcessingInstruction(
+                        reader.getPITarget(), reader.getPIData());
+                case DTD -> throw new XMLStreamException("DOCTYPE declarations are not allowed");
+                case END_DOCUMENT -> writer.writeEndDocument();
+                default -> {}
+            }
+        }
+    }
+
+    private void writeStartElement() throws XMLStreamException {
+        writer.writeStartElement(
+                nullToEmpty(reader.getPrefix()), reader.getLocalName(), nullToEmpty(reader.getNamespaceURI()));
+        for (var i = 0; i < reader.getNamespaceCount(); i++) {
+            var prefix = reader.getNamespacePrefix(i);
+            if (prefix == null || prefix.isEmpty()) {
+                writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+            } else {
+                writer.writeNamespace(prefix, reader.getNamespaceURI(i));
+            }
+        }
+        for (var i = 0; i < reader.getAttributeCount(); i++) {
+            writer.writeAttribute(
+                    nullToEmpty(reader.getAttributePrefix(i)),
+                    nullToEmpty(reader.getAttributeNamespace(i)),
+                    reader.getAttributeLocalName(i),
+                    reader.getAttributeValue(i));
+        }
+    }
+
+    private static String replaceFirst(String text, String target, String replacement) {
+        var index = text.indexOf(target);
+        return index < 0 ? text : text.substring(0, index) + replacement + text.substring(index + target.length());
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static AsyncXMLInputFactory createInputFactory() {
+        var factory = new InputFactoryImpl();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -1,11 +1,29 @@
 package nl.fairspace.pluto.config;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import reactor.core.publisher.Flux;
 
 import static org.hamcrest.Matchers.stringContainsInOrder;
 
@@ -19,17 +37,15 @@ public class WebDAVPathRewritingFilterTest {
     public void transformWebdavResponse() throws Exception {
         var resource = getClass().getClassLoader().getResource("webdav_response.xml");
         var in = resource.openStream();
-        var writer = new StringWriter();
+        var out = new ByteArrayOutputStream();
         filter.transform(
                 in,
                 "/api/webdav",
                 "/api/storages/test/webdav",
                 "http://localhost:8080/api/webdav",
                 "http://localhost:9000/api/storages/test/webdav",
-                writer);
-        writer.flush();
-        System.err.println(writer.getBuffer().toString());
-        var result = writer.getBuffer().toString();
+                out);
+        var result = out.toString(StandardCharsets.UTF_8);
         Assert.assertThat(result, stringContainsInOrder("<d:href>/api/storages/test/webdav/</d:href>"));
         Assert.assertThat(
                 result,
@@ -47,4 +63,107 @@ public class WebDAVPathRewritingFilterTest {
                 stringContainsInOrder(
                         "<d:getetag>\"http://localhost:9000/api/storages/test/webdav/Book\"</d:getetag>"));
     }
+
+    @Test
+    public void streamingTransformationMatchesDomTransformation() throws Exception {
+        var resource = getClass().getClassLoader().getResource("webdav_response.xml");
+        var expected = new StringWriter();
+        try (var in = resource.openStream()) {
+            transformWithDom(
+                    in,
+                    "/api/webdav",
+                    "/api/storages/test/webdav",
+                    "http://localhost:8080/api/webdav",
+                    "http://localhost:9000/api/storages/test/webdav",
+                    expected);
+        }
+
+        var out = new ByteArrayOutputStream();
+        try (var in = resource.openStream()) {
+            filter.transform(
+                    in,
+                    "/api/webdav",
+                    "/api/storages/test/webdav",
+                    "http://localhost:8080/api/webdav",
+                    "http://localhost:9000/api/storages/test/webdav",
+                    out);
+        }
+
+        var expectedDocument = parse(new ByteArrayInputStream(expected.toString().getBytes(StandardCharsets.UTF_8)));
+        var actualDocument = parse(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertTrue(expectedDocument.isEqualNode(actualDocument));
+    }
+
+    @Test
+    public void largeResponsesAreTransformedInBoundedChunks() throws Exception {
+        var bufferFactory = DefaultDataBufferFactory.sharedInstance;
+        var entries = 50_000;
+        var body = Flux.concat(
+                Flux.just("<?xml version=\"1.0\" encoding=\"utf-8\"?><d:multistatus xmlns:d=\"DAV:\">"),
+                Flux.range(0, entries)
+                        .map(i -> "<d:response><d:href>/api/webdav/dir/file-" + i
+                                + "</d:href><d:propstat><d:prop><d:getetag>\"http://localhost:8080/api/webdav/dir/file-"
+                                + i + "\"</d:getetag></d:prop></d:propstat></d:response>"),
+                Flux.just("</d:multistatus>"))
+                .buffer(16)
+                .map(parts -> (DataBuffer) bufferFactory.wrap(String.join("", parts).getBytes(StandardCharsets.UTF_8)));
+        var transformer = new WebDAVResponseTransformer(
+                "/api/webdav",
+                "/api/storages/test/webdav",
+                "http://localhost:8080/api/webdav",
+                "http://localhost:9000/api/storages/test/webdav");
+        var rewritten = new AtomicInteger();
+        var maxChunkSize = new AtomicInteger();
+
+        transformer
+                .transform(body, bufferFactory)
+                .doOnNext(buffer -> {
+                    var chunk = buffer.toString(StandardCharsets.UTF_8);
+                    maxChunkSize.accumulateAndGet(chunk.length(), Math::max);
+                    rewritten.addAndGet(chunk.split("/api/storages/test/webdav/dir/file-").length - 1);
+                })
+                .blockLast();
+
+        // Every href and every etag has been rewritten, while no chunk holds more than a few input buffers
+        Assert.assertEquals(2 * entries, rewritten.get());
+        Assert.assertTrue(maxChunkSize.get() < 16 * 1024);
+    }
+
+    /**
+     * The original, DOM-based transformation, as a reference.
+     */
+    private static void transformWithDom(
+            InputStream in,
+            String remotePrefix,
+            String routePrefix,
+            String storageRootIri,
+            String storageRoot,
+            StringWriter writer)
+            throws Exception {
+        var webDavResponse = parse(in);
+        var xpath = XPathFactory.newInstance().newXPath();
+        var hrefs = (NodeList) xpath.evaluate("/multistatus/response/href", webDavResponse, XPathConstants.NODESET);
+        for (int i = 0; i < hrefs.getLength(); i++) {
+            var node = hrefs.item(i);
+            node.setTextContent(node.getTextContent().replaceFirst(Pattern.quote(remotePrefix), routePrefix));
+        }
+        var etags = (NodeList) xpath.evaluate(
+                "/multistatus/response/propstat/prop/getetag", webDavResponse, XPathConstants.NODESET);
+        for (int i = 0; i < etags.getLength(); i++) {
+            var node = etags.item(i);
+            node.setTextContent(node.getTextContent().replaceFirst(Pattern.quote(storageRootIri), storageRoot));
+        }
+        var transformerFactory = TransformerFactory.newInstance();
+        transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        transformerFactory.newTransformer().transform(new DOMSource(webDavResponse), new StreamResult(writer));
+    }
+
+    private static Document parse(InputStream in) throws Exception {
+        var documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        var document = documentBuilderFactory.newDocumentBuilder().parse(in);
+        document.normalizeDocument();
+        return document;
+    }
 }
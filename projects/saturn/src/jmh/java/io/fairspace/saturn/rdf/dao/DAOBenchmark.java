@@ -0,0 +1,68 @@
+package io.fairspace.saturn.rdf.dao;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.openjdk.jmh.annotations.*;
+
+import io.fairspace.saturn.auth.RequestContext;
+import io.fairspace.saturn.config.properties.JenaProperties;
+import io.fairspace.saturn.services.workspaces.Workspace;
+
+/**
+ * Reflection-based mapping of entities by {@link DAO}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DAOBenchmark {
+    @Param({"1000", "100000"})
+    public int entities;
+
+    private Dataset dataset;
+    private DAO dao;
+    private Node[] iris;
+
+    @Setup
+    public void setUp() {
+        JenaProperties.setMetadataBaseIRI("http://localhost/iri/");
+        RequestContext.setCurrentUserStringUri("http://localhost/iri/user");
+        dataset = TDB2Factory.createDataset();
+        dao = new DAO(dataset.getDefaultModel());
+        iris = new Node[entities];
+        Txn.executeWrite(dataset, () -> {
+            for (var i = 0; i < entities; i++) {
+                iris[i] = dao.write(workspace(i)).getIri();
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataset.close();
+    }
+
+    @Benchmark
+    public Workspace read() {
+        var iri = iris[ThreadLocalRandom.current().nextInt(entities)];
+        return Txn.calculateRead(dataset, () -> dao.read(Workspace.class, iri));
+    }
+
+    @Benchmark
+    public Workspace write() {
+        var workspace = workspace(ThreadLocalRandom.current().nextInt(entities));
+        workspace.setIri(iris[ThreadLocalRandom.current().nextInt(entities)]);
+        return Txn.calculateWrite(dataset, () -> dao.write(workspace));
+    }
+
+    private static Workspace workspace(int i) {
+        return Workspace.builder()
+                .code("WS" + i)
+                .title("Workspace " + i)
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package io.fairspace.saturn.rdf.search;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.*;
+
+import io.fairspace.saturn.services.metadata.MetadataPermissions;
+import io.fairspace.saturn.vocabulary.FS;
+
+import static org.apache.jena.graph.NodeFactory.createLiteralString;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+
+/**
+ * Finding all quads of a dataset with many collections through {@link FilteredDatasetGraph},
+ * compared to checking the permissions of every quad.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FilteredDatasetGraphBenchmark {
+    private static final String ROOT = "http://localhost/api/webdav/";
+    private static final Node USER = createURI("http://localhost/iri/user");
+
+    @Param({"50", "500"})
+    public int collections;
+
+    @Param({"200"})
+    public int filesPerCollection;
+
+    private DatasetGraph dsg;
+    private CollectionPermissions permissions;
+    private FilteredDatasetGraph filtered;
+
+    @Setup
+    public void setUp() {
+        dsg = TDB2Factory.createDataset().asDatasetGraph();
+        Txn.executeWrite(dsg, () -> {
+            var graph = dsg.getDefaultGraph();
+            for (var c = 0; c < collections; c++) {
+                var collection = createURI(ROOT + "c" + c);
+                graph.add(collection, FS.ownedBy.asNode(), createURI("http://localhost/iri/workspace"));
+                if (c % 2 == 0) {
+                    graph.add(USER, FS.canRead.asNode(), collection);
+                }
+                for (var f = 0; f < filesPerCollection; f++) {
+                    var file = createURI(ROOT + "c" + c + "/file" + f);
+                    graph.add(file, RDFS.label.asNode(), createLiteralString("file" + f));
+                }
+            }
+        });
+        permissions = new CollectionPermissions(dsg);
+        filtered = new FilteredDatasetGraph(dsg, permissions);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dsg.close();
+    }
+
+    @Benchmark
+    public long findWithAccessDecisionCache() {
+        return Txn.calculateRead(filtered, () -> Iter.count(filtered.find()));
+    }
+
+    @Benchmark
+    public long findWithPermissionCheckPerQuad() {
+        return Txn.calculateRead(dsg, () -> Iter.count(Iter.filter(
+                dsg.find(), quad -> permissions.canReadMetadata(createResource(quad.getSubject().getURI())))));
+    }
+
+    /**
+     * Resolves access by looking up the permissions of the collection in the dataset,
+     * as {@link io.fairspace.saturn.webdav.DavFactory#getAccess} does.
+     */
+    private static class CollectionPermissions extends MetadataPermissions {
+        private final DatasetGraph dsg;
+
+        CollectionPermissions(DatasetGraph dsg) {
+            super(null, null, null);
+            this.dsg = dsg;
+        }
+
+        @Override
+        public boolean canReadMetadata(Resource resource) {
+            var collection = getMetadataAccessOwner(resource);
+            if (collection == null) {
+                return true;
+            }
+            return dsg.getDefaultGraph().contains(collection, FS.ownedBy.asNode(), Node.ANY)
+                    && dsg.getDefaultGraph().contains(USER, FS.canRead.asNode(), collection);
+        }
+
+        @Override
+        public Node getMetadataAccessOwner(Resource resource) {
+            if (!resource.getURI().startsWith(ROOT)) {
+                return null;
+            }
+            var path = resource.getURI().substring(ROOT.length());
+            var end = path.indexOf('/');
+            return createURI(ROOT + (end < 0 ? path : path.substring(0, end)));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static org.apache.jena.graph.NodeFactory.createLiteralString;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.sparql.core.Quad.defaultGraphIRI;
+
+/**
+ * Writing and reading a transaction with the transaction log codecs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransactionCodecBenchmark {
+    @Param({"sparql", "binary"})
+    public String codecName;
+
+    @Param({"100", "10000"})
+    public int quads;
+
+    private TransactionCodec codec;
+    private Node[] subjects;
+    private Node[] objects;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = codecName.equals("sparql") ? new SparqlTransactionCodec() : new BinaryTransactionCodec();
+        subjects = new Node[quads];
+        objects = new Node[quads];
+        for (var i = 0; i < quads; i++) {
+            subjects[i] = createURI("http://localhost/iri/" + (i / 10));
+            objects[i] = createLiteralString("Value " + i);
+        }
+        encoded = write().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeTransaction() throws IOException {
+        return write();
+    }
+
+    @Benchmark
+    public void readTransaction(Blackhole blackhole) throws IOException {
+        codec.read(new ByteArrayInputStream(encoded), new TransactionListener() {
+            @Override
+            public void onAdd(Node graph, Node subject, Node predicate, Node object) {
+                blackhole.consume(object);
+            }
+        });
+    }
+
+    private ByteArrayOutputStream write() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var listener = codec.write(out);
+        listener.onMetadata("user", "User", System.currentTimeMillis());
+        var predicate = createURI("http://www.w3.org/2000/01/rdf-schema#label");
+        for (var i = 0; i < quads; i++) {
+            listener.onAdd(defaultGraphIRI, subjects[i], predicate, objects[i]);
+        }
+        listener.onCommit();
+        return out;
+    }
+}
@@ -0,0 +1,55 @@
+package io.fairspace.saturn.services.metadata.validation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.fairspace.saturn.vocabulary.FS;
+
+import static io.fairspace.saturn.rdf.ModelUtils.EMPTY_MODEL;
+
+import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
+import static org.apache.jena.riot.RDFDataMgr.loadModel;
+
+/**
+ * Validation of a change adding many nodes against the system vocabulary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ShaclValidatorBenchmark {
+    @Param({"10000"})
+    public int nodes;
+
+    private ShaclValidator validator;
+    private Model added;
+
+    @Setup
+    public void setUp() {
+        validator = new ShaclValidator(loadModel("system-vocabulary.ttl"));
+        added = createDefaultModel();
+        for (var i = 0; i < nodes; i++) {
+            var workspace = added.createResource("http://localhost/iri/ws" + i);
+            workspace.addProperty(RDF.type, FS.Workspace);
+            // Every tenth node misses its label and results in a violation
+            if (i % 10 != 0) {
+                workspace.addProperty(RDFS.label, "WS" + i);
+            }
+            workspace.addProperty(RDFS.comment, "Workspace " + i);
+        }
+    }
+
+    @Benchmark
+    public void validate(Blackhole blackhole) {
+        validator.validate(
+                EMPTY_MODEL,
+                added,
+                EMPTY_MODEL,
+                added,
+                (message, subject, predicate, object) -> blackhole.consume(subject));
+    }
+}
@@ -0,0 +1,107 @@
+package io.fairspace.saturn.services.views;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.query.ResultSetFormatter;
+import org.openjdk.jmh.annotations.*;
+
+import io.fairspace.saturn.config.properties.JenaProperties;
+import io.fairspace.saturn.config.properties.SearchProperties;
+import io.fairspace.saturn.config.properties.StoreParamsProperties;
+import io.fairspace.saturn.controller.dto.request.ViewRequest;
+import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
+
+import static io.fairspace.saturn.TestUtils.loadViewsConfig;
+
+import static org.apache.jena.system.Txn.calculateRead;
+
+/**
+ * The overhead of a view page request with filters: building and parsing its query on every request,
+ * and taking the parsed query of its shape from the cache and substituting the filter values.
+ * Both are executed against an empty dataset, so that the time is spent parsing, optimising and planning the query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ViewQueryParsingBenchmark {
+    private Dataset ds;
+    private SparqlQueryService queryService;
+
+    @Setup
+    public void setUp() {
+        JenaProperties.setMetadataBaseIRI("http://localhost/iri/");
+        ds = DatasetFactory.createTxnMem();
+        var searchProperties = new SearchProperties();
+        searchProperties.setCountRequestTimeout(60000);
+        searchProperties.setPageRequestTimeout(10000);
+        queryService = new SparqlQueryService(
+                searchProperties,
+                new JenaProperties("http://localhost/iri/", new StoreParamsProperties()),
+                loadViewsConfig("src/test/resources/test-views.yaml"),
+                ds,
+                new SimpleTransactions(ds));
+    }
+
+    @Benchmark
+    public int parseEveryRequest() {
+        var request = request();
+        var shape = queryService.getShape(request, false);
+        // The same work as on a cache miss
+        var query = queryService.parseQuery(shape);
+        var binding = queryService.getQuery(request, false).binding();
+        return execute(query, binding);
+    }
+
+    @Benchmark
+    public int parseOncePerShape() {
+        var query = queryService.getQuery(request(), false);
+        return execute(query.query(), query.binding());
+    }
+
+    /**
+     * @return a request with different filter values every time, but always of the same shape
+     */
+    private static ViewRequest request() {
+        var random = ThreadLocalRandom.current();
+        var minAge = random.nextInt(50);
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setPage(1);
+        request.setSize(20);
+        request.setFilters(List.of(
+                ViewFilter.builder()
+                        .field("Sample_nature")
+                        .values(List.of(
+                                "http://example.com/nature#" + random.nextInt(10),
+                                "http://example.com/nature#" + random.nextInt(10)))
+                        .build(),
+                ViewFilter.builder()
+                        .field("Subject_ageAtLastNews")
+                        .min(minAge)
+                        .max(minAge + 10)
+                        .build(),
+                ViewFilter.builder().field("Sample").prefix("sample " + random.nextInt(100)).build()));
+        return request;
+    }
+
+    private int execute(Query query, QuerySolutionMap binding) {
+        var page = query.cloneQuery();
+        page.setLimit(21);
+        try (var execution = QueryExecution.create()
+                .dataset(ds)
+                .query(page)
+                .substitution(binding)
+                .build()) {
+            return calculateRead(ds, () -> ResultSetFormatter.consume(execution.execSelect()));
+        }
+    }
+}
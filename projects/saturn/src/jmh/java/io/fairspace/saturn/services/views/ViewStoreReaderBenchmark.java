@@ -0,0 +1,130 @@
+package io.fairspace.saturn.services.views;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import io.fairspace.saturn.config.properties.SearchProperties;
+import io.fairspace.saturn.config.properties.ViewDatabaseProperties;
+import io.fairspace.saturn.controller.dto.ValueDto;
+
+import static io.fairspace.saturn.TestUtils.loadViewsConfig;
+
+/**
+ * SQL generation and execution of view queries, against a view database in the PostgreSQL container
+ * also used by the integration tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ViewStoreReaderBenchmark {
+    private static final String VIEW = "Subject";
+
+    @Param({"100000"})
+    public int rows;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private ViewStoreReader reader;
+    private List<ViewFilter> filters;
+
+    @Setup
+    public void setUp() throws SQLException {
+        postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+        postgres.start();
+
+        var viewDatabase = new ViewDatabaseProperties();
+        viewDatabase.setUrl(postgres.getJdbcUrl());
+        viewDatabase.setUsername(postgres.getUsername());
+        viewDatabase.setPassword(postgres.getPassword());
+        var config = new HikariConfig();
+        config.setJdbcUrl(viewDatabase.getUrl());
+        config.setUsername(viewDatabase.getUsername());
+        config.setPassword(viewDatabase.getPassword());
+        config.setAutoCommit(false);
+        config.setMaximumPoolSize(5);
+        config.addDataSourceProperty("reWriteBatchedInserts", true);
+        dataSource = new HikariDataSource(config);
+
+        var viewsProperties = loadViewsConfig("src/test/resources/test-views.yaml");
+        var searchProperties = new SearchProperties();
+        searchProperties.setCountRequestTimeout(60000);
+        searchProperties.setPageRequestTimeout(10000);
+        searchProperties.setMaxJoinItems(50);
+        var configuration = new ViewStoreClient.ViewStoreConfiguration(viewsProperties);
+        var materializedViewService = new MaterializedViewService(
+                dataSource, configuration, viewsProperties, viewDatabase, searchProperties.getMaxJoinItems());
+        var viewStoreClientFactory = new ViewStoreClientFactory(
+                viewsProperties, viewDatabase, materializedViewService, dataSource, configuration);
+        reader = new ViewStoreReader(searchProperties, viewsProperties, viewStoreClientFactory, configuration);
+
+        try (var client = viewStoreClientFactory.build()) {
+            var batch = new ArrayList<Map<String, Object>>();
+            for (var i = 0; i < rows; i++) {
+                var row = new HashMap<String, Object>();
+                row.put("id", "http://localhost/iri/subject-%08d".formatted(i));
+                row.put("label", "Subject " + i);
+                row.put("ageAtLastNews", i % 100);
+                row.put("hasSequenceData", i % 2 == 0);
+                batch.add(row);
+                if (batch.size() == 1000) {
+                    client.updateRows(VIEW, batch, true);
+                    client.commitTables();
+                    batch.clear();
+                }
+            }
+            client.updateRows(VIEW, batch, true);
+            client.commit();
+        }
+
+        filters = List.of(ViewFilter.builder()
+                .field(VIEW + "_ageAtLastNews")
+                .min(20)
+                .max(40)
+                .build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public String generateQuery() throws SQLException {
+        try (var connection = dataSource.getConnection();
+                var query = reader.query(connection, VIEW, filters, "order by id limit 100", false)) {
+            return query.toString();
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Set<ValueDto>>> retrieveFirstPage() {
+        return reader.retrieveRows(VIEW, filters, 0, 100, false);
+    }
+
+    @Benchmark
+    public List<Map<String, Set<ValueDto>>> retrieveDeepPage() {
+        return reader.retrieveRows(VIEW, filters, 10000, 100, false);
+    }
+
+    @Benchmark
+    public List<Map<String, Set<ValueDto>>> retrieveDeepPageAfter() {
+        var afterId = "http://localhost/iri/subject-%08d".formatted(rows / 2);
+        return reader.retrieveRowsAfter(VIEW, filters, afterId, 100, false);
+    }
+
+    @Benchmark
+    public long countRows() throws SQLException {
+        return reader.countRows(VIEW, filters);
+    }
+}
@@ -0,0 +1,150 @@
+package io.fairspace.saturn.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+import io.fairspace.saturn.webdav.blobstore.LocalBlobStore;
+
+/**
+ * Many clients downloading a file at the same time over slow connections, from an embedded Tomcat
+ * handling requests on a pool of platform threads, as by default, and on virtual threads.
+ * The file is sent from the blob store as done for WebDAV downloads, and every client reads its response
+ * in small chunks with a pause in between, so the request threads spend most of their time blocked on writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ConcurrentDownloadBenchmark {
+    private static final int READ_SIZE = 16 * 1024;
+
+    @Param({"2000"})
+    public int downloads;
+
+    @Param({"1048576"})
+    public int size;
+
+    @Param({"5"})
+    public long readDelayMillis;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private File dir;
+    private LocalBlobStore store;
+    private String blobId;
+    private ExecutorService executor;
+    private Tomcat tomcat;
+    private int port;
+
+    @Setup
+    public void setUp() throws IOException, LifecycleException {
+        dir = Files.createTempDirectory("downloads").toFile();
+        store = new LocalBlobStore(new File(dir, "blobs"));
+        var content = new byte[size];
+        new Random(0).nextBytes(content);
+        blobId = store.write(new ByteArrayInputStream(content));
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(new File(dir, "tomcat").getPath());
+        var connector = new Connector();
+        connector.setPort(0);
+        if (threads.equals("virtual")) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            connector.getProtocolHandler().setExecutor(executor);
+        }
+        tomcat.setConnector(connector);
+        var context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "download", new DownloadServlet());
+        context.addServletMappingDecoded("/*", "download");
+        tomcat.start();
+        port = connector.getLocalPort();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public long download() throws InterruptedException, ExecutionException {
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            var results = new ArrayList<Future<Long>>(downloads);
+            for (var i = 0; i < downloads; i++) {
+                results.add(clients.submit(this::slowDownload));
+            }
+            var total = 0L;
+            for (var result : results) {
+                total += result.get();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * @return the number of bytes received, including the headers
+     */
+    private long slowDownload() throws IOException, InterruptedException {
+        try (var socket = new Socket()) {
+            // A small receive buffer, so that the server cannot write the whole response at once
+            socket.setReceiveBufferSize(READ_SIZE);
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.getOutputStream()
+                    .write("GET /file HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                            .getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            InputStream in = socket.getInputStream();
+            var buffer = new byte[READ_SIZE];
+            var received = 0L;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                received += read;
+                Thread.sleep(readDelayMillis);
+            }
+            if (received < size) {
+                throw new IOException("Incomplete download: " + received + " bytes");
+            }
+            return received;
+        }
+    }
+
+    private class DownloadServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("application/octet-stream");
+            resp.setContentLengthLong(size);
+            try (var channel = store.readChannel(blobId, 0, size)) {
+                BlobStore.transfer(channel, resp.getOutputStream());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.fairspace.saturn.webdav.blobstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.milton.http.FileItem;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Storing the files of a folder upload of 10k small files, one after another and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class BlobFileItemBenchmark {
+    @Param({"10000"})
+    public int files;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    private File dir;
+    private LocalBlobStore store;
+    private Map<String, FileItem> fileItems;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("blobs").toFile();
+        store = new LocalBlobStore(dir);
+        var content = new byte[fileSize];
+        fileItems = new HashMap<>();
+        for (var i = 0; i < files; i++) {
+            fileItems.put("dir/file" + i, new InMemoryFileItem("file" + i, content));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public Map<String, FileItem> storeSequentially() {
+        var result = new HashMap<String, FileItem>();
+        fileItems.forEach((path, fileItem) -> result.put(path, new BlobFileItem(fileItem, store)));
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, FileItem> storeInParallel() {
+        return BlobFileItem.storeAll(fileItems, store);
+    }
+
+    private record InMemoryFileItem(String name, byte[] content) implements FileItem {
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public String getFieldName() {
+            return name;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            return Map.of();
+        }
+    }
+}
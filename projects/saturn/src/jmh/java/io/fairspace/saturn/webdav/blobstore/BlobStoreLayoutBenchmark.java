@@ -0,0 +1,75 @@
+package io.fairspace.saturn.webdav.blobstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import static java.util.UUID.randomUUID;
+
+/**
+ * Creating and opening small blobs in a blob store holding a million of them,
+ * with all files in one directory as stored by previous versions, and with files in subdirectories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class BlobStoreLayoutBenchmark {
+    private static final byte[] CONTENT = new byte[] {0, 1, 2, 3, 4, 5, 6, 7};
+
+    @Param({"1000000"})
+    public int blobs;
+
+    @Param({"flat", "sharded"})
+    public String layout;
+
+    private File dir;
+    private LocalBlobStore store;
+    private List<String> ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("blobs").toFile();
+        store = new LocalBlobStore(dir);
+        ids = new ArrayList<>(blobs);
+        for (var i = 0; i < blobs; i++) {
+            ids.add(create());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public String createBlob() throws IOException {
+        return create();
+    }
+
+    @Benchmark
+    public long openBlob() throws IOException {
+        var id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        try (var channel = (FileRangeChannel) store.readChannel(id, 0, Long.MAX_VALUE)) {
+            return channel.remaining();
+        }
+    }
+
+    private String create() throws IOException {
+        if (layout.equals("sharded")) {
+            return store.write(new ByteArrayInputStream(CONTENT));
+        }
+        var id = randomUUID().toString();
+        Files.write(new File(dir, id).toPath(), CONTENT);
+        return id;
+    }
+}
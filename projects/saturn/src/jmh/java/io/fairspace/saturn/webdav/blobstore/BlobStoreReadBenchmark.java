@@ -0,0 +1,79 @@
+package io.fairspace.saturn.webdav.blobstore;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.milton.common.RangeUtils;
+import io.milton.http.Range;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Downloading a large blob, as done for sequencing files.
+ * Compares the former stream copy with the channel copy through a buffer, used for servlet output streams,
+ * and the transfer to a file channel, which does not copy the data through user space.
+ * The CPU time can be compared by running with {@code -prof stack} or {@code -prof perfnorm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class BlobStoreReadBenchmark {
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    @Param({"4294967296"})
+    public long size;
+
+    private File dir;
+    private LocalBlobStore store;
+    private String id;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("blobs").toFile();
+        store = new LocalBlobStore(dir);
+        id = "blob";
+        var chunk = new byte[CHUNK_SIZE];
+        new Random(0).nextBytes(chunk);
+        try (var out = new FileOutputStream(new File(dir, id))) {
+            for (var written = 0L; written < size; written += CHUNK_SIZE) {
+                out.write(chunk, 0, (int) Math.min(CHUNK_SIZE, size - written));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void streamCopy() throws IOException {
+        try (var in = new BufferedInputStream(new FileInputStream(new File(dir, id)))) {
+            RangeUtils.writeRange(in, new Range(0L, null), NullOutputStream.INSTANCE);
+        }
+    }
+
+    @Benchmark
+    public void bufferedChannelCopy() throws IOException {
+        store.read(id, NullOutputStream.INSTANCE, 0, null);
+    }
+
+    @Benchmark
+    public void channelTransfer() throws IOException {
+        try (var channel = (FileRangeChannel) store.readChannel(id, 0, size);
+                var devNull = FileChannel.open(new File("/dev/null").toPath(), StandardOpenOption.WRITE)) {
+            channel.transferTo(devNull);
+        }
+    }
+}
@@ -20,7 +20,10 @@ public class RdfStorageConfig {
     @Value("${application.publicUrl}")
     private String publicUrl;
 
-    @Bean
+    /**
+     * Closed on shutdown, which also closes the transaction log, forcing the commits not yet synced to disk.
+     */
+    @Bean(destroyMethod = "close")
     public Dataset dataset(
             ViewsProperties viewsProperties,
             JenaProperties jenaProperties,
@@ -28,7 +31,10 @@ public class RdfStorageConfig {
         return SaturnDatasetFactory.connect(viewsProperties, jenaProperties, viewStoreClientFactory, publicUrl);
     }
 
-    @Bean
+    /**
+     * Not closed on shutdown, as that would close the underlying dataset while it may still be in use.
+     */
+    @Bean(destroyMethod = "")
     public Dataset filteredDataset(Dataset dataset, MetadataPermissions metadataPermissions) {
         var filteredDatasetGraph = new FilteredDatasetGraph(dataset.asDatasetGraph(), metadataPermissions);
         return DatasetImpl.wrap(filteredDatasetGraph);
@@ -28,6 +28,8 @@ public class SecondaryStorageConfig {
         databaseConfig.setAutoCommit(viewDatabaseProperties.isAutoCommitEnabled());
         databaseConfig.setConnectionTimeout(viewDatabaseProperties.getConnectionTimeout());
         databaseConfig.setMaximumPoolSize(viewDatabaseProperties.getMaxPoolSize());
+        // Lets the driver send batches of inserts as multi-row inserts
+        databaseConfig.addDataSourceProperty("reWriteBatchedInserts", true);
         return databaseConfig;
     }
 }
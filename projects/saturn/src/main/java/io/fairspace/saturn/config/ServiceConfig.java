@@ -11,6 +11,7 @@ import io.fairspace.saturn.rdf.transactions.Transactions;
 import io.fairspace.saturn.services.search.FileSearchService;
 import io.fairspace.saturn.services.search.JdbcFileSearchService;
 import io.fairspace.saturn.services.search.SparqlFileSearchService;
+import io.fairspace.saturn.services.views.AccessibleCollectionsCache;
 import io.fairspace.saturn.services.views.JdbcQueryService;
 import io.fairspace.saturn.services.views.QueryService;
 import io.fairspace.saturn.services.views.SparqlQueryService;
@@ -23,16 +24,21 @@ import static io.fairspace.saturn.services.views.ViewStoreClientFactory.protecte
 @Configuration
 public class ServiceConfig {
 
+    @Bean
+    public AccessibleCollectionsCache accessibleCollectionsCache(
+            Transactions transactions, @Qualifier("davFactory") DavFactory davFactory) {
+        return new AccessibleCollectionsCache(transactions, davFactory.root);
+    }
+
     @Bean
     public QueryService queryService(
             SparqlQueryService sparqlQueryService,
             @Nullable ViewStoreClientFactory viewStoreClientFactory,
-            Transactions transactions,
-            @Qualifier("davFactory") DavFactory davFactory,
+            AccessibleCollectionsCache accessibleCollectionsCache,
             ViewStoreReader viewStoreReader) {
         return viewStoreClientFactory == null
                 ? sparqlQueryService
-                : new JdbcQueryService(transactions, davFactory.root, viewStoreReader);
+                : new JdbcQueryService(accessibleCollectionsCache, viewStoreReader);
     }
 
     @Bean
@@ -40,8 +46,7 @@ public class ServiceConfig {
             @Qualifier("filteredDataset") Dataset filteredDataset,
             @Nullable ViewStoreClientFactory viewStoreClientFactory,
             ViewsProperties viewsProperties,
-            Transactions transactions,
-            @Qualifier("davFactory") DavFactory davFactory,
+            AccessibleCollectionsCache accessibleCollectionsCache,
             ViewStoreReader viewStoreReader) {
         // File search should be done using JDBC for performance reasons. However, if the view store is not available,
         // or collections and files view is not configured, we fall back to using SPARQL queries on the RDF database
@@ -51,6 +56,6 @@ public class ServiceConfig {
 
         return useSparqlFileSearchService
                 ? new SparqlFileSearchService(filteredDataset)
-                : new JdbcFileSearchService(transactions, davFactory.root, viewStoreReader);
+                : new JdbcFileSearchService(accessibleCollectionsCache, viewStoreReader);
     }
 }
@@ -36,7 +36,10 @@ public class WebDAVConfig {
 
     @Bean
     public BlobStore blobStore(WebDavProperties webDavProperties) {
-        return new LocalBlobStore(new File(webDavProperties.getBlobStorePath()));
+        return new LocalBlobStore(
+                new File(webDavProperties.getBlobStorePath()),
+                webDavProperties.isContentAddressedBlobStore(),
+                webDavProperties.getUploadExpiry());
     }
 
     @Bean
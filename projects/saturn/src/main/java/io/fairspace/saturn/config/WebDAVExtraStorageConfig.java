@@ -37,7 +37,9 @@ public class WebDAVExtraStorageConfig {
     @Bean
     public BlobStore extraBlobStore(WebDavProperties webDavProperties) {
         return new DeletableLocalBlobStore(
-                new File(webDavProperties.getExtraStorage().getBlobStorePath()));
+                new File(webDavProperties.getExtraStorage().getBlobStorePath()),
+                webDavProperties.isContentAddressedBlobStore(),
+                webDavProperties.getUploadExpiry());
     }
 
     @Bean
@@ -22,12 +22,62 @@ public class JenaProperties {
 
     private File transactionLogPath;
 
+    /**
+     * Path of the Lucene index of labels and comments used by the search queries.
+     * If not set, the search queries scan all labels.
+     */
+    private File textIndexPath;
+
+    /**
+     * Format of the transaction log. When switching from SPARQL to BINARY,
+     * the existing log is converted on startup.
+     */
+    private TransactionLogFormat transactionLogFormat = TransactionLogFormat.SPARQL;
+
+    /**
+     * Size of a segment file of the binary transaction log, in bytes.
+     */
+    private long transactionLogSegmentSize = 64L * 1024 * 1024;
+
+    /**
+     * Whether concurrent commits to the binary transaction log are forced to disk together (group commit),
+     * once they have been applied to the database. Otherwise, every commit is forced before it is applied.
+     */
+    private boolean transactionLogGroupCommit;
+
     private boolean bulkTransactions;
 
     private long sparqlQueryTimeout;
 
+    /**
+     * Maximum number of results of a query to the SPARQL endpoint, 0 for no limit.
+     */
+    private long sparqlQueryMaxRows;
+
+    /**
+     * Maximum size in bytes of the response of the SPARQL endpoint, 0 for no limit.
+     * As results are streamed, a response exceeding it is aborted.
+     */
+    private long sparqlQueryMaxBytes;
+
+    /**
+     * If enabled, subjects updated by a commit are recorded in a durable outbox next to the transaction log
+     * and indexed in the view database by a background worker, instead of within the commit.
+     */
+    private boolean viewIndexOutboxEnabled;
+
+    /**
+     * Maximum number of subjects the background worker indexes in one view database transaction.
+     */
+    private int viewIndexBatchSize = 1000;
+
     private final StoreParams storeParams;
 
+    public enum TransactionLogFormat {
+        SPARQL,
+        BINARY
+    }
+
     public static String getMetadataBaseIri() {
         return JenaProperties.metadataBaseIRI;
     }
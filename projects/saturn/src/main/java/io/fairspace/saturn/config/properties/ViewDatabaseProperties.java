@@ -17,4 +17,26 @@ public class ViewDatabaseProperties {
     private int maxPoolSize;
     private int connectionTimeout;
     private boolean mvRefreshOnStartRequired;
+
+    /**
+     * If true, materialized views are Postgres materialized views that are refreshed in the background
+     * by the {@link io.fairspace.saturn.services.views.MaterializedViewRefresher},
+     * instead of being updated incrementally on commit.
+     */
+    private boolean mvRefreshDeferred;
+
+    /**
+     * Maximum time (in milliseconds) between a change and the refresh of the affected materialized views.
+     */
+    private long mvRefreshInterval = 10000;
+
+    /**
+     * Time (in milliseconds) without changes after which the affected materialized views are refreshed.
+     */
+    private long mvRefreshQuietPeriod = 1000;
+
+    /**
+     * Maximum number of entries in each direction of the label cache (label by id and id by label).
+     */
+    private long labelCacheSize = 100000;
 }
@@ -1,5 +1,6 @@
 package io.fairspace.saturn.config.properties;
 
+import java.time.Duration;
 import java.util.List;
 
 import lombok.Data;
@@ -14,6 +15,12 @@ public class WebDavProperties {
     // Path of the WebDAV's local blob store
     private String blobStorePath;
 
+    // Whether blobs are named after the SHA-256 of their content, storing identical content only once
+    private boolean contentAddressedBlobStore;
+
+    // Time after which uploads in chunks that have not received any chunk are deleted
+    private Duration uploadExpiry = Duration.ofDays(7);
+
     private ExtraStorage extraStorage;
 
     @Data
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import io.fairspace.saturn.controller.dto.MaintenanceStatusDto;
 import io.fairspace.saturn.services.maintenance.MaintenanceService;
 
 @RestController
@@ -28,9 +29,25 @@ public class MaintenanceController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/migrate-blobs")
+    public ResponseEntity<Void> migrateBlobStores() {
+        maintenanceService.migrateBlobStoresTask();
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/status")
     public ResponseEntity<String> getStatus() {
         var status = maintenanceService.active() ? "active" : "inactive";
         return ResponseEntity.ok(status);
     }
+
+    /**
+     * Returns the status along with the progress counters of the running or last reindexing task.
+     */
+    @GetMapping(value = "/status", params = "progress")
+    public ResponseEntity<MaintenanceStatusDto> getStatusWithProgress() {
+        var status = maintenanceService.active() ? "active" : "inactive";
+        return ResponseEntity.ok(new MaintenanceStatusDto(
+                status, maintenanceService.getReindexProgress().orElse(null)));
+    }
 }
@@ -1,10 +1,12 @@
 package io.fairspace.saturn.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -26,20 +28,26 @@ public class SparqlController {
     private final MetadataPermissions metadataPermissions;
 
     /**
-     * Execute a read-only SPARQL query.
+     * Execute a read-only SPARQL query. The results are streamed in the format accepted by the client:
+     * SPARQL JSON (default), TSV or Thrift results for SELECT and ASK queries,
+     * N-Triples (default) or RDF Thrift for CONSTRUCT and DESCRIBE queries.
      *
      * @param sparqlQuery the SPARQL query
-     * @return the result of the query (JSON)
      */
     @PostMapping(value = "/query", consumes = APPLICATION_SPARQL_QUERY)
     // todo: uncomment the line below and remove the metadataPermissions.hasMetadataQueryPermission() call once
     //  the MetadataPermissions is available in the IoC container
     //  @PreAuthorize("@metadataPermissions.hasMetadataQueryPermission()")
-    public ResponseEntity<String> executeSparqlQuery(@ValidSparqlReadQuery @RequestBody String sparqlQuery) {
+    public void executeSparqlQuery(
+            @ValidSparqlReadQuery @RequestBody String sparqlQuery,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String acceptHeader,
+            HttpServletResponse response) {
         if (!metadataPermissions.hasMetadataQueryPermission()) {
             throw new AccessDeniedException("You do not have permission to execute SPARQL queries.");
         }
-        var json = sparqlQueryService.executeQuery(sparqlQuery);
-        return ResponseEntity.ok(json);
+        sparqlQueryService.executeQuery(sparqlQuery, acceptHeader, contentType -> {
+            response.setContentType(contentType);
+            return response.getOutputStream();
+        });
     }
 }
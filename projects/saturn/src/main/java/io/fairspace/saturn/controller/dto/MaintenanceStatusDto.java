@@ -0,0 +1,9 @@
+package io.fairspace.saturn.controller.dto;
+
+import io.fairspace.saturn.services.maintenance.ReindexProgress;
+
+/**
+ * @param status   "active" or "inactive".
+ * @param reindex  progress counters of the running or last reindexing task, null if none has been started.
+ */
+public record MaintenanceStatusDto(String status, ReindexProgress reindex) {}
@@ -16,6 +16,12 @@ public class ViewPageDto {
     List<Map<String, Set<ValueDto>>> rows;
 
     boolean hasNext;
+
+    /**
+     * Cursor to pass to retrieve the next page, if there is one and cursor-based paging is supported.
+     */
+    String nextCursor;
+
     boolean timeout;
     Long totalCount;
     Long totalPages;
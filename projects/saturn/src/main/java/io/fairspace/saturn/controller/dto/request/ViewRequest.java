@@ -13,6 +13,12 @@ public class ViewRequest extends CountRequest {
     @Min(1)
     private Integer size;
 
+    /**
+     * Opaque cursor returned as nextCursor with the previous page.
+     * If set, the page following the cursor is returned and page is ignored.
+     */
+    private String cursor;
+
     private Boolean includeCounts;
 
     public boolean includeCounts() {
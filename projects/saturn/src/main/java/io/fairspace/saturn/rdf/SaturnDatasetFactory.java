@@ -2,6 +2,7 @@ package io.fairspace.saturn.rdf;
 
 import java.io.File;
 
+import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.apache.jena.datatypes.TypeMapper;
 import org.apache.jena.dboe.base.file.Location;
@@ -10,14 +11,21 @@ import org.apache.jena.query.DatasetFactory;
 
 import io.fairspace.saturn.config.properties.JenaProperties;
 import io.fairspace.saturn.config.properties.ViewsProperties;
+import io.fairspace.saturn.rdf.search.LabelTextIndex;
+import io.fairspace.saturn.rdf.transactions.BinaryTransactionCodec;
 import io.fairspace.saturn.rdf.transactions.LocalTransactionLog;
+import io.fairspace.saturn.rdf.transactions.SegmentedTransactionLog;
 import io.fairspace.saturn.rdf.transactions.SparqlTransactionCodec;
+import io.fairspace.saturn.rdf.transactions.TransactionLog;
 import io.fairspace.saturn.rdf.transactions.TxnIndexDatasetGraph;
 import io.fairspace.saturn.rdf.transactions.TxnLogDatasetGraph;
+import io.fairspace.saturn.rdf.transactions.ViewIndexOutbox;
+import io.fairspace.saturn.rdf.transactions.ViewIndexWorker;
 import io.fairspace.saturn.services.views.ViewStoreClientFactory;
 
 import static io.fairspace.saturn.rdf.MarkdownDataType.MARKDOWN_DATA_TYPE;
 import static io.fairspace.saturn.rdf.transactions.Restore.restore;
+import static io.fairspace.saturn.rdf.transactions.TransactionLogConverter.convert;
 
 import static org.apache.jena.tdb2.sys.DatabaseConnection.connectCreate;
 
@@ -32,6 +40,7 @@ public class SaturnDatasetFactory {
      * Currently it adds transaction logging and applies default vocabulary if
      * needed.
      */
+    @SneakyThrows
     public static Dataset connect(
             ViewsProperties viewsProperties,
             JenaProperties jenaProperties,
@@ -46,18 +55,54 @@ public class SaturnDatasetFactory {
                         null)
                 .getDatasetGraph();
 
-        var txnLog = new LocalTransactionLog(jenaProperties.getTransactionLogPath(), new SparqlTransactionCodec());
+        if (jenaProperties.getTextIndexPath() != null) {
+            // Index labels and comments, including those written by the restore below
+            dsg = LabelTextIndex.wrap(dsg, jenaProperties.getTextIndexPath(), restoreNeeded);
+        }
+
+        var legacyTxnLog =
+                new LocalTransactionLog(jenaProperties.getTransactionLogPath(), new SparqlTransactionCodec());
+        TransactionLog txnLog = legacyTxnLog;
+        if (jenaProperties.getTransactionLogFormat() == JenaProperties.TransactionLogFormat.BINARY) {
+            txnLog = new SegmentedTransactionLog(
+                    jenaProperties.getTransactionLogPath(),
+                    new BinaryTransactionCodec(),
+                    jenaProperties.getTransactionLogSegmentSize(),
+                    jenaProperties.isTransactionLogGroupCommit());
+        } else {
+            legacyTxnLog = null;
+        }
 
+        ViewIndexWorker viewIndexWorker = null;
         if (viewStoreClientFactory != null) {
-            dsg = new TxnIndexDatasetGraph(viewsProperties, dsg, viewStoreClientFactory, publicUrl);
+            ViewIndexOutbox outbox = null;
+            if (jenaProperties.isViewIndexOutboxEnabled()) {
+                outbox = new ViewIndexOutbox(jenaProperties.getTransactionLogPath());
+                viewIndexWorker = new ViewIndexWorker(
+                        viewsProperties,
+                        dsg,
+                        viewStoreClientFactory,
+                        publicUrl,
+                        outbox,
+                        jenaProperties.getViewIndexBatchSize());
+            }
+            dsg = new TxnIndexDatasetGraph(
+                    viewsProperties, dsg, viewStoreClientFactory, publicUrl, outbox, viewIndexWorker);
         }
 
         if (restoreNeeded) {
             log.warn("Jena restore is needed, starting automatic restore.");
-            restore(dsg, txnLog);
+            restore(dsg, txnLog, legacyTxnLog);
+        } else if (legacyTxnLog != null) {
+            convert(legacyTxnLog, txnLog);
+        }
+
+        if (viewIndexWorker != null) {
+            // Resumes indexing from the last acknowledged position
+            viewIndexWorker.start();
         }
 
-        // Add transaction log
+        // Add transaction log. Closing the dataset also stops the view index worker and closes its outbox
         dsg = new TxnLogDatasetGraph(dsg, txnLog);
 
         TypeMapper.getInstance().registerDatatype(MARKDOWN_DATA_TYPE);
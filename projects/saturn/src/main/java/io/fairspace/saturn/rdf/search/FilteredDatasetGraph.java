@@ -1,21 +1,41 @@
 package io.fairspace.saturn.rdf.search;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
+import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.TxnType;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphFilteredView;
 import org.apache.jena.sparql.core.DatasetImpl;
 import org.apache.jena.sparql.core.Quad;
 
+import io.fairspace.saturn.rdf.transactions.Transactions;
 import io.fairspace.saturn.services.metadata.MetadataPermissions;
 
+import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+
 import static org.apache.jena.sparql.core.Quad.defaultGraphIRI;
 
 public class FilteredDatasetGraph extends DatasetGraphFilteredView {
 
     private static final ThreadLocal<Boolean> permissionCheckEnabled = ThreadLocal.withInitial(() -> true);
 
+    /**
+     * Read access decisions of the current user, by the node owning the access
+     * (see {@link MetadataPermissions#getMetadataAccessOwner}).
+     * Only kept for the duration of a read transaction, begun on this graph or by {@link Transactions#calculateRead},
+     * so the decisions are made on the snapshot of that transaction.
+     * Outside them, e.g. in write transactions, in which permissions may change, access is checked for every quad.
+     */
+    private static final ThreadLocal<AccessDecisions> accessDecisions = new ThreadLocal<>();
+
+    private record AccessDecisions(Node user, Map<Node, Boolean> decisions) {}
+
     public FilteredDatasetGraph(DatasetGraph dsg, MetadataPermissions permissions) {
         this(DatasetImpl.wrap(dsg), permissions);
     }
@@ -32,11 +52,59 @@ public class FilteredDatasetGraph extends DatasetGraphFilteredView {
         permissionCheckEnabled.set(true);
     }
 
+    /**
+     * Keeps the access decisions made on the current thread until {@link #clearAccessDecisions()} is called.
+     * To be called when a read transaction begins.
+     */
+    public static void cacheAccessDecisions() {
+        accessDecisions.set(new AccessDecisions(getUserURI(), new HashMap<>()));
+    }
+
+    /**
+     * To be called when a read transaction ends.
+     */
+    public static void clearAccessDecisions() {
+        accessDecisions.remove();
+    }
+
+    @Override
+    public void begin(TxnType txnType) {
+        clearAccessDecisions();
+        super.begin(txnType);
+        if (txnType == TxnType.READ) {
+            cacheAccessDecisions();
+        }
+    }
+
+    @Override
+    public void begin(ReadWrite readWrite) {
+        clearAccessDecisions();
+        super.begin(readWrite);
+        if (readWrite == ReadWrite.READ) {
+            cacheAccessDecisions();
+        }
+    }
+
+    @Override
+    public void end() {
+        clearAccessDecisions();
+        super.end();
+    }
+
     protected static boolean isAllowedToReadMetadata(Dataset ds, MetadataPermissions permissions, Quad quad) {
         boolean allowedToReadMetadata = quad.isDefaultGraph();
         if (allowedToReadMetadata && permissionCheckEnabled.get()) {
-            allowedToReadMetadata =
-                    permissions.canReadMetadata(ds.getDefaultModel().wrapAsResource(quad.getSubject()));
+            var resource = ds.getDefaultModel().wrapAsResource(quad.getSubject());
+            var cached = accessDecisions.get();
+            if (cached != null
+                    && ds.transactionMode() == ReadWrite.READ
+                    && Objects.equals(cached.user(), getUserURI())) {
+                var owner = permissions.getMetadataAccessOwner(resource);
+                allowedToReadMetadata =
+                        cached.decisions().computeIfAbsent(owner, o -> permissions.canReadMetadata(resource));
+            } else {
+                allowedToReadMetadata = permissions.canReadMetadata(resource);
+            }
         }
         return allowedToReadMetadata;
     }
@@ -0,0 +1,180 @@
+package io.fairspace.saturn.rdf.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.text.EntityDefinition;
+import org.apache.jena.query.text.TextDatasetFactory;
+import org.apache.jena.query.text.TextIndex;
+import org.apache.jena.query.text.TextIndexConfig;
+import org.apache.jena.query.text.TextQuery;
+import org.apache.jena.query.text.TextQueryFuncs;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.CharTokenizer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * A Lucene index of the labels and comments of all resources, used by text:query in the search queries
+ * to find candidates instead of evaluating a regular expression on every label in the dataset.
+ * <p>
+ * Values are split into words at the same characters as {@link io.fairspace.saturn.rdf.SparqlUtils#getQueryRegex},
+ * and every word of a query is matched as a prefix. So the candidates include every resource matching the regular
+ * expression, which is still applied to them to keep the results exactly the same.
+ */
+@Log4j2
+public class LabelTextIndex {
+    public static final String URI_FIELD = "uri";
+    public static final String UID_FIELD = "uid";
+    public static final String LABEL_FIELD = "label";
+    public static final String COMMENT_FIELD = "comment";
+
+    /**
+     * Maximum number of hits of a text query. Queries with more hits are not evaluated with the text index,
+     * see {@link #getTextQuery(Dataset, String)}.
+     */
+    public static final int TEXT_QUERY_LIMIT = 100_000;
+
+    private static final String SEPARATORS = ".-,;([{?!\\/_";
+    private static final Pattern SEPARATOR_PATTERN = Pattern.compile("[\\s.\\-,;(\\[{?!\\\\/_]+");
+
+    private LabelTextIndex() {}
+
+    /**
+     * Wraps the dataset graph so that changes to labels and comments are indexed on commit,
+     * and registers the index in the context of the dataset graph for text:query.
+     * The index is rebuilt from the dataset graph if it does not exist yet, unless the dataset graph is going to be
+     * restored from the transaction log, which indexes all the labels as well. In the latter case, an existing index
+     * is removed.
+     */
+    public static DatasetGraph wrap(DatasetGraph dsg, File indexPath, boolean restoreNeeded) throws IOException {
+        if (restoreNeeded && indexPath.exists()) {
+            log.warn("Removing text index {}, as the dataset is going to be restored", indexPath);
+            FileUtils.deleteDirectory(indexPath);
+        }
+        var directory = FSDirectory.open(indexPath.toPath());
+        var rebuildNeeded = !restoreNeeded && !DirectoryReader.indexExists(directory);
+
+        var entityDefinition = entityDefinition();
+        var config = new TextIndexConfig(entityDefinition);
+        config.setAnalyzer(new LabelAnalyzer());
+        config.setQueryAnalyzer(new LabelAnalyzer());
+        var textIndex = TextDatasetFactory.createLuceneIndex(directory, config);
+
+        if (rebuildNeeded) {
+            rebuild(dsg, textIndex, entityDefinition);
+        }
+        return TextDatasetFactory.create(dsg, textIndex, true);
+    }
+
+    /**
+     * @return whether text queries can be used on the dataset.
+     */
+    public static boolean isAvailable(Dataset ds) {
+        return ds.getContext().isDefined(TextQuery.textIndex);
+    }
+
+    /**
+     * Builds the text query finding the candidates of a search, if the text index can be used for it:
+     * the index is available, the query has words, and it has fewer hits than {@link #TEXT_QUERY_LIMIT}.
+     * Otherwise, all labels are to be scanned, as a text query with that limit would drop candidates.
+     */
+    public static Optional<String> getTextQuery(Dataset ds, String query) {
+        return getTextQuery(ds, query, TEXT_QUERY_LIMIT);
+    }
+
+    static Optional<String> getTextQuery(Dataset ds, String query, int limit) {
+        if (!isAvailable(ds)) {
+            return Optional.empty();
+        }
+        var textQuery = toTextQuery(query);
+        if (textQuery.isPresent()) {
+            var index = (TextIndex) ds.getContext().get(TextQuery.textIndex);
+            var hits = index.query((Node) null, textQuery.get(), null, null, limit).size();
+            if (hits >= limit) {
+                log.debug("Text query {} has {} hits or more, scanning all labels instead", textQuery.get(), limit);
+                return Optional.empty();
+            }
+        }
+        return textQuery;
+    }
+
+    /**
+     * Builds a Lucene query matching the labels and comments containing words starting with every word of the query.
+     *
+     * @return the Lucene query, or nothing if the query has no words.
+     */
+    public static Optional<String> toTextQuery(String query) {
+        var words = Arrays.stream(SEPARATOR_PATTERN.split(query.toLowerCase()))
+                .filter(word -> !word.isEmpty())
+                .map(word -> QueryParser.escape(word) + "*")
+                .collect(Collectors.joining(" AND "));
+        if (words.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of("%s:(%s) OR %s:(%s)".formatted(LABEL_FIELD, words, COMMENT_FIELD, words));
+    }
+
+    private static EntityDefinition entityDefinition() {
+        var entityDefinition = new EntityDefinition(URI_FIELD, LABEL_FIELD);
+        entityDefinition.set(LABEL_FIELD, RDFS.label.asNode());
+        entityDefinition.set(COMMENT_FIELD, RDFS.comment.asNode());
+        // Lets the index remove the document of a deleted value
+        entityDefinition.setUidField(UID_FIELD);
+        return entityDefinition;
+    }
+
+    private static void rebuild(DatasetGraph dsg, TextIndex textIndex, EntityDefinition entityDefinition) {
+        log.info("Building the text index");
+        var count = Txn.calculateRead(dsg, () -> {
+            var indexed = 0L;
+            for (var field : entityDefinition.fields()) {
+                for (var predicate : entityDefinition.getPredicates(field)) {
+                    var quads = dsg.find(Node.ANY, Node.ANY, predicate, Node.ANY);
+                    while (quads.hasNext()) {
+                        var entity = TextQueryFuncs.entityFromQuad(entityDefinition, quads.next());
+                        if (entity != null) {
+                            textIndex.addEntity(entity);
+                            indexed++;
+                        }
+                    }
+                }
+            }
+            return indexed;
+        });
+        textIndex.prepareCommit();
+        textIndex.commit();
+        log.info("Text index built, {} values indexed", count);
+    }
+
+    /**
+     * Splits values into lower case words.
+     */
+    private static class LabelAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            var tokenizer = CharTokenizer.fromSeparatorCharPredicate(
+                    c -> Character.isWhitespace(c) || SEPARATORS.indexOf(c) >= 0);
+            return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+        }
+
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new LowerCaseFilter(in);
+        }
+    }
+}
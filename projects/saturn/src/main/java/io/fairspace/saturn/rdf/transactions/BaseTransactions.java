@@ -1,17 +1,21 @@
 package io.fairspace.saturn.rdf.transactions;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.pivovarit.function.ThrowingConsumer;
 import com.pivovarit.function.ThrowingFunction;
-import com.pivovarit.function.ThrowingRunnable;
 import com.pivovarit.function.ThrowingSupplier;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.sparql.util.Symbol;
 import org.apache.jena.system.Txn;
 
+import io.fairspace.saturn.rdf.search.FilteredDatasetGraph;
+
 public abstract class BaseTransactions implements Transactions {
 
     protected final Dataset ds;
+    protected final AtomicLong commitVersion = new AtomicLong();
 
     protected BaseTransactions(Dataset ds) {
         this.ds = ds;
@@ -19,12 +23,27 @@ public abstract class BaseTransactions implements Transactions {
 
     @Override
     public <E extends Exception> void executeRead(ThrowingConsumer<? super Model, E> job) throws E {
-        Txn.executeRead(ds, ThrowingRunnable.sneaky(() -> job.accept(ds.getDefaultModel())));
+        calculateRead(model -> {
+            job.accept(model);
+            return null;
+        });
     }
 
+    /**
+     * Access decisions of the filtered dataset are kept for the duration of the read transaction,
+     * unless it is nested in another transaction.
+     */
     @Override
     public <R, E extends Exception> R calculateRead(ThrowingFunction<? super Model, R, E> job) throws E {
-        return Txn.calculateRead(ds, ThrowingSupplier.sneaky(() -> job.apply(ds.getDefaultModel())));
+        if (ds.isInTransaction()) {
+            return Txn.calculateRead(ds, ThrowingSupplier.sneaky(() -> job.apply(ds.getDefaultModel())));
+        }
+        FilteredDatasetGraph.cacheAccessDecisions();
+        try {
+            return Txn.calculateRead(ds, ThrowingSupplier.sneaky(() -> job.apply(ds.getDefaultModel())));
+        } finally {
+            FilteredDatasetGraph.clearAccessDecisions();
+        }
     }
 
     @Override
@@ -32,6 +51,11 @@ public abstract class BaseTransactions implements Transactions {
         ds.close();
     }
 
+    @Override
+    public long getCommitVersion() {
+        return commitVersion.get();
+    }
+
     @Override
     public void setContextValue(Symbol symbol, Object object) {
         ds.getContext().set(symbol, object);
@@ -0,0 +1,213 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A compact, length-prefixed binary encoding of transactions.
+ * Every event is a tag byte followed by its fields. Strings are encoded as a varint length followed by UTF-8 bytes.
+ * Nodes are kept in a dictionary per transaction: the first occurrence of a node is written in full,
+ * any further occurrences are written as a varint reference to the dictionary entry.
+ * As a result, repeated subjects, predicates and graphs only take one or two bytes.
+ */
+public class BinaryTransactionCodec implements TransactionCodec {
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int METADATA = 1;
+    private static final int ADD = 2;
+    private static final int DELETE = 3;
+    private static final int COMMITTED = 4;
+    private static final int ABORTED = 5;
+
+    private static final int NEW_NODE = 0;
+    private static final int URI = 1;
+    private static final int BLANK = 2;
+    private static final int LITERAL = 3;
+
+    @Override
+    public TransactionListener write(OutputStream out) throws IOException {
+        var data = new DataOutputStream(out);
+        data.writeByte(FORMAT_VERSION);
+
+        return new TransactionListener() {
+            private final Map<Node, Integer> dictionary = new HashMap<>();
+
+            @Override
+            public void onMetadata(String userId, String userName, long timestamp) throws IOException {
+                data.writeByte(METADATA);
+                data.writeLong(timestamp);
+                writeNullableString(data, userName);
+                writeNullableString(data, userId);
+            }
+
+            @Override
+            public void onAdd(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                data.writeByte(ADD);
+                writeQuad(graph, subject, predicate, object);
+            }
+
+            @Override
+            public void onDelete(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                data.writeByte(DELETE);
+                writeQuad(graph, subject, predicate, object);
+            }
+
+            @Override
+            public void onCommit() throws IOException {
+                data.writeByte(COMMITTED);
+                data.flush();
+            }
+
+            @Override
+            public void onAbort() throws IOException {
+                data.writeByte(ABORTED);
+                data.flush();
+            }
+
+            private void writeQuad(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                writeNode(graph);
+                writeNode(subject);
+                writeNode(predicate);
+                writeNode(object);
+            }
+
+            private void writeNode(Node node) throws IOException {
+                var ref = dictionary.get(node);
+                if (ref != null) {
+                    writeVarInt(data, ref);
+                    return;
+                }
+                writeVarInt(data, NEW_NODE);
+                if (node.isURI()) {
+                    data.writeByte(URI);
+                    writeString(data, node.getURI());
+                } else if (node.isBlank()) {
+                    data.writeByte(BLANK);
+                    writeString(data, node.getBlankNodeLabel());
+                } else if (node.isLiteral()) {
+                    data.writeByte(LITERAL);
+                    writeString(data, node.getLiteralLexicalForm());
+                    writeString(data, node.getLiteralLanguage());
+                    writeString(data, node.getLiteralDatatypeURI());
+                } else {
+                    throw new IllegalArgumentException("Unsupported node: " + node);
+                }
+                dictionary.put(node, dictionary.size() + 1);
+            }
+        };
+    }
+
+    @Override
+    public void read(InputStream in, TransactionListener listener) throws IOException {
+        var data = new DataInputStream(in);
+        var version = data.read();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported transaction format version: " + version);
+        }
+
+        listener.onBegin();
+
+        var dictionary = new ArrayList<Node>();
+        int tag;
+        while ((tag = data.read()) >= 0) {
+            switch (tag) {
+                case METADATA -> {
+                    var timestamp = data.readLong();
+                    var userName = readNullableString(data);
+                    var userId = readNullableString(data);
+                    listener.onMetadata(userId, userName, timestamp);
+                }
+                case ADD -> listener.onAdd(
+                        readNode(data, dictionary),
+                        readNode(data, dictionary),
+                        readNode(data, dictionary),
+                        readNode(data, dictionary));
+                case DELETE -> listener.onDelete(
+                        readNode(data, dictionary),
+                        readNode(data, dictionary),
+                        readNode(data, dictionary),
+                        readNode(data, dictionary));
+                case COMMITTED -> listener.onCommit();
+                case ABORTED -> listener.onAbort();
+                default -> throw new IOException("Unexpected tag in the transaction: " + tag);
+            }
+        }
+    }
+
+    private static Node readNode(DataInputStream data, List<Node> dictionary) throws IOException {
+        var ref = readVarInt(data);
+        if (ref != NEW_NODE) {
+            return dictionary.get(ref - 1);
+        }
+        var kind = data.readByte();
+        var node =
+                switch (kind) {
+                    case URI -> NodeFactory.createURI(readString(data));
+                    case BLANK -> NodeFactory.createBlankNode(readString(data));
+                    case LITERAL -> {
+                        var lexicalForm = readString(data);
+                        var language = readString(data);
+                        var datatype = readString(data);
+                        yield language.isEmpty()
+                                ? NodeFactory.createLiteralDT(
+                                        lexicalForm, TypeMapper.getInstance().getSafeTypeByName(datatype))
+                                : NodeFactory.createLiteralLang(lexicalForm, language);
+                    }
+                    default -> throw new IOException("Unexpected node kind in the transaction: " + kind);
+                };
+        dictionary.add(node);
+        return node;
+    }
+
+    private static void writeNullableString(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            writeString(data, value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? readString(data) : null;
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        var bytes = value.getBytes(UTF_8);
+        writeVarInt(data, bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        var bytes = new byte[readVarInt(data)];
+        data.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        var value = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            var b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in the transaction");
+    }
+}
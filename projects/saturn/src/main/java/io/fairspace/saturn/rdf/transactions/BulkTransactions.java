@@ -46,6 +46,7 @@ public class BulkTransactions extends BaseTransactions {
 
                     while (!tryExecute(tasks))
                         ;
+                    commitVersion.incrementAndGet();
 
                     tasks.forEach(Task::completed); // mark all tasks as committed
                 }
@@ -8,7 +8,18 @@ import org.apache.jena.system.Txn;
 @Log4j2
 public class Restore {
     public static void restore(DatasetGraph dsg, TransactionLog txnLog) {
-        var logSize = txnLog.size();
+        restore(dsg, txnLog, null);
+    }
+
+    /**
+     * Restores the dataset from the transaction log.
+     * If a legacy log is specified that has not been fully converted to the transaction log yet,
+     * its remaining transactions are read from the legacy log and converted while being restored,
+     * so that it only has to be read once.
+     */
+    public static void restore(DatasetGraph dsg, TransactionLog txnLog, TransactionLog legacyLog) {
+        var convertedSize = txnLog.size();
+        var logSize = legacyLog != null ? Math.max(convertedSize, legacyLog.size()) : convertedSize;
 
         if (logSize == 0) {
             return;
@@ -17,8 +28,22 @@ public class Restore {
         log.warn(
                 "Your metadata database is gone. Restoring from the transaction log containing {} transactions",
                 logSize);
+        if (logSize > convertedSize) {
+            log.warn("Transactions {} to {} are read from the legacy transaction log", convertedSize + 1, logSize);
+        }
 
         Txn.executeWrite(dsg, () -> {
+            var listener = new TransactionListener() {
+                @Override
+                public void onAdd(Node graph, Node subject, Node predicate, Node object) {
+                    dsg.add(graph, subject, predicate, object);
+                }
+
+                @Override
+                public void onDelete(Node graph, Node subject, Node predicate, Node object) {
+                    dsg.delete(graph, subject, predicate, object);
+                }
+            };
             var prevProgress = -1L;
             for (var i = 0; i < logSize; i++) {
                 var progress = (100 * i) / logSize;
@@ -27,17 +52,11 @@ public class Restore {
                     prevProgress = progress;
                 }
                 try {
-                    txnLog.read(i, new TransactionListener() {
-                        @Override
-                        public void onAdd(Node graph, Node subject, Node predicate, Node object) {
-                            dsg.add(graph, subject, predicate, object);
-                        }
-
-                        @Override
-                        public void onDelete(Node graph, Node subject, Node predicate, Node object) {
-                            dsg.delete(graph, subject, predicate, object);
-                        }
-                    });
+                    if (i < convertedSize) {
+                        txnLog.read(i, listener);
+                    } else {
+                        TransactionLogConverter.copy(legacyLog, i, txnLog, listener);
+                    }
                 } catch (Exception e) {
                     log.error("Error applying transaction #" + (i + 1), e);
                     throw new RuntimeException(e);
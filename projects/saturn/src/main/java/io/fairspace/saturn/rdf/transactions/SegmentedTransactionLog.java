@@ -0,0 +1,429 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.jena.graph.Node;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Stores transactions in append-only segment files, each with an offset index:
+ * segment-000000000000.log
+ *   Transactions 1 to N, one after another, each encoded with the codec.
+ * segment-000000000000.idx
+ *   For each transaction in the segment, its end offset in the segment file and its checksum (12 bytes).
+ * segment-00000000N.log
+ *   Transactions N + 1 and further.
+ * ...
+ * A segment is named after the number of transactions preceding it.
+ * A new segment is started when the current one has reached the segment size,
+ * segment files are preallocated to that size, by writing zeros, and truncated when they are full.
+ * <p>
+ * A transaction is written to the segment file as it progresses, and only becomes part of the log
+ * when its index entry is written on commit. Anything after the last indexed offset,
+ * e.g. an aborted transaction, is overwritten by the next transaction.
+ * <p>
+ * Without group commit, the segment and its index are forced to disk on every commit, before the commit is
+ * applied to the database. With group commit, they are forced once the commit has been applied, see
+ * {@link #awaitDurable}: the commits written while the log is being forced are forced together afterwards,
+ * so that concurrent transactions share one force rather than waiting for one another's.
+ * A commit is applied to the database before it is durable in the log then, so after a system crash
+ * the log can lack the last commits of the database, none of which has been acknowledged to its client.
+ * Transactions whose checksum does not match after a crash are dropped from the end of the log.
+ * <p>
+ * Committing threads wait for a force with a lock rather than a monitor, so that a committing virtual thread
+ * does not pin its carrier thread.
+ */
+@Log4j2
+public class SegmentedTransactionLog implements TransactionLog {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String DATA_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File directory;
+    private final TransactionCodec codec;
+    private final long segmentSize;
+    private final boolean groupCommit;
+    private final Lock syncLock = new ReentrantLock();
+    private final Condition forceCompleted = syncLock.newCondition();
+    // Segments by the number of transactions preceding them
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // Only replaced under syncLock
+    private Segment current;
+    private volatile long count;
+    private CRC32 checksum;
+    private ChannelOutputStream channelOutputStream;
+    private OutputStream outputStream;
+    private TransactionListener writingListener;
+    // The number of transactions forced to disk with group commit, guarded by syncLock
+    private long forced;
+    // Whether a committing thread is forcing the log for the others, guarded by syncLock
+    private boolean forcing;
+
+    public SegmentedTransactionLog(File directory, TransactionCodec codec, long segmentSize, boolean groupCommit)
+            throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.groupCommit = groupCommit;
+
+        directory.mkdirs();
+
+        var indexFiles =
+                directory.list((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(INDEX_SUFFIX));
+        if (indexFiles != null) {
+            for (var name : indexFiles) {
+                var first =
+                        Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - INDEX_SUFFIX.length()));
+                segments.put(first, new Segment(first));
+            }
+        }
+        for (var segment : segments.values()) {
+            if (segment.first != count) {
+                throw new IllegalStateException("Transaction log is broken");
+            }
+            count += segment.size;
+        }
+        if (!segments.isEmpty()) {
+            current = segments.lastEntry().getValue();
+            count -= current.dropCorruptedTail();
+        }
+        forced = count;
+    }
+
+    @Override
+    public void onBegin() throws IOException {
+        if (current == null || current.end() >= segmentSize) {
+            startSegment();
+        }
+        checksum = new CRC32();
+        channelOutputStream = new ChannelOutputStream(current.data, current.end());
+        outputStream =
+                new BufferedOutputStream(new CheckedOutputStream(channelOutputStream, checksum), BUFFER_SIZE);
+        writingListener = codec.write(outputStream);
+    }
+
+    @Override
+    public void onMetadata(String userId, String userName, long timestamp) throws IOException {
+        writingListener.onMetadata(userId, userName, timestamp);
+    }
+
+    @Override
+    public void onAdd(Node graph, Node subject, Node predicate, Node object) throws IOException {
+        writingListener.onAdd(graph, subject, predicate, object);
+    }
+
+    @Override
+    public void onDelete(Node graph, Node subject, Node predicate, Node object) throws IOException {
+        writingListener.onDelete(graph, subject, predicate, object);
+    }
+
+    @Override
+    public void onCommit() throws IOException {
+        writingListener.onCommit();
+        outputStream.flush();
+        var end = channelOutputStream.position;
+        if (!groupCommit) {
+            current.data.force(false);
+        }
+        current.append(end, (int) checksum.getValue());
+        if (!groupCommit) {
+            current.index.force(false);
+        }
+        count++;
+        writingListener = null;
+        channelOutputStream = null;
+        outputStream = null;
+    }
+
+    @Override
+    public void onAbort() throws IOException {
+        writingListener.onAbort();
+        writingListener = null;
+        channelOutputStream = null;
+        outputStream = null;
+    }
+
+    @Override
+    public long size() {
+        return count;
+    }
+
+    /**
+     * With group commit, the first waiting thread forces the log with all commits written so far,
+     * while the threads committing in the meantime wait for it, after which one of them forces all of their commits.
+     */
+    @Override
+    public void awaitDurable(long size) throws IOException {
+        if (!groupCommit) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (forced < size) {
+                if (forcing) {
+                    forceCompleted.awaitUninterruptibly();
+                    continue;
+                }
+                forcing = true;
+                var target = count;
+                var segment = current;
+                var success = false;
+                syncLock.unlock();
+                try {
+                    segment.data.force(false);
+                    segment.index.force(false);
+                    success = true;
+                } finally {
+                    syncLock.lock();
+                    forcing = false;
+                    if (success) {
+                        forced = Math.max(forced, target);
+                    }
+                    forceCompleted.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Passes a transaction to the listener. The checksum is verified before decoding,
+     * so that the listener never receives the events of a corrupted transaction.
+     */
+    @Override
+    public void read(long index, TransactionListener listener) throws IOException {
+        var segment = segments.floorEntry(index).getValue();
+        var i = (int) (index - segment.first);
+        var start = i == 0 ? 0 : segment.endOf(i - 1);
+        var end = segment.endOf(i);
+        if (segment.checksum(start, end) != segment.checksumOf(i)) {
+            throw new IOException("Checksum mismatch in transaction #" + (index + 1));
+        }
+        try (var in = new BufferedInputStream(new ChannelInputStream(segment.data, start, end), BUFFER_SIZE)) {
+            codec.read(in, listener);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        try {
+            while (forcing) {
+                forceCompleted.awaitUninterruptibly();
+            }
+            if (current != null) {
+                current.data.force(false);
+                current.index.force(false);
+                forced = count;
+            }
+            for (var segment : segments.values()) {
+                segment.data.close();
+                segment.index.close();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void startSegment() throws IOException {
+        syncLock.lock();
+        try {
+            if (current != null) {
+                current.data.force(false);
+                current.data.truncate(current.end());
+                current.index.force(false);
+                // All commits so far are in the previous segments
+                forced = count;
+                forceCompleted.signalAll();
+            }
+            var segment = new Segment(count);
+            segment.preallocate();
+            segments.put(count, segment);
+            current = segment;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private class Segment {
+        final long first;
+        final FileChannel data;
+        final FileChannel index;
+        int size;
+
+        Segment(long first) throws IOException {
+            this.first = first;
+            var name = SEGMENT_PREFIX + format("%012d", first);
+            this.data = FileChannel.open(new File(directory, name + DATA_SUFFIX).toPath(), CREATE, READ, WRITE);
+            this.index = FileChannel.open(new File(directory, name + INDEX_SUFFIX).toPath(), CREATE, READ, WRITE);
+            var indexSize = index.size();
+            if (indexSize % INDEX_ENTRY_SIZE != 0) {
+                log.warn("Truncating an incomplete index entry of transaction log segment {}", name);
+                indexSize -= indexSize % INDEX_ENTRY_SIZE;
+                index.truncate(indexSize);
+            }
+            this.size = (int) (indexSize / INDEX_ENTRY_SIZE);
+        }
+
+        /**
+         * Fills the segment file with zeros up to the segment size, and forces it with its size,
+         * so that forcing a commit does not have to allocate blocks or update the file's metadata.
+         */
+        void preallocate() throws IOException {
+            var zeros = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            for (var position = data.size(); position < segmentSize; ) {
+                zeros.clear().limit((int) Math.min(BUFFER_SIZE, segmentSize - position));
+                position += data.write(zeros, position);
+            }
+            data.force(true);
+        }
+
+        long end() throws IOException {
+            return size == 0 ? 0 : endOf(size - 1);
+        }
+
+        long endOf(int i) throws IOException {
+            return readEntry(i).getLong(0);
+        }
+
+        int checksumOf(int i) throws IOException {
+            return readEntry(i).getInt(Long.BYTES);
+        }
+
+        void append(long end, int checksum) throws IOException {
+            var entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).putLong(end).putInt(checksum).flip();
+            var position = (long) size * INDEX_ENTRY_SIZE;
+            while (entry.hasRemaining()) {
+                index.write(entry, position + entry.position());
+            }
+            size++;
+        }
+
+        /**
+         * Drops transactions at the end of the segment, that were indexed but not completely written before a crash.
+         *
+         * @return the number of dropped transactions
+         */
+        int dropCorruptedTail() throws IOException {
+            var dropped = 0;
+            while (size > 0 && !isValid(size - 1)) {
+                size--;
+                dropped++;
+            }
+            if (dropped > 0) {
+                log.warn("Dropping {} incomplete transactions from the end of the transaction log", dropped);
+                index.truncate((long) size * INDEX_ENTRY_SIZE);
+            }
+            return dropped;
+        }
+
+        private boolean isValid(int i) throws IOException {
+            var start = i == 0 ? 0 : endOf(i - 1);
+            var end = endOf(i);
+            if (end < start || end > data.size()) {
+                return false;
+            }
+            return checksum(start, end) == checksumOf(i);
+        }
+
+        /**
+         * @return the checksum of a range of the segment file
+         */
+        int checksum(long start, long end) throws IOException {
+            var checksum = new CRC32();
+            try (var in = new CheckedInputStream(new ChannelInputStream(data, start, end), checksum)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return (int) checksum.getValue();
+        }
+
+        private ByteBuffer readEntry(int i) throws IOException {
+            var entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            var position = (long) i * INDEX_ENTRY_SIZE;
+            while (entry.hasRemaining()) {
+                if (index.read(entry, position + entry.position()) < 0) {
+                    throw new EOFException("Unexpected end of the transaction log index");
+                }
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Writes to a channel at a given position, without using the channel's own position.
+     */
+    private static class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private long position;
+
+        ChannelOutputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            var buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    /**
+     * Reads a range of a channel, without using the channel's own position.
+     */
+    private static class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        ChannelInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            var buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+            var read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the transaction log segment");
+            }
+            position += read;
+            return read;
+        }
+    }
+}
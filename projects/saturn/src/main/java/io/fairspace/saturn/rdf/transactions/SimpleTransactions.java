@@ -18,6 +18,11 @@ public class SimpleTransactions extends BaseTransactions {
 
     @Override
     public <R, E extends Exception> R calculateWrite(ThrowingFunction<? super Model, R, E> job) throws E {
-        return Txn.calculateWrite(ds, () -> ThrowingFunction.sneaky(job).apply(ds.getDefaultModel()));
+        var nested = ds.isInTransaction();
+        var result = Txn.calculateWrite(ds, () -> ThrowingFunction.sneaky(job).apply(ds.getDefaultModel()));
+        if (!nested) {
+            commitVersion.incrementAndGet();
+        }
+        return result;
     }
 }
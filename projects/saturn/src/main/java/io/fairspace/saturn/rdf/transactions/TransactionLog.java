@@ -1,9 +1,22 @@
 package io.fairspace.saturn.rdf.transactions;
 
+import java.io.Closeable;
 import java.io.IOException;
 
-public interface TransactionLog extends TransactionListener {
+public interface TransactionLog extends TransactionListener, Closeable {
     long size();
 
     void read(long index, TransactionListener listener) throws IOException;
+
+    /**
+     * Waits until the first transactions of the log are durable, if they were not forced to disk on commit.
+     * Called once a commit has been applied to the database, outside its write lock,
+     * so that the commits of concurrent transactions can be forced together.
+     *
+     * @param size the number of transactions to wait for
+     */
+    default void awaitDurable(long size) throws IOException {}
+
+    @Override
+    default void close() throws IOException {}
 }
@@ -0,0 +1,92 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.IOException;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.jena.graph.Node;
+
+/**
+ * One-way conversion of a transaction log to another format, e.g. from the textual {@link LocalTransactionLog}
+ * to the binary {@link SegmentedTransactionLog}.
+ * The target log must not have been written to otherwise, as the conversion resumes after the transactions
+ * it already contains. The source log is left as is.
+ */
+@Log4j2
+public class TransactionLogConverter {
+    /**
+     * Appends the transactions of the source log that are missing in the target log.
+     *
+     * @return the number of converted transactions
+     */
+    public static long convert(TransactionLog source, TransactionLog target) throws IOException {
+        var sourceSize = source.size();
+        var first = target.size();
+        if (first >= sourceSize) {
+            return 0;
+        }
+        log.warn("Converting transactions {} to {} of the transaction log to the new format", first + 1, sourceSize);
+        var prevProgress = -1L;
+        for (var i = first; i < sourceSize; i++) {
+            var progress = (100 * (i - first)) / (sourceSize - first);
+            if (progress > prevProgress) {
+                log.info("Conversion progress: {}%", progress);
+                prevProgress = progress;
+            }
+            copy(source, i, target, new TransactionListener() {});
+        }
+        log.warn("Conversion of the transaction log is finished.");
+        return sourceSize - first;
+    }
+
+    /**
+     * Appends a transaction of the source log to the target log, forwarding its events to another listener as well.
+     * Transactions in a log have been committed, so the transaction is committed even if its end was not recorded.
+     */
+    static void copy(TransactionLog source, long index, TransactionLog target, TransactionListener listener)
+            throws IOException {
+        var completed = new boolean[1];
+        source.read(index, new TransactionListener() {
+            @Override
+            public void onBegin() throws IOException {
+                target.onBegin();
+                listener.onBegin();
+            }
+
+            @Override
+            public void onMetadata(String userId, String userName, long timestamp) throws IOException {
+                target.onMetadata(userId, userName, timestamp);
+                listener.onMetadata(userId, userName, timestamp);
+            }
+
+            @Override
+            public void onAdd(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                target.onAdd(graph, subject, predicate, object);
+                listener.onAdd(graph, subject, predicate, object);
+            }
+
+            @Override
+            public void onDelete(Node graph, Node subject, Node predicate, Node object) throws IOException {
+                target.onDelete(graph, subject, predicate, object);
+                listener.onDelete(graph, subject, predicate, object);
+            }
+
+            @Override
+            public void onCommit() throws IOException {
+                completed[0] = true;
+                target.onCommit();
+                listener.onCommit();
+            }
+
+            @Override
+            public void onAbort() throws IOException {
+                completed[0] = true;
+                target.onAbort();
+                listener.onAbort();
+            }
+        });
+        if (!completed[0]) {
+            target.onCommit();
+            listener.onCommit();
+        }
+    }
+}
@@ -26,4 +26,10 @@ public interface Transactions extends AutoCloseable {
     }
 
     void setContextValue(Symbol symbol, Object object);
+
+    /**
+     * @return a number that is incremented after every write transaction committed through this instance,
+     * e.g. to invalidate cached results derived from the data.
+     */
+    long getCommitVersion();
 }
@@ -1,8 +1,11 @@
 package io.fairspace.saturn.rdf.transactions;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -26,6 +29,8 @@ public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
     private final DatasetGraph dsg;
     private final ViewStoreClientFactory viewStoreClientFactory;
     private final String publicUrl;
+    private final ViewIndexOutbox outbox;
+    private final ViewIndexWorker worker;
     // One set of updated subjects if write transactions are handled sequentially.
     // If many write transactions can be active simultaneously, this set needs to be
     // tied to the active thread.
@@ -36,11 +41,29 @@ public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
             DatasetGraph dsg,
             ViewStoreClientFactory viewStoreClientFactory,
             String publicUrl) {
+        this(viewsProperties, dsg, viewStoreClientFactory, publicUrl, null, null);
+    }
+
+    /**
+     * @param outbox if not null, updated subjects are recorded in the outbox on commit
+     *               and indexed asynchronously by a {@link ViewIndexWorker},
+     *               instead of being indexed synchronously within the commit.
+     * @param worker the worker draining the outbox, closed with the dataset graph.
+     */
+    public TxnIndexDatasetGraph(
+            ViewsProperties viewsProperties,
+            DatasetGraph dsg,
+            ViewStoreClientFactory viewStoreClientFactory,
+            String publicUrl,
+            ViewIndexOutbox outbox,
+            ViewIndexWorker worker) {
         super(dsg);
         this.viewsProperties = viewsProperties;
         this.dsg = dsg;
         this.viewStoreClientFactory = viewStoreClientFactory;
         this.publicUrl = publicUrl;
+        this.outbox = outbox;
+        this.worker = worker;
     }
 
     private void markSubject(Node subject) {
@@ -79,7 +102,10 @@ public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
                 var sessionKey = currentUserAsSymbol();
                 var doViewsUpdate = dsg.getContext()
                         .get(sessionKey, Boolean.FALSE); // false by default, should be set explicitly to switch it off
-                if (doViewsUpdate) {
+                if (doViewsUpdate && outbox != null) {
+                    commitToOutbox();
+                    return;
+                } else if (doViewsUpdate) {
                     log.info("Commit {} updated subjects", updatedSubjects.size());
                     var start = new Date().getTime();
                     try (var viewStoreClient = viewStoreClientFactory.build();
@@ -106,6 +132,30 @@ public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
         super.commit();
     }
 
+    /**
+     * Durably records the updated subjects before committing, and makes them available
+     * to the indexing worker once the commit has finished.
+     * If the commit fails, the subjects are still indexed, which is harmless.
+     */
+    private void commitToOutbox() throws IOException {
+        var subjects = updatedSubjects.stream()
+                .filter(Node::isURI)
+                .map(Node::getURI)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        updatedSubjects.clear();
+        if (subjects.isEmpty()) {
+            super.commit();
+            return;
+        }
+        var commit = outbox.append(subjects);
+        log.debug("Recorded {} updated subjects in the view index outbox, commit {}", subjects.size(), commit);
+        try {
+            super.commit();
+        } finally {
+            outbox.publish(commit);
+        }
+    }
+
     @Override
     public void abort() {
         super.abort();
@@ -115,6 +165,22 @@ public class TxnIndexDatasetGraph extends AbstractChangesAwareDatasetGraph {
         }
     }
 
+    @SneakyThrows
+    @Override
+    public void close() {
+        // Stop indexing before closing the dataset graph the worker reads from
+        try {
+            if (worker != null) {
+                worker.close();
+            }
+            super.close();
+        } finally {
+            if (outbox != null) {
+                outbox.close();
+            }
+        }
+    }
+
     private boolean isInWriteTransaction() {
         return transactionMode() == ReadWrite.WRITE;
     }
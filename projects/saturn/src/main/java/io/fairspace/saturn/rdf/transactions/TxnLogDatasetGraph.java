@@ -1,6 +1,9 @@
 package io.fairspace.saturn.rdf.transactions;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.pivovarit.function.ThrowingRunnable;
+import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.ReadWrite;
@@ -73,10 +76,14 @@ public class TxnLogDatasetGraph extends AbstractChangesAwareDatasetGraph {
     @Override
     public void commit() {
         if (isInWriteTransaction()) {
+            // Waiting for the commit to be durable outside the write lock lets concurrent commits be forced together
+            var logSize = new AtomicLong();
             critical(() -> {
                 transactionLog.onCommit();
+                logSize.set(transactionLog.size());
                 super.commit();
             });
+            critical(() -> transactionLog.awaitDurable(logSize.get()));
         } else {
             super.commit();
         }
@@ -91,6 +98,17 @@ public class TxnLogDatasetGraph extends AbstractChangesAwareDatasetGraph {
         super.abort();
     }
 
+    @SneakyThrows
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            // Forces the commits not yet synced to disk
+            transactionLog.close();
+        }
+    }
+
     private boolean isInWriteTransaction() {
         return transactionMode() == ReadWrite.WRITE;
     }
@@ -0,0 +1,310 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import lombok.extern.log4j.Log4j2;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Durable, append-only outbox of subjects to be (re)indexed in the view database.
+ * It is stored next to the transaction log, in the following files:
+ * view-index-outbox
+ *   One record per commit: the commit number and the IRIs of the updated subjects,
+ *   prefixed by the record length and checksum.
+ * view-index-outbox.ack
+ *   The position in the outbox up to which the records have been indexed, and the last indexed commit.
+ * <p>
+ * Records are appended before the RDF transaction is committed, and only become available to the
+ * {@link ViewIndexWorker} after the commit has finished ({@link #publish(long)}), so that the worker
+ * reads the committed state. After a crash, all records following the acknowledged position are indexed again.
+ * The outbox is truncated whenever all records have been acknowledged.
+ * <p>
+ * The outbox is guarded by a lock rather than a monitor, as records are appended and forced to disk
+ * by committing request threads, which are virtual threads that must not pin their carrier thread.
+ */
+@Log4j2
+public class ViewIndexOutbox implements AutoCloseable {
+    private static final String OUTBOX_FILE_NAME = "view-index-outbox";
+    private static final String ACK_FILE_NAME = "view-index-outbox.ack";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    public record Record(long commit, List<String> subjects, long endPosition) {}
+
+    public record Batch(Set<String> subjects, long lastCommit, long endPosition) {}
+
+    private final FileChannel channel;
+    private final File ackFile;
+    private final File tempAckFile;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // All fields below are guarded by lock
+    private long size;
+    private long lastCommit;
+    private long publishedPosition;
+    private long acknowledgedPosition;
+    private long acknowledgedCommit;
+    private final List<Record> pending = new ArrayList<>();
+    private boolean closed;
+
+    public ViewIndexOutbox(File directory) throws IOException {
+        directory.mkdirs();
+        this.ackFile = new File(directory, ACK_FILE_NAME);
+        this.tempAckFile = new File(directory, ACK_FILE_NAME + ".tmp");
+        this.channel = FileChannel.open(new File(directory, OUTBOX_FILE_NAME).toPath(), CREATE, READ, WRITE);
+
+        if (ackFile.exists()) {
+            var ack = Files.readString(ackFile.toPath()).trim().split(" ");
+            acknowledgedPosition = Long.parseLong(ack[0]);
+            acknowledgedCommit = Long.parseLong(ack[1]);
+        }
+        if (acknowledgedPosition > channel.size()) {
+            log.warn("The view index outbox is shorter than its acknowledged position, indexing all its records");
+            acknowledgedPosition = 0;
+        }
+        lastCommit = acknowledgedCommit;
+        var position = acknowledgedPosition;
+        Record record;
+        while ((record = readRecord(position)) != null) {
+            lastCommit = Math.max(lastCommit, record.commit());
+            position = record.endPosition();
+        }
+        if (position < channel.size()) {
+            log.warn("Truncating an incomplete record at the end of the view index outbox");
+            channel.truncate(position);
+        }
+        size = position;
+        // Everything written before a restart may have been committed
+        publishedPosition = size;
+        if (publishedPosition > acknowledgedPosition) {
+            log.info("Resuming view indexing after commit {}", acknowledgedCommit);
+        }
+    }
+
+    /**
+     * Durably appends a record with the updated subjects.
+     * The record is not available for indexing until it is published.
+     *
+     * @return the commit number of the record.
+     */
+    public long append(Collection<String> subjects) throws IOException {
+        lock.lock();
+        try {
+            var commit = ++lastCommit;
+            var payload = ByteBuffer.wrap(String.join("\n", subjects).getBytes(UTF_8));
+            var buffer = ByteBuffer.allocate(HEADER_SIZE + Long.BYTES + payload.remaining());
+            buffer.putInt(Long.BYTES + payload.remaining());
+            buffer.putInt(0); // checksum placeholder
+            buffer.putLong(commit);
+            buffer.put(payload);
+            buffer.putInt(Integer.BYTES, checksum(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, size + buffer.position());
+            }
+            channel.force(false);
+            size += buffer.capacity();
+            pending.add(new Record(commit, List.copyOf(subjects), size));
+            return commit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes the records up to and including the commit available for indexing.
+     * To be called when the RDF transaction of the commit has finished.
+     */
+    public void publish(long commit) {
+        lock.lock();
+        try {
+            var iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                var record = iterator.next();
+                if (record.commit() <= commit) {
+                    publishedPosition = Math.max(publishedPosition, record.endPosition());
+                    iterator.remove();
+                }
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for published records that have not been acknowledged yet.
+     *
+     * @param maxSubjects the number of subjects after which no more records are added to the batch.
+     * @return a batch containing the subjects of one or more records, or null if the outbox has been closed.
+     */
+    public Batch awaitBatch(int maxSubjects) throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            while (!closed && publishedPosition <= acknowledgedPosition) {
+                changed.await();
+            }
+            if (closed) {
+                return null;
+            }
+            var subjects = new LinkedHashSet<String>();
+            var position = acknowledgedPosition;
+            var commit = acknowledgedCommit;
+            while (position < publishedPosition && subjects.size() < maxSubjects) {
+                var record = readRecord(position);
+                if (record == null) {
+                    throw new IOException("The view index outbox is corrupt at position " + position);
+                }
+                subjects.addAll(record.subjects());
+                commit = record.commit();
+                position = record.endPosition();
+            }
+            return new Batch(subjects, commit, position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the records of a batch as indexed.
+     */
+    public void acknowledge(Batch batch) throws IOException {
+        lock.lock();
+        try {
+            acknowledgedPosition = batch.endPosition();
+            acknowledgedCommit = batch.lastCommit();
+            if (acknowledgedPosition == size) {
+                // Fully drained: start over with an empty outbox
+                writeAcknowledgement(0, acknowledgedCommit);
+                channel.truncate(0);
+                size = 0;
+                publishedPosition = 0;
+                acknowledgedPosition = 0;
+            } else {
+                writeAcknowledgement(acknowledgedPosition, acknowledgedCommit);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of the last commit appended to the outbox.
+     */
+    public long getLastCommit() {
+        lock.lock();
+        try {
+            return lastCommit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of the last commit of which the subjects have been indexed.
+     */
+    public long getAcknowledgedCommit() {
+        lock.lock();
+        try {
+            return acknowledgedCommit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the subjects of a commit have been indexed.
+     *
+     * @return true if the commit has been indexed, false if the timeout has passed.
+     */
+    public boolean awaitAcknowledged(long commit, long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            var remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (acknowledgedCommit < commit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Record readRecord(long position) throws IOException {
+        if (position + HEADER_SIZE > channel.size()) {
+            return null;
+        }
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, position);
+        var length = header.getInt(0);
+        var expectedChecksum = header.getInt(Integer.BYTES);
+        if (length < Long.BYTES || position + HEADER_SIZE + length > channel.size()) {
+            return null;
+        }
+        var body = ByteBuffer.allocate(length);
+        readFully(body, position + HEADER_SIZE);
+        if (checksum(body.array(), 0, length) != expectedChecksum) {
+            return null;
+        }
+        var commit = body.getLong(0);
+        var text = new String(body.array(), Long.BYTES, length - Long.BYTES, UTF_8);
+        var subjects = text.isEmpty() ? List.<String>of() : List.of(text.split("\n"));
+        return new Record(commit, subjects, position + HEADER_SIZE + length);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the view index outbox");
+            }
+        }
+    }
+
+    private void writeAcknowledgement(long position, long commit) throws IOException {
+        Files.writeString(tempAckFile.toPath(), position + " " + commit);
+        move(tempAckFile.toPath(), ackFile.toPath(), ATOMIC_MOVE);
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        var crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,111 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.util.Date;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.DatasetGraph;
+
+import io.fairspace.saturn.config.properties.ViewsProperties;
+import io.fairspace.saturn.services.views.ViewStoreClientFactory;
+import io.fairspace.saturn.services.views.ViewUpdater;
+
+/**
+ * Drains the {@link ViewIndexOutbox} in batches and indexes the subjects in the view database.
+ * Delivery is at-least-once: a batch is acknowledged only after the view database transaction
+ * has been committed, and re-indexing a subject is idempotent,
+ * as {@link ViewUpdater#updateSubject} replaces all rows of the subject.
+ * <p>
+ * A single worker thread is used, so that batches are applied in commit order.
+ */
+@Log4j2
+public class ViewIndexWorker implements AutoCloseable {
+    private static final long RETRY_DELAY = 5000;
+    private static final long CLOSE_TIMEOUT = 30000;
+
+    private final ViewsProperties viewsProperties;
+    private final DatasetGraph dsg;
+    private final ViewStoreClientFactory viewStoreClientFactory;
+    private final String publicUrl;
+    private final ViewIndexOutbox outbox;
+    private final int batchSize;
+    private final Thread thread;
+
+    public ViewIndexWorker(
+            ViewsProperties viewsProperties,
+            DatasetGraph dsg,
+            ViewStoreClientFactory viewStoreClientFactory,
+            String publicUrl,
+            ViewIndexOutbox outbox,
+            int batchSize) {
+        this.viewsProperties = viewsProperties;
+        this.dsg = dsg;
+        this.viewStoreClientFactory = viewStoreClientFactory;
+        this.publicUrl = publicUrl;
+        this.outbox = outbox;
+        this.batchSize = batchSize;
+        this.thread = new Thread(this::run, "view-index-worker");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the worker and waits for the batch being indexed, if any, to finish.
+     * Subjects that have not been acknowledged are indexed after a restart.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        thread.interrupt();
+        thread.join(CLOSE_TIMEOUT);
+        if (thread.isAlive()) {
+            log.warn("The view index worker did not stop within {}ms", CLOSE_TIMEOUT);
+        }
+    }
+
+    boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                var batch = outbox.awaitBatch(batchSize);
+                if (batch == null) {
+                    return;
+                }
+                index(batch);
+                outbox.acknowledge(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Indexing subjects from the outbox failed, retrying in {}ms", RETRY_DELAY, e);
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    void index(ViewIndexOutbox.Batch batch) throws Exception {
+        var start = new Date().getTime();
+        dsg.begin(ReadWrite.READ);
+        try (var viewStoreClient = viewStoreClientFactory.build();
+                var viewUpdater = new ViewUpdater(viewsProperties, viewStoreClient, dsg, publicUrl)) {
+            batch.subjects().forEach(subject -> viewUpdater.updateSubject(NodeFactory.createURI(subject)));
+            viewUpdater.commit();
+        } finally {
+            dsg.end();
+        }
+        log.debug(
+                "Indexing {} subjects up to commit {} took {}ms",
+                batch.subjects().size(),
+                batch.lastCommit(),
+                new Date().getTime() - start);
+    }
+}
@@ -1,7 +1,12 @@
 package io.fairspace.saturn.services.maintenance;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -9,9 +14,11 @@ import java.util.concurrent.TimeUnit;
 import lombok.NonNull;
 import lombok.extern.log4j.Log4j2;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.text.DatasetGraphText;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.tdb2.DatabaseMgr;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
@@ -25,8 +32,11 @@ import io.fairspace.saturn.services.ConflictException;
 import io.fairspace.saturn.services.NotAvailableException;
 import io.fairspace.saturn.services.users.UserService;
 import io.fairspace.saturn.services.views.ViewService;
+import io.fairspace.saturn.services.views.ViewStoreClient;
 import io.fairspace.saturn.services.views.ViewStoreClientFactory;
 import io.fairspace.saturn.services.views.ViewUpdater;
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+import io.fairspace.saturn.webdav.blobstore.LocalBlobStore;
 
 @Log4j2
 @Service
@@ -34,6 +44,7 @@ public class MaintenanceService {
 
     public static final String SERVICE_NOT_AVAILABLE = "Service not available";
     public static final String MAINTENANCE_IS_IN_PROGRESS = "Maintenance is in progress.";
+    public static final int DEFAULT_REINDEX_PARALLELISM = 4;
 
     private final ThreadPoolExecutor threadpool =
             new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
@@ -44,20 +55,49 @@ public class MaintenanceService {
     private final ViewStoreClientFactory viewStoreClientFactory;
     private final ViewService viewService;
     private final String publicUrl;
+    private final int reindexParallelism;
+    private final List<BlobStore> blobStores;
 
+    // Progress of the running or last reindexing task
+    private volatile ReindexProgress reindexProgress;
+
+    public MaintenanceService(
+            ViewsProperties viewsProperties,
+            @NonNull UserService userService,
+            @Qualifier("dataset") @NonNull Dataset dataset,
+            @Nullable ViewStoreClientFactory viewStoreClientFactory,
+            ViewService viewService,
+            String publicUrl) {
+        this(
+                viewsProperties,
+                userService,
+                dataset,
+                viewStoreClientFactory,
+                viewService,
+                publicUrl,
+                DEFAULT_REINDEX_PARALLELISM,
+                List.of());
+    }
+
+    @Autowired
     public MaintenanceService(
             ViewsProperties viewsProperties,
             @NonNull UserService userService,
             @Qualifier("dataset") @NonNull Dataset dataset,
             @Nullable ViewStoreClientFactory viewStoreClientFactory,
             ViewService viewService,
-            @Value("${application.publicUrl}") String publicUrl) {
+            @Value("${application.publicUrl}") String publicUrl,
+            @Value("${application.view-database.reindexParallelism:" + DEFAULT_REINDEX_PARALLELISM + "}")
+                    int reindexParallelism,
+            List<BlobStore> blobStores) {
         this.viewsProperties = viewsProperties;
         this.userService = userService;
         this.dataset = dataset;
         this.viewStoreClientFactory = viewStoreClientFactory;
         this.viewService = viewService;
         this.publicUrl = publicUrl;
+        this.reindexParallelism = reindexParallelism;
+        this.blobStores = blobStores;
     }
 
     public boolean disabled() {
@@ -114,23 +154,95 @@ public class MaintenanceService {
         });
     }
 
+    /**
+     * Moves the blobs of local blob stores, stored directly in the blob store directory by previous versions,
+     * to their subdirectories.
+     */
+    public void migrateBlobStoresTask() {
+        if (!userService.currentUser().isAdmin()) {
+            throw new AccessDeniedException();
+        }
+        if (active()) {
+            log.info(MAINTENANCE_IS_IN_PROGRESS);
+            throw new ConflictException(MAINTENANCE_IS_IN_PROGRESS);
+        }
+
+        threadpool.submit(() -> {
+            log.info("Migrating blob stores started");
+            try {
+                migrateBlobStores();
+            } catch (Exception e) {
+                log.error("Error migrating blob stores", e);
+                throw new RuntimeException("Error migrating blob stores", e);
+            }
+            log.info("Migrating blob stores finished");
+        });
+    }
+
+    void migrateBlobStores() throws IOException {
+        for (var blobStore : blobStores) {
+            if (blobStore instanceof LocalBlobStore localBlobStore) {
+                localBlobStore.migrateToShardedLayout();
+            }
+        }
+    }
+
+    /**
+     * @return the progress of the running or last reindexing task, if any.
+     */
+    public Optional<ReindexProgress> getReindexProgress() {
+        return Optional.ofNullable(reindexProgress);
+    }
+
     /**
      * Only use this method in a secure and synchonisized way, see 'recreateIndex()'
+     * Views are reindexed in parallel, each in its own view database transaction,
+     * after which all materialized views are refreshed.
+     * The labels of the terms of a view, shared with other views, are written after its transaction,
+     * see {@link ViewStoreClient#writeLabels}.
      */
     public void recreateIndex() {
+        var progress = new ReindexProgress(viewsProperties.views.size());
+        reindexProgress = progress;
+        var start = new Date().getTime();
+        var poolSize = Math.max(1, Math.min(reindexParallelism, progress.getViewsTotal()));
+        var executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            var tasks = viewsProperties.views.stream()
+                    .map(view -> executor.submit(() -> {
+                        recreateIndexForView(view, progress);
+                        return null;
+                    }))
+                    .toList();
+            for (var task : tasks) {
+                task.get();
+            }
+            viewStoreClientFactory.getMaterializedViewService().createOrUpdateAllMaterializedViews();
+            log.info(
+                    "View index recreated in {}ms, {} rows copied.",
+                    new Date().getTime() - start,
+                    progress.getRowsCopied());
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to recreate index", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Recreating index was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            progress.finish();
+        }
+    }
+
+    private void recreateIndexForView(ViewsProperties.View view, ReindexProgress progress) throws SQLException {
+        progress.viewStarted(view.name);
         try (var viewStoreClient = viewStoreClientFactory.build();
                 var viewUpdater =
                         new ViewUpdater(viewsProperties, viewStoreClient, dataset.asDatasetGraph(), publicUrl)) {
-            var start = new Date().getTime();
-            // Index entities
-            for (var view : viewsProperties.views) {
-                viewUpdater.recreateIndexForView(viewStoreClient, view);
-            }
-            viewUpdater.commit();
-            log.info("View index recreated in {}ms.", new Date().getTime() - start);
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to recreate index", e);
+            viewUpdater.recreateIndexForView(viewStoreClient, view, progress::addRowsCopied);
+            viewStoreClient.commitTables();
+            viewStoreClient.writeLabels(viewUpdater.getCopiedLabels());
         }
+        progress.viewCompleted(view.name);
     }
 
     /**
@@ -146,6 +258,7 @@ public class MaintenanceService {
             case DatasetGraphSwitchable ignored -> dsg;
             case TxnLogDatasetGraph txnLogDatasetGraph -> unwrap(txnLogDatasetGraph.getDatasetGraph());
             case TxnIndexDatasetGraph txnIndexDatasetGraph -> unwrap(txnIndexDatasetGraph.getDatasetGraph());
+            case DatasetGraphText datasetGraphText -> unwrap(datasetGraphText.getWrapped());
             default -> null;
         };
     }
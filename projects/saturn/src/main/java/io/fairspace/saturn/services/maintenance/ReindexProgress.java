@@ -0,0 +1,59 @@
+package io.fairspace.saturn.services.maintenance;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress counters of a view database reindexing task, updated concurrently by the reindexing threads.
+ */
+public class ReindexProgress {
+    private final int viewsTotal;
+    private final AtomicInteger viewsCompleted = new AtomicInteger();
+    private final LongAdder rowsCopied = new LongAdder();
+    private final Set<String> viewsInProgress = ConcurrentHashMap.newKeySet();
+    private volatile boolean finished;
+
+    public ReindexProgress(int viewsTotal) {
+        this.viewsTotal = viewsTotal;
+    }
+
+    void viewStarted(String view) {
+        viewsInProgress.add(view);
+    }
+
+    void viewCompleted(String view) {
+        viewsInProgress.remove(view);
+        viewsCompleted.incrementAndGet();
+    }
+
+    void addRowsCopied(long count) {
+        rowsCopied.add(count);
+    }
+
+    void finish() {
+        finished = true;
+    }
+
+    public int getViewsTotal() {
+        return viewsTotal;
+    }
+
+    public int getViewsCompleted() {
+        return viewsCompleted.get();
+    }
+
+    public long getRowsCopied() {
+        return rowsCopied.sum();
+    }
+
+    public List<String> getViewsInProgress() {
+        return List.copyOf(viewsInProgress);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
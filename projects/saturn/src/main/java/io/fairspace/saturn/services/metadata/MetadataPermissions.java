@@ -1,5 +1,6 @@
 package io.fairspace.saturn.services.metadata;
 
+import org.apache.jena.graph.Node;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.vocabulary.RDF;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -42,6 +43,22 @@ public class MetadataPermissions {
         return userService.currentUser().isCanViewPublicMetadata();
     }
 
+    /**
+     * Returns the node on which the result of {@link #canReadMetadata(Resource)} depends for the current user:
+     * the collection of a file system resource or the workspace itself.
+     * For other resources, access only depends on the user and null is returned.
+     * Decisions can be reused for resources with the same owner within a read transaction.
+     */
+    public Node getMetadataAccessOwner(Resource resource) {
+        if (resource.isURIResource() && davFactory.isFileSystemResource(resource)) {
+            return davFactory.getCollectionSubject(resource).asNode();
+        }
+        if (resource.hasProperty(RDF.type, FS.Workspace)) {
+            return resource.asNode();
+        }
+        return null;
+    }
+
     public boolean canReadFacets() {
         if (userService.currentUser().isAdmin()) {
             return true;
@@ -1,39 +1,33 @@
 package io.fairspace.saturn.services.search;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import io.milton.resource.CollectionResource;
-import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
 
 import io.fairspace.saturn.controller.dto.SearchResultDto;
 import io.fairspace.saturn.controller.dto.request.FileSearchRequest;
 import io.fairspace.saturn.rdf.transactions.Transactions;
+import io.fairspace.saturn.services.views.AccessibleCollectionsCache;
 import io.fairspace.saturn.services.views.ViewStoreReader;
 
-import static io.fairspace.saturn.webdav.PathUtils.getCollectionNameByUri;
-
 @Log4j2
 public class JdbcFileSearchService implements FileSearchService {
 
-    private final Transactions transactions;
-    private final CollectionResource rootSubject;
+    private final AccessibleCollectionsCache accessibleCollections;
     private final ViewStoreReader viewStoreReader;
 
     public JdbcFileSearchService(
             Transactions transactions, CollectionResource rootSubject, ViewStoreReader viewStoreReader) {
-        this.transactions = transactions;
-        this.rootSubject = rootSubject;
+        this(new AccessibleCollectionsCache(transactions, rootSubject), viewStoreReader);
+    }
+
+    public JdbcFileSearchService(AccessibleCollectionsCache accessibleCollections, ViewStoreReader viewStoreReader) {
+        this.accessibleCollections = accessibleCollections;
         this.viewStoreReader = viewStoreReader;
     }
 
-    @SneakyThrows
     public List<SearchResultDto> searchFiles(FileSearchRequest request) {
-        var collectionsForUser = transactions.calculateRead(m -> rootSubject.getChildren().stream()
-                .map(collection -> getCollectionNameByUri(rootSubject.getUniqueId(), collection.getUniqueId()))
-                .collect(Collectors.toList()));
-
-        return viewStoreReader.searchFiles(request, collectionsForUser);
+        return viewStoreReader.searchFiles(request, accessibleCollections.get().asList());
     }
 }
@@ -14,8 +14,11 @@ import io.fairspace.saturn.controller.dto.SearchResultDto;
 import io.fairspace.saturn.controller.dto.SearchResultsDto;
 import io.fairspace.saturn.controller.dto.request.LookupSearchRequest;
 import io.fairspace.saturn.rdf.SparqlUtils;
+import io.fairspace.saturn.rdf.search.LabelTextIndex;
 import io.fairspace.saturn.vocabulary.FS;
 
+import static io.fairspace.saturn.rdf.search.LabelTextIndex.TEXT_QUERY_LIMIT;
+
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 import static org.apache.jena.rdf.model.ResourceFactory.createStringLiteral;
 
@@ -38,6 +41,28 @@ public class SearchService {
             """,
             FS.NS));
 
+    /**
+     * Same as {@link #RESOURCE_BY_TEXT_QUERY}, with the candidates found by the text index.
+     */
+    private static final Query RESOURCE_BY_INDEXED_TEXT_QUERY = QueryFactory.create(String.format(
+            """
+            PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+            PREFIX fs: <%1$s>
+            PREFIX text: <http://jena.apache.org/text#>
+
+            SELECT ?id ?label ?comment
+            WHERE {
+                { SELECT DISTINCT ?id WHERE { ?id text:query (?textQuery %2$d) } }
+                ?id a ?type ; rdfs:label ?label .
+                OPTIONAL { ?id rdfs:comment ?comment }
+                FILTER NOT EXISTS { ?id fs:dateDeleted ?anydate }
+                FILTER (regex(?label, ?regexQuery, "i") || regex(?comment, ?regexQuery, "i"))
+            } ORDER BY ?label
+            LIMIT 20
+            """,
+            FS.NS,
+            TEXT_QUERY_LIMIT));
+
     private static final Query RESOURCE_BY_TEXT_EXACT_MATCH_QUERY = QueryFactory.create(String.format(
             """
             PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
@@ -77,6 +102,11 @@ public class SearchService {
         }
 
         binding.add("regexQuery", createStringLiteral(SparqlUtils.getQueryRegex(request.getQuery())));
+        var textQuery = LabelTextIndex.getTextQuery(filteredDataset, request.getQuery());
+        if (textQuery.isPresent()) {
+            binding.add("textQuery", createStringLiteral(textQuery.get()));
+            return SparqlUtils.getByQuery(RESOURCE_BY_INDEXED_TEXT_QUERY, binding, filteredDataset);
+        }
         return SparqlUtils.getByQuery(RESOURCE_BY_TEXT_QUERY, binding, filteredDataset);
     }
 }
@@ -11,14 +11,23 @@ import org.apache.jena.query.QuerySolutionMap;
 import io.fairspace.saturn.controller.dto.SearchResultDto;
 import io.fairspace.saturn.controller.dto.request.FileSearchRequest;
 import io.fairspace.saturn.rdf.SparqlUtils;
+import io.fairspace.saturn.rdf.search.LabelTextIndex;
 import io.fairspace.saturn.vocabulary.FS;
 
+import static io.fairspace.saturn.rdf.search.LabelTextIndex.TEXT_QUERY_LIMIT;
 import static io.fairspace.saturn.util.ValidationUtils.validateIRI;
 
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
 import static org.apache.jena.rdf.model.ResourceFactory.createStringLiteral;
 
 @Log4j2
 public class SparqlFileSearchService implements FileSearchService {
+    // The queries are parsed once, with and without a parent and the text index
+    private static final Query SEARCH_QUERY = getSearchForFilesQuery(false, false);
+    private static final Query INDEXED_SEARCH_QUERY = getSearchForFilesQuery(false, true);
+    private static final Query SEARCH_IN_PARENT_QUERY = getSearchForFilesQuery(true, false);
+    private static final Query INDEXED_SEARCH_IN_PARENT_QUERY = getSearchForFilesQuery(true, true);
+
     private final Dataset ds;
 
     public SparqlFileSearchService(Dataset ds) {
@@ -26,22 +35,45 @@ public class SparqlFileSearchService implements FileSearchService {
     }
 
     public List<SearchResultDto> searchFiles(FileSearchRequest request) {
-        var query = getSearchForFilesQuery(request.getParentIRI());
+        var textQuery = LabelTextIndex.getTextQuery(ds, request.getQuery());
+        var parentIRI = request.getParentIRI();
+        var inParent = parentIRI != null && !parentIRI.trim().isEmpty();
         var binding = new QuerySolutionMap();
+        if (inParent) {
+            validateIRI(parentIRI);
+            binding.add("parent", createResource(parentIRI));
+        }
         binding.add("regexQuery", createStringLiteral(SparqlUtils.getQueryRegex(request.getQuery())));
+        textQuery.ifPresent(value -> binding.add("textQuery", createStringLiteral(value)));
+        Query query;
+        if (inParent) {
+            query = textQuery.isPresent() ? INDEXED_SEARCH_IN_PARENT_QUERY : SEARCH_IN_PARENT_QUERY;
+        } else {
+            query = textQuery.isPresent() ? INDEXED_SEARCH_QUERY : SEARCH_QUERY;
+        }
         return SparqlUtils.getByQuery(query, binding, ds);
     }
 
-    private Query getSearchForFilesQuery(String parentIRI) {
+    /**
+     * @param inParent whether to only find the descendants of ?parent
+     * @param indexed  whether to find the candidates with the text index, rather than by scanning all labels
+     */
+    private static Query getSearchForFilesQuery(boolean inParent, boolean indexed) {
         var builder = new StringBuilder("PREFIX fs: <")
                 .append(FS.NS)
-                .append(">\nPREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n\n")
+                .append(">\nPREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n")
+                .append("PREFIX text: <http://jena.apache.org/text#>\n\n")
                 .append("SELECT ?id ?label ?comment ?type\n")
                 .append("WHERE {\n");
 
-        if (parentIRI != null && !parentIRI.trim().isEmpty()) {
-            validateIRI(parentIRI);
-            builder.append("?id fs:belongsTo* <").append(parentIRI).append("> .\n");
+        if (indexed) {
+            builder.append("{ SELECT DISTINCT ?id WHERE { ?id text:query (?textQuery ")
+                    .append(TEXT_QUERY_LIMIT)
+                    .append(") } }\n");
+        }
+
+        if (inParent) {
+            builder.append("?id fs:belongsTo* ?parent .\n");
         }
 
         builder.append("?id rdfs:label ?label ; a ?type .\n")
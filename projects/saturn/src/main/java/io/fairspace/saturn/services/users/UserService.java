@@ -39,7 +39,8 @@ public class UserService {
     private final Transactions transactions;
     private final KeycloakClientProperties keycloakClientProperties;
     private final UsersResource usersResource;
-    private final ExecutorService threadpool = Executors.newSingleThreadExecutor();
+    private final ExecutorService threadpool = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("user-updater").factory());
 
     public UserService(
             KeycloakClientProperties keycloakClientProperties, Transactions transactions, UsersResource usersResource) {
@@ -0,0 +1,89 @@
+package io.fairspace.saturn.services.views;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.milton.resource.CollectionResource;
+import lombok.SneakyThrows;
+
+import io.fairspace.saturn.rdf.transactions.Transactions;
+
+import static io.fairspace.saturn.auth.RequestContext.getUserURI;
+import static io.fairspace.saturn.webdav.PathUtils.getCollectionNameByUri;
+
+/**
+ * Caches the names of the collections the current user can access, used to restrict view and search results.
+ * Listing the collections checks the access to every collection, which is too costly to do on every request
+ * with thousands of collections.
+ * Entries are keyed by the user and the commit version of the dataset, so any committed change,
+ * e.g. to permissions, collections or the user's roles, results in a new entry.
+ */
+public class AccessibleCollectionsCache {
+    private static final long MAXIMUM_SIZE = 1000;
+    private static final long EXPIRE_AFTER_ACCESS_MINUTES = 60;
+
+    private record Key(String user, long commitVersion) {}
+
+    /**
+     * Collection names, sorted.
+     */
+    public record AccessibleCollections(String[] names) {
+        public boolean contains(String name) {
+            return Arrays.binarySearch(names, name) >= 0;
+        }
+
+        public List<String> asList() {
+            return Arrays.asList(names);
+        }
+    }
+
+    private final Transactions transactions;
+    private final CollectionResource rootSubject;
+    private final Cache<Key, AccessibleCollections> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    public AccessibleCollectionsCache(Transactions transactions, CollectionResource rootSubject) {
+        this.transactions = transactions;
+        this.rootSubject = rootSubject;
+    }
+
+    /**
+     * @return the collections the current user can access.
+     */
+    @SneakyThrows
+    public AccessibleCollections get() {
+        // The version is read before the collections, so that a concurrent commit results in a new entry
+        var user = getUserURI();
+        if (user == null) {
+            return load();
+        }
+        var key = new Key(user.getURI(), transactions.getCommitVersion());
+        try {
+            return cache.get(key, this::load);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the name of the collection with the specified IRI, or of the collection containing it.
+     */
+    public String getCollectionName(String uri) {
+        return getCollectionNameByUri(rootSubject.getUniqueId(), uri);
+    }
+
+    private AccessibleCollections load() throws Exception {
+        var names = transactions.calculateRead(m -> rootSubject.getChildren().stream()
+                .map(collection -> getCollectionName(collection.getUniqueId()))
+                .sorted()
+                .distinct()
+                .toArray(String[]::new));
+        return new AccessibleCollections(names);
+    }
+}
@@ -2,6 +2,7 @@ package io.fairspace.saturn.services.views;
 
 import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -20,9 +21,8 @@ import io.fairspace.saturn.controller.dto.request.ViewRequest;
 import io.fairspace.saturn.rdf.transactions.Transactions;
 import io.fairspace.saturn.rdf.transactions.TxnIndexDatasetGraph;
 
-import static io.fairspace.saturn.webdav.PathUtils.getCollectionNameByUri;
-
 import static java.lang.Integer.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * JDBC implementation of the query service. Depends on the
@@ -34,18 +34,19 @@ import static java.lang.Integer.min;
 @Log4j2
 public class JdbcQueryService implements QueryService {
 
-    private final Transactions transactions;
-    private final CollectionResource rootSubject;
+    private final AccessibleCollectionsCache accessibleCollections;
     private final ViewStoreReader viewStoreReader;
 
     public JdbcQueryService(
             Transactions transactions, CollectionResource rootSubject, ViewStoreReader viewStoreReader) {
-        this.transactions = transactions;
-        this.rootSubject = rootSubject;
+        this(new AccessibleCollectionsCache(transactions, rootSubject), viewStoreReader);
+    }
+
+    public JdbcQueryService(AccessibleCollectionsCache accessibleCollections, ViewStoreReader viewStoreReader) {
+        this.accessibleCollections = accessibleCollections;
         this.viewStoreReader = viewStoreReader;
     }
 
-    @SneakyThrows
     protected void applyCollectionsFilterIfRequired(String view, List<ViewFilter> filters) {
         boolean collectionsFilterRequired = view.equalsIgnoreCase("Resource")
                 || filters.stream()
@@ -53,15 +54,13 @@ public class JdbcQueryService implements QueryService {
         if (!collectionsFilterRequired) {
             return;
         }
-        var collections = transactions.calculateRead(m -> rootSubject.getChildren().stream()
-                .map(collection -> (Object) getCollectionNameByUri(rootSubject.getUniqueId(), collection.getUniqueId()))
-                .collect(Collectors.toList()));
+        var collections = accessibleCollections.get();
         if (filters.stream().anyMatch(filter -> filter.getField().equalsIgnoreCase("Resource_collection"))) {
             // Update existing filters in place
             filters.stream()
                     .filter(filter -> filter.getField().equalsIgnoreCase("Resource_collection"))
                     .forEach(filter -> filter.setValues(filter.values.stream()
-                            .map(value -> getCollectionNameByUri(rootSubject.getUniqueId(), value.toString()))
+                            .map(value -> accessibleCollections.getCollectionName(value.toString()))
                             .filter(collections::contains)
                             .collect(Collectors.toList())));
             return;
@@ -69,7 +68,7 @@ public class JdbcQueryService implements QueryService {
         // Add collection name filter
         filters.add(ViewFilter.builder()
                 .field("Resource_collection")
-                .values(collections)
+                .values(new ArrayList<>(collections.asList()))
                 .build());
     }
 
@@ -83,11 +82,21 @@ public class JdbcQueryService implements QueryService {
         }
         applyCollectionsFilterIfRequired(request.getView(), filters);
         try {
-            List<Map<String, Set<ValueDto>>> rows = viewStoreReader.retrieveRows(
-                    request.getView(), filters, (page - 1) * size, size + 1, request.includeJoinedViews());
+            List<Map<String, Set<ValueDto>>> rows = request.getCursor() != null
+                    ? viewStoreReader.retrieveRowsAfter(
+                            request.getView(),
+                            filters,
+                            decodeCursor(request.getCursor()),
+                            size + 1,
+                            request.includeJoinedViews())
+                    : viewStoreReader.retrieveRows(
+                            request.getView(), filters, (page - 1) * size, size + 1, request.includeJoinedViews());
+            var pageRows = rows.subList(0, min(size, rows.size()));
+            var hasNext = rows.size() > size;
             var pageBuilder = ViewPageDto.builder()
-                    .rows(rows.subList(0, min(size, rows.size())))
-                    .hasNext(rows.size() > size);
+                    .rows(pageRows)
+                    .hasNext(hasNext)
+                    .nextCursor(hasNext ? encodeCursor(lastId(request.getView(), pageRows)) : null);
             if (request.includeCounts()) {
                 long count = viewStoreReader.countRows(request.getView(), filters);
                 pageBuilder = pageBuilder.totalCount(count).totalPages(count / size + ((count % size > 0) ? 1 : 0));
@@ -101,6 +110,29 @@ public class JdbcQueryService implements QueryService {
         }
     }
 
+    private static String lastId(String view, List<Map<String, Set<ValueDto>>> rows) {
+        return rows.getLast().entrySet().stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(view))
+                .map(entry -> entry.getValue().iterator().next().value().toString())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * Cursors are opaque to clients, they encode the id of the last row of a page.
+     */
+    static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(UTF_8));
+    }
+
+    static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
     @SneakyThrows
     public CountDto count(CountRequest request) {
         var filters = request.getFilters();
@@ -0,0 +1,137 @@
+package io.fairspace.saturn.services.views;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Bounded cache of the label table, in both directions: label by id and id by (type, label).
+ * Misses are resolved with a single query for all requested keys.
+ * Labels are only ever added to the label table, so the entries of new labels are invalidated
+ * whenever a {@link ViewStoreClient} commits them, which also evicts cached misses for them.
+ */
+public class LabelCache {
+    private final Cache<String, Optional<String>> labelsById;
+    private final Cache<Pair<String, String>, Optional<String>> idsByLabel;
+    // Incremented on invalidation, so that results of queries running concurrently with a commit are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public LabelCache(long maximumSize) {
+        labelsById = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        idsByLabel = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * @return labels by id, for the ids that have a label.
+     */
+    public Map<String, String> getLabels(Connection connection, Collection<String> ids) throws SQLException {
+        var result = new HashMap<String, String>();
+        var missing = new HashSet<String>();
+        for (var id : ids) {
+            var cached = labelsById.getIfPresent(id);
+            if (cached == null) {
+                missing.add(id);
+            } else {
+                cached.ifPresent(label -> result.put(id, label));
+            }
+        }
+        if (!missing.isEmpty()) {
+            var found = new HashMap<String, String>();
+            var start = generation.get();
+            try (var query = connection.prepareStatement("select id, label from label where id = ANY(?::text[])")) {
+                query.setArray(1, connection.createArrayOf("text", missing.toArray()));
+                var resultSet = query.executeQuery();
+                while (resultSet.next()) {
+                    found.put(resultSet.getString("id"), resultSet.getString("label"));
+                }
+            }
+            var entries = new HashMap<String, Optional<String>>();
+            for (var id : missing) {
+                entries.put(id, Optional.ofNullable(found.get(id)));
+            }
+            cache(labelsById, entries, start);
+            result.putAll(found);
+        }
+        return result;
+    }
+
+    /**
+     * @return ids by label, for the labels of the specified type that are known.
+     */
+    public Map<String, String> getIds(Connection connection, String type, Collection<String> labels)
+            throws SQLException {
+        var result = new HashMap<String, String>();
+        var missing = new HashSet<String>();
+        for (var label : labels) {
+            var cached = idsByLabel.getIfPresent(Pair.of(type, label));
+            if (cached == null) {
+                missing.add(label);
+            } else {
+                cached.ifPresent(id -> result.put(label, id));
+            }
+        }
+        if (!missing.isEmpty()) {
+            var found = new HashMap<String, String>();
+            var start = generation.get();
+            try (var query = connection.prepareStatement(
+                    "select id, label from label where type = ? and label = ANY(?::text[])")) {
+                query.setString(1, type);
+                query.setArray(2, connection.createArrayOf("text", missing.toArray()));
+                var resultSet = query.executeQuery();
+                while (resultSet.next()) {
+                    found.putIfAbsent(resultSet.getString("label"), resultSet.getString("id"));
+                }
+            }
+            var entries = new HashMap<Pair<String, String>, Optional<String>>();
+            for (var label : missing) {
+                entries.put(Pair.of(type, label), Optional.ofNullable(found.get(label)));
+            }
+            cache(idsByLabel, entries, start);
+            result.putAll(found);
+        }
+        return result;
+    }
+
+    /**
+     * Caches the results of a query started at a generation, unless labels have been invalidated since.
+     * An invalidation between the check and the put is detected by checking again afterwards,
+     * the entries, which may then be stale, are removed again.
+     */
+    private <K> void cache(Cache<K, Optional<String>> cache, Map<K, Optional<String>> entries, long start) {
+        if (generation.get() != start) {
+            return;
+        }
+        cache.putAll(entries);
+        if (generation.get() != start) {
+            cache.invalidateAll(entries.keySet());
+        }
+    }
+
+    /**
+     * @return whether the id is known to have a label, without querying the label table
+     */
+    public boolean hasLabel(String id) {
+        var cached = labelsById.getIfPresent(id);
+        return cached != null && cached.isPresent();
+    }
+
+    /**
+     * Invalidates the entries of labels that have been added.
+     *
+     * @param labels the labels added, as (type, label)
+     */
+    public void invalidate(Collection<String> ids, Collection<Pair<String, String>> labels) {
+        generation.incrementAndGet();
+        labelsById.invalidateAll(ids);
+        idsByLabel.invalidateAll(labels);
+    }
+}
@@ -0,0 +1,123 @@
+package io.fairspace.saturn.services.views;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Refreshes materialized views in the background, off the commit path.
+ * Commits to the view database mark the materialized views they affect as dirty.
+ * A single thread coalesces these marks and refreshes only the dirty views,
+ * when no changes have been made during the quiet period,
+ * or at the latest when the refresh interval has passed since the first pending change.
+ * The thread is started by {@link #start()}, once the service it refreshes the views of has been constructed.
+ */
+@Slf4j
+public class MaterializedViewRefresher implements AutoCloseable {
+
+    private final MaterializedViewService materializedViewService;
+    private final long interval;
+    private final long quietPeriod;
+
+    // All fields below are guarded by this
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private long firstChangeTime;
+    private long lastChangeTime;
+    private Thread thread;
+    private boolean closed;
+
+    public MaterializedViewRefresher(MaterializedViewService materializedViewService, long interval, long quietPeriod) {
+        this.materializedViewService = materializedViewService;
+        this.interval = interval;
+        this.quietPeriod = quietPeriod;
+    }
+
+    /**
+     * Starts refreshing the dirty views in the background. Views marked dirty before are refreshed then.
+     */
+    public synchronized void start() {
+        if (thread != null || closed) {
+            return;
+        }
+        thread = new Thread(this::run, "materialized-view-refresher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Marks materialized views as dirty.
+     *
+     * @param mvNames the names of the materialized views affected by a commit.
+     */
+    public synchronized void markDirty(Collection<String> mvNames) {
+        if (mvNames.isEmpty()) {
+            return;
+        }
+        var now = System.currentTimeMillis();
+        if (dirty.isEmpty()) {
+            firstChangeTime = now;
+        }
+        lastChangeTime = now;
+        dirty.addAll(mvNames);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            Set<String> batch;
+            synchronized (this) {
+                try {
+                    if (!awaitDirtyViews()) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                batch = new LinkedHashSet<>(dirty);
+                dirty.clear();
+            }
+            try {
+                materializedViewService.refreshMaterializedViews(batch);
+            } catch (Exception e) {
+                log.error("Refreshing materialized views {} failed", batch, e);
+                synchronized (this) {
+                    // Retry after the next quiet period
+                    if (dirty.isEmpty()) {
+                        firstChangeTime = System.currentTimeMillis();
+                    }
+                    lastChangeTime = System.currentTimeMillis();
+                    dirty.addAll(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until there are dirty views and the quiet period or refresh interval has passed.
+     *
+     * @return false if the refresher has been closed.
+     */
+    private boolean awaitDirtyViews() throws InterruptedException {
+        while (!closed && dirty.isEmpty()) {
+            wait();
+        }
+        while (!closed) {
+            var due = Math.min(lastChangeTime + quietPeriod, firstChangeTime + interval);
+            var remaining = due - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return true;
+            }
+            wait(remaining);
+        }
+        return false;
+    }
+}
@@ -3,16 +3,37 @@ package io.fairspace.saturn.services.views;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import javax.sql.DataSource;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedCaseInsensitiveMap;
 
+import io.fairspace.saturn.config.properties.ViewDatabaseProperties;
 import io.fairspace.saturn.config.properties.ViewsProperties;
 
+/**
+ * Maintains the denormalized 'mv_' tables used by the {@link ViewStoreReader} to read
+ * set columns (mv_&lt;view&gt;) and joined views (mv_&lt;view&gt;_join_&lt;view&gt;) in one go.
+ * By default, the tables are regular tables rather than Postgres materialized views, so that they can be
+ * maintained incrementally: after a metadata change only the rows of the affected view entities
+ * are deleted and inserted again, in the same transaction as the change itself.
+ * A full refresh is only done on startup and when the index is recreated.
+ * <p>
+ * If deferred refresh is configured, Postgres materialized views are used instead.
+ * These are refreshed in the background by the {@link MaterializedViewRefresher}.
+ */
 @Slf4j
 @Service
 public class MaterializedViewService {
@@ -25,23 +46,71 @@ public class MaterializedViewService {
     private final ViewStoreClient.ViewStoreConfiguration configuration;
     private final ViewsProperties viewsProperties;
     private final int maxJoinItems;
+    private final MaterializedViewRefresher refresher;
 
     public MaterializedViewService(
             DataSource dataSource,
             ViewStoreClient.ViewStoreConfiguration configuration,
             ViewsProperties viewsProperties,
+            ViewDatabaseProperties viewDatabaseProperties,
             @Value("${application.search.maxJoinItems}") int maxJoinItems) {
         this.dataSource = dataSource;
         this.configuration = configuration;
         this.viewsProperties = viewsProperties;
         this.maxJoinItems = maxJoinItems;
+        this.refresher = viewDatabaseProperties.isMvRefreshDeferred()
+                ? new MaterializedViewRefresher(
+                        this,
+                        viewDatabaseProperties.getMvRefreshInterval(),
+                        viewDatabaseProperties.getMvRefreshQuietPeriod())
+                : null;
     }
 
+    /**
+     * @return the background refresher if deferred refresh is configured, empty if the materialized views
+     * are updated incrementally on commit.
+     */
+    public Optional<MaterializedViewRefresher> getRefresher() {
+        return Optional.ofNullable(refresher);
+    }
+
+    /**
+     * Starts the background refresher, if any, once the service has been constructed, so that it does not
+     * refresh the views through a service that is not fully initialized.
+     */
+    @PostConstruct
+    public void start() {
+        if (refresher != null) {
+            refresher.start();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (refresher != null) {
+            refresher.close();
+        }
+    }
+
+    /**
+     * Creates the missing materialized views and refreshes all existing ones.
+     */
     public void createOrUpdateAllMaterializedViews() {
+        createOrUpdateMaterializedViews(true);
+    }
+
+    /**
+     * Creates the missing materialized views, existing ones are left as they are.
+     */
+    public void createMissingMaterializedViews() {
+        createOrUpdateMaterializedViews(false);
+    }
+
+    private void createOrUpdateMaterializedViews(boolean refreshExisting) {
         try (var connection = dataSource.getConnection()) {
             for (var view : viewsProperties.views) {
-                createOrUpdateViewMaterializedView(view, connection);
-                createOrUpdateJoinMaterializedView(view, connection);
+                createOrUpdateViewMaterializedView(view, refreshExisting, connection);
+                createOrUpdateJoinMaterializedView(view, refreshExisting, connection);
             }
         } catch (SQLException e) {
             log.error("Materialized view create/update failed", e);
@@ -49,11 +118,145 @@ public class MaterializedViewService {
         }
     }
 
-    private void createOrUpdateViewMaterializedView(ViewsProperties.View view, Connection connection)
+    /**
+     * Updates the rows of the materialized views that are affected by changes to the specified entities.
+     * The update is executed on the provided connection and is not committed,
+     * so that it becomes part of the transaction that changed the view tables.
+     *
+     * @param connection the connection of the ongoing transaction.
+     * @param updatedIds the ids of the updated entities by view name (case-insensitive).
+     */
+    public void updateMaterializedViews(Connection connection, Map<String, Set<String>> updatedIds)
             throws SQLException {
-        var setColumns =
-                view.columns.stream().filter(column -> column.type.isSet()).toList();
-        if (!setColumns.isEmpty()) {
+        for (var view : viewsProperties.views) {
+            var viewIds = updatedIds.getOrDefault(view.name, Set.of());
+            if (!viewIds.isEmpty() && hasSetColumns(view)) {
+                updateViewMaterializedView(view, viewIds, connection);
+            }
+            for (var joinView : view.join) {
+                var joinIds = updatedIds.getOrDefault(joinView.view, Set.of());
+                if (!viewIds.isEmpty() || !joinIds.isEmpty()) {
+                    updateJoinMaterializedView(view, joinView, viewIds, joinIds, connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the names of the materialized views affected by changes to the specified views.
+     *
+     * @param updatedViews the names of the updated views.
+     * @return the names of the affected materialized views.
+     */
+    public Set<String> getAffectedMaterializedViews(Collection<String> updatedViews) {
+        var updated = new LinkedCaseInsensitiveMap<Boolean>();
+        updatedViews.forEach(view -> updated.put(view, Boolean.TRUE));
+        var mvNames = new LinkedHashSet<String>();
+        for (var view : viewsProperties.views) {
+            var viewName = view.name.toLowerCase();
+            if (updated.containsKey(view.name) && hasSetColumns(view)) {
+                mvNames.add("mv_%s".formatted(viewName));
+            }
+            for (var joinView : view.join) {
+                if (updated.containsKey(view.name) || updated.containsKey(joinView.view)) {
+                    mvNames.add("mv_%s_join_%s".formatted(viewName, joinView.view.toLowerCase()));
+                }
+            }
+        }
+        return mvNames;
+    }
+
+    /**
+     * Refreshes the specified Postgres materialized views, each in its own transaction.
+     * Only applicable if deferred refresh is configured.
+     *
+     * @param mvNames the names of the materialized views.
+     */
+    public void refreshMaterializedViews(Collection<String> mvNames) throws SQLException {
+        try (var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            for (var mvName : mvNames) {
+                var start = System.currentTimeMillis();
+                refreshMaterializedView(mvName, connection);
+                log.debug("Refreshing materialized view {} took {}ms", mvName, System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    private void updateViewMaterializedView(ViewsProperties.View view, Set<String> ids, Connection connection)
+            throws SQLException {
+        var viewName = view.name.toLowerCase();
+        var mvName = "mv_%s".formatted(viewName);
+        var deleted = deleteRows(mvName, viewName + "id", ids, connection);
+        var inserted = insertRows(mvName, viewSelectQuery(view, true), ids, connection);
+        log.debug("Deleted {}, inserted {} rows of materialized view {}", deleted, inserted, mvName);
+    }
+
+    private void updateJoinMaterializedView(
+            ViewsProperties.View view,
+            ViewsProperties.View.JoinView joinView,
+            Set<String> viewIds,
+            Set<String> joinIds,
+            Connection connection)
+            throws SQLException {
+        var viewName = view.name.toLowerCase();
+        var joinViewName = joinView.view.toLowerCase();
+        var mvName = "mv_%s_join_%s".formatted(viewName, joinViewName);
+        var viewIdColumn = viewName + "_id";
+        var joinIdColumn = joinViewName + "_id";
+
+        // Rows of an entity have to be rebuilt if the entity itself has changed,
+        // or if one of the entities it was or is linked to has changed.
+        var affectedIds = new HashSet<>(viewIds);
+        if (!joinIds.isEmpty()) {
+            var joinTable = configuration.joinTables.get(view.name).get(joinView.view).name;
+            affectedIds.addAll(selectIds(mvName, viewIdColumn, joinIdColumn, joinIds, connection));
+            affectedIds.addAll(selectIds(joinTable, viewIdColumn, joinIdColumn, joinIds, connection));
+        }
+        if (affectedIds.isEmpty()) {
+            return;
+        }
+        var deleted = deleteRows(mvName, viewIdColumn, affectedIds, connection);
+        var inserted = insertRows(mvName, joinSelectQuery(view, joinView, true), affectedIds, connection);
+        log.debug("Deleted {}, inserted {} rows of materialized view {}", deleted, inserted, mvName);
+    }
+
+    private Set<String> selectIds(
+            String table, String resultColumn, String keyColumn, Collection<String> keys, Connection connection)
+            throws SQLException {
+        var query = "SELECT %s FROM %s WHERE %s = ANY(?::text[])".formatted(resultColumn, table, keyColumn);
+        try (var ps = connection.prepareStatement(query)) {
+            ps.setArray(1, connection.createArrayOf("text", keys.toArray()));
+            var rs = ps.executeQuery();
+            var ids = new HashSet<String>();
+            while (rs.next()) {
+                ids.add(rs.getString(FIRST_ROW_IDX));
+            }
+            return ids;
+        }
+    }
+
+    private int deleteRows(String mvName, String idColumn, Collection<String> ids, Connection connection)
+            throws SQLException {
+        var query = "DELETE FROM %s WHERE %s = ANY(?::text[])".formatted(mvName, idColumn);
+        try (var ps = connection.prepareStatement(query)) {
+            ps.setArray(1, connection.createArrayOf("text", ids.toArray()));
+            return ps.executeUpdate();
+        }
+    }
+
+    private int insertRows(String mvName, String selectQuery, Collection<String> ids, Connection connection)
+            throws SQLException {
+        var query = "INSERT INTO %s %s".formatted(mvName, selectQuery);
+        try (var ps = connection.prepareStatement(query)) {
+            ps.setArray(1, connection.createArrayOf("text", ids.toArray()));
+            return ps.executeUpdate();
+        }
+    }
+
+    private void createOrUpdateViewMaterializedView(
+            ViewsProperties.View view, boolean refreshExisting, Connection connection) throws SQLException {
+        if (hasSetColumns(view)) {
             String viewName = view.name.toLowerCase();
             var mvName = "mv_%s".formatted(viewName);
 
@@ -61,18 +264,14 @@ public class MaterializedViewService {
             // all checks and changes to be done in one transaction
             connection.setAutoCommit(false);
             try {
-                List<String> columns = collectViewColumns(view);
-                if (doesMaterializedViewExist(mvName, connection)) {
-                    // 'refresh' requires unique index based on all columns, so we have to check if it exists
-                    createMaterializedViewUniqueIndexIfNotExist(
-                            viewName + UNIQUE_INDEX_POSTFIX, mvName, columns, connection);
-                    refreshMaterializedView(mvName, connection);
-                } else {
-                    createViewMaterializedView(mvName, view, setColumns, connection);
-                    createMaterializedViewIndex(viewName + INDEX_POSTFIX, mvName, viewName + "id", connection);
-                    createMaterializedViewUniqueIndexIfNotExist(
-                            viewName + UNIQUE_INDEX_POSTFIX, mvName, columns, connection);
-                }
+                createOrUpdate(
+                        mvName,
+                        viewSelectQuery(view, false),
+                        Map.of(viewName + INDEX_POSTFIX, viewName + "id"),
+                        viewName + UNIQUE_INDEX_POSTFIX,
+                        collectViewColumns(view),
+                        refreshExisting,
+                        connection);
                 connection.commit();
                 log.info("View materialized view {} create/update has finished successfully", mvName);
             } catch (SQLException e) {
@@ -84,8 +283,8 @@ public class MaterializedViewService {
         }
     }
 
-    private void createOrUpdateJoinMaterializedView(ViewsProperties.View view, Connection connection)
-            throws SQLException {
+    private void createOrUpdateJoinMaterializedView(
+            ViewsProperties.View view, boolean refreshExisting, Connection connection) throws SQLException {
         for (ViewsProperties.View.JoinView joinView : view.join) {
             String viewName = view.name.toLowerCase();
             String joinViewName = joinView.view.toLowerCase();
@@ -95,21 +294,18 @@ public class MaterializedViewService {
             // all checks and changes to be done in one transaction
             connection.setAutoCommit(false);
             try {
-                List<String> columns = collectJoinColumns(view, joinView);
-                if (doesMaterializedViewExist(mvName, connection)) {
-                    // 'refresh' requires unique index based on all columns, so we have to check if it exists
-                    createMaterializedViewUniqueIndexIfNotExist(
-                            mvName + UNIQUE_INDEX_POSTFIX, mvName, columns, connection);
-                    refreshMaterializedView(mvName, connection);
-                } else {
-                    createJoinMaterializedViews(view, joinView, connection);
-                    createMaterializedViewIndex(
-                            mvName + "_" + viewName + INDEX_POSTFIX, mvName, viewName + "_id", connection);
-                    createMaterializedViewIndex(
-                            mvName + "_" + joinViewName + INDEX_POSTFIX, mvName, joinViewName + "_id", connection);
-                    createMaterializedViewUniqueIndexIfNotExist(
-                            mvName + UNIQUE_INDEX_POSTFIX, mvName, columns, connection);
-                }
+                createOrUpdate(
+                        mvName,
+                        joinSelectQuery(view, joinView, false),
+                        Map.of(
+                                mvName + "_" + viewName + INDEX_POSTFIX,
+                                viewName + "_id",
+                                mvName + "_" + joinViewName + INDEX_POSTFIX,
+                                joinViewName + "_id"),
+                        mvName + UNIQUE_INDEX_POSTFIX,
+                        collectJoinColumns(view, joinView),
+                        refreshExisting,
+                        connection);
                 connection.commit();
                 log.info("Join  materialized view {} create/update has finished successfully", mvName);
             } catch (SQLException e) {
@@ -121,6 +317,67 @@ public class MaterializedViewService {
         }
     }
 
+    private void createOrUpdate(
+            String mvName,
+            String selectQuery,
+            Map<String, String> indexes,
+            String uniqueIndexName,
+            List<String> columns,
+            boolean refreshExisting,
+            Connection connection)
+            throws SQLException {
+        if (refresher != null) {
+            dropTableIfExists(mvName, connection);
+            if (doesMaterializedViewExist(mvName, connection)) {
+                // 'refresh' requires unique index based on all columns, so we have to check if it exists
+                createUniqueIndexIfNotExist(uniqueIndexName, mvName, columns, connection);
+                if (refreshExisting) {
+                    refreshMaterializedView(mvName, connection);
+                }
+                return;
+            }
+            createMaterializedView(mvName, selectQuery, connection);
+            createUniqueIndexIfNotExist(uniqueIndexName, mvName, columns, connection);
+        } else {
+            dropLegacyMaterializedViewIfExists(mvName, connection);
+            if (doesTableExist(mvName, connection)) {
+                if (refreshExisting) {
+                    refreshTable(mvName, selectQuery, connection);
+                }
+                return;
+            }
+            createTable(mvName, selectQuery, connection);
+        }
+        for (var index : indexes.entrySet()) {
+            createIndex(index.getKey(), mvName, index.getValue(), connection);
+        }
+    }
+
+    /**
+     * Earlier versions stored the data in Postgres materialized views, which cannot be updated incrementally.
+     * These are replaced by regular tables with the same name.
+     */
+    private void dropLegacyMaterializedViewIfExists(String mvName, Connection connection) throws SQLException {
+        if (doesMaterializedViewExist(mvName, connection)) {
+            log.info("Replacing materialized view {} by a table", mvName);
+            try (var ps = connection.prepareStatement("DROP MATERIALIZED VIEW %s".formatted(mvName))) {
+                ps.execute();
+            }
+        }
+    }
+
+    /**
+     * Materialized views are replaced by Postgres materialized views if deferred refresh is configured.
+     */
+    private void dropTableIfExists(String mvName, Connection connection) throws SQLException {
+        if (doesTableExist(mvName, connection)) {
+            log.info("Replacing table {} by a materialized view", mvName);
+            try (var ps = connection.prepareStatement("DROP TABLE %s".formatted(mvName))) {
+                ps.execute();
+            }
+        }
+    }
+
     private void refreshMaterializedView(String mvName, Connection connection) throws SQLException {
         var query = "REFRESH MATERIALIZED VIEW CONCURRENTLY %s".formatted(mvName);
         try (var ps = connection.prepareStatement(query)) {
@@ -128,8 +385,15 @@ public class MaterializedViewService {
         }
     }
 
-    private void createMaterializedViewUniqueIndexIfNotExist(
-            String idxName, String mvName, List<String> columns, Connection connection) throws SQLException {
+    private void createMaterializedView(String mvName, String selectQuery, Connection connection)
+            throws SQLException {
+        try (var ps = connection.prepareStatement("CREATE MATERIALIZED VIEW %s AS %s".formatted(mvName, selectQuery))) {
+            ps.execute();
+        }
+    }
+
+    private void createUniqueIndexIfNotExist(String idxName, String mvName, List<String> columns, Connection connection)
+            throws SQLException {
         if (!doesIndexExist(mvName, idxName, connection)) {
             var joinedColumns = String.join(", ", columns);
             var query = "CREATE UNIQUE INDEX %s ON %s (%s)".formatted(idxName, mvName, joinedColumns);
@@ -139,6 +403,31 @@ public class MaterializedViewService {
         }
     }
 
+    private boolean doesIndexExist(String mvName, String idxName, Connection connection) throws SQLException {
+        var query = "SELECT EXISTS (SELECT * FROM pg_indexes WHERE tablename = '%s' AND indexname = '%s')"
+                .formatted(mvName, idxName);
+        try (var ps = connection.prepareStatement(query)) {
+            var rs = ps.executeQuery();
+            rs.next();
+            return rs.getBoolean(FIRST_ROW_IDX);
+        }
+    }
+
+    private void refreshTable(String mvName, String selectQuery, Connection connection) throws SQLException {
+        // 'delete' instead of 'truncate' to not block concurrent readers
+        try (var delete = connection.prepareStatement("DELETE FROM %s".formatted(mvName));
+                var insert = connection.prepareStatement("INSERT INTO %s %s".formatted(mvName, selectQuery))) {
+            delete.executeUpdate();
+            insert.executeUpdate();
+        }
+    }
+
+    private void createTable(String mvName, String selectQuery, Connection connection) throws SQLException {
+        try (var ps = connection.prepareStatement("CREATE TABLE %s AS %s".formatted(mvName, selectQuery))) {
+            ps.execute();
+        }
+    }
+
     private boolean doesMaterializedViewExist(String viewName, Connection connection) throws SQLException {
         var query = "SELECT EXISTS (SELECT 1 FROM pg_matviews WHERE matviewname = '%s')".formatted(viewName);
         try (var ps = connection.prepareStatement(query)) {
@@ -148,9 +437,8 @@ public class MaterializedViewService {
         }
     }
 
-    private boolean doesIndexExist(String mvName, String idxName, Connection connection) throws SQLException {
-        var query = "SELECT EXISTS (SELECT * FROM pg_indexes WHERE tablename = '%s' AND indexname = '%s')"
-                .formatted(mvName, idxName);
+    private boolean doesTableExist(String tableName, Connection connection) throws SQLException {
+        var query = "SELECT EXISTS (SELECT 1 FROM pg_tables WHERE tablename = '%s')".formatted(tableName);
         try (var ps = connection.prepareStatement(query)) {
             var rs = ps.executeQuery();
             rs.next();
@@ -158,20 +446,22 @@ public class MaterializedViewService {
         }
     }
 
-    private void createViewMaterializedView(
-            String viewOrTableName,
-            ViewsProperties.View view,
-            List<ViewsProperties.View.Column> setColumns,
-            Connection connection)
-            throws SQLException {
+    private static boolean hasSetColumns(ViewsProperties.View view) {
+        return view.columns.stream().anyMatch(column -> column.type.isSet());
+    }
+
+    /**
+     * Builds the query selecting the set column values of view entities.
+     *
+     * @param view     the view.
+     * @param filtered if true, the query is restricted to the entity ids passed as a text array parameter.
+     */
+    private String viewSelectQuery(ViewsProperties.View view, boolean filtered) {
+        var setColumns =
+                view.columns.stream().filter(column -> column.type.isSet()).toList();
         String viewName = view.name.toLowerCase();
-        var queryBuilder = new StringBuilder()
-                .append("CREATE MATERIALIZED VIEW ")
-                .append(viewOrTableName)
-                .append(" AS ")
-                .append("SELECT v.id AS ")
-                .append(viewName)
-                .append("id, ");
+        var queryBuilder =
+                new StringBuilder().append("SELECT v.id AS ").append(viewName).append("id, ");
         for (int i = 0; i < setColumns.size(); i++) {
             queryBuilder
                     .append("i")
@@ -200,25 +490,28 @@ public class MaterializedViewService {
                     .append(viewName)
                     .append("_id ");
         }
-
-        try (var ps = connection.prepareStatement(queryBuilder.toString())) {
-            ps.execute();
+        if (filtered) {
+            queryBuilder.append("WHERE v.id = ANY(?::text[])");
         }
+        return queryBuilder.toString();
     }
 
-    private void createMaterializedViewIndex(
-            String indexName, String materializedViewName, String columnName, Connection connection)
+    private void createIndex(String indexName, String tableName, String columnName, Connection connection)
             throws SQLException {
-        var query = "CREATE INDEX %s on %s (%s)".formatted(indexName, materializedViewName, columnName);
+        var query = "CREATE INDEX %s on %s (%s)".formatted(indexName, tableName, columnName);
         try (var ps = connection.prepareStatement(query)) {
             ps.execute();
-            connection.commit();
         }
     }
 
-    private void createJoinMaterializedViews(
-            ViewsProperties.View view, ViewsProperties.View.JoinView joinView, Connection connection)
-            throws SQLException {
+    /**
+     * Builds the query selecting the (at most maxJoinItems) joined entities of view entities.
+     *
+     * @param view     the view.
+     * @param joinView the joined view.
+     * @param filtered if true, the query is restricted to the entity ids passed as a text array parameter.
+     */
+    private String joinSelectQuery(ViewsProperties.View view, ViewsProperties.View.JoinView joinView, boolean filtered) {
         var viewTableName = view.name.toLowerCase();
         var joinTable = configuration.joinTables.get(view.name).get(joinView.view).name;
         var joinedTable = configuration.viewTables.get(joinView.view).name.toLowerCase();
@@ -226,11 +519,6 @@ public class MaterializedViewService {
         var joinIdColumn = joinedTable + "_id";
         var joinLabelColumn = joinedTable + "_label";
         var queryBuilder = new StringBuilder()
-                .append("create materialized view mv_")
-                .append(viewTableName)
-                .append("_join_")
-                .append(joinedTable)
-                .append(" as ")
                 .append("with numbered_rows AS (select v.id  AS ")
                 .append(viewIdColumn)
                 .append(", ")
@@ -310,6 +598,10 @@ public class MaterializedViewService {
                     .append("_id ");
         }
 
+        if (filtered) {
+            queryBuilder.append("where v.id = ANY(?::text[]) ");
+        }
+
         queryBuilder.append(") ");
 
         queryBuilder
@@ -318,10 +610,7 @@ public class MaterializedViewService {
                 .append(" from numbered_rows where rn <= ")
                 .append(maxJoinItems);
 
-        try (var ps = connection.prepareStatement(queryBuilder.toString())) {
-            ps.execute();
-            connection.commit();
-        }
+        return queryBuilder.toString();
     }
 
     private List<String> collectViewColumns(ViewsProperties.View view) {
@@ -1,16 +1,25 @@
 package io.fairspace.saturn.services.views;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.pivovarit.function.ThrowingFunction;
 import lombok.extern.log4j.Log4j2;
 import org.apache.jena.datatypes.xsd.XSDDateTime;
 import org.apache.jena.query.Dataset;
@@ -18,12 +27,15 @@ import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryCancelledException;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryFactory;
-import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.query.ResultSetFormatter;
 import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.apache.jena.sparql.expr.E_Equals;
 import org.apache.jena.sparql.expr.E_GreaterThanOrEqual;
 import org.apache.jena.sparql.expr.E_LessThanOrEqual;
@@ -38,7 +50,10 @@ import org.apache.jena.sparql.expr.NodeValue;
 import org.apache.jena.sparql.syntax.ElementFilter;
 import org.apache.jena.vocabulary.RDFS;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import io.fairspace.saturn.config.properties.JenaProperties;
 import io.fairspace.saturn.config.properties.SearchProperties;
@@ -56,6 +71,7 @@ import io.fairspace.saturn.vocabulary.FS;
 import static io.fairspace.saturn.rdf.ModelUtils.getResourceProperties;
 import static io.fairspace.saturn.util.ValidationUtils.validateIRI;
 
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static java.time.Instant.ofEpochMilli;
 import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.joining;
@@ -64,11 +80,15 @@ import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.apache.jena.rdf.model.ResourceFactory.createProperty;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.apache.jena.rdf.model.ResourceFactory.createStringLiteral;
+import static org.apache.jena.rdf.model.ResourceFactory.createTypedLiteral;
 import static org.apache.jena.sparql.expr.NodeValue.makeBoolean;
 import static org.apache.jena.sparql.expr.NodeValue.makeDate;
 import static org.apache.jena.sparql.expr.NodeValue.makeDecimal;
 import static org.apache.jena.sparql.expr.NodeValue.makeNode;
 import static org.apache.jena.sparql.expr.NodeValue.makeString;
+import static org.apache.jena.sparql.util.ModelUtils.convertGraphNodeToRDFNode;
 import static org.apache.jena.system.Txn.calculateRead;
 
 @Log4j2
@@ -77,12 +97,58 @@ import static org.apache.jena.system.Txn.calculateRead;
 public class SparqlQueryService implements QueryService {
 
     private static final String RESOURCES_VIEW = "Resource";
+    private static final String LOCATION_FIELD = "location";
+    private static final int QUERY_CACHE_SIZE = 1000;
+
+    // Formats of SELECT and ASK results by content type, the first one is the default
+    private static final Map<String, Lang> RESULT_FORMATS = new LinkedHashMap<>();
+    // Jena cannot write a boolean result as Thrift, so ASK results are written in the other formats only
+    private static final Map<String, Lang> ASK_FORMATS = new LinkedHashMap<>();
+    // Formats of CONSTRUCT and DESCRIBE results by content type, the first one is the default
+    private static final Map<String, Lang> GRAPH_FORMATS = new LinkedHashMap<>();
+
+    static {
+        RESULT_FORMATS.put(ResultSetLang.RS_JSON.getHeaderString(), ResultSetLang.RS_JSON);
+        RESULT_FORMATS.put(MediaType.APPLICATION_JSON_VALUE, ResultSetLang.RS_JSON);
+        RESULT_FORMATS.put(ResultSetLang.RS_TSV.getHeaderString(), ResultSetLang.RS_TSV);
+        ASK_FORMATS.putAll(RESULT_FORMATS);
+        RESULT_FORMATS.put(ResultSetLang.RS_Thrift.getHeaderString(), ResultSetLang.RS_Thrift);
+        GRAPH_FORMATS.put(Lang.NTRIPLES.getHeaderString(), Lang.NTRIPLES);
+        GRAPH_FORMATS.put(Lang.RDFTHRIFT.getHeaderString(), Lang.RDFTHRIFT);
+    }
+
+    /**
+     * The shape of a view query: the view, whether the matches are counted, and the kind of condition of every filter.
+     * Requests of the same shape only differ in their filter values, so they share one parsed query.
+     */
+    record QueryShape(String view, boolean count, List<FilterShape> filters) {}
+
+    /**
+     * @param values the number of values the filter matches, or the number of locations of the location filter
+     */
+    record FilterShape(String field, FilterKind kind, int values) {}
+
+    enum FilterKind {
+        RANGE,
+        MIN,
+        MAX,
+        VALUES,
+        PREFIX,
+        BOOLEAN,
+        NONE
+    }
+
+    /**
+     * A parsed query, which must not be modified, and the values of its variables.
+     */
+    record BoundQuery(Query query, QuerySolutionMap binding) {}
 
     private final SearchProperties searchProperties;
     private final JenaProperties jenaProperties;
     private final ViewsProperties viewsProperties;
     private final Dataset ds;
     private final Transactions transactions;
+    private final LoadingCache<QueryShape, Query> queryCache;
 
     public SparqlQueryService(
             SearchProperties searchProperties,
@@ -95,23 +161,56 @@ public class SparqlQueryService implements QueryService {
         this.viewsProperties = viewsProperties;
         this.ds = ds;
         this.transactions = transactions;
+        this.queryCache =
+                CacheBuilder.newBuilder().maximumSize(QUERY_CACHE_SIZE).build(CacheLoader.from(this::parseQuery));
     }
 
     /**
-     * Execute a SPARQL query and return the results as a JSON string.
+     * Executes a read-only SPARQL query and writes the results while they are produced, within the read transaction.
+     * SELECT and ASK results are written in a SPARQL results format, CONSTRUCT and DESCRIBE results in an RDF format,
+     * as accepted by the client. Nothing is buffered: a query returns at most the configured number of results,
+     * and the response is aborted when it exceeds the configured size.
+     *
+     * @param accept the Accept header of the request
+     * @param output opens the output stream for the content type of the results
      */
-    public String executeQuery(String sparqlQuery) {
-        return transactions.calculateRead(model -> {
-            Query query = QueryFactory.create(sparqlQuery, Syntax.syntaxARQ);
-            try (QueryExecution queryExecution = QueryExecution.create()
+    public void executeQuery(
+            String sparqlQuery, String accept, ThrowingFunction<String, OutputStream, IOException> output) {
+        var query = QueryFactory.create(sparqlQuery, Syntax.syntaxARQ);
+        var formats = query.isConstructType() || query.isDescribeType()
+                ? GRAPH_FORMATS
+                : query.isAskType() ? ASK_FORMATS : RESULT_FORMATS;
+        var contentType = getContentType(accept, formats);
+        var lang = formats.get(contentType);
+        var maxRows = jenaProperties.getSparqlQueryMaxRows();
+        if (maxRows > 0 && !query.isAskType() && (!query.hasLimit() || query.getLimit() > maxRows)) {
+            query.setLimit(maxRows);
+        }
+
+        transactions.executeRead(model -> {
+            try (var execution = QueryExecution.create()
                     .query(query)
                     .dataset(ds)
                     .timeout(jenaProperties.getSparqlQueryTimeout(), TimeUnit.MILLISECONDS)
                     .build()) {
-                ResultSet resultSet = queryExecution.execSelect();
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                ResultSetFormatter.outputAsJSON(outputStream, resultSet);
-                return outputStream.toString();
+                var out = new LimitedOutputStream(output.apply(contentType), jenaProperties.getSparqlQueryMaxBytes());
+                if (query.isSelectType()) {
+                    ResultSetFormatter.output(out, execution.execSelect(), lang);
+                } else if (query.isAskType()) {
+                    ResultSetFormatter.output(out, execution.execAsk(), lang);
+                } else {
+                    var triples = query.isConstructType()
+                            ? execution.execConstructTriples()
+                            : execution.execDescribeTriples();
+                    var stream = StreamRDFWriter.getWriterStream(out, lang);
+                    stream.start();
+                    // A CONSTRUCT or DESCRIBE query can produce several triples per result
+                    for (var count = 0L; triples.hasNext() && (maxRows <= 0 || count < maxRows); count++) {
+                        stream.triple(triples.next());
+                    }
+                    stream.finish();
+                }
+                out.flush();
             } catch (Exception e) {
                 log.error("Error executing query: \n{}", sparqlQuery, e);
                 throw new RuntimeException(e);
@@ -119,8 +218,49 @@ public class SparqlQueryService implements QueryService {
         });
     }
 
+    /**
+     * Negotiates the format of the results: the supported format with the highest quality in the Accept header,
+     * the quality of a format being that of the most specific media range including it.
+     * Of formats with the same quality, the first one is chosen, so the default if any format is accepted.
+     *
+     * @throws ResponseStatusException with status 406 if the client accepts none of the supported formats
+     */
+    private static String getContentType(String accept, Map<String, Lang> formats) {
+        if (accept == null || accept.isBlank()) {
+            return formats.keySet().iterator().next();
+        }
+        var accepted = MediaType.parseMediaTypes(accept);
+        String contentType = null;
+        var quality = 0.0;
+        for (var format : formats.keySet()) {
+            var formatQuality = getQuality(MediaType.parseMediaType(format), accepted);
+            if (formatQuality > quality) {
+                contentType = format;
+                quality = formatQuality;
+            }
+        }
+        if (contentType == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_ACCEPTABLE, "Supported formats: " + String.join(", ", formats.keySet()));
+        }
+        return contentType;
+    }
+
+    /**
+     * @return the quality of the most specific accepted media range including the format, 0 if there is none
+     */
+    private static double getQuality(MediaType format, List<MediaType> accepted) {
+        return accepted.stream()
+                .filter(range -> range.includes(format))
+                .max(comparing(range -> range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2))
+                .map(MediaType::getQualityValue)
+                .orElse(0.0);
+    }
+
     public ViewPageDto retrieveViewPage(ViewRequest request) {
-        var query = getQuery(request, false);
+        var boundQuery = getQuery(request, false);
+        // The parsed query is shared by all requests of the same shape
+        var query = boundQuery.query().cloneQuery();
 
         log.debug("Executing query:\n{}", query);
 
@@ -129,11 +269,12 @@ public class SparqlQueryService implements QueryService {
         query.setLimit(size + 1);
         query.setOffset((page - 1) * size);
 
-        log.debug("Query with filters and pagination applied: \n{}", query);
+        log.debug("Query with pagination applied: \n{}\nFilter values: {}", query, boundQuery.binding());
 
         try (var selectExecution = QueryExecution.create()
                 .dataset(ds)
                 .query(query)
+                .substitution(boundQuery.binding())
                 .timeout(searchProperties.getCountRequestTimeout())
                 .build()) {
             return calculateRead(ds, () -> {
@@ -235,14 +376,101 @@ public class SparqlQueryService implements QueryService {
         return new ValueDto(label, resource.getURI());
     }
 
-    private Query getQuery(CountRequest request, boolean isCount) {
-        var view = getView(request.getView());
+    /**
+     * Returns the query of a request, with its filter values in a binding rather than in the query itself.
+     * The queries are parsed once for every shape.
+     */
+    BoundQuery getQuery(CountRequest request, boolean isCount) {
+        var shape = getShape(request, isCount);
+        var binding = bind(request, shape);
+        try {
+            return new BoundQuery(queryCache.getUnchecked(shape), binding);
+        } catch (UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
 
-        var builder = new StringBuilder().append("SELECT %s \nWHERE {\n"); // prefix to be added later
+    QueryShape getShape(CountRequest request, boolean isCount) {
+        var filters = request.getFilters() == null
+                ? List.<FilterShape>of()
+                : request.getFilters().stream()
+                        .map(SparqlQueryService::toFilterShape)
+                        .toList();
+        return new QueryShape(request.getView(), isCount, filters);
+    }
 
-        if (request.getFilters() != null) {
-            buildAndAddFilterToQuery(request, view, builder);
+    private static FilterShape toFilterShape(ViewFilter filter) {
+        var values = filter.values != null ? filter.values.size() : 0;
+        FilterKind kind;
+        if (filter.field.equals(LOCATION_FIELD)) {
+            kind = values > 0 ? FilterKind.VALUES : FilterKind.NONE;
+        } else if (filter.min != null && filter.max != null) {
+            kind = FilterKind.RANGE;
+        } else if (filter.min != null) {
+            kind = FilterKind.MIN;
+        } else if (filter.max != null) {
+            kind = FilterKind.MAX;
+        } else if (values > 0) {
+            kind = FilterKind.VALUES;
+        } else if (filter.prefix != null && !filter.prefix.isBlank()) {
+            kind = FilterKind.PREFIX;
+        } else if (filter.booleanValue != null) {
+            kind = FilterKind.BOOLEAN;
+        } else {
+            kind = FilterKind.NONE;
+        }
+        return new FilterShape(filter.field, kind, values);
+    }
+
+    /**
+     * Binds the values of the filters to the variables of the query.
+     */
+    private QuerySolutionMap bind(CountRequest request, QueryShape shape) {
+        var binding = new QuerySolutionMap();
+        var locationIndex = indexOfLocationFilter(shape.filters());
+        for (var i = 0; i < shape.filters().size(); i++) {
+            var filter = request.getFilters().get(i);
+            var parameter = parameter(i);
+            if (i == locationIndex) {
+                for (var j = 0; j < shape.filters().get(i).values(); j++) {
+                    var location = filter.values.get(j).toString();
+                    validateIRI(location);
+                    binding.add(valueParameter(parameter, j), createResource(location));
+                }
+                continue;
+            }
+            var type = filter.field.contains("_") ? getColumn(filter.field).type : ColumnType.Identifier;
+            switch (shape.filters().get(i).kind()) {
+                case RANGE -> {
+                    binding.add(parameter + "_min", toRDFNode(filter.min, type));
+                    binding.add(parameter + "_max", toRDFNode(filter.max, type));
+                }
+                case MIN -> binding.add(parameter + "_min", toRDFNode(filter.min, type));
+                case MAX -> binding.add(parameter + "_max", toRDFNode(filter.max, type));
+                case VALUES -> {
+                    for (var j = 0; j < filter.values.size(); j++) {
+                        binding.add(valueParameter(parameter, j), toRDFNode(filter.values.get(j), type));
+                    }
+                }
+                case PREFIX -> binding.add(
+                        parameter + "_prefix", createStringLiteral(filter.prefix.trim().toLowerCase()));
+                case BOOLEAN -> binding.add(parameter + "_boolean", createTypedLiteral(filter.booleanValue));
+                case NONE -> {}
+            }
         }
+        return binding;
+    }
+
+    /**
+     * Builds and parses the query of a shape, with variables in place of the filter values.
+     */
+    Query parseQuery(QueryShape shape) {
+        var view = getView(shape.view());
+
+        var builder = new StringBuilder().append("SELECT %s \nWHERE {\n"); // prefix to be added later
+
+        buildAndAddFilterToQuery(shape.filters(), view, builder);
 
         // add type condition and check if the entity is not deleted
         builder.append("?")
@@ -253,7 +481,7 @@ public class SparqlQueryService implements QueryService {
                 .append(view.name)
                 .append(" fs:dateDeleted ?any }\n}");
 
-        var query = isCount
+        var query = shape.count()
                 ? transformToCountQuery(builder.toString(), view)
                 : builder.toString().formatted("?" + view.name);
 
@@ -264,43 +492,38 @@ public class SparqlQueryService implements QueryService {
         return QueryFactory.create(query);
     }
 
-    private void buildAndAddFilterToQuery(CountRequest request, View view, StringBuilder builder) {
-        var filters = new ArrayList<>(request.getFilters());
-        filters.stream().filter(f -> f.field.equals("location")).findFirst().ifPresent(locationFilter -> {
-            filters.remove(locationFilter);
-
-            if (locationFilter.values != null && !locationFilter.values.isEmpty()) {
-                locationFilter.values.forEach(v -> validateIRI(v.toString()));
-                var fileLink = view.join.stream()
-                        .filter(v -> v.view.equals(RESOURCES_VIEW))
-                        .findFirst()
-                        .orElse(null);
-                if (fileLink != null) {
-                    builder.append("FILTER EXISTS {\n")
-                            .append("?file fs:belongsTo* ?location .\n FILTER (?location IN (")
-                            .append(locationFilter.values.stream()
-                                    .map(v -> "<" + v + ">")
-                                    .collect(joining(", ")))
-                            .append("))\n ?file <")
-                            .append(fileLink.on)
-                            .append("> ?")
-                            .append(view.name)
-                            .append(" . \n")
-                            .append("}\n");
-                } else {
-                    builder.append("?")
-                            .append(view.name)
-                            .append(" fs:belongsTo* ?location .\n FILTER (?location IN (")
-                            .append(locationFilter.values.stream()
-                                    .map(v -> "<" + v + ">")
-                                    .collect(joining(", ")))
-                            .append("))\n");
-                }
+    private void buildAndAddFilterToQuery(List<FilterShape> filters, View view, StringBuilder builder) {
+        var locationIndex = indexOfLocationFilter(filters);
+        if (locationIndex >= 0 && filters.get(locationIndex).kind() == FilterKind.VALUES) {
+            var locations = valueVariables(parameter(locationIndex), filters.get(locationIndex).values()).stream()
+                    .map(Expr::toString)
+                    .collect(joining(", "));
+            var fileLink = view.join.stream()
+                    .filter(v -> v.view.equals(RESOURCES_VIEW))
+                    .findFirst()
+                    .orElse(null);
+            if (fileLink != null) {
+                builder.append("FILTER EXISTS {\n")
+                        .append("?file fs:belongsTo* ?location .\n FILTER (?location IN (")
+                        .append(locations)
+                        .append("))\n ?file <")
+                        .append(fileLink.on)
+                        .append("> ?")
+                        .append(view.name)
+                        .append(" . \n")
+                        .append("}\n");
+            } else {
+                builder.append("?")
+                        .append(view.name)
+                        .append(" fs:belongsTo* ?location .\n FILTER (?location IN (")
+                        .append(locations)
+                        .append("))\n");
             }
-        });
+        }
 
-        filters.stream()
-                .map(f -> f.field)
+        IntStream.range(0, filters.size())
+                .filter(i -> i != locationIndex)
+                .mapToObj(i -> filters.get(i).field())
                 .sorted(comparing(field -> field.contains("_") ? getColumn(field).priority : 0))
                 .map(field -> field.split("_")[0])
                 .distinct()
@@ -322,20 +545,23 @@ public class SparqlQueryService implements QueryService {
                                 .append(" .\n");
                     }
 
-                    request.getFilters().stream()
-                            .filter(f -> f.getField().startsWith(entity))
-                            .sorted(comparing(f -> f.field.contains("_") ? getColumn(f.field).priority : 0))
-                            .forEach(f -> {
+                    IntStream.range(0, filters.size())
+                            .filter(i -> filters.get(i).field().startsWith(entity))
+                            .boxed()
+                            .sorted(comparing(i -> filters.get(i).field().contains("_")
+                                    ? getColumn(filters.get(i).field()).priority
+                                    : 0))
+                            .forEach(i -> {
+                                var f = filters.get(i);
                                 String condition, property, field;
-                                if (f.getField().equals(entity)) {
-                                    field = f.field + "_id";
+                                if (f.field().equals(entity)) {
+                                    field = f.field() + "_id";
                                     property = RDFS.label.toString();
-                                    condition = toFilterString(f, ColumnType.Identifier, field);
                                 } else {
-                                    field = f.field;
-                                    property = getColumn(f.field).source;
-                                    condition = toFilterString(f, getColumn(f.field).type, f.field);
+                                    field = f.field();
+                                    property = getColumn(f.field()).source;
                                 }
+                                condition = toFilterString(f, parameter(i), field);
                                 if (condition != null) {
                                     builder.append("?")
                                             .append(entity)
@@ -355,6 +581,30 @@ public class SparqlQueryService implements QueryService {
                 });
     }
 
+    private static int indexOfLocationFilter(List<FilterShape> filters) {
+        return IntStream.range(0, filters.size())
+                .filter(i -> filters.get(i).field().equals(LOCATION_FIELD))
+                .findFirst()
+                .orElse(-1);
+    }
+
+    /**
+     * @return the prefix of the variables bound to the values of a filter
+     */
+    private static String parameter(int filterIndex) {
+        return "filter" + filterIndex;
+    }
+
+    private static String valueParameter(String parameter, int valueIndex) {
+        return parameter + "_value" + valueIndex;
+    }
+
+    private static List<Expr> valueVariables(String parameter, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(j -> (Expr) new ExprVar(valueParameter(parameter, j)))
+                .toList();
+    }
+
     /**
      * The way count is calculated depends on the view configuration. If the view has a maxDisplayCount set,
      * the count query will be limited to that number of results. Otherwise, the count query will return the total
@@ -374,33 +624,22 @@ public class SparqlQueryService implements QueryService {
         return query;
     }
 
-    private String toFilterString(ViewFilter filter, ColumnType type, String field) {
+    private static String toFilterString(FilterShape filter, String parameter, String field) {
         var variable = new ExprVar(field);
 
-        Expr expr;
-        if (filter.min != null && filter.max != null) {
-            expr = new E_LogicalAnd(
-                    new E_GreaterThanOrEqual(variable, toNodeValue(filter.min, type)),
-                    new E_LessThanOrEqual(variable, toNodeValue(filter.max, type)));
-        } else if (filter.min != null) {
-            expr = new E_GreaterThanOrEqual(variable, toNodeValue(filter.min, type));
-        } else if (filter.max != null) {
-            expr = new E_LessThanOrEqual(variable, toNodeValue(filter.max, type));
-        } else if (filter.values != null && !filter.values.isEmpty()) {
-            List<Expr> values =
-                    filter.values.stream().map(o -> toNodeValue(o, type)).collect(toList());
-            expr = new E_OneOf(variable, new ExprList(values));
-        } else if (filter.prefix != null && !filter.prefix.isBlank()) {
-            expr = new E_StrStartsWith(
-                    new E_StrLowerCase(variable),
-                    makeString(filter.prefix.trim().toLowerCase()));
-        } else if (filter.booleanValue != null) {
-            expr = new E_Equals(variable, makeBoolean(filter.booleanValue));
-        } else {
-            return null;
-        }
+        Expr expr = switch (filter.kind()) {
+            case RANGE -> new E_LogicalAnd(
+                    new E_GreaterThanOrEqual(variable, new ExprVar(parameter + "_min")),
+                    new E_LessThanOrEqual(variable, new ExprVar(parameter + "_max")));
+            case MIN -> new E_GreaterThanOrEqual(variable, new ExprVar(parameter + "_min"));
+            case MAX -> new E_LessThanOrEqual(variable, new ExprVar(parameter + "_max"));
+            case VALUES -> new E_OneOf(variable, new ExprList(valueVariables(parameter, filter.values())));
+            case PREFIX -> new E_StrStartsWith(new E_StrLowerCase(variable), new ExprVar(parameter + "_prefix"));
+            case BOOLEAN -> new E_Equals(variable, new ExprVar(parameter + "_boolean"));
+            case NONE -> null;
+        };
 
-        return new ElementFilter(expr).toString();
+        return expr != null ? new ElementFilter(expr).toString() : null;
     }
 
     private View.Column getColumn(String name) {
@@ -442,6 +681,10 @@ public class SparqlQueryService implements QueryService {
         };
     }
 
+    private static RDFNode toRDFNode(Object o, ColumnType type) {
+        return convertGraphNodeToRDFNode(toNodeValue(o, type).asNode());
+    }
+
     private static boolean convertBooleanValue(String value) {
         return Boolean.getBoolean(value);
     }
@@ -449,11 +692,12 @@ public class SparqlQueryService implements QueryService {
     public CountDto count(CountRequest request) {
         var query = getQuery(request, true);
 
-        log.debug("Querying the total number of matches: \n{}", query);
+        log.debug("Querying the total number of matches: \n{}\nFilter values: {}", query.query(), query.binding());
 
         try (var execution = QueryExecution.create()
                 .dataset(ds)
-                .query(query)
+                .query(query.query())
+                .substitution(query.binding())
                 .timeout(searchProperties.getCountRequestTimeout())
                 .build()) {
 
@@ -471,4 +715,40 @@ public class SparqlQueryService implements QueryService {
             return new CountDto(0, true);
         }
     }
+
+    /**
+     * Fails when more than the maximum number of bytes is written.
+     * The response has been committed by then, so the client receives an incomplete response.
+     */
+    private static class LimitedOutputStream extends FilterOutputStream {
+        private final long maxBytes;
+        private long written;
+
+        /**
+         * @param maxBytes the maximum number of bytes, 0 for no limit
+         */
+        LimitedOutputStream(OutputStream out, long maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkLimit(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkLimit(len);
+            out.write(b, off, len);
+        }
+
+        private void checkLimit(int length) throws IOException {
+            written += length;
+            if (maxBytes > 0 && written > maxBytes) {
+                throw new IOException("The query results exceed the maximum size of " + maxBytes + " bytes");
+            }
+        }
+    }
 }
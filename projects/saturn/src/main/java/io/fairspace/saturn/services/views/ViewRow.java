@@ -1,12 +1,11 @@
 package io.fairspace.saturn.services.views;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.Sets;
 
 import io.fairspace.saturn.controller.dto.ValueDto;
@@ -23,11 +22,14 @@ public class ViewRow {
         this.data = data;
     }
 
-    public static ViewRow viewSetOf(ResultSet resultSet, List<String> columnsNames, String viewName)
-            throws SQLException {
+    /**
+     * @param values a row of the materialized view with the set values of a view, as JSON.
+     */
+    public static ViewRow viewSetOf(JsonNode values, List<String> columnsNames, String viewName) {
         var data = new HashMap<String, Set<ValueDto>>();
         for (String columnName : columnsNames) {
-            String label = resultSet.getString(columnName);
+            var node = values.get(columnName.toLowerCase());
+            String label = node == null || node.isNull() ? null : node.asText();
             var key = viewName + "_" + columnName;
             var value = Sets.newHashSet(new ValueDto(label, label));
             data.put(key, value);
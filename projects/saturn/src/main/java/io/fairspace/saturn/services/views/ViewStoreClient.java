@@ -8,9 +8,10 @@ import java.sql.Types;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +32,9 @@ import static io.fairspace.saturn.services.views.Table.valueColumn;
 
 @Slf4j
 public class ViewStoreClient implements AutoCloseable {
+    private static final String INSERT_LABEL =
+            "insert into label (id, type, label) values (?, ?, ?) on conflict (id) do nothing";
+    private static final int LABEL_BATCH_SIZE = 1000;
 
     public static class ViewStoreConfiguration {
         final LinkedCaseInsensitiveMap<ViewsProperties.View> viewConfig;
@@ -72,149 +76,199 @@ public class ViewStoreClient implements AutoCloseable {
 
     private final MaterializedViewService materializedViewService;
 
+    private final LabelCache labelCache;
+
+    // Labels added in the current transaction, as (type, label) by id, to be invalidated in the label cache on commit
+    private final Map<String, Pair<String, String>> labelsAdded = new HashMap<>();
+
+    // Definitions of the secondary indexes dropped for a bulk load, by view, to be recreated afterwards
+    private final Map<String, List<String>> droppedIndexes = new HashMap<>();
+
+    // Ids of the labels committed by this client, to avoid inserting them repeatedly during bulk loads
+    private final Set<String> addedLabels = new HashSet<>();
+
+    // Ids of the entities updated in the current transaction by view name
+    private final LinkedCaseInsensitiveMap<Set<String>> updatedIds = new LinkedCaseInsensitiveMap<>();
+
+    // Statements with the batches of parameters to be executed on commit, by SQL
+    private final Map<String, PreparedStatement> pendingBatches = new LinkedHashMap<>();
+
+    // Set when view tables are truncated, the materialized views then need a full refresh
+    private boolean fullRefreshRequired;
+
     public ViewStoreClient(
             Connection connection,
             ViewStoreConfiguration configuration,
-            MaterializedViewService materializedViewService) {
+            MaterializedViewService materializedViewService,
+            LabelCache labelCache) {
         this.connection = connection;
         this.configuration = configuration;
         this.materializedViewService = materializedViewService;
+        this.labelCache = labelCache;
     }
 
     @Override
     public void close() throws SQLException {
-        connection.close();
+        try {
+            discardPendingBatches();
+        } finally {
+            connection.close();
+        }
     }
 
     public void commit() throws SQLException {
-        this.connection.commit();
-        materializedViewService.createOrUpdateAllMaterializedViews();
+        flush();
+        var refresher = materializedViewService.getRefresher();
+        if (fullRefreshRequired) {
+            this.connection.commit();
+            materializedViewService.createOrUpdateAllMaterializedViews();
+        } else if (refresher.isPresent()) {
+            this.connection.commit();
+            refresher.get().markDirty(materializedViewService.getAffectedMaterializedViews(updatedIds.keySet()));
+        } else {
+            if (!updatedIds.isEmpty()) {
+                materializedViewService.updateMaterializedViews(connection, updatedIds);
+            }
+            this.connection.commit();
+        }
+        afterCommit();
     }
 
-    public void deleteRow(String view, String uri) throws SQLException {
-        var viewTable = configuration.viewTables.get(view);
-        try (var query = connection.prepareStatement("delete from " + viewTable.name + " where id = ?")) {
-            query.setString(1, uri);
-            var deletedCount = query.executeUpdate();
-            log.debug("Deleted {} rows from view {}", deletedCount, view);
-        }
+    /**
+     * Commits the changes to the view tables without updating the materialized views.
+     * Used for bulk loads, after which all materialized views are refreshed at once.
+     */
+    public void commitTables() throws SQLException {
+        flush();
+        connection.commit();
+        afterCommit();
     }
 
-    Set<String> retrieveValues(String joinTable, String view, String id, ColumnDefinition column) throws SQLException {
-        try (var query = connection.prepareStatement(
-                "select " + column.name + " from " + joinTable + " where " + idColumn(view).name + " = ?")) {
-            query.setString(1, id);
-            var result = query.executeQuery();
-            var links = new HashSet<String>();
-            while (result.next()) {
-                links.add(result.getString(1));
-            }
-            return links;
+    private void afterCommit() {
+        if (!labelsAdded.isEmpty()) {
+            labelCache.invalidate(labelsAdded.keySet(), labelsAdded.values());
+            addedLabels.addAll(labelsAdded.keySet());
         }
+        updatedIds.clear();
+        fullRefreshRequired = false;
+        labelsAdded.clear();
     }
 
-    int deleteValues(
-            Table table, ColumnDefinition idColumn, String id, ColumnDefinition valueColumn, Collection<String> values)
-            throws SQLException {
-        var deleteSql =
-                "delete from " + table.name + " where " + idColumn.name + " = ? " + " and " + valueColumn.name + " = ?";
-        try (var delete = connection.prepareStatement(deleteSql)) {
-            for (String value : values) {
-                delete.setString(1, id);
-                delete.setString(2, value);
-                delete.addBatch();
-            }
-            return Arrays.stream(delete.executeBatch()).sum();
-        }
+    private void markUpdated(String view, String id) {
+        updatedIds.computeIfAbsent(view, v -> new HashSet<>()).add(id);
+    }
+
+    public void deleteRow(String view, String uri) throws SQLException {
+        var viewTable = configuration.viewTables.get(view);
+        markUpdated(view, uri);
+        var delete = batch("delete from " + viewTable.name + " where id = ?");
+        delete.setString(1, uri);
+        delete.addBatch();
+        log.debug("Deleting row {} from view {}", uri, view);
     }
 
-    int insertValues(
-            Table table,
-            ColumnDefinition idColumn,
-            ColumnDefinition valueColumn,
-            Collection<Pair<String, String>> values)
+    /**
+     * Replaces the values of an entity in a property or join table.
+     * Values that are not in the new set are deleted, the others are inserted unless they exist already,
+     * so that the existing values do not have to be read first.
+     */
+    private void replaceValues(
+            Table table, ColumnDefinition idColumn, String id, ColumnDefinition valueColumn, Set<String> values)
             throws SQLException {
-        var insertSql =
-                "insert into " + table.name + " ( " + idColumn.name + ", " + valueColumn.name + " ) values ( ?, ? )";
-        try (var insert = connection.prepareStatement(insertSql)) {
-            for (var value : values) {
-                insert.setString(1, value.getKey());
-                insert.setString(2, value.getValue());
-                insert.addBatch();
-            }
-            return Arrays.stream(insert.executeBatch()).sum();
+        var delete = batch("delete from %s where %s = ? and not ( %s = any ( ? ) )"
+                .formatted(table.name, idColumn.name, valueColumn.name));
+        delete.setString(1, id);
+        delete.setArray(2, connection.createArrayOf("text", values.toArray()));
+        delete.addBatch();
+        if (values.isEmpty()) {
+            return;
+        }
+        var insert = batch("insert into %s ( %s, %s ) values ( ?, ? ) on conflict do nothing"
+                .formatted(table.name, idColumn.name, valueColumn.name));
+        for (var value : values) {
+            insert.setString(1, id);
+            insert.setString(2, value);
+            insert.addBatch();
         }
     }
 
     public void updateValues(String view, String id, String property, Set<String> values) throws SQLException {
+        markUpdated(view, id);
         var propertyTable = configuration.propertyTables.get(view).get(property);
-        var valueColumn = valueColumn(property, ViewsProperties.ColumnType.Text);
-        var existing = retrieveValues(propertyTable.name, view, id, valueColumn);
-
-        var deleteCount = deleteValues(
-                propertyTable,
-                idColumn(view),
-                id,
-                valueColumn,
-                existing.stream().filter(value -> !values.contains(value)).collect(Collectors.toList()));
-
-        var insertCount = insertValues(
-                propertyTable,
-                idColumn(view),
-                valueColumn,
-                values.stream()
-                        .filter(value -> !existing.contains(value))
-                        .map(value -> Pair.of(id, value))
-                        .collect(Collectors.toList()));
-
-        log.debug("Deleted {}, inserted {} values for {}_{}", deleteCount, insertCount, view, property);
+        replaceValues(
+                propertyTable, idColumn(view), id, valueColumn(property, ViewsProperties.ColumnType.Text), values);
+        log.debug("Replacing {} values for {}_{}", values.size(), view, property);
     }
 
     public void updateLinks(String view, String id, String joinView, Set<String> links) throws SQLException {
+        markUpdated(view, id);
         var joinTable = configuration.joinTables.get(view).get(joinView);
-        var existing = retrieveValues(joinTable.name, view, id, idColumn(joinView));
-
-        var deleteCount = deleteValues(
-                joinTable,
-                idColumn(view),
-                id,
-                idColumn(joinView),
-                existing.stream().filter(link -> !links.contains(link)).collect(Collectors.toList()));
-
-        var insertCount = insertValues(
-                joinTable,
-                idColumn(view),
-                idColumn(joinView),
-                links.stream()
-                        .filter(link -> !existing.contains(link))
-                        .map(link -> Pair.of(id, link))
-                        .collect(Collectors.toList()));
-
-        log.debug("Deleted {}, inserted {} links for {} - {}", deleteCount, insertCount, view, joinView);
+        replaceValues(joinTable, idColumn(view), id, idColumn(joinView), links);
+        log.debug("Replacing {} links for {} - {}", links.size(), view, joinView);
     }
 
-    boolean rowExists(String table, String id) throws SQLException {
-        try (var query = connection.prepareStatement("select exists ( select 1 from " + table + " where id = ? )")) {
-            query.setString(1, id);
-            var result = query.executeQuery();
-            result.next();
-            return result.getBoolean(1);
+    public void addLabel(String id, String type, String label) throws SQLException {
+        // Labels are never changed, so a label known to the cache does not need to be inserted
+        if (addedLabels.contains(id) || labelsAdded.containsKey(id) || labelCache.hasLabel(id)) {
+            return;
         }
+        // Labels may be added concurrently by other clients
+        var insert = batch(INSERT_LABEL);
+        insert.setString(1, id);
+        insert.setString(2, type);
+        insert.setString(3, label);
+        insert.addBatch();
+        // The number of inserted rows is not known for rewritten batches, assume the label is new
+        labelsAdded.put(id, Pair.of(type, label));
+        log.debug("Adding label '{}' for {} (type {})", label, id, type);
     }
 
-    public void addLabel(String id, String type, String label) throws SQLException {
-        if (!rowExists("label", id)) {
-            try (var insert = connection.prepareStatement("insert into label (id, type, label) values (?, ?, ?)")) {
-                insert.setString(1, id);
-                insert.setString(2, type);
-                insert.setString(3, label);
-                insert.executeUpdate();
-                log.debug("Inserted label '{}' for {} (type {})", label, id, type);
+    /**
+     * Writes labels right away, in short transactions of their own, in the order of their ids.
+     * Used after bulk loads, which may run in parallel: the rows of the label table, which is shared by all views,
+     * are then only locked briefly, and always in the same order, so that the loads cannot deadlock.
+     * To be called when there are no uncommitted changes.
+     *
+     * @param labels (type, label) by id
+     */
+    public void writeLabels(Map<String, Pair<String, String>> labels) throws SQLException {
+        var ids = labels.keySet().stream()
+                .filter(id -> !addedLabels.contains(id) && !labelCache.hasLabel(id))
+                .sorted()
+                .toList();
+        for (var from = 0; from < ids.size(); from += LABEL_BATCH_SIZE) {
+            var batchIds = ids.subList(from, Math.min(from + LABEL_BATCH_SIZE, ids.size()));
+            try (var insert = connection.prepareStatement(INSERT_LABEL)) {
+                for (var id : batchIds) {
+                    insert.setString(1, id);
+                    insert.setString(2, labels.get(id).getKey());
+                    insert.setString(3, labels.get(id).getValue());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
             }
+            connection.commit();
+            addedLabels.addAll(batchIds);
+            labelCache.invalidate(batchIds, batchIds.stream().map(labels::get).toList());
         }
+        log.debug("Wrote {} labels", ids.size());
     }
 
-    public int updateRows(String view, List<Map<String, Object>> rows, boolean bulkInsert) throws SQLException {
+    /**
+     * Starts copying rows into a table, see {@link TableCopier}.
+     */
+    public TableCopier copy(Table table, List<String> columns) throws SQLException {
+        flush();
+        return new TableCopier(connection, table.name, columns);
+    }
+
+    /**
+     * Inserts rows into a view table, or updates them if they exist already.
+     *
+     * @param bulkInsert if true, the rows are known not to exist, e.g., after the table has been truncated,
+     *                   and are inserted without checking for conflicts, which also works without primary key.
+     */
+    public void updateRows(String view, List<Map<String, Object>> rows, boolean bulkInsert) throws SQLException {
         var viewTable = configuration.viewTables.get(view);
         var config = configuration.viewConfig.get(view);
         // Find the columns in the rows of type different from Set
@@ -225,67 +279,104 @@ public class ViewStoreClient implements AutoCloseable {
                         .noneMatch(column -> column.name.equalsIgnoreCase(columnName) && column.type.isSet()))
                 .toList();
         if (columnNames.isEmpty()) {
-            return 0;
+            return;
         }
-        var updateSql = "update " + viewTable.name + " set "
-                + columnNames.stream().map(column -> column + " = ?").collect(Collectors.joining(", "))
-                + " where id = ?";
-        var insertSql = "insert into " + viewTable.name + " ( " + String.join(", ", columnNames)
+        var sql = "insert into " + viewTable.name + " ( " + String.join(", ", columnNames)
                 + " ) values ( " + columnNames.stream().map(column -> "?").collect(Collectors.joining(", "))
                 + " )";
-        try (var insert = connection.prepareStatement(insertSql);
-                var update = connection.prepareStatement(updateSql)) {
-            for (var row : rows) {
-                var values = columnNames.stream()
-                        .map(columnName -> row.getOrDefault(columnName, null))
-                        .toList();
-                var id = (String) row.get("id");
-                var exists = (!bulkInsert) && rowExists(viewTable.name, id);
-                if (exists) {
-                    for (var i = 0; i < values.size(); i++) {
-                        var value = values.get(i);
-                        setQueryValue(update, i + 1, value);
-                    }
-                    update.setString(values.size() + 1, id);
-                    update.addBatch();
-                } else {
-                    for (var i = 0; i < values.size(); i++) {
-                        var value = values.get(i);
-                        setQueryValue(insert, i + 1, value);
-                    }
-                    insert.addBatch();
-                }
+        if (!bulkInsert) {
+            var updatedColumns = columnNames.stream()
+                    .filter(column -> !column.equalsIgnoreCase("id"))
+                    .map(column -> column + " = excluded." + column)
+                    .toList();
+            sql += updatedColumns.isEmpty()
+                    ? " on conflict ( id ) do nothing"
+                    : " on conflict ( id ) do update set " + String.join(", ", updatedColumns);
+        }
+        var upsert = batch(sql);
+        for (var row : rows) {
+            var id = (String) row.get("id");
+            if (!bulkInsert) {
+                markUpdated(view, id);
             }
-            var insertCount = Arrays.stream(insert.executeBatch()).sum();
-            if (insertCount > 0) {
-                log.debug("Inserted {} rows into view {}", insertCount, view);
+            for (var i = 0; i < columnNames.size(); i++) {
+                setQueryValue(upsert, i + 1, row.getOrDefault(columnNames.get(i), null));
             }
-            var updateCount = Arrays.stream(update.executeBatch()).sum();
-            if (updateCount > 0) {
-                log.debug("Updated {} rows of view {}", updateCount, view);
+            upsert.addBatch();
+        }
+        log.debug("Writing {} rows of view {}", rows.size(), view);
+    }
+
+    /**
+     * @return a statement for the SQL, to which a set of parameters is to be added as a batch.
+     * The statement is executed with all its batches when the pending writes are flushed.
+     */
+    private PreparedStatement batch(String sql) throws SQLException {
+        var statement = pendingBatches.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            pendingBatches.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Executes the pending writes, one batch per statement, in the order in which the statements were first used.
+     * As every entity is written at most once per transaction, and the values of an entity are deleted
+     * before new ones are inserted, this order is equivalent to the order of the individual writes.
+     */
+    void flush() throws SQLException {
+        try {
+            for (var entry : pendingBatches.entrySet()) {
+                log.debug("Executing batch: {}", entry.getKey());
+                entry.getValue().executeBatch();
             }
-            return insertCount + updateCount;
+        } finally {
+            discardPendingBatches();
         }
     }
 
-    public void truncateViewTables(String view) throws SQLException {
+    private void discardPendingBatches() throws SQLException {
+        for (var statement : pendingBatches.values()) {
+            statement.close();
+        }
+        pendingBatches.clear();
+    }
+
+    private List<Table> getJoinTables(String view) {
+        var joins = configuration.viewConfig.get(view).join;
+        if (joins == null) {
+            return List.of();
+        }
+        return joins.stream()
+                .filter(joinView -> !joinView.reverse)
+                .map(joinView -> configuration.joinTables.get(view).get(joinView.view))
+                .toList();
+    }
+
+    /**
+     * @return the view table, property tables and join tables of a view.
+     * Join tables of reverse joins belong to the joined view.
+     */
+    private List<Table> getViewTables(String view) {
         var tables = new ArrayList<Table>();
         tables.add(configuration.viewTables.get(view));
         tables.addAll(configuration
                 .propertyTables
                 .getOrDefault(view, new LinkedCaseInsensitiveMap<>())
                 .values());
-        var joins = configuration.viewConfig.get(view).join;
-        if (joins != null) {
-            joins.stream()
-                    .filter(joinView -> !joinView.reverse)
-                    .forEach(joinView ->
-                            tables.add(configuration.joinTables.get(view).get(joinView.view)));
-        }
+        tables.addAll(getJoinTables(view));
+        return tables;
+    }
+
+    public void truncateViewTables(String view) throws SQLException {
+        var tables = getViewTables(view);
         log.debug(
                 "Truncating tables for view {}: {}",
                 view,
                 tables.stream().map(Table::getName).collect(Collectors.toList()));
+        flush();
+        fullRefreshRequired = true;
         for (var table : tables) {
             var query = "truncate table " + table.name;
             try (var statement = connection.prepareStatement(query)) {
@@ -293,4 +384,81 @@ public class ViewStoreClient implements AutoCloseable {
             }
         }
     }
+
+    /**
+     * Drops the primary keys and all other indexes of the tables of a view, e.g. the indexes of the join tables
+     * and the search indexes, to speed up bulk loading.
+     * They are to be restored with {@link #createIndexes(String)} after the load.
+     */
+    public void dropIndexes(String view) throws SQLException {
+        var definitions = new ArrayList<String>();
+        for (var table : getViewTables(view)) {
+            execute("alter table %s drop constraint if exists %s_pkey".formatted(table.name, table.name));
+            for (var index : getSecondaryIndexes(table.name).entrySet()) {
+                definitions.add(index.getValue());
+                execute("drop index if exists %s".formatted(index.getKey()));
+            }
+        }
+        droppedIndexes.put(view, definitions);
+    }
+
+    /**
+     * Restores the primary keys and the indexes dropped by {@link #dropIndexes(String)}.
+     * The indexes of the join tables are created if they do not exist yet.
+     */
+    public void createIndexes(String view) throws SQLException {
+        for (var table : getViewTables(view)) {
+            execute("alter table %s add primary key ( %s )"
+                    .formatted(table.name, String.join(", ", getKeyColumns(table))));
+        }
+        var definitions = droppedIndexes.remove(view);
+        if (definitions != null) {
+            for (var definition : definitions) {
+                execute(definition);
+            }
+        }
+        for (var table : getJoinTables(view)) {
+            for (var column : getKeyColumns(table)) {
+                execute("create index if not exists %s_%s_idx on %s (%s)"
+                        .formatted(table.name, column, table.name, column));
+            }
+        }
+    }
+
+    /**
+     * @return the definitions of the indexes of a table by name, except for the indexes of constraints
+     */
+    private Map<String, String> getSecondaryIndexes(String table) throws SQLException {
+        flush();
+        var indexes = new LinkedHashMap<String, String>();
+        try (var statement = connection.prepareStatement(
+                """
+                select i.indexname, i.indexdef from pg_indexes i
+                where i.schemaname = current_schema() and i.tablename = ?
+                and not exists (select 1 from pg_constraint c where c.conname = i.indexname)
+                order by i.indexname""")) {
+            statement.setString(1, table.toLowerCase());
+            try (var result = statement.executeQuery()) {
+                while (result.next()) {
+                    indexes.put(result.getString(1), result.getString(2));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static List<String> getKeyColumns(Table table) {
+        return table.columns.stream()
+                .filter(column -> column.type == ViewsProperties.ColumnType.Identifier)
+                .map(column -> column.name)
+                .toList();
+    }
+
+    private void execute(String command) throws SQLException {
+        flush();
+        log.debug(command);
+        try (var statement = connection.createStatement()) {
+            statement.execute(command);
+        }
+    }
 }
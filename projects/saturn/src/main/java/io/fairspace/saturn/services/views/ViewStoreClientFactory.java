@@ -15,6 +15,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
@@ -36,12 +37,40 @@ public class ViewStoreClientFactory {
 
     public static final Set<String> protectedResources = Set.of(FS.COLLECTION_URI, FS.DIRECTORY_URI, FS.FILE_URI);
 
+    /**
+     * Generated column of the resource table holding the words of the label and description.
+     */
+    public static final String SEARCH_VECTOR_COLUMN = "search_vector";
+
+    /**
+     * Text search configuration used for the search vector and queries.
+     * No stemming or stop words are applied, as labels are mostly file names and identifiers.
+     */
+    public static final String TEXT_SEARCH_CONFIGURATION = "simple";
+
+    @Getter
     private final MaterializedViewService materializedViewService;
 
     private final ViewStoreClient.ViewStoreConfiguration configuration;
 
+    @Getter
+    private final LabelCache labelCache;
+
     public final DataSource dataSource;
 
+    /**
+     * Whether the resource table has a search vector column with a GIN index.
+     */
+    @Getter
+    private boolean fullTextSearchEnabled;
+
+    /**
+     * Whether pg_trgm is available and the label and description columns have trigram indexes,
+     * so that substring matches (ilike '%...%') do not scan the whole table.
+     */
+    @Getter
+    private boolean trigramSearchEnabled;
+
     public ViewStoreClientFactory(
             ViewsProperties viewsProperties,
             ViewDatabaseProperties viewDatabaseProperties,
@@ -54,6 +83,7 @@ public class ViewStoreClientFactory {
         this.dataSource = dataSource;
         this.materializedViewService = materializedViewService;
         this.configuration = configuration;
+        this.labelCache = new LabelCache(viewDatabaseProperties.getLabelCacheSize());
 
         try (var connection = dataSource.getConnection()) {
             log.debug("Database connection: {}", connection.getMetaData().getDatabaseProductName());
@@ -67,15 +97,17 @@ public class ViewStoreClientFactory {
         for (View view : viewsProperties.views) {
             createOrUpdateView(view);
         }
+        createSearchIndexes();
         if (viewDatabaseProperties.isMvRefreshOnStartRequired()) {
             materializedViewService.createOrUpdateAllMaterializedViews();
         } else {
             log.warn("Skipping materialized view refresh on start");
+            materializedViewService.createMissingMaterializedViews();
         }
     }
 
     public ViewStoreClient build() throws SQLException {
-        return new ViewStoreClient(getConnection(), configuration, materializedViewService);
+        return new ViewStoreClient(getConnection(), configuration, materializedViewService, labelCache);
     }
 
     public Connection getConnection() throws SQLException {
@@ -206,6 +238,76 @@ public class ViewStoreClientFactory {
         connection.setAutoCommit(false);
     }
 
+    /**
+     * Creates the indexes used by the file search and the prefix filters.
+     * If the pg_trgm extension is not available, or cannot be created by the database user,
+     * substring matches fall back to sequential scans.
+     */
+    void createSearchIndexes() throws SQLException {
+        try (var connection = getConnection()) {
+            connection.setAutoCommit(true);
+            trigramSearchEnabled = createExtension(connection, "pg_trgm");
+            if (trigramSearchEnabled) {
+                for (var table : configuration.viewTables.values()) {
+                    createTrigramIndex(connection, table.name, "label");
+                }
+            }
+            var resource = configuration.viewTables.get("Resource");
+            if (resource != null && resource.getColumn("description") != null) {
+                if (trigramSearchEnabled) {
+                    createTrigramIndex(connection, resource.name, "description");
+                }
+                fullTextSearchEnabled = createSearchVector(connection, resource.name);
+            }
+            connection.setAutoCommit(false);
+        }
+        log.info(
+                "Full text search {}, trigram search {}",
+                fullTextSearchEnabled ? "enabled" : "disabled",
+                trigramSearchEnabled ? "enabled" : "disabled");
+    }
+
+    private boolean createExtension(Connection connection, String extension) {
+        try (var statement = connection.createStatement()) {
+            statement.execute("create extension if not exists " + extension);
+            return true;
+        } catch (SQLException e) {
+            log.warn("Extension {} is not available: {}", extension, e.getMessage());
+            return false;
+        }
+    }
+
+    private void createTrigramIndex(Connection connection, String table, String column) throws SQLException {
+        var command = String.format(
+                "create index if not exists %s_%s_trgm_idx on %s using gin ( %s gin_trgm_ops )",
+                table, column, table, column);
+        log.debug(command);
+        try (var statement = connection.createStatement()) {
+            statement.execute(command);
+        }
+    }
+
+    private boolean createSearchVector(Connection connection, String table) {
+        var column = String.format(
+                "alter table %s add column if not exists %s tsvector generated always as "
+                        + "( to_tsvector('%s', coalesce(label, '') || ' ' || coalesce(description, '')) ) stored",
+                table, SEARCH_VECTOR_COLUMN, TEXT_SEARCH_CONFIGURATION);
+        var index = String.format(
+                "create index if not exists %s_%s_idx on %s using gin ( %s )",
+                table, SEARCH_VECTOR_COLUMN, table, SEARCH_VECTOR_COLUMN);
+        try (var statement = connection.createStatement()) {
+            log.debug(column);
+            statement.execute(column);
+            log.debug(index);
+            statement.execute(index);
+            return true;
+        } catch (SQLException e) {
+            // Generated columns require Postgres 12
+            log.warn("Full text search is not available: {}", e.getMessage());
+            return false;
+        }
+    }
+
     void validateViewConfig(ViewsProperties.View view) {
         if (view.columns.stream().anyMatch(column -> "id".equalsIgnoreCase(column.name))) {
             throw new IllegalArgumentException("Forbidden to override the built-in column 'id' of view " + view.name);
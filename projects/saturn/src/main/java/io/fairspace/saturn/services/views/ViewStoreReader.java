@@ -1,6 +1,5 @@
 package io.fairspace.saturn.services.views;
 
-import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -8,11 +7,13 @@ import java.sql.SQLException;
 import java.sql.SQLTimeoutException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -21,6 +22,9 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Sets;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -38,6 +42,8 @@ import io.fairspace.saturn.vocabulary.FS;
 
 import static io.fairspace.saturn.config.properties.ViewsProperties.ColumnType.Date;
 import static io.fairspace.saturn.services.views.Table.idColumn;
+import static io.fairspace.saturn.services.views.ViewStoreClientFactory.SEARCH_VECTOR_COLUMN;
+import static io.fairspace.saturn.services.views.ViewStoreClientFactory.TEXT_SEARCH_CONFIGURATION;
 
 /**
  * Executes SQL queries via JDBC on the view database
@@ -50,6 +56,11 @@ import static io.fairspace.saturn.services.views.Table.idColumn;
 @Slf4j
 @Component
 public class ViewStoreReader {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    // Columns of a page query with the aggregated set values and joined rows, the latter suffixed with their index
+    private static final String SET_VALUES_COLUMN = "mv_set_values";
+    private static final String JOIN_ROWS_COLUMN = "mv_join_rows_";
+
     final SearchProperties searchProperties;
     final ViewsProperties viewsProperties;
     final ViewStoreClient.ViewStoreConfiguration configuration;
@@ -67,33 +78,63 @@ public class ViewStoreReader {
     }
 
     List<Object> getLabelsByIds(List<String> ids) throws SQLException {
-        String query = "select label from label where id = ANY(?::text[])";
-        try (var connection = viewStoreClientFactory.getConnection();
-                var preparedStatement = connection.prepareStatement(query)) {
-            var array = preparedStatement.getConnection().createArrayOf("text", ids.toArray());
-            preparedStatement.setArray(1, array);
-            var result = preparedStatement.executeQuery();
-            var labels = new ArrayList<>();
-            while (result.next()) {
-                labels.add(result.getObject("label"));
-            }
-            return labels;
+        try (var connection = viewStoreClientFactory.getConnection()) {
+            return new ArrayList<>(viewStoreClientFactory
+                    .getLabelCache()
+                    .getLabels(connection, ids)
+                    .values());
         }
     }
 
     String iriForLabel(String type, String label) throws SQLException {
-        try (var connection = viewStoreClientFactory.getConnection();
-                var query = connection.prepareStatement("select id from label where type = ? and label = ?")) {
-            query.setString(1, type);
-            query.setString(2, label);
-            var result = query.executeQuery();
-            if (result.next()) {
-                return result.getString("id");
+        try (var connection = viewStoreClientFactory.getConnection()) {
+            return viewStoreClientFactory
+                    .getLabelCache()
+                    .getIds(connection, type, List.of(label))
+                    .get(label);
+        }
+    }
+
+    /**
+     * Resolves the IRIs of the Term column values of a page of rows,
+     * with one query per term type for the labels that are not cached.
+     *
+     * @return IRIs by label, by term type.
+     */
+    Map<String, Map<String, String>> irisForTermLabels(
+            Connection connection, View viewConfig, Collection<Map<String, Set<ValueDto>>> rows) throws SQLException {
+        var labelsByType = new HashMap<String, Set<String>>();
+        for (var viewColumn : viewConfig.columns) {
+            if (viewColumn.type != ColumnType.Term) {
+                continue;
+            }
+            var columnName = viewConfig.name + "_" + viewColumn.name;
+            for (var row : rows) {
+                var values = row.get(columnName);
+                if (values == null) {
+                    continue;
+                }
+                values.stream()
+                        .map(ValueDto::label)
+                        .filter(Objects::nonNull)
+                        .forEach(label -> labelsByType
+                                .computeIfAbsent(viewColumn.rdfType, type -> new HashSet<>())
+                                .add(label));
             }
         }
-        return null;
+        var irisByType = new HashMap<String, Map<String, String>>();
+        for (var entry : labelsByType.entrySet()) {
+            irisByType.put(
+                    entry.getKey(),
+                    viewStoreClientFactory.getLabelCache().getIds(connection, entry.getKey(), entry.getValue()));
+        }
+        return irisByType;
     }
 
+    /**
+     * Transforms a result row of a view table. The values of Term columns are set to their labels,
+     * see {@link #resolveTermValues} for replacing them with the IRIs of the terms.
+     */
     Map<String, Set<ValueDto>> transformRow(View viewConfig, ResultSet result) throws SQLException {
         Map<String, Set<ValueDto>> row = new HashMap<>();
         row.put(
@@ -123,18 +164,36 @@ public class ViewStoreReader {
                 }
             } else {
                 var value = result.getString(column.name);
-                if (viewColumn.type == ColumnType.Term) {
-                    row.put(
-                            columnName,
-                            Collections.singleton(new ValueDto(value, iriForLabel(viewColumn.rdfType, value))));
-                } else {
-                    row.put(columnName, Collections.singleton(new ValueDto(value, value)));
-                }
+                row.put(columnName, Collections.singleton(new ValueDto(value, value)));
             }
         }
         return row;
     }
 
+    /**
+     * Replaces the values of the Term columns of a transformed row with the IRIs of the terms.
+     */
+    void resolveTermValues(View viewConfig, Map<String, Set<ValueDto>> row, Map<String, Map<String, String>> iris) {
+        for (var viewColumn : viewConfig.columns) {
+            if (viewColumn.type != ColumnType.Term) {
+                continue;
+            }
+            var columnName = viewConfig.name + "_" + viewColumn.name;
+            var values = row.get(columnName);
+            if (values == null) {
+                continue;
+            }
+            var irisByLabel = iris.getOrDefault(viewColumn.rdfType, Map.of());
+            row.put(
+                    columnName,
+                    values.stream()
+                            .map(value -> new ValueDto(
+                                    value.label(),
+                                    value.label() == null ? null : irisByLabel.get(value.label())))
+                            .collect(Collectors.toSet()));
+        }
+    }
+
     View.Column checkField(String field) {
         if (field.equalsIgnoreCase("Resource_collection")) {
             return null;
@@ -210,6 +269,11 @@ public class ViewStoreReader {
                 values.add(filter.getValues().get(0));
                 return String.format("%s = ?", fieldName);
             }
+            if (filter.getValues().stream().allMatch(value -> value instanceof String)) {
+                // A single array parameter, e.g. for the thousands of collections a user may have access to
+                values.add(filter.getValues().toArray(String[]::new));
+                return String.format("%s = any ( ? )", fieldName);
+            }
             return String.format(
                     "%s in ( %s )",
                     fieldName,
@@ -242,6 +306,7 @@ public class ViewStoreReader {
             if (prefixFieldName.endsWith(".id")) {
                 prefixFieldName = prefixFieldName.replaceAll("\\.id$", ".label");
             }
+            // Served by the trigram index on the label column, if available
             values.add(escapeLikeString("%" + filter.getPrefix().trim().toLowerCase()) + "%");
             constraints.add(prefixFieldName + " ilike ? escape '\\'");
         }
@@ -299,13 +364,40 @@ public class ViewStoreReader {
 
     PreparedStatement query(Connection connection, String view, List<ViewFilter> filters, String scope, boolean isCount)
             throws SQLException {
+        return query(connection, view, filters, null, scope, isCount);
+    }
+
+    /**
+     * @param afterId if not null, only rows with an id greater than this id are selected (keyset pagination).
+     */
+    PreparedStatement query(
+            Connection connection,
+            String view,
+            List<ViewFilter> filters,
+            String afterId,
+            String scope,
+            boolean isCount)
+            throws SQLException {
+        var values = new ArrayList<>();
+        var query = selectQuery(view, filters, afterId, scope, values);
+        query = isCount ? transformToCountQuery(view, query) : query.formatted("*");
+        return prepare(connection, query, values);
+    }
+
+    /**
+     * Builds a query on a view table, with a placeholder for the projection.
+     * The view table is aliased as v.
+     *
+     * @param values receives the values of the parameters of the query.
+     */
+    private String selectQuery(String view, List<ViewFilter> filters, String afterId, String scope, List<Object> values)
+            throws SQLException {
         if (filters == null) {
             filters = Collections.emptyList();
         }
         prepareFilters(filters);
         var filtersByView = filters.stream()
                 .collect(Collectors.groupingBy(filter -> filter.getField().split("_")[0]));
-        var values = new ArrayList<>();
         var constraints = sqlFilter("v", configuration.viewConfig.get(view), filtersByView.get(view), values);
         var subqueries = filtersByView.entrySet().stream()
                 .filter(entry -> !entry.getKey().equals(view))
@@ -331,20 +423,28 @@ public class ViewStoreReader {
                     return resultCondition;
                 })
                 .toList();
-        constraints = Stream.concat(Stream.of(constraints), subqueries.stream())
+        if (afterId != null) {
+            values.add(afterId);
+        }
+        constraints = Stream.concat(
+                        Stream.of(constraints),
+                        Stream.concat(subqueries.stream(), Stream.ofNullable(afterId == null ? null : "v.id > ?")))
                 .filter(constraint -> constraint != null && !constraint.isBlank())
                 .collect(Collectors.joining(" and "));
 
         var viewTable = configuration.viewTables.get(view);
-        String query = "select %s from "
+        return "select %s from "
                 + viewTable.name + " v " + (constraints.isBlank() ? "" : " where " + constraints)
                 + (scope == null ? "" : (" " + scope));
+    }
 
-        query = isCount ? transformToCountQuery(view, query) : query.formatted("*");
+    private PreparedStatement prepare(Connection connection, String query, List<Object> values) throws SQLException {
         var preparedStatement = connection.prepareStatement(query);
         for (var i = 0; i < values.size(); i++) {
             var value = values.get(i);
-            if (value instanceof Number) {
+            if (value instanceof String[] array) {
+                preparedStatement.setArray(i + 1, connection.createArrayOf("text", array));
+            } else if (value instanceof Number) {
                 preparedStatement.setFloat(i + 1, ((Number) value).floatValue());
             } else if (value instanceof Instant) {
                 preparedStatement.setTimestamp(i + 1, Timestamp.from((Instant) value));
@@ -377,161 +477,122 @@ public class ViewStoreReader {
         return query;
     }
 
-    Map<String, ViewRow> retrieveViewTableRows(String view, List<ViewFilter> filters, int offset, int limit)
-            throws SQLException {
-        var viewConfig = configuration.viewConfig.get(view);
-        if (viewConfig == null) {
-            throw new IllegalArgumentException("View not supported: " + view);
-        }
-
-        // retrieve view rows with fields from the view table only (not of the Set type)
-        var rowsById = getViewRowsForNonSetType(viewConfig, filters, offset, limit);
-
-        if (!rowsById.isEmpty()) {
-            // TODO: with materialized or normal view we can retrieve all data in one go adding one more join in the
-            // query above
-            // retrieve view rows with fields from table only (of the Set type only)
-            String[] viewIds = rowsById.keySet().toArray(new String[0]);
-            var valueSetProperties = viewConfig.columns.stream()
-                    .filter(column -> column.type.isSet())
-                    .map(column -> column.name)
-                    .toList();
-            if (!valueSetProperties.isEmpty()) {
-                var viewRowsForSetType = getViewRowsForSetType(view, valueSetProperties, viewIds);
-                // merge the data from the view (for instance, Study) table and related tables (for instance,
-                // Study_TreatmentId)
-                viewRowsForSetType.forEach((key, value) -> rowsById.get(key).merge(value));
-            }
-        }
-        return rowsById;
-    }
-
-    private Map<String, ViewRow> getViewRowsForNonSetType(View view, List<ViewFilter> filters, int offset, int limit)
+    /**
+     * Builds the query for a page of rows of a view, which also selects the values of the set columns
+     * and optionally the rows of the joined views, aggregated as JSON, so that a page takes one round trip.
+     * The joined rows are limited to maxJoinItems per row.
+     */
+    PreparedStatement pageQuery(
+            Connection connection,
+            View view,
+            List<ViewFilter> filters,
+            int offset,
+            String afterId,
+            int limit,
+            boolean includeJoinedViews)
             throws SQLException {
-        try (var connection = viewStoreClientFactory.getConnection();
-                var query = query(
-                        connection,
+        var values = new ArrayList<>();
+        var page = selectQuery(
                         view.name,
                         filters,
-                        String.format(
-                                "order by id %s limit %d", offset > 0 ? String.format("offset %d", offset) : "", limit),
-                        false)) {
-            query.setQueryTimeout(searchProperties.getPageRequestTimeout());
-            var result = query.executeQuery();
-            Map<String, ViewRow> rowsById = new HashMap<>();
-            while (result.next()) {
-                var row = transformRow(view, result);
-                rowsById.put(result.getString("id"), new ViewRow(row));
-            }
-            return rowsById;
-        }
-    }
-
-    private Map<String, ViewRow> getViewRowsForSetType(String view, List<String> valueSetProperties, String[] viewIds)
-            throws SQLException {
-
-        var columns = String.join(", ", valueSetProperties);
-        var query = "select %sid, %s from mv_%s where %sid = ANY(?::text[])".formatted(view, columns, view, view);
-
-        try (var connection = viewStoreClientFactory.getConnection();
-                var ps = connection.prepareStatement(query)) {
-            Array array = ps.getConnection().createArrayOf("text", viewIds);
-            ps.setArray(1, array);
-            ResultSet resultSet = ps.executeQuery();
-
-            Map<String, ViewRow> viewRowsForSetTypeById = new HashMap<>();
-
-            while (resultSet.next()) {
-                var id = resultSet.getString(view + "id");
-                var newViewRow = ViewRow.viewSetOf(resultSet, valueSetProperties, view);
-                viewRowsForSetTypeById.compute(
-                        id, (studyId, viewRow) -> viewRow == null ? newViewRow : viewRow.merge(newViewRow));
+                        afterId,
+                        "order by id %s limit %d".formatted(offset > 0 ? "offset " + offset : "", limit),
+                        values)
+                .formatted(configuration.viewTables.get(view.name).getColumns().stream()
+                        .map(column -> "v." + column.getName())
+                        .collect(Collectors.joining(", ")));
+        var viewName = view.name.toLowerCase();
+        var query = new StringBuilder("with page as ( ").append(page).append(" ) select page.*");
+        var laterals = new StringBuilder();
+        var setColumns = getSetColumns(view);
+        if (!setColumns.isEmpty()) {
+            query.append(", sets.").append(SET_VALUES_COLUMN);
+            laterals.append(" left join lateral ( select json_agg(json_build_object(")
+                    .append(setColumns.stream()
+                            .map(column -> "'%s', m.%s".formatted(column.toLowerCase(), column))
+                            .collect(Collectors.joining(", ")))
+                    .append(")) as ")
+                    .append(SET_VALUES_COLUMN)
+                    .append(" from mv_%s m where m.%sid = page.id ) sets on true".formatted(viewName, viewName));
+        }
+        if (includeJoinedViews) {
+            for (var i = 0; i < view.join.size(); i++) {
+                var joinedTable = configuration.viewTables.get(view.join.get(i).view);
+                var alias = JOIN_ROWS_COLUMN + i;
+                query.append(", ").append(alias).append(".").append(alias);
+                laterals.append(" left join lateral ( select json_agg(row_to_json(j)) as %s from ( select * from "
+                                .formatted(alias))
+                        .append("mv_%s_join_%s j where j.%s = page.id limit %d ) j ) %s on true"
+                                .formatted(
+                                        viewName,
+                                        joinedTable.name,
+                                        idColumn(view.name).name,
+                                        searchProperties.getMaxJoinItems(),
+                                        alias));
             }
-            return viewRowsForSetTypeById;
         }
+        query.append(" from page").append(laterals).append(" order by page.id");
+        return prepare(connection, query.toString(), values);
     }
 
-    private ViewRowCollection retrieveJoinTableRows(String view, View.JoinView joinView, Collection<String> ids)
-            throws SQLException {
-
-        var joinedTable = configuration.viewTables.get(joinView.view);
-        var viewIdColumn = idColumn(view).name;
-        var joinIdColumn = idColumn(joinView.view).name;
-        var projectionColumns = Stream.concat(
-                        Stream.of(joinView.view + "_id", joinView.view + "_label"),
-                        joinView.include.stream().map(i -> joinView.view + "_" + i))
-                .collect(Collectors.toSet());
-
-        var rows = new ViewRowCollection(searchProperties.getMaxJoinItems());
-
-        if (!ids.isEmpty()) {
-            try (var connection = viewStoreClientFactory.getConnection();
-                    var query = getJoinQuery(connection, view, joinedTable, ids);
-                    var result = query.executeQuery()) {
-                while (result.next()) {
-                    var id = result.getString(viewIdColumn);
-                    var row = buildJoinRows(joinView, joinIdColumn, projectionColumns, result);
-                    rows.add(id, row);
-                }
-            }
-        }
-
-        return rows;
+    private static List<String> getSetColumns(View view) {
+        return view.columns.stream()
+                .filter(column -> column.type.isSet())
+                .map(column -> column.name)
+                .toList();
     }
 
-    private ViewRow buildJoinRows(
-            View.JoinView joinView, String joinViewIdName, Set<String> projectionColumns, ResultSet result)
-            throws SQLException {
-
+    private ViewRow buildJoinRow(View.JoinView joinView, JsonNode joinRow) {
         var row = new ViewRow();
-        var joinViewId = result.getString(joinViewIdName);
+        var joinViewId = textOf(joinRow, idColumn(joinView.view).name);
         if (joinViewId != null) { // could be null as we do the left join for join views
             row.put(
                     joinView.view,
-                    Sets.newHashSet(new ValueDto(
-                            result.getString(joinView.view + "_label"), result.getString(joinViewIdName))));
+                    Sets.newHashSet(new ValueDto(textOf(joinRow, joinView.view + "_label"), joinViewId)));
+            var projectionColumns = Stream.concat(
+                            Stream.of(joinView.view + "_id", joinView.view + "_label"),
+                            joinView.include.stream().map(i -> joinView.view + "_" + i))
+                    .collect(Collectors.toSet());
             for (var column : projectionColumns) {
                 var columnDefinition = Optional.ofNullable(
                                 configuration.viewTables.get(joinView.view).getColumn(column.toLowerCase()))
                         // to support Set/TermSet types which does not have column definition out of the views.yaml
                         // todo: find a better way to aggregate together set and non-set column types
                         .orElse(Table.ColumnDefinition.builder().name(column).build());
-                parseAndSetValueForColumn(result, columnDefinition, row);
+                parseAndSetValueForColumn(joinRow, columnDefinition, row);
             }
         }
         return row;
     }
 
     private static void parseAndSetValueForColumn(
-            ResultSet result, Table.ColumnDefinition columnDefinition, ViewRow row) throws SQLException {
+            JsonNode joinRow, Table.ColumnDefinition columnDefinition, ViewRow row) {
+        var node = joinRow.get(columnDefinition.name.toLowerCase());
+        if (node == null || node.isNull()) {
+            return;
+        }
         if (columnDefinition.type == ColumnType.Number) {
-            var value = result.getBigDecimal(columnDefinition.name);
-            if (value != null) {
-                row.put(columnDefinition.name, Sets.newHashSet(new ValueDto(value.toString(), value)));
-            }
+            var value = node.decimalValue();
+            row.put(columnDefinition.name, Sets.newHashSet(new ValueDto(value.toString(), value)));
         } else if (columnDefinition.type == Date) {
-            var value = result.getTimestamp(columnDefinition.name);
-            if (value != null) {
-                row.put(
-                        columnDefinition.name,
-                        Sets.newHashSet(new ValueDto(value.toInstant().toString(), value.toString())));
-            }
+            var value = Timestamp.valueOf(LocalDateTime.parse(node.asText()));
+            row.put(
+                    columnDefinition.name,
+                    Sets.newHashSet(new ValueDto(value.toInstant().toString(), value.toString())));
         } else {
-            var label = result.getString(columnDefinition.name);
-            if (label != null) {
-                row.put(columnDefinition.name, Sets.newHashSet(new ValueDto(label, label)));
-            }
+            var label = node.asText();
+            row.put(columnDefinition.name, Sets.newHashSet(new ValueDto(label, label)));
         }
     }
 
-    private PreparedStatement getJoinQuery(
-            Connection connection, String view, Table joinedTable, Collection<String> ids) throws SQLException {
-        var query = "select * from mv_%s_join_%s where %s = ANY(?::text[])"
-                .formatted(view, joinedTable.name, idColumn(view).name);
-        var ps = connection.prepareStatement(query);
-        var array = ps.getConnection().createArrayOf("text", ids.toArray());
-        ps.setArray(1, array);
-        return ps;
+    private static String textOf(JsonNode node, String field) {
+        var value = node.get(field.toLowerCase());
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    @SneakyThrows(JsonProcessingException.class)
+    private static JsonNode parseJson(String json) {
+        return json == null ? null : OBJECT_MAPPER.readTree(json);
     }
 
     /**
@@ -580,35 +641,88 @@ public class ViewStoreReader {
      * @param offset             the index (zero-based) of the first row to include (for pagination)
      * @param limit              the maximum number of results to return.
      * @param includeJoinedViews if true, include joined views in the resulting rows.
-     * @return the list of rows.
+     * @return the list of rows, ordered by id.
      */
     public List<Map<String, Set<ValueDto>>> retrieveRows(
             String view, List<ViewFilter> filters, int offset, int limit, boolean includeJoinedViews) {
-        try {
-            var viewConfig = configuration.viewConfig.get(view);
-            if (viewConfig == null) {
-                throw new IllegalArgumentException("View not supported: " + view);
-            }
-            // Fetch rows with columns from the view table
-            var rowsById = this.retrieveViewTableRows(view, filters, offset, limit);
-
-            // Add items from join tables
-            if (includeJoinedViews && !rowsById.isEmpty()) {
-                for (var joinView : viewConfig.join) {
-                    var allJoinTableRows = this.retrieveJoinTableRows(view, joinView, rowsById.keySet());
-                    rowsById.forEach((id, row) -> addJoinTableRowsForRow(row, allJoinTableRows.getRowsForId(id)));
+        return retrieveRows(view, filters, offset, null, limit, includeJoinedViews);
+    }
+
+    /**
+     * Reads rows from a view table following the row with the specified id (keyset pagination).
+     * Unlike offset pagination, the cost of retrieving a page does not depend on its position.
+     *
+     * @param view               the name of the view.
+     * @param filters            the filters to apply.
+     * @param afterId            the id of the last row of the previous page, or null for the first page.
+     * @param limit              the maximum number of results to return.
+     * @param includeJoinedViews if true, include joined views in the resulting rows.
+     * @return the list of rows, ordered by id.
+     */
+    public List<Map<String, Set<ValueDto>>> retrieveRowsAfter(
+            String view, List<ViewFilter> filters, String afterId, int limit, boolean includeJoinedViews) {
+        return retrieveRows(view, filters, 0, afterId, limit, includeJoinedViews);
+    }
+
+    private List<Map<String, Set<ValueDto>>> retrieveRows(
+            String view,
+            List<ViewFilter> filters,
+            int offset,
+            String afterId,
+            int limit,
+            boolean includeJoinedViews) {
+        var viewConfig = configuration.viewConfig.get(view);
+        if (viewConfig == null) {
+            throw new IllegalArgumentException("View not supported: " + view);
+        }
+        try (var connection = viewStoreClientFactory.getConnection();
+                var query = pageQuery(connection, viewConfig, filters, offset, afterId, limit, includeJoinedViews)) {
+            query.setQueryTimeout(searchProperties.getPageRequestTimeout());
+            var result = query.executeQuery();
+            var setColumns = getSetColumns(viewConfig);
+            var hasSetColumns = !setColumns.isEmpty();
+            var rows = new ArrayList<Map<String, Set<ValueDto>>>();
+            var joinedRows = new ArrayList<List<ViewRow>>();
+            while (result.next()) {
+                var row = transformRow(viewConfig, result);
+                if (hasSetColumns) {
+                    var sets = parseJson(result.getString(SET_VALUES_COLUMN));
+                    if (sets != null) {
+                        var viewRow = new ViewRow(row);
+                        for (var setValues : sets) {
+                            viewRow.merge(ViewRow.viewSetOf(setValues, setColumns, view));
+                        }
+                    }
                 }
+                var joined = new ArrayList<ViewRow>();
+                if (includeJoinedViews) {
+                    for (var i = 0; i < viewConfig.join.size(); i++) {
+                        var joinRows = parseJson(result.getString(JOIN_ROWS_COLUMN + i));
+                        if (joinRows != null) {
+                            for (var joinRow : joinRows) {
+                                joined.add(buildJoinRow(viewConfig.join.get(i), joinRow));
+                            }
+                        }
+                    }
+                }
+                rows.add(row);
+                joinedRows.add(joined);
             }
-            return rowsById.values().stream().map(ViewRow::getRawData).toList();
+            // Term values are resolved before the joined rows are added, as these are not of the view itself
+            var iris = irisForTermLabels(connection, viewConfig, rows);
+            var page = new ArrayList<Map<String, Set<ValueDto>>>(rows.size());
+            for (var i = 0; i < rows.size(); i++) {
+                resolveTermValues(viewConfig, rows.get(i), iris);
+                var viewRow = new ViewRow(rows.get(i));
+                joinedRows.get(i).forEach(viewRow::merge);
+                page.add(viewRow.getRawData());
+            }
+            return page;
         } catch (SQLException e) {
             throw new QueryException("Error retrieving page rows", e);
         }
     }
 
-    private void addJoinTableRowsForRow(ViewRow viewRow, List<ViewRow> allJoinTableRows) {
-        allJoinTableRows.forEach(viewRow::merge);
-    }
-
     public long countRows(String view, List<ViewFilter> filters) throws SQLTimeoutException {
         try (var connection = viewStoreClientFactory.getConnection();
                 var q = query(connection, view, filters, null, true)) {
@@ -623,20 +737,22 @@ public class ViewStoreReader {
         }
     }
 
+    /**
+     * Searches files, directories and collections by label and description.
+     * Substring matches are served by the trigram indexes, if available. If full text search is enabled,
+     * resources containing all the words of the query are found as well, and the results are ranked,
+     * otherwise they are ordered by id.
+     */
     public List<SearchResultDto> searchFiles(FileSearchRequest request, List<String> userCollections) {
         if (userCollections == null || userCollections.isEmpty()) {
             return Collections.emptyList();
         }
 
         var searchString = "%" + escapeLikeString(request.getQuery().toLowerCase()) + "%";
+        var fullTextSearch = viewStoreClientFactory.isFullTextSearchEnabled();
+        var textQuery = "plainto_tsquery('%s', ?)".formatted(TEXT_SEARCH_CONFIGURATION);
 
-        var values = new ArrayList<String>();
-        values.add(searchString);
-        values.add(searchString);
-        values.addAll(userCollections);
-
-        var collectionPlaceholders = userCollections.stream().map(uc -> "?").collect(Collectors.toList());
-        var collectionConstraint = "and collection in (" + String.join(", ", collectionPlaceholders) + ") ";
+        var collectionConstraint = "and collection = any ( ? ) ";
 
         var idConstraint = StringUtils.isBlank(request.getParentIRI())
                 ? ""
@@ -644,15 +760,29 @@ public class ViewStoreReader {
 
         var queryString = new StringBuilder()
                 .append("select id, label, description, type FROM resource ")
-                .append("where (label ilike ? OR description ilike ?) ")
-                .append(collectionConstraint)
-                .append(idConstraint)
-                .append("order by id asc limit 1000");
+                .append("where (label ilike ? OR description ilike ?");
+        if (fullTextSearch) {
+            queryString.append(" OR %s @@ %s".formatted(SEARCH_VECTOR_COLUMN, textQuery));
+        }
+        queryString.append(") ").append(collectionConstraint).append(idConstraint);
+        if (fullTextSearch) {
+            queryString.append("order by ts_rank(%s, %s) desc, id asc ".formatted(SEARCH_VECTOR_COLUMN, textQuery));
+        } else {
+            queryString.append("order by id asc ");
+        }
+        queryString.append("limit 1000");
 
         try (var connection = viewStoreClientFactory.getConnection();
                 var statement = connection.prepareStatement(queryString.toString())) {
-            for (int i = 0; i < values.size(); i++) {
-                statement.setString(i + 1, values.get(i));
+            var index = 1;
+            statement.setString(index++, searchString);
+            statement.setString(index++, searchString);
+            if (fullTextSearch) {
+                statement.setString(index++, request.getQuery());
+            }
+            statement.setArray(index++, connection.createArrayOf("text", userCollections.toArray()));
+            if (fullTextSearch) {
+                statement.setString(index, request.getQuery());
             }
 
             statement.setQueryTimeout(searchProperties.getPageRequestTimeout());
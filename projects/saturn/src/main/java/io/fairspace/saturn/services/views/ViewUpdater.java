@@ -11,9 +11,11 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
@@ -44,6 +46,10 @@ public class ViewUpdater implements AutoCloseable {
     private final DatasetGraph dsg;
     private final Graph graph;
     private final String publicUrl;
+    // Labels of terms found while copying, as no other statements can be executed during a COPY
+    private Map<String, Pair<String, String>> pendingLabels;
+    // Labels of the terms copied, as (type, label) by id, to be written by the caller after the load
+    private final Map<String, Pair<String, String>> copiedLabels = new HashMap<>();
 
     public ViewUpdater(
             ViewsProperties viewsProperties, ViewStoreClient viewStoreClient, DatasetGraph dsg, String publicUrl) {
@@ -109,7 +115,11 @@ public class ViewUpdater implements AutoCloseable {
             }
             case Term, TermSet -> {
                 var label = getLabel(graph, node);
-                viewStoreClient.addLabel(node.getURI(), column.rdfType, label);
+                if (pendingLabels != null) {
+                    pendingLabels.putIfAbsent(node.getURI(), Pair.of(column.rdfType, label));
+                } else {
+                    viewStoreClient.addLabel(node.getURI(), column.rdfType, label);
+                }
                 yield label;
             }
             default -> {
@@ -243,24 +253,34 @@ public class ViewUpdater implements AutoCloseable {
 
     /**
      * Only use this method in a secure and synchonisized way, see 'MaintenanceService.recreateIndex()'
+     * The tables of the view are truncated and loaded with COPY, their indexes are dropped
+     * before the load and recreated afterwards. The changes are to be committed by the caller.
+     * The labels of the terms copied are not written to the label table, which is shared by all views,
+     * in the long transaction of the load, see {@link #getCopiedLabels()}.
+     *
+     * @param rowsCopied receives the number of rows copied, for progress reporting.
      */
-    public void recreateIndexForView(ViewStoreClient viewStoreClient, ViewsProperties.View view) throws SQLException {
+    public void recreateIndexForView(
+            ViewStoreClient viewStoreClient, ViewsProperties.View view, LongConsumer rowsCopied)
+            throws SQLException {
         // Clear database tables for view
         log.info("Recreating index for view {} started", view.name);
         viewStoreClient.truncateViewTables(view.name);
+        viewStoreClient.dropIndexes(view.name);
         for (String type : view.types) {
-            copyValuesForType(view, type);
+            rowsCopied.accept(copyValuesForType(view, type));
             var valueSetColumns =
                     view.columns.stream().filter(column -> column.type.isSet()).toList();
             for (var valueSetColumn : valueSetColumns) {
-                copyValueSetsForColumn(view, type, valueSetColumn);
+                rowsCopied.accept(copyValueSetsForColumn(view, type, valueSetColumn));
             }
             for (var join : view.join) {
                 if (!join.reverse) {
-                    copyLinks(view, type, join);
+                    rowsCopied.accept(copyLinks(view, type, join));
                 }
             }
         }
+        viewStoreClient.createIndexes(view.name);
         log.info("Recreating index for view {} finished", view.name);
     }
 
@@ -280,16 +300,63 @@ public class ViewUpdater implements AutoCloseable {
         return values;
     }
 
+    /**
+     * Streams the results of a SPARQL query into a table of the view database with COPY.
+     *
+     * @return the number of rows copied.
+     */
+    private long copy(Table table, List<String> columns, String query, SolutionMapper mapper) throws SQLException {
+        var error = new AtomicReference<SQLException>();
+        var labels = new LinkedHashMap<String, Pair<String, String>>();
+        pendingLabels = labels;
+        long copyCount;
+        try (var copier = viewStoreClient.copy(table, columns)) {
+            try {
+                SparqlUtils.querySelect(dsg, query, (QuerySolution q) -> {
+                    try {
+                        copier.write(mapper.map(q));
+                    } catch (SQLException e) {
+                        error.set(e);
+                        throw new RuntimeException("Failed to copy rows", e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (error.get() != null) {
+                    throw error.get();
+                }
+                throw e;
+            }
+            copyCount = copier.finish();
+        } finally {
+            pendingLabels = null;
+        }
+        labels.forEach(copiedLabels::putIfAbsent);
+        return copyCount;
+    }
+
+    /**
+     * @return the labels of the terms copied, as (type, label) by id,
+     * to be written with {@link ViewStoreClient#writeLabels} once the copied rows have been committed.
+     */
+    public Map<String, Pair<String, String>> getCopiedLabels() {
+        return copiedLabels;
+    }
+
+    @FunctionalInterface
+    private interface SolutionMapper {
+        List<?> map(QuerySolution solution) throws SQLException;
+    }
+
     /**
      * Copy rows of values for a specified type to the view database in bulk.
      *
-     * All simple values (no value sets) for the type are queried and the rows are inserted
-     * into the view database in batches of 1000 rows.
+     * All simple values (no value sets) for the type are queried and streamed into the view table.
      *
      * @param view The view for which to update the values.
      * @param type The subject type (for when the view includes multiple types)
+     * @return the number of rows copied.
      */
-    public void copyValuesForType(ViewsProperties.View view, String type) throws SQLException {
+    public long copyValuesForType(ViewsProperties.View view, String type) throws SQLException {
         var columns =
                 view.columns.stream().filter(column -> !column.type.isSet()).collect(Collectors.toList());
         var attributes = columns.stream()
@@ -309,42 +376,29 @@ public class ViewUpdater implements AutoCloseable {
                 """
                         .formatted(RDFS.getURI(), attributeNames, type, attributes);
 
-        var rows = new ArrayList<Map<String, Object>>();
-        var error = new AtomicReference<SQLException>();
-        final int[] updateCount = new int[1];
-        SparqlUtils.querySelect(dsg, query, (QuerySolution q) -> {
-            // read query results
-            try {
-                rows.add(transformResult(type, columns, q));
-                // copy in chunks to the view database
-                if (rows.size() == 1000) {
-                    updateCount[0] += viewStoreClient.updateRows(view.name, rows, true);
-                    rows.clear();
-                }
-            } catch (SQLException e) {
-                error.set(e);
-                throw new RuntimeException("Failed to bulk insert rows", e);
-            }
+        var viewTable = viewStoreClient.getConfiguration().viewTables.get(view.name);
+        var tableColumns =
+                viewTable.getColumns().stream().map(Table.ColumnDefinition::getName).toList();
+        var copyCount = copy(viewTable, tableColumns, query, q -> {
+            var row = transformResult(type, columns, q);
+            return tableColumns.stream().map(row::get).toList();
         });
-        if (error.get() != null) {
-            throw error.get();
-        }
-        // copy any remaining items to the view database
-        updateCount[0] += viewStoreClient.updateRows(view.name, rows, true);
-        log.debug("Inserted {} rows for view {}", updateCount[0], view.name);
+        log.debug("Copied {} rows for view {}", copyCount, view.name);
+        return copyCount;
     }
 
     /**
      * Copy value sets for a specified type and property to the view database in bulk.
      *
-     * All values for the type and property are queried and the (subject, value) tuples are inserted
-     * into the view database in batches of 1000 tuples.
+     * All values for the type and property are queried and the (subject, value) tuples are streamed
+     * into the property table.
      *
      * @param view The view for which to update the value set property.
      * @param type The subject type (for when the view includes multiple types)
      * @param column The view column of value set property.
+     * @return the number of rows copied.
      */
-    public void copyValueSetsForColumn(ViewsProperties.View view, String type, ViewsProperties.View.Column column)
+    public long copyValueSetsForColumn(ViewsProperties.View view, String type, ViewsProperties.View.Column column)
             throws SQLException {
         var property = column.name;
         var propertyTable =
@@ -363,48 +417,30 @@ public class ViewUpdater implements AutoCloseable {
                     }
                 """
                         .formatted(property, type, predicate, property);
-        var rows = new ArrayList<Pair<String, String>>();
-        var error = new AtomicReference<SQLException>();
-        final int[] updateCount = new int[1];
-        SparqlUtils.querySelect(dsg, query, (QuerySolution q) -> {
-            // read query results
-            try {
-                var val = getValue(column, q.get(column.name).asNode());
-                if (val == null) {
-                    throw new RuntimeException(
-                            "Error querying view %s for type %s in column %s".formatted(view.name, type, column.name));
-                }
-                rows.add(Pair.of(q.getResource("id").getURI(), val.toString()));
-
-                // copy in chunks to the view database
-                if (rows.size() == 1000) {
-                    updateCount[0] += viewStoreClient.insertValues(propertyTable, idColumn, propertyColumn, rows);
-                    rows.clear();
-                }
-            } catch (SQLException e) {
-                error.set(e);
-                throw new RuntimeException("Failed to bulk insert rows", e);
+        var copyCount = copy(propertyTable, List.of(idColumn.name, propertyColumn.name), query, q -> {
+            var val = getValue(column, q.get(column.name).asNode());
+            if (val == null) {
+                throw new RuntimeException(
+                        "Error querying view %s for type %s in column %s".formatted(view.name, type, column.name));
             }
+            return List.of(q.getResource("id").getURI(), val.toString());
         });
-        if (error.get() != null) {
-            throw error.get();
-        }
-        // copy any remaining items to the view database
-        updateCount[0] += viewStoreClient.insertValues(propertyTable, idColumn, propertyColumn, rows);
-        log.debug("Inserted {} rows for property {} of view {}", updateCount[0], column.name, view.name);
+        log.debug("Copied {} rows for property {} of view {}", copyCount, column.name, view.name);
+        return copyCount;
     }
 
     /**
      * Copy view join links for a specified type and join relation to the view database in bulk.
      *
-     * All join links for the type and join relation are queried and the (source, target) tuples are inserted
-     * into the view database in batches of 1000 tuples.
+     * All join links for the type and join relation are queried and the (source, target) tuples are streamed
+     * into the join table.
      *
      * @param view The view for which to update the join links.
      * @param type The subject type (for when the view includes multiple types)
      * @param join The join relation.
+     * @return the number of rows copied.
      */
-    public void copyLinks(ViewsProperties.View view, String type, ViewsProperties.View.JoinView join)
+    public long copyLinks(ViewsProperties.View view, String type, ViewsProperties.View.JoinView join)
             throws SQLException {
         var joinTable =
                 viewStoreClient.getConfiguration().joinTables.get(view.name).get(join.view);
@@ -421,30 +457,14 @@ public class ViewUpdater implements AutoCloseable {
                     }
                 """
                         .formatted(type, predicate);
-        var rows = new ArrayList<Pair<String, String>>();
-        var error = new AtomicReference<SQLException>();
-        final int[] updateCount = new int[1];
-        SparqlUtils.querySelect(dsg, query, (QuerySolution q) -> {
-            // read query results
-            try {
-                rows.add(Pair.of(
+        var copyCount = copy(
+                joinTable,
+                List.of(idColumn.name, joinColumn.name),
+                query,
+                q -> List.of(
                         q.getResource("source").getURI(),
                         q.getResource("target").getURI()));
-                // copy in chunks to the view database
-                if (rows.size() == 1000) {
-                    updateCount[0] += viewStoreClient.insertValues(joinTable, idColumn, joinColumn, rows);
-                    rows.clear();
-                }
-            } catch (SQLException e) {
-                error.set(e);
-                throw new RuntimeException("Failed to bulk insert rows", e);
-            }
-        });
-        if (error.get() != null) {
-            throw error.get();
-        }
-        // copy any remaining items to the view database
-        updateCount[0] += viewStoreClient.insertValues(joinTable, idColumn, joinColumn, rows);
-        log.debug("Inserted {} rows for join of view {} with view {}", updateCount[0], view.name, join.view);
+        log.debug("Copied {} rows for join of view {} with view {}", copyCount, view.name, join.view);
+        return copyCount;
     }
 }
@@ -94,6 +94,9 @@ public class FS {
     public static final String MD5_URI = NS + "md5";
     public static final Property md5 = createProperty(MD5_URI);
 
+    public static final String SHA256_URI = NS + "sha256";
+    public static final Property sha256 = createProperty(SHA256_URI);
+
     public static final String CONNECTION_STRING_URI = NS + "connectionString";
     public static final Property connectionString = createProperty(CONNECTION_STRING_URI);
 
@@ -0,0 +1,69 @@
+package io.fairspace.saturn.webdav;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.extern.log4j.Log4j2;
+
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+
+/**
+ * The changes to the reference counts of blobs made by the write transaction of a WebDAV request.
+ * The counts are kept by the blob store, outside the transaction, so they have to follow its outcome:
+ * <ul>
+ *     <li>references are registered right away, and undone if the transaction is aborted or retried,
+ *     so a blob is never counted less often than it is referenced by committed file versions;</li>
+ *     <li>references are released once the transaction has been committed,
+ *     so a blob is not deleted while a transaction that is aborted afterwards still references it.</li>
+ * </ul>
+ */
+@Log4j2
+public class BlobReferences {
+    private final BlobStore store;
+    private final List<String> retained = new ArrayList<>();
+    private final List<String> released = new ArrayList<>();
+
+    BlobReferences(BlobStore store) {
+        this.store = store;
+    }
+
+    public void retain(String id) throws IOException {
+        store.retain(id);
+        retained.add(id);
+    }
+
+    public void release(String id) {
+        released.add(id);
+    }
+
+    /**
+     * Undoes the references registered by a transaction that has been aborted or is about to be retried.
+     */
+    void rollback() {
+        for (var id : retained) {
+            try {
+                store.release(id);
+            } catch (IOException e) {
+                log.error("Cannot release the reference to blob {} of an aborted transaction", id, e);
+            }
+        }
+        retained.clear();
+        released.clear();
+    }
+
+    /**
+     * Releases the references removed by a committed transaction.
+     */
+    void commit() {
+        for (var id : released) {
+            try {
+                store.release(id);
+            } catch (IOException e) {
+                log.error("Cannot release the reference to blob {} of a committed transaction", id, e);
+            }
+        }
+        retained.clear();
+        released.clear();
+    }
+}
@@ -0,0 +1,26 @@
+package io.fairspace.saturn.webdav;
+
+import io.milton.http.http11.DefaultETagGenerator;
+import io.milton.resource.Resource;
+
+import io.fairspace.saturn.webdav.resources.DirectoryResource;
+import io.fairspace.saturn.webdav.resources.FileResource;
+
+/**
+ * Uses the SHA-256 of the content as the ETag of a file, if known.
+ * Unlike the default ETag, it stays the same when identical content is uploaded again or a file is copied.
+ * ZIP archives of directories have no ETag.
+ */
+public class ContentHashETagGenerator extends DefaultETagGenerator {
+    @Override
+    public String generateEtag(Resource r) {
+        if (r instanceof FileResource file && file.getContentHash() != null) {
+            return file.getContentHash();
+        }
+        if (r instanceof DirectoryResource && WebDAVServlet.isZipRequest()) {
+            // The content of the archive changes without the directory being modified
+            return null;
+        }
+        return super.generateEtag(r);
+    }
+}
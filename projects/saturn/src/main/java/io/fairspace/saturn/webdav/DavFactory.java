@@ -122,10 +122,7 @@ public class DavFactory implements ResourceFactory {
             return getExtraStorageAccess(subject);
         }
 
-        var uri = subject.getURI();
-        var nextSeparatorPos = uri.indexOf('/', rootSubject.getURI().length() + 1);
-        var coll =
-                rootSubject.getModel().createResource(nextSeparatorPos < 0 ? uri : uri.substring(0, nextSeparatorPos));
+        var coll = getCollectionSubject(subject);
         if (!coll.hasProperty(RDF.type, FS.Collection)) {
             return Access.None;
         }
@@ -179,6 +176,16 @@ public class DavFactory implements ResourceFactory {
         return access;
     }
 
+    /**
+     * Returns the subject of the collection containing a file system resource, which determines the access to it.
+     * The subject is not checked to be an existing collection.
+     */
+    public org.apache.jena.rdf.model.Resource getCollectionSubject(org.apache.jena.rdf.model.Resource subject) {
+        var uri = subject.getURI();
+        var nextSeparatorPos = uri.indexOf('/', rootSubject.getURI().length() + 1);
+        return rootSubject.getModel().createResource(nextSeparatorPos < 0 ? uri : uri.substring(0, nextSeparatorPos));
+    }
+
     private Access getExtraStorageAccess(org.apache.jena.rdf.model.Resource subject) {
         if (subject.equals(this.rootSubject)) {
             return Access.Read;
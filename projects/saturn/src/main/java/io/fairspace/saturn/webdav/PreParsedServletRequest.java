@@ -13,7 +13,6 @@ import io.fairspace.saturn.webdav.blobstore.BlobStore;
 
 import static io.milton.http.ResourceHandlerHelper.ATT_NAME_FILES;
 import static io.milton.http.ResourceHandlerHelper.ATT_NAME_PARAMS;
-import static java.util.stream.Collectors.toMap;
 
 public class PreParsedServletRequest extends ServletRequest {
 
@@ -25,8 +24,7 @@ public class PreParsedServletRequest extends ServletRequest {
         super.parseRequestParameters(params, files);
 
         if ("upload_files".equals(params.get("action"))) {
-            files = files.entrySet().stream()
-                    .collect(toMap(Map.Entry::getKey, e -> new BlobFileItem(e.getValue(), store)));
+            files = BlobFileItem.storeAll(files, store);
         }
 
         getAttributes().put(ATT_NAME_PARAMS, params);
@@ -10,6 +10,8 @@ import lombok.SneakyThrows;
 
 import io.fairspace.saturn.rdf.transactions.Transactions;
 
+import static io.fairspace.saturn.webdav.WebDAVServlet.getBlobReferences;
+
 class TransactionalHandlerWrapper implements Handler {
     private final Handler wrapped;
     private final Transactions txn;
@@ -28,10 +30,27 @@ class TransactionalHandlerWrapper implements Handler {
     @SneakyThrows
     public void process(HttpManager httpManager, Request request, Response response) {
         if (request.getMethod().isWrite) {
+            var blobReferences = getBlobReferences();
+            var committed = false;
             try {
-                txn.executeWrite(ds -> wrapped.process(httpManager, request, response));
+                txn.executeWrite(ds -> {
+                    if (blobReferences != null) {
+                        // A retried transaction starts over
+                        blobReferences.rollback();
+                    }
+                    wrapped.process(httpManager, request, response);
+                });
+                committed = true;
             } catch (MiltonException e) {
                 throw new RuntimeException(e);
+            } finally {
+                if (blobReferences != null) {
+                    if (committed) {
+                        blobReferences.commit();
+                    } else {
+                        blobReferences.rollback();
+                    }
+                }
             }
         } else {
             try {
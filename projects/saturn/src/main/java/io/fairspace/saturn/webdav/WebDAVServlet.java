@@ -1,9 +1,16 @@
 package io.fairspace.saturn.webdav;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.regex.Pattern;
 
+import com.pivovarit.function.ThrowingConsumer;
+import io.milton.common.Path;
 import io.milton.config.HttpManagerBuilder;
 import io.milton.event.ResponseEvent;
 import io.milton.http.AuthenticationService;
@@ -13,14 +20,20 @@ import io.milton.http.Request;
 import io.milton.http.RequestParseException;
 import io.milton.http.ResourceFactory;
 import io.milton.http.Response;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.http11.DefaultHttp11ResponseHandler;
 import io.milton.http.webdav.ResourceTypeHelper;
 import io.milton.http.webdav.WebDavResponseHandler;
 import io.milton.resource.Resource;
+import io.milton.servlet.MiltonServlet;
+import io.milton.servlet.ServletRequest;
 import io.milton.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Globals;
 import org.apache.jena.rdf.model.Literal;
 
 import io.fairspace.saturn.rdf.transactions.Transactions;
@@ -33,6 +46,12 @@ import static io.fairspace.saturn.rdf.SparqlUtils.toXSDDateTimeLiteral;
 import static io.milton.http.ResponseStatus.SC_UNSUPPORTED_MEDIA_TYPE;
 import static io.milton.servlet.MiltonServlet.clearThreadlocals;
 import static io.milton.servlet.MiltonServlet.setThreadlocals;
+import static jakarta.servlet.http.HttpServletResponse.SC_ACCEPTED;
+import static jakarta.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static jakarta.servlet.http.HttpServletResponse.SC_CONFLICT;
+import static jakarta.servlet.http.HttpServletResponse.SC_FORBIDDEN;
+import static jakarta.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static jakarta.servlet.http.HttpServletResponse.SC_NOT_IMPLEMENTED;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang.StringUtils.isEmpty;
@@ -41,18 +60,33 @@ import static org.apache.commons.lang.StringUtils.isEmpty;
  * Ensures that all operations are handled in one transaction.
  * Contents of PUT requests is received and saved to the blob store BEFORE transaction is started.
  * Contents of GET responses is sent AFTER transaction is ended.
+ * <p>
+ * Large files can be uploaded in chunks with PUT requests with a Content-Range header, see {@link #receiveChunk}.
  */
 public class WebDAVServlet extends HttpServlet {
     private static final String BLOB_ATTRIBUTE = "BLOB";
     private static final String TIMESTAMP_ATTRIBUTE = "TIMESTAMP";
+    private static final String BLOB_REFERENCES_ATTRIBUTE = "BLOB_REFERENCES";
     public static final String POST_COMMIT_ACTION_ATTRIBUTE = "POST_COMMIT";
     public static final String ERROR_MESSAGE = "ERROR_MESSAGE";
     public static final String VERSION = "version";
+    public static final String FORMAT = "format";
+    public static final String ZIP_FORMAT = "zip";
+    public static final String CONTENT_RANGE_HEADER = "Content-Range";
+    public static final String UPLOAD_ID_HEADER = "Upload-Id";
+    public static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    // The same as the default of Tomcat's DefaultServlet, smaller ranges are written faster than handed over
+    private static final long SENDFILE_MIN_LENGTH = 48 * 1024;
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (?:(\\d+)-(\\d+)|\\*)/(\\d+)");
 
     private final HttpManager httpManager;
+    private final ResourceFactory factory;
+    private final Transactions txn;
     private final BlobStore store;
 
     public WebDAVServlet(ResourceFactory factory, Transactions txn, BlobStore store) {
+        this.factory = factory;
+        this.txn = txn;
         this.store = store;
 
         httpManager = new HttpManagerBuilder() {
@@ -64,6 +98,7 @@ public class WebDAVServlet extends HttpServlet {
                 setEnabledJson(false);
                 setEnabledCkBrowser(false);
                 setContentGenerator(new AdvancedContentGenerator());
+                seteTagGenerator(new ContentHashETagGenerator());
             }
 
             @Override
@@ -97,9 +132,23 @@ public class WebDAVServlet extends HttpServlet {
     protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
         try {
             setThreadlocals(req, res);
+            req.setAttribute(BLOB_REFERENCES_ATTRIBUTE, new BlobReferences(store));
+            CompletedUpload completedUpload = null;
 
             switch (req.getMethod().toUpperCase()) {
-                case "PUT" -> req.setAttribute(BLOB_ATTRIBUTE, store.store(req.getInputStream()));
+                case "PUT" -> {
+                    if (req.getHeader(CONTENT_RANGE_HEADER) == null) {
+                        req.setAttribute(BLOB_ATTRIBUTE, store.store(req.getInputStream()));
+                    } else {
+                        completedUpload = receiveChunk(req, res);
+                        if (completedUpload == null) {
+                            return;
+                        }
+                        req.setAttribute(BLOB_ATTRIBUTE, completedUpload.blob());
+                        // The content has been received, the file is created or updated as with a regular PUT
+                        req = withoutContentRange(req);
+                    }
+                }
                 case "MKCOL" -> {
                     try (var in = req.getInputStream()) {
                         if (in.read() >= 0) {
@@ -116,6 +165,11 @@ public class WebDAVServlet extends HttpServlet {
                 throw new IOException(e);
             }
 
+            if (completedUpload != null && res.getStatus() / 100 == 2) {
+                // The file has been committed, the upload cannot be completed again
+                store.finishUpload(completedUpload.id());
+            }
+
             var postCommitAction = (Runnable) req.getAttribute(POST_COMMIT_ACTION_ATTRIBUTE);
             if (postCommitAction != null) {
                 postCommitAction.run();
@@ -127,6 +181,113 @@ public class WebDAVServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Receives a chunk of an upload. The first chunk starts a new upload, the id of which is returned in the Upload-Id
+     * header and has to be sent with the following chunks. A chunk is only appended if it starts at the number of bytes
+     * received so far, which is returned in the Upload-Offset header, with status 202 until the upload is complete,
+     * or 409 if the chunk was not appended, e.g. because its content is shorter than its range. No more than its range
+     * is read, the range being checked before. To resume an upload, that number can be requested with an empty chunk
+     * with Content-Range 'bytes *&#47;(total size)'. Blob stores not supporting chunked uploads answer 501.
+     * <p>
+     * An upload can only be started with write access to the file, or to the collection or directory it is created in,
+     * which is checked again when the file is written. The upload is kept until the file has been written,
+     * so that the last chunk, or a status request, can be sent again if that fails.
+     *
+     * @return the completed upload, once all chunks have been received, or null if the response has been sent
+     */
+    private CompletedUpload receiveChunk(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        if (!store.supportsChunkedUploads()) {
+            res.sendError(SC_NOT_IMPLEMENTED, "Uploads in chunks are not supported");
+            return null;
+        }
+        var range = CONTENT_RANGE_PATTERN.matcher(req.getHeader(CONTENT_RANGE_HEADER));
+        if (!range.matches()) {
+            res.sendError(SC_BAD_REQUEST, "Invalid Content-Range header");
+            return null;
+        }
+        var statusRequest = range.group(1) == null;
+        var start = statusRequest ? 0 : Long.parseLong(range.group(1));
+        var end = statusRequest ? 0 : Long.parseLong(range.group(2));
+        var total = Long.parseLong(range.group(3));
+        if (!statusRequest && (end < start || end >= total)) {
+            res.sendError(SC_BAD_REQUEST, "Invalid Content-Range header");
+            return null;
+        }
+        var uploadId = req.getHeader(UPLOAD_ID_HEADER);
+        try {
+            if (uploadId == null) {
+                if (statusRequest || start != 0) {
+                    res.sendError(SC_BAD_REQUEST, "Upload-Id header is required to continue an upload");
+                    return null;
+                }
+                if (!canWrite(req)) {
+                    res.sendError(SC_FORBIDDEN, "No write access to the file");
+                    return null;
+                }
+                uploadId = store.startUpload();
+            }
+            var offset = statusRequest
+                    ? store.getUploadOffset(uploadId)
+                    : store.appendChunk(uploadId, start, end - start + 1, req.getInputStream());
+
+            res.setHeader(UPLOAD_ID_HEADER, uploadId);
+            res.setHeader(UPLOAD_OFFSET_HEADER, Long.toString(offset));
+            if (offset > total) {
+                res.sendError(SC_BAD_REQUEST, "More bytes received than the size of the file");
+                return null;
+            }
+            if (!statusRequest && offset != end + 1) {
+                res.setStatus(SC_CONFLICT);
+                return null;
+            }
+            if (offset < total) {
+                res.setStatus(SC_ACCEPTED);
+                return null;
+            }
+            return new CompletedUpload(uploadId, store.completeUpload(uploadId));
+        } catch (FileNotFoundException e) {
+            res.sendError(SC_NOT_FOUND, "Unknown upload");
+            return null;
+        }
+    }
+
+    /**
+     * Checks write access to the file, if it exists, or otherwise to its nearest existing parent,
+     * as Milton does for a PUT request.
+     */
+    private boolean canWrite(HttpServletRequest req) throws IOException {
+        var request = new ServletRequest(req, req.getServletContext());
+        return txn.calculateRead(model -> {
+            try {
+                for (var path = Path.path(HttpManager.decodeUrl(request.getAbsolutePath()));
+                        path != null && !path.isRoot();
+                        path = path.getParent()) {
+                    var resource = factory.getResource(request.getHostHeader(), path.toString());
+                    if (resource != null) {
+                        return resource.authorise(request, Request.Method.PUT, null);
+                    }
+                }
+                return true;
+            } catch (NotAuthorizedException | BadRequestException e) {
+                return false;
+            }
+        });
+    }
+
+    private record CompletedUpload(String id, BlobInfo blob) {}
+
+    /**
+     * Hides the Content-Range header of the last chunk from Milton, which would otherwise update a part of the file.
+     */
+    private static HttpServletRequest withoutContentRange(HttpServletRequest req) {
+        return new HttpServletRequestWrapper(req) {
+            @Override
+            public String getHeader(String name) {
+                return CONTENT_RANGE_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+            }
+        };
+    }
+
     public static Integer fileVersion() {
         return Optional.ofNullable(getCurrentRequest())
                 .map(r -> (isEmpty(getCurrentRequest().getParameter(VERSION))
@@ -155,10 +316,92 @@ public class WebDAVServlet extends HttpServlet {
         return ("/api/metadata/").equalsIgnoreCase(getCurrentRequest().getRequestURI());
     }
 
+    public static boolean isZipRequest() {
+        return Optional.ofNullable(getCurrentRequest())
+                .map(r -> ZIP_FORMAT.equalsIgnoreCase(r.getParameter(FORMAT)))
+                .orElse(false);
+    }
+
+    public static void setContentDisposition(String contentDisposition) {
+        MiltonServlet.response().setHeader("Content-Disposition", contentDisposition);
+    }
+
+    /**
+     * Sends the content of a GET response after the read transaction has ended,
+     * so that a long download does not keep the transaction open and TDB2 can compact the dataset in the meantime.
+     * The sender must not read the dataset, but only data collected in the transaction.
+     * <p>
+     * Content that Milton writes through its own stream, e.g. to compress it, and the parts of a multi-range response
+     * are sent right away, as Milton has to process them before completing the response.
+     */
+    public static void sendContentAfterTransaction(OutputStream out, ThrowingConsumer<OutputStream, IOException> sender)
+            throws IOException {
+        var request = MiltonServlet.request();
+        var response = MiltonServlet.response();
+        if (response == null
+                || request == null
+                || out != response.getOutputStream()
+                || request.getAttribute(POST_COMMIT_ACTION_ATTRIBUTE) != null
+                || isMultiRangeRequest(request)) {
+            sender.accept(out);
+            return;
+        }
+        request.setAttribute(POST_COMMIT_ACTION_ATTRIBUTE, (Runnable) () -> {
+            try {
+                sender.accept(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Lets the servlet container send a range of a file after the request has been handled, with sendfile, so that
+     * the content is not copied through the application. Only done for responses written directly to the container,
+     * as in {@link #sendContentAfterTransaction}, if the container supports it, as Tomcat does,
+     * and for ranges for which that is worth it.
+     *
+     * @return whether the container sends the file, otherwise the range has to be written to the stream
+     */
+    public static boolean sendFileByContainer(OutputStream out, File file, long start, long length)
+            throws IOException {
+        var request = MiltonServlet.request();
+        var response = MiltonServlet.response();
+        if (response == null
+                || request == null
+                || length < SENDFILE_MIN_LENGTH
+                || out != response.getOutputStream()
+                || response.isCommitted()
+                || isMultiRangeRequest(request)
+                || !Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+            return false;
+        }
+        response.setContentLengthLong(length);
+        request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+        request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, start);
+        request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, start + length);
+        return true;
+    }
+
+    private static boolean isMultiRangeRequest(HttpServletRequest request) {
+        var range = request.getHeader("Range");
+        return range != null && range.contains(",");
+    }
+
     public static BlobInfo getBlob() {
         return (BlobInfo) getCurrentRequest().getAttribute(BLOB_ATTRIBUTE);
     }
 
+    /**
+     * @return the changes to the reference counts of blobs made by the current WebDAV request,
+     * or null outside a WebDAV request, in which case the blob store is to be updated right away.
+     */
+    public static BlobReferences getBlobReferences() {
+        return Optional.ofNullable(getCurrentRequest())
+                .map(r -> (BlobReferences) r.getAttribute(BLOB_REFERENCES_ATTRIBUTE))
+                .orElse(null);
+    }
+
     public static void setErrorMessage(String message) {
         getCurrentRequest().setAttribute(ERROR_MESSAGE, message);
     }
@@ -3,11 +3,26 @@ package io.fairspace.saturn.webdav.blobstore;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import io.milton.http.FileItem;
 
 public class BlobFileItem implements FileItem {
+    /**
+     * Maximum number of files of a request stored at the same time.
+     */
+    public static final int MAX_PARALLEL_FILES = 16;
+
+    /**
+     * Maximum total size of the files of a request stored at the same time. A larger file is stored on its own.
+     */
+    public static final int MAX_BYTES_IN_FLIGHT = 256 * 1024 * 1024;
+
     private final BlobInfo blob;
     private final String contentType;
     private final String fieldName;
@@ -15,17 +30,63 @@ public class BlobFileItem implements FileItem {
     private final Map<String, String> headers;
 
     public BlobFileItem(FileItem fileItem, BlobStore store) {
-        try {
-            blob = store.store(fileItem.getInputStream());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        this(fileItem, store(fileItem, store));
+    }
+
+    private BlobFileItem(FileItem fileItem, BlobInfo blob) {
+        this.blob = blob;
         contentType = fileItem.getContentType();
         fieldName = fileItem.getFieldName();
         name = fileItem.getName();
         headers = fileItem.getHeaders();
     }
 
+    /**
+     * Stores the files of a request in parallel, each in a virtual thread, as storing small files is mostly waiting
+     * for the file system. The number of files and bytes stored at the same time is limited,
+     * see {@link #MAX_PARALLEL_FILES} and {@link #MAX_BYTES_IN_FLIGHT}.
+     */
+    public static Map<String, FileItem> storeAll(Map<String, FileItem> files, BlobStore store) {
+        var parallelFiles = new Semaphore(MAX_PARALLEL_FILES);
+        var bytesInFlight = new Semaphore(MAX_BYTES_IN_FLIGHT);
+        var tasks = new HashMap<String, Future<BlobFileItem>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var entry : files.entrySet()) {
+                var fileItem = entry.getValue();
+                var bytes = (int) Math.min(Math.max(fileItem.getSize(), 0), MAX_BYTES_IN_FLIGHT);
+                parallelFiles.acquire();
+                bytesInFlight.acquire(bytes);
+                tasks.put(entry.getKey(), executor.submit(() -> {
+                    try {
+                        return new BlobFileItem(fileItem, store);
+                    } finally {
+                        bytesInFlight.release(bytes);
+                        parallelFiles.release();
+                    }
+                }));
+            }
+
+            Map<String, FileItem> result = new HashMap<>();
+            for (var task : tasks.entrySet()) {
+                result.put(task.getKey(), task.getValue().get());
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Storing the uploaded files was interrupted", e);
+        }
+    }
+
+    private static BlobInfo store(FileItem fileItem, BlobStore store) {
+        try {
+            return store.store(fileItem.getInputStream());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public BlobInfo getBlob() {
         return blob;
     }
@@ -7,4 +7,17 @@ public class BlobInfo {
     public final String id;
     public final long size;
     public final String md5;
+    /**
+     * SHA-256 of the content, only known for content-addressed blob stores.
+     */
+    public final String sha256;
+    /**
+     * Whether the content had been stored already, by content-addressed blob stores.
+     * A file version created for it is then another reference to the blob, see {@link BlobStore#retain}.
+     */
+    public final boolean existing;
+
+    public BlobInfo(String id, long size, String md5) {
+        this(id, size, md5, null, false);
+    }
 }
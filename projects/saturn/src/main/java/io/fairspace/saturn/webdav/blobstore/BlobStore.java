@@ -1,8 +1,13 @@
 package io.fairspace.saturn.webdav.blobstore;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.NoSuchAlgorithmException;
 
 import org.apache.commons.io.input.CountingInputStream;
@@ -11,9 +16,61 @@ import org.apache.commons.io.input.MessageDigestCalculatingInputStream;
 import static org.apache.commons.codec.binary.Hex.encodeHexString;
 
 public interface BlobStore {
+    /**
+     * Size of the buffer used to copy blobs to streams that cannot be written to as a channel.
+     */
+    int TRANSFER_BUFFER_SIZE = 1024 * 1024;
+
     String write(InputStream in) throws IOException;
 
-    void read(String id, OutputStream out, long start, Long finish) throws IOException;
+    /**
+     * Opens a channel reading a range of a blob.
+     *
+     * @param length the length of the range, limited to the end of the blob
+     */
+    ReadableByteChannel readChannel(String id, long offset, long length) throws IOException;
+
+    /**
+     * @return the local file a blob is stored in, so that the servlet container can send it without copying it
+     * through the application, or null if the blob is not stored in a local file, or if the file can be deleted
+     * before the container opens it, after the transaction reading it has ended
+     */
+    default File getFile(String id) {
+        return null;
+    }
+
+    /**
+     * Writes a range of a blob to the stream.
+     *
+     * @param finish the last byte of the range, inclusive, or null to read until the end of the blob
+     */
+    default void read(String id, OutputStream out, long start, Long finish) throws IOException {
+        try (var channel = readChannel(id, start, finish != null ? finish - start + 1 : Long.MAX_VALUE)) {
+            transfer(channel, out);
+        }
+    }
+
+    /**
+     * Copies the channel to the stream. A file range is transferred without copying it through user space
+     * if the stream can be written to as a channel, e.g. a stream of a socket or file channel,
+     * otherwise it is copied through a large buffer. Servlet output streams cannot be written to as a channel,
+     * see {@link io.fairspace.saturn.webdav.WebDAVServlet#sendFileByContainer} instead.
+     *
+     * @return the number of bytes copied
+     */
+    static long transfer(ReadableByteChannel in, OutputStream out) throws IOException {
+        if (in instanceof FileRangeChannel range && out instanceof WritableByteChannel target) {
+            return range.transferTo(target);
+        }
+        var buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+        var transferred = 0L;
+        while (in.read(buffer) >= 0) {
+            out.write(buffer.array(), 0, buffer.position());
+            transferred += buffer.position();
+            buffer.clear();
+        }
+        return transferred;
+    }
 
     default BlobInfo store(InputStream in) throws IOException {
         try {
@@ -33,7 +90,74 @@ public interface BlobStore {
         }
     }
 
+    /**
+     * @return whether uploads can be received in chunks, otherwise the methods handling them must not be called
+     */
+    default boolean supportsChunkedUploads() {
+        return false;
+    }
+
+    /**
+     * Starts an upload received in chunks, which can be resumed after a failure.
+     *
+     * @return the id of the upload
+     */
+    default String startUpload() throws IOException {
+        throw new UnsupportedOperationException("Chunked uploads are not supported by this blob store");
+    }
+
+    /**
+     * Appends a chunk to an upload, if the chunk starts at the number of bytes received so far.
+     * Otherwise the chunk is not read. A chunk with more or less content than its length is not appended.
+     *
+     * @param length the length of the chunk, no more than that is read from the stream
+     * @return the number of bytes received so far
+     * @throws FileNotFoundException if the upload does not exist or has been finished
+     */
+    default long appendChunk(String uploadId, long offset, long length, InputStream in) throws IOException {
+        throw new UnsupportedOperationException("Chunked uploads are not supported by this blob store");
+    }
+
+    /**
+     * @return the number of bytes of an upload received so far
+     * @throws FileNotFoundException if the upload does not exist or has been finished
+     */
+    default long getUploadOffset(String uploadId) throws IOException {
+        throw new UnsupportedOperationException("Chunked uploads are not supported by this blob store");
+    }
+
+    /**
+     * Stores the content of an upload received in chunks as a blob. The upload is kept until it is finished,
+     * completing it again returns the same blob, and its offset is the size of the blob.
+     *
+     * @throws FileNotFoundException if the upload does not exist or has been finished
+     */
+    default BlobInfo completeUpload(String uploadId) throws IOException {
+        throw new UnsupportedOperationException("Chunked uploads are not supported by this blob store");
+    }
+
+    /**
+     * Discards a completed upload, once the file created with its blob has been committed.
+     */
+    default void finishUpload(String uploadId) throws IOException {
+        throw new UnsupportedOperationException("Chunked uploads are not supported by this blob store");
+    }
+
     default boolean delete(String id) throws IOException {
         throw new RuntimeException("Cannot delete blob from read-only blob store");
     }
+
+    /**
+     * Registers another reference to a stored blob, e.g. by a copy of a file.
+     */
+    default void retain(String id) throws IOException {}
+
+    /**
+     * Releases a reference to a blob. The blob is deleted if it is not referenced anymore and the store supports it.
+     *
+     * @return whether the blob was deleted
+     */
+    default boolean release(String id) throws IOException {
+        return delete(id);
+    }
 }
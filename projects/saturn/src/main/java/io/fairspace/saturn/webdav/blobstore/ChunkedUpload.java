@@ -0,0 +1,329 @@
+package io.fairspace.saturn.webdav.blobstore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.pivovarit.function.ThrowingFunction;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.MD5Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.io.DigestInputStream;
+
+import static org.apache.commons.io.IOUtils.copyLarge;
+
+/**
+ * An upload received in chunks, which are appended to a partial file.
+ * <p>
+ * The digests of the content received so far are kept with the offset and updated with every chunk,
+ * so completing the upload does not read the partial file again. After every chunk, the offset and the state of the
+ * digests are saved next to the partial file, so they are restored without reading the partial file after a restart.
+ * A chunk that fails halfway, or is shorter or longer than declared, is truncated,
+ * so the upload can be resumed at the offset of the last complete chunk.
+ * <p>
+ * A completed upload is kept, with the blob it was stored as, until the file created with it has been committed,
+ * so that it can be completed again if that fails. Its partial file is gone then, so it is not resumed after a restart.
+ */
+@Log4j2
+class ChunkedUpload {
+    static final String STATE_SUFFIX = ".state";
+    private static final int MAX_STATE_LENGTH = 1024;
+
+    private final File file;
+    private final File stateFile;
+    private final Lock lock = new ReentrantLock();
+    private long offset;
+    private MD5Digest md5;
+    private SHA256Digest sha256;
+    private BlobInfo blob;
+    private long completedAt;
+    private boolean closed;
+
+    private ChunkedUpload(File file, long offset, MD5Digest md5, SHA256Digest sha256) {
+        this.file = file;
+        this.stateFile = stateFile(file);
+        this.offset = offset;
+        this.md5 = md5;
+        this.sha256 = sha256;
+    }
+
+    static ChunkedUpload create(File file, boolean withSha256) throws IOException {
+        if (!file.createNewFile()) {
+            throw new IOException("Partial file already exists: " + file);
+        }
+        var upload = new ChunkedUpload(file, 0, new MD5Digest(), withSha256 ? new SHA256Digest() : null);
+        upload.saveState(0, upload.md5, upload.sha256);
+        return upload;
+    }
+
+    /**
+     * Continues an upload started before a restart, from its saved state. Content appended after the state was saved
+     * is truncated. Without a usable state, the digests are restored by reading the partial file once.
+     */
+    static ChunkedUpload resume(File file, boolean withSha256) throws IOException {
+        var upload = loadState(file, withSha256);
+        if (upload != null) {
+            try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(upload.offset);
+            }
+            return upload;
+        }
+
+        log.warn("No usable state of upload {}, reading its partial file", file.getName());
+        var md5 = new MD5Digest();
+        var sha256 = withSha256 ? new SHA256Digest() : null;
+        long size;
+        try (InputStream in = new FileInputStream(file)) {
+            InputStream digested = new DigestInputStream(in, md5);
+            if (sha256 != null) {
+                digested = new DigestInputStream(digested, sha256);
+            }
+            size = copyLarge(digested, NullOutputStream.INSTANCE);
+        }
+        upload = new ChunkedUpload(file, size, md5, sha256);
+        upload.saveState(size, md5, sha256);
+        return upload;
+    }
+
+    /**
+     * Deletes the partial file of an upload and its state if the partial file has not been modified since the cutoff.
+     *
+     * @return whether the upload was deleted
+     */
+    static boolean deleteIfExpired(File file, long cutoff) throws IOException {
+        if (!file.exists() || file.lastModified() >= cutoff) {
+            return false;
+        }
+        Files.deleteIfExists(stateFile(file).toPath());
+        return Files.deleteIfExists(file.toPath());
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getOffset() {
+        lock.lock();
+        try {
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the MD5 of the content received so far
+     */
+    byte[] getMd5() {
+        return finish(new MD5Digest(md5));
+    }
+
+    /**
+     * @return the SHA-256 of the content received so far, or null if not calculated
+     */
+    byte[] getSha256() {
+        return sha256 != null ? finish(new SHA256Digest(sha256)) : null;
+    }
+
+    /**
+     * Appends a chunk, if it starts at the current offset. Otherwise, or if the upload has been completed,
+     * the chunk is not read. No more than the length of the chunk is read, and the chunk is not appended
+     * if the stream ends before, or has more content.
+     *
+     * @return the offset after appending
+     */
+    long append(long chunkOffset, long length, InputStream in) throws IOException {
+        lock.lock();
+        try {
+            checkNotClosed();
+            if (chunkOffset != offset || blob != null) {
+                return offset;
+            }
+            var chunkMd5 = new MD5Digest(md5);
+            var chunkSha256 = sha256 != null ? new SHA256Digest(sha256) : null;
+            try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.position(offset);
+                InputStream digested = new DigestInputStream(in, chunkMd5);
+                if (chunkSha256 != null) {
+                    digested = new DigestInputStream(digested, chunkSha256);
+                }
+                long received;
+                try {
+                    var out = new BufferedOutputStream(
+                            Channels.newOutputStream(channel), BlobStore.TRANSFER_BUFFER_SIZE);
+                    received = copyLarge(
+                            BoundedInputStream.builder()
+                                    .setInputStream(digested)
+                                    .setMaxCount(length)
+                                    .get(),
+                            out);
+                    out.flush();
+                } catch (IOException e) {
+                    channel.truncate(offset);
+                    throw e;
+                }
+                if (received != length || in.read() >= 0) {
+                    // The digests of the chunk are dropped, those of the previous chunks are kept
+                    channel.truncate(offset);
+                    return offset;
+                }
+                try {
+                    saveState(offset + received, chunkMd5, chunkSha256);
+                } catch (IOException e) {
+                    channel.truncate(offset);
+                    throw e;
+                }
+                offset += received;
+                md5 = chunkMd5;
+                sha256 = chunkSha256;
+                return offset;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Completes the upload, after which no chunks can be appended.
+     * Completing it again returns the same blob.
+     *
+     * @param completion stores the partial file as a blob
+     */
+    BlobInfo complete(ThrowingFunction<ChunkedUpload, BlobInfo, IOException> completion) throws IOException {
+        lock.lock();
+        try {
+            checkNotClosed();
+            if (blob == null) {
+                blob = completion.apply(this);
+                completedAt = System.currentTimeMillis();
+                Files.deleteIfExists(stateFile.toPath());
+            }
+            return blob;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the upload if no chunk has been appended since the cutoff, or, if it has been completed,
+     * forgets it if it was completed before the cutoff. After that, no chunks can be appended.
+     *
+     * @return whether the upload was deleted
+     */
+    boolean expire(long cutoff) throws IOException {
+        lock.lock();
+        try {
+            if (closed || (blob != null ? completedAt >= cutoff : !deleteIfExpired(file, cutoff))) {
+                return false;
+            }
+            closed = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes a completed upload once the file created with it has been committed.
+     */
+    void finish() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isCompleted() {
+        lock.lock();
+        try {
+            return blob != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkNotClosed() throws FileNotFoundException {
+        if (closed) {
+            throw new FileNotFoundException("The upload has been finished or has expired");
+        }
+    }
+
+    /**
+     * Replaces the saved state atomically, so it is either the state before or after a chunk.
+     */
+    private void saveState(long offset, MD5Digest md5, SHA256Digest sha256) throws IOException {
+        var temp = new File(stateFile.getPath() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeLong(offset);
+            writeBytes(out, md5.getEncodedState());
+            writeBytes(out, sha256 != null ? sha256.getEncodedState() : new byte[0]);
+        }
+        Files.move(
+                temp.toPath(), stateFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the upload as saved, or null if there is no saved state or it does not match the partial file
+     */
+    private static ChunkedUpload loadState(File file, boolean withSha256) {
+        var stateFile = stateFile(file);
+        if (!stateFile.exists()) {
+            return null;
+        }
+        try (var in = new DataInputStream(new FileInputStream(stateFile))) {
+            var offset = in.readLong();
+            var md5 = new MD5Digest(readBytes(in));
+            var sha256State = readBytes(in);
+            if (offset > file.length() || withSha256 == (sha256State.length == 0)) {
+                return null;
+            }
+            return new ChunkedUpload(file, offset, md5, withSha256 ? new SHA256Digest(sha256State) : null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read the state of upload {}", file.getName(), e);
+            return null;
+        }
+    }
+
+    private static File stateFile(File file) {
+        return new File(file.getPath() + STATE_SUFFIX);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0 || length > MAX_STATE_LENGTH) {
+            throw new IOException("Invalid digest state");
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] finish(Digest digest) {
+        var result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        return result;
+    }
+}
@@ -1,18 +1,38 @@
 package io.fairspace.saturn.webdav.blobstore;
 
 import java.io.*;
+import java.time.Duration;
 
 public class DeletableLocalBlobStore extends LocalBlobStore {
 
-    private final File dir;
-
     public DeletableLocalBlobStore(File dir) {
         super(dir);
-        this.dir = dir;
+    }
+
+    public DeletableLocalBlobStore(File dir, boolean contentAddressed) {
+        super(dir, contentAddressed);
+    }
+
+    public DeletableLocalBlobStore(File dir, boolean contentAddressed, Duration uploadExpiry) {
+        super(dir, contentAddressed, uploadExpiry);
     }
 
     public boolean delete(String id) throws IOException {
-        var dest = new File(dir, id);
+        var dest = file(id);
         return dest.delete();
     }
+
+    /**
+     * Blobs are not sent by the servlet container, which opens the file only after the transaction reading it
+     * has ended, when it may have been deleted already.
+     */
+    @Override
+    public File getFile(String id) {
+        return null;
+    }
+
+    @Override
+    protected boolean deleteUnreferenced(String id) throws IOException {
+        return delete(id);
+    }
 }
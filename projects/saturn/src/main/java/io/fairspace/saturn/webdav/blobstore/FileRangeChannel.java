@@ -0,0 +1,89 @@
+package io.fairspace.saturn.webdav.blobstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads a range of a file.
+ * The range can be transferred to another channel without copying it through user space,
+ * see {@link FileChannel#transferTo}.
+ */
+public class FileRangeChannel implements ReadableByteChannel {
+    private final FileChannel channel;
+    private long position;
+    private long remaining;
+
+    /**
+     * @param length the length of the range, limited to the end of the file
+     */
+    public FileRangeChannel(FileChannel channel, long offset, long length) throws IOException {
+        this.channel = channel;
+        this.position = offset;
+        this.remaining = Math.max(0, Math.min(length, channel.size() - offset));
+    }
+
+    /**
+     * @return the number of bytes left in the range.
+     */
+    public long remaining() {
+        return remaining;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        var limit = dst.limit();
+        if (dst.remaining() > remaining) {
+            dst.limit(dst.position() + (int) remaining);
+        }
+        try {
+            var read = channel.read(dst, position);
+            if (read < 0) {
+                // The file was truncated
+                remaining = 0;
+                return -1;
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    /**
+     * Transfers the rest of the range to the target channel.
+     *
+     * @return the number of bytes transferred
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        var transferred = 0L;
+        while (remaining > 0) {
+            var count = channel.transferTo(position, remaining, target);
+            if (count == 0 && position >= channel.size()) {
+                // The file was truncated
+                remaining = 0;
+                break;
+            }
+            position += count;
+            remaining -= count;
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,32 +1,101 @@
 package io.fairspace.saturn.webdav.blobstore;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
-import io.milton.common.RangeUtils;
-import io.milton.http.Range;
+import com.google.common.util.concurrent.Striped;
+import lombok.extern.log4j.Log4j2;
 
 import static java.util.UUID.randomUUID;
+import static org.apache.commons.codec.binary.Hex.encodeHexString;
+import static org.apache.commons.codec.digest.DigestUtils.getMd5Digest;
+import static org.apache.commons.codec.digest.DigestUtils.getSha256Digest;
 import static org.apache.commons.io.IOUtils.copyLarge;
 
+/**
+ * Stores blobs as files in a directory.
+ * <p>
+ * Blobs are spread over subdirectories named after the first two pairs of characters of their ids,
+ * e.g. 'ab/cd/abcd1234...', to keep directories small. Blobs stored directly in the directory by previous versions
+ * are still found, and can be moved to the subdirectories with {@link #migrateToShardedLayout()}.
+ * <p>
+ * In the content-addressed mode, a blob is named after the SHA-256 of its content, so storing the same content
+ * twice results in one file.
+ * <p>
+ * A blob can be referenced by several file versions, e.g. after copying a file or reverting it to a previous version.
+ * The number of references is kept in the 'refs' subdirectory, only for blobs with more than one reference.
+ * A blob is unreferenced when its last reference is released, see {@link #deleteUnreferenced}.
+ * <p>
+ * Uploads received in chunks are kept in the 'uploads' subdirectory until they are complete, or until they expire
+ * when no chunk has been received for a while, see {@link #deleteExpiredUploads()}. Completed uploads are kept
+ * in memory until they are finished, see {@link #finishUpload}.
+ */
+@Log4j2
 public class LocalBlobStore implements BlobStore {
+    private static final String REFS_DIRECTORY = "refs";
+    private static final String TEMP_DIRECTORY = "tmp";
+    private static final String UPLOADS_DIRECTORY = "uploads";
+    private static final int SHARD_LENGTH = 2;
+    private static final int SHARD_LEVELS = 2;
+    public static final Duration DEFAULT_UPLOAD_EXPIRY = Duration.ofDays(7);
+    private static final Duration UPLOAD_CLEANUP_INTERVAL = Duration.ofHours(1);
+
     private final File dir;
+    private final File refsDir;
+    private final File tempDir;
+    private final File uploadsDir;
+    private final boolean contentAddressed;
+    private final Duration uploadExpiry;
+    private final Striped<Lock> locks = Striped.lock(64);
+    private final Map<String, ChunkedUpload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong lastUploadCleanup = new AtomicLong();
 
     public LocalBlobStore(File dir) {
+        this(dir, false);
+    }
+
+    public LocalBlobStore(File dir, boolean contentAddressed) {
+        this(dir, contentAddressed, DEFAULT_UPLOAD_EXPIRY);
+    }
+
+    /**
+     * @param uploadExpiry the time after which an upload that has not received any chunk is deleted
+     */
+    public LocalBlobStore(File dir, boolean contentAddressed, Duration uploadExpiry) {
         this.dir = dir;
+        this.refsDir = new File(dir, REFS_DIRECTORY);
+        this.tempDir = new File(dir, TEMP_DIRECTORY);
+        this.uploadsDir = new File(dir, UPLOADS_DIRECTORY);
+        this.contentAddressed = contentAddressed;
+        this.uploadExpiry = uploadExpiry;
         if (!dir.exists() && !dir.mkdirs()) {
             throw new RuntimeException("Cannot initialize the local blob store");
         }
+        for (var subdir : new File[] {refsDir, tempDir, uploadsDir}) {
+            if (!subdir.exists() && !subdir.mkdirs()) {
+                throw new RuntimeException("Cannot initialize the local blob store");
+            }
+        }
     }
 
     @Override
     public String write(InputStream in) throws IOException {
-        var id = randomUUID().toString();
-        var dest = new File(dir, id);
-        while (dest.exists()) {
-            // The chance that this happens is zero, but we need to guarantee uniqueness.
-            id = randomUUID().toString();
-            dest = new File(dir, id);
-        }
+        var id = newId();
+        var dest = file(id);
+        createShard(dest);
         try (var out = new BufferedOutputStream(new FileOutputStream(dest))) {
             copyLarge(in, out);
         } catch (IOException e) {
@@ -37,10 +106,340 @@ public class LocalBlobStore implements BlobStore {
     }
 
     @Override
-    public void read(String id, OutputStream out, long start, Long finish) throws IOException {
-        var src = new File(dir, id);
-        try (var in = new BufferedInputStream(new FileInputStream(src))) {
-            RangeUtils.writeRange(in, new Range(start, finish), out);
+    public BlobInfo store(InputStream in) throws IOException {
+        if (!contentAddressed) {
+            return BlobStore.super.store(in);
+        }
+        var md5 = getMd5Digest();
+        var sha256 = getSha256Digest();
+        var temp = File.createTempFile("upload", null, tempDir);
+        long size;
+        try (var out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            size = copyLarge(new DigestInputStream(new DigestInputStream(in, md5), sha256), out);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        return storeFile(temp, size, md5.digest(), sha256.digest());
+    }
+
+    @Override
+    public boolean supportsChunkedUploads() {
+        return true;
+    }
+
+    @Override
+    public String startUpload() throws IOException {
+        var now = System.currentTimeMillis();
+        var last = lastUploadCleanup.get();
+        if (now - last >= UPLOAD_CLEANUP_INTERVAL.toMillis() && lastUploadCleanup.compareAndSet(last, now)) {
+            deleteExpiredUploads();
+        }
+        var uploadId = randomUUID().toString();
+        uploads.put(uploadId, ChunkedUpload.create(new File(uploadsDir, uploadId), contentAddressed));
+        return uploadId;
+    }
+
+    @Override
+    public long appendChunk(String uploadId, long offset, long length, InputStream in) throws IOException {
+        return upload(uploadId).append(offset, length, in);
+    }
+
+    @Override
+    public long getUploadOffset(String uploadId) throws IOException {
+        return upload(uploadId).getOffset();
+    }
+
+    @Override
+    public BlobInfo completeUpload(String uploadId) throws IOException {
+        return upload(uploadId)
+                .complete(upload ->
+                        storeFile(upload.getFile(), upload.getOffset(), upload.getMd5(), upload.getSha256()));
+    }
+
+    @Override
+    public void finishUpload(String uploadId) {
+        var upload = uploads.remove(uploadId);
+        if (upload != null) {
+            upload.finish();
+        }
+    }
+
+    /**
+     * Deletes the uploads that have not received any chunk within the expiry time, with their partial files,
+     * and forgets the uploads completed before the expiry time that have not been finished.
+     * Done at most once an hour when an upload is started.
+     *
+     * @return the number of uploads deleted
+     */
+    public int deleteExpiredUploads() throws IOException {
+        var cutoff = System.currentTimeMillis() - uploadExpiry.toMillis();
+        var deleted = 0;
+        for (var entry : uploads.entrySet()) {
+            if (entry.getValue().isCompleted() && entry.getValue().expire(cutoff)) {
+                uploads.remove(entry.getKey(), entry.getValue());
+                deleted++;
+            }
+        }
+        try (var files = Files.newDirectoryStream(uploadsDir.toPath())) {
+            for (var path : files) {
+                var name = path.getFileName().toString();
+                var uploadId = name.contains(".") ? name.substring(0, name.indexOf('.')) : name;
+                if (!uploadId.equals(name)) {
+                    // The state of an upload is deleted with its partial file, unless that is gone already
+                    if (!new File(uploadsDir, uploadId).exists() && path.toFile().lastModified() < cutoff) {
+                        Files.deleteIfExists(path);
+                    }
+                    continue;
+                }
+                var lock = locks.get(uploadId);
+                lock.lock();
+                try {
+                    var upload = uploads.get(uploadId);
+                    var expired = upload != null
+                            ? upload.expire(cutoff)
+                            : ChunkedUpload.deleteIfExpired(new File(uploadsDir, uploadId), cutoff);
+                    if (expired) {
+                        uploads.remove(uploadId);
+                        deleted++;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
         }
+        if (deleted > 0) {
+            log.info("{} expired uploads deleted from {}", deleted, uploadsDir);
+        }
+        return deleted;
+    }
+
+    /**
+     * @return the upload, which is resumed from its partial file after a restart
+     */
+    private ChunkedUpload upload(String uploadId) throws IOException {
+        if (uploadId == null || !isUuid(uploadId)) {
+            throw new FileNotFoundException("Unknown upload: " + uploadId);
+        }
+        var upload = uploads.get(uploadId);
+        if (upload != null) {
+            return upload;
+        }
+        var lock = locks.get(uploadId);
+        lock.lock();
+        try {
+            upload = uploads.get(uploadId);
+            if (upload == null) {
+                var file = new File(uploadsDir, uploadId);
+                if (!file.exists()) {
+                    throw new FileNotFoundException("Unknown upload: " + uploadId);
+                }
+                upload = ChunkedUpload.resume(file, contentAddressed);
+                uploads.put(uploadId, upload);
+            }
+            return upload;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves a file with its content already digested into the store.
+     *
+     * @param sha256 the digest of the content, only needed in the content-addressed mode
+     */
+    private BlobInfo storeFile(File file, long size, byte[] md5, byte[] sha256) throws IOException {
+        if (!contentAddressed) {
+            var id = newId();
+            var dest = file(id);
+            createShard(dest);
+            Files.move(file.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return new BlobInfo(id, size, encodeHexString(md5));
+        }
+
+        var id = encodeHexString(sha256);
+        var lock = locks.get(id);
+        lock.lock();
+        boolean existing;
+        try {
+            var dest = file(id);
+            existing = dest.exists();
+            if (existing) {
+                // Referenced by the file version created for it, which registers the reference in its transaction
+                Files.delete(file.toPath());
+            } else {
+                createShard(dest);
+                Files.move(file.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new BlobInfo(id, size, encodeHexString(md5), id, existing);
+    }
+
+    private String newId() {
+        var id = randomUUID().toString();
+        while (file(id).exists()) {
+            // The chance that this happens is zero, but we need to guarantee uniqueness.
+            id = randomUUID().toString();
+        }
+        return id;
+    }
+
+    private static boolean isUuid(String s) {
+        try {
+            return UUID.fromString(s).toString().equals(s);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public ReadableByteChannel readChannel(String id, long offset, long length) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file(id).toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // The blob has just been moved to its subdirectory
+            channel = FileChannel.open(shardedFile(id).toPath(), StandardOpenOption.READ);
+        }
+        try {
+            return new FileRangeChannel(channel, offset, length);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public File getFile(String id) {
+        return file(id);
+    }
+
+    @Override
+    public void retain(String id) throws IOException {
+        var lock = locks.get(id);
+        lock.lock();
+        try {
+            // The blob may have been deleted since it was stored, when its last reference was released
+            if (!file(id).exists()) {
+                throw new NoSuchFileException(id, null, "The blob has been deleted");
+            }
+            setReferenceCount(id, getReferenceCount(id) + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean release(String id) throws IOException {
+        var lock = locks.get(id);
+        lock.lock();
+        try {
+            var count = getReferenceCount(id) - 1;
+            setReferenceCount(id, count);
+            return count <= 0 && deleteUnreferenced(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of file versions referencing the blob, 1 unless more references have been registered.
+     */
+    int getReferenceCount(String id) throws IOException {
+        var refs = refsFile(id);
+        if (!refs.exists()) {
+            return 1;
+        }
+        return Integer.parseInt(Files.readString(refs.toPath(), StandardCharsets.UTF_8).trim());
+    }
+
+    private void setReferenceCount(String id, int count) throws IOException {
+        var refs = refsFile(id);
+        if (count <= 1) {
+            Files.deleteIfExists(refs.toPath());
+            return;
+        }
+        var temp = File.createTempFile("refs", null, tempDir);
+        Files.writeString(temp.toPath(), Integer.toString(count), StandardCharsets.UTF_8);
+        Files.move(temp.toPath(), refs.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Called when the last reference to a blob has been released.
+     * This store keeps unreferenced blobs, as file versions are never removed from the main storage.
+     *
+     * @return whether the blob was deleted
+     */
+    protected boolean deleteUnreferenced(String id) throws IOException {
+        return false;
+    }
+
+    /**
+     * Moves the blobs stored directly in the directory to their subdirectories.
+     * Each blob is moved atomically, so blobs can still be read in the meantime.
+     *
+     * @return the number of blobs moved
+     */
+    public long migrateToShardedLayout() throws IOException {
+        var moved = 0L;
+        try (var files = Files.newDirectoryStream(dir.toPath(), Files::isRegularFile)) {
+            for (var path : files) {
+                var id = path.getFileName().toString();
+                var dest = shardedFile(id);
+                if (dest.getParentFile().equals(dir)) {
+                    continue;
+                }
+                var lock = locks.get(id);
+                lock.lock();
+                try {
+                    createShard(dest);
+                    Files.move(path, dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    lock.unlock();
+                }
+                if (++moved % 100_000 == 0) {
+                    log.info("{} blobs moved to subdirectories of {}", moved, dir);
+                }
+            }
+        }
+        log.info("{} blobs moved to subdirectories of {}", moved, dir);
+        return moved;
+    }
+
+    /**
+     * @return the file of a blob, either in its subdirectory or, for blobs stored by previous versions,
+     * directly in the directory.
+     */
+    protected File file(String id) {
+        var file = shardedFile(id);
+        if (!file.exists()) {
+            var legacyFile = new File(dir, id);
+            if (legacyFile.exists()) {
+                return legacyFile;
+            }
+        }
+        return file;
+    }
+
+    private File shardedFile(String id) {
+        if (id.length() <= SHARD_LENGTH * SHARD_LEVELS) {
+            return new File(dir, id);
+        }
+        var parent = dir;
+        for (var level = 0; level < SHARD_LEVELS; level++) {
+            parent = new File(parent, id.substring(level * SHARD_LENGTH, (level + 1) * SHARD_LENGTH));
+        }
+        return new File(parent, id);
+    }
+
+    private static void createShard(File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+    }
+
+    private File refsFile(String id) {
+        return new File(refsDir, id);
     }
 }
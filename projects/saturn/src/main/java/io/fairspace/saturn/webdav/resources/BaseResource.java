@@ -1,5 +1,6 @@
 package io.fairspace.saturn.webdav.resources;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.stream.Stream;
@@ -15,6 +16,7 @@ import io.milton.property.PropertySource;
 import io.milton.property.PropertySource.PropertyMetaData;
 import io.milton.property.PropertySource.PropertySetException;
 import io.milton.resource.*;
+import lombok.SneakyThrows;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
@@ -24,6 +26,7 @@ import org.apache.jena.vocabulary.RDFS;
 
 import io.fairspace.saturn.vocabulary.FS;
 import io.fairspace.saturn.webdav.Access;
+import io.fairspace.saturn.webdav.BlobReferences;
 import io.fairspace.saturn.webdav.DavFactory;
 import io.fairspace.saturn.webdav.blobstore.BlobInfo;
 
@@ -209,7 +212,15 @@ public abstract class BaseResource
     private static Resource copyVersion(Resource ver) {
         var newVer = ver.getModel().createResource();
         copyProperties(
-                ver.asResource(), newVer, RDF.type, FS.dateModified, FS.deletedBy, FS.fileSize, FS.blobId, FS.md5);
+                ver.asResource(),
+                newVer,
+                RDF.type,
+                FS.dateModified,
+                FS.deletedBy,
+                FS.fileSize,
+                FS.blobId,
+                FS.md5,
+                FS.sha256);
         return newVer;
     }
 
@@ -246,7 +257,8 @@ public abstract class BaseResource
                     .addProperty(FS.modifiedBy, user)
                     .addProperty(FS.dateModified, date);
 
-            copyProperties(src, ver, FS.blobId, FS.fileSize, FS.md5);
+            copyProperties(src, ver, FS.blobId, FS.fileSize, FS.md5, FS.sha256);
+            retainBlob(ver);
 
             newSubject
                     .addLiteral(FS.currentVersion, 1)
@@ -358,7 +370,7 @@ public abstract class BaseResource
 
     protected Resource newVersion(BlobInfo blob) {
         updateParents(subject);
-        return subject.getModel()
+        var version = subject.getModel()
                 .createResource()
                 .addProperty(RDF.type, FS.FileVersion)
                 .addProperty(FS.blobId, blob.id)
@@ -366,6 +378,29 @@ public abstract class BaseResource
                 .addProperty(FS.md5, blob.md5)
                 .addProperty(FS.dateModified, timestampLiteral())
                 .addProperty(FS.modifiedBy, factory.currentUserResource());
+        if (blob.sha256 != null) {
+            version.addProperty(FS.sha256, blob.sha256);
+        }
+        if (blob.existing) {
+            retainBlob(version);
+        }
+        return version;
+    }
+
+    /**
+     * Registers a new version sharing the blob of another version, or the blob of content stored already,
+     * as a reference to the blob.
+     * The reference is undone if the transaction of the request is aborted, see {@link BlobReferences}.
+     */
+    @SneakyThrows(IOException.class)
+    protected void retainBlob(Resource version) {
+        var blobId = version.getRequiredProperty(FS.blobId).getString();
+        var blobReferences = getBlobReferences();
+        if (blobReferences != null) {
+            blobReferences.retain(blobId);
+        } else {
+            factory.store.retain(blobId);
+        }
     }
 
     protected static void updateParents(Resource subject) {
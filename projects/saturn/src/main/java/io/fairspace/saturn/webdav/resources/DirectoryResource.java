@@ -32,6 +32,7 @@ import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.shacl.vocabulary.SHACLM;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
+import org.springframework.http.ContentDisposition;
 
 import io.fairspace.saturn.services.metadata.MetadataService;
 import io.fairspace.saturn.services.metadata.validation.ValidationException;
@@ -49,6 +50,9 @@ import static io.fairspace.saturn.webdav.PathUtils.encodePath;
 import static io.fairspace.saturn.webdav.PathUtils.normalizePath;
 import static io.fairspace.saturn.webdav.PathUtils.splitPath;
 import static io.fairspace.saturn.webdav.WebDAVServlet.getBlob;
+import static io.fairspace.saturn.webdav.WebDAVServlet.isZipRequest;
+import static io.fairspace.saturn.webdav.WebDAVServlet.sendContentAfterTransaction;
+import static io.fairspace.saturn.webdav.WebDAVServlet.setContentDisposition;
 import static io.fairspace.saturn.webdav.WebDAVServlet.setErrorMessage;
 
 import static java.util.stream.Collectors.joining;
@@ -74,6 +78,7 @@ public class DirectoryResource extends BaseResource implements FolderResource, D
     public boolean authorise(Request request, Request.Method method, Auth auth) {
         return switch (method) {
             case COPY -> access.canRead();
+            case GET -> isZipRequest() ? access.canRead() : super.authorise(request, method, auth);
             default -> super.authorise(request, method, auth);
         };
     }
@@ -163,9 +168,23 @@ public class DirectoryResource extends BaseResource implements FolderResource, D
         super.delete(purge);
     }
 
+    /**
+     * Sends a ZIP archive of the directory and all its descendants if requested with ?format=zip.
+     * The descendants are listed in the read transaction, and their content is streamed afterwards.
+     */
     @Override
     public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType)
-            throws IOException, NotAuthorizedException, BadRequestException, NotFoundException {}
+            throws IOException, NotAuthorizedException, BadRequestException, NotFoundException {
+        if (!isZipRequest()) {
+            return;
+        }
+        var archive = ZipArchive.of(this);
+        setContentDisposition(ContentDisposition.attachment()
+                .filename(getName() + ".zip", StandardCharsets.UTF_8)
+                .build()
+                .toString());
+        sendContentAfterTransaction(out, stream -> archive.write(factory.store, stream));
+    }
 
     @Override
     public Long getMaxAgeSeconds(Auth auth) {
@@ -174,7 +193,7 @@ public class DirectoryResource extends BaseResource implements FolderResource, D
 
     @Override
     public String getContentType(String accepts) {
-        return "text/html";
+        return isZipRequest() ? "application/zip" : "text/html";
     }
 
     @Override
@@ -22,10 +22,12 @@ import org.apache.jena.vocabulary.RDF;
 
 import io.fairspace.saturn.vocabulary.FS;
 import io.fairspace.saturn.webdav.Access;
+import io.fairspace.saturn.webdav.BlobReferences;
 import io.fairspace.saturn.webdav.DavFactory;
 import io.fairspace.saturn.webdav.Property;
 import io.fairspace.saturn.webdav.WebDAVServlet;
 import io.fairspace.saturn.webdav.blobstore.BlobInfo;
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
 
 import static io.fairspace.saturn.rdf.ModelUtils.*;
 import static io.fairspace.saturn.webdav.WebDAVServlet.*;
@@ -36,6 +38,7 @@ import static java.lang.Integer.parseInt;
 public class FileResource extends BaseResource implements io.milton.resource.FileResource, ReplaceableResource {
     private int version;
     private String blobId;
+    private String contentHash;
     private long contentLength;
     private Date modifiedDate;
     private boolean singleVersion;
@@ -60,6 +63,7 @@ public class FileResource extends BaseResource implements io.milton.resource.Fil
                 .asResource();
 
         blobId = current.getRequiredProperty(FS.blobId).getString();
+        contentHash = getStringProperty(current, FS.sha256);
         contentLength = current.getRequiredProperty(FS.fileSize).getLong();
         modifiedDate = parseDate(current, FS.dateModified);
         singleVersion = versions.size() == 1;
@@ -76,7 +80,37 @@ public class FileResource extends BaseResource implements io.milton.resource.Fil
     @Override
     public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType)
             throws IOException, NotAuthorizedException, BadRequestException, NotFoundException {
-        factory.store.read(blobId, out, range != null ? range.getStart() : 0, range != null ? range.getFinish() : null);
+        var start = 0L;
+        var length = contentLength;
+        if (range != null) {
+            if (range.getStart() == null) {
+                // A suffix range, e.g. bytes=-500 for the last 500 bytes
+                start = Math.max(0, contentLength - range.getFinish());
+            } else {
+                start = range.getStart();
+                if (range.getFinish() != null) {
+                    length = Math.min(range.getFinish() + 1, contentLength);
+                }
+            }
+            length -= start;
+        }
+        var file = factory.store.getFile(blobId);
+        if (file != null && sendFileByContainer(out, file, start, length)) {
+            return;
+        }
+        // The blob is opened in the transaction, so it can still be read if it is deleted in the meantime
+        var channel = factory.store.readChannel(blobId, start, length);
+        try {
+            // Milton calls this method for every part of a multi-range request
+            sendContentAfterTransaction(out, stream -> {
+                try (channel) {
+                    BlobStore.transfer(channel, stream);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
     }
 
     @Override
@@ -119,6 +153,17 @@ public class FileResource extends BaseResource implements io.milton.resource.Fil
         loadVersion();
     }
 
+    String getBlobId() {
+        return blobId;
+    }
+
+    /**
+     * @return the SHA-256 of the content, if known.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
     @Override
     public Date getModifiedDate() {
         return modifiedDate;
@@ -160,7 +205,8 @@ public class FileResource extends BaseResource implements io.milton.resource.Fil
                 .asResource();
         var newVer = subject.getModel().createResource();
 
-        copyProperties(ver, newVer, RDF.type, FS.blobId, FS.fileSize, FS.md5);
+        copyProperties(ver, newVer, RDF.type, FS.blobId, FS.fileSize, FS.md5, FS.sha256);
+        retainBlob(newVer);
         newVer.addProperty(FS.modifiedBy, factory.currentUserResource())
                 .addLiteral(FS.dateModified, WebDAVServlet.timestampLiteral());
 
@@ -172,9 +218,18 @@ public class FileResource extends BaseResource implements io.milton.resource.Fil
                 .addLiteral(FS.currentVersion, current);
     }
 
+    /**
+     * Releases the reference to the blob once the transaction of the request has been committed,
+     * see {@link BlobReferences}.
+     */
     protected void deleteContent() throws ConflictException {
+        var blobReferences = getBlobReferences();
+        if (blobReferences != null) {
+            blobReferences.release(blobId);
+            return;
+        }
         try {
-            factory.store.delete(blobId);
+            factory.store.release(blobId);
         } catch (IOException e) {
             throw new ConflictException(this, "File blob cannot be deleted. " + e.getMessage());
         }
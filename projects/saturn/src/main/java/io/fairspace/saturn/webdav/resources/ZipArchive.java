@@ -0,0 +1,87 @@
+package io.fairspace.saturn.webdav.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+
+/**
+ * A ZIP archive of a directory and all its descendants.
+ * <p>
+ * The entries are collected from the dataset first, so that the archive can be streamed from the blob store
+ * after the read transaction has ended. The content is not compressed, and the archive is written in one pass,
+ * with ZIP64 extensions if needed. So memory usage does not depend on the size of the files.
+ */
+public class ZipArchive {
+    private final List<Entry> entries;
+
+    /**
+     * @param blobId the blob of a file, or null for a directory
+     */
+    public record Entry(String path, String blobId, long size, Date modified) {
+        public boolean isDirectory() {
+            return blobId == null;
+        }
+    }
+
+    public ZipArchive(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Collects the descendants of the directory visible to the current user, with the current version of every file.
+     */
+    public static ZipArchive of(DirectoryResource dir) {
+        var entries = new ArrayList<Entry>();
+        collect(dir, dir.getName() + "/", entries);
+        return new ZipArchive(entries);
+    }
+
+    private static void collect(DirectoryResource dir, String path, List<Entry> entries) {
+        entries.add(new Entry(path, null, 0, dir.getCreateDate()));
+        for (var child : dir.getChildren()) {
+            if (child instanceof DirectoryResource subdir) {
+                collect(subdir, path + subdir.getName() + "/", entries);
+            } else if (child instanceof FileResource file) {
+                entries.add(new Entry(
+                        path + file.getName(), file.getBlobId(), file.getContentLength(), file.getModifiedDate()));
+            }
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the archive. The stream is not closed.
+     */
+    public void write(BlobStore store, OutputStream out) throws IOException {
+        var zip = new ZipOutputStream(out);
+        // Unlike STORED entries, which need their CRC before the content, entries without compression
+        // can be written in one pass over the content
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        for (var entry : entries) {
+            var zipEntry = new ZipEntry(entry.path());
+            if (entry.modified() != null) {
+                zipEntry.setLastModifiedTime(FileTime.fromMillis(entry.modified().getTime()));
+            }
+            zip.putNextEntry(zipEntry);
+            if (!entry.isDirectory()) {
+                try (var channel = store.readChannel(entry.blobId(), 0, entry.size())) {
+                    BlobStore.transfer(channel, zip);
+                }
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+}
@@ -55,6 +55,7 @@ public class PostgresAwareTest {
         databaseConfig.setAutoCommit(viewDatabaseProperties.isAutoCommitEnabled());
         databaseConfig.setConnectionTimeout(viewDatabaseProperties.getConnectionTimeout());
         databaseConfig.setMaximumPoolSize(viewDatabaseProperties.getMaxPoolSize());
+        databaseConfig.addDataSourceProperty("reWriteBatchedInserts", true);
         return databaseConfig;
     }
 }
@@ -1,5 +1,7 @@
 package io.fairspace.saturn.controller;
 
+import java.util.Optional;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -8,6 +10,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import io.fairspace.saturn.services.maintenance.MaintenanceService;
+import io.fairspace.saturn.services.maintenance.ReindexProgress;
 
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.verify;
@@ -15,6 +18,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MaintenanceController.class)
@@ -44,6 +48,15 @@ class MaintenanceControllerTest extends BaseControllerTest {
         verify(maintenanceService).compactRdfStorageTask();
     }
 
+    @Test
+    void testMigrateBlobStores() throws Exception {
+        doNothing().when(maintenanceService).migrateBlobStoresTask();
+
+        mockMvc.perform(post("/maintenance/migrate-blobs").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent()); // Expect 204 No Content
+        verify(maintenanceService).migrateBlobStoresTask();
+    }
+
     @Test
     void testGetStatusActive() throws Exception {
         when(maintenanceService.active()).thenReturn(true);
@@ -63,4 +76,18 @@ class MaintenanceControllerTest extends BaseControllerTest {
                 .andExpect(content().string("inactive")); // Expect content "inactive"
         verify(maintenanceService).active();
     }
+
+    @Test
+    void testGetStatusWithProgress() throws Exception {
+        var progress = new ReindexProgress(3);
+        when(maintenanceService.active()).thenReturn(true);
+        when(maintenanceService.getReindexProgress()).thenReturn(Optional.of(progress));
+
+        mockMvc.perform(get("/maintenance/status").param("progress", "").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("active"))
+                .andExpect(jsonPath("$.reindex.viewsTotal").value(3))
+                .andExpect(jsonPath("$.reindex.viewsCompleted").value(0))
+                .andExpect(jsonPath("$.reindex.rowsCopied").value(0));
+    }
 }
@@ -1,20 +1,32 @@
 package io.fairspace.saturn.rdf.search;
 
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.DatasetImpl;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDFS;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
 import io.fairspace.saturn.services.metadata.MetadataPermissions;
 
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -93,4 +105,84 @@ public class FilteredDatasetGraphTest {
         // then
         assertFalse(actual);
     }
+
+    @Test
+    public void testAccessDecisionsAreReusedPerCollectionWithinReadTransaction() {
+        // give
+        var dsg = DatasetGraphFactory.createTxnMem();
+        var collections = 50;
+        var filesPerCollection = 100;
+        Txn.executeWrite(dsg, () -> {
+            for (var c = 0; c < collections; c++) {
+                for (var f = 0; f < filesPerCollection; f++) {
+                    var file = createURI("http://localhost/api/webdav/c" + c + "/file" + f);
+                    dsg.getDefaultGraph().add(file, RDFS.label.asNode(), createLiteral("file" + f));
+                }
+            }
+        });
+        when(metadataPermissions.getMetadataAccessOwner(any()))
+                .thenAnswer(invocation -> createURI(invocation.<Resource>getArgument(0)
+                        .getURI()
+                        .replaceAll("/file\\d+$", "")));
+        when(metadataPermissions.canReadMetadata(any()))
+                .thenAnswer(invocation -> invocation.<Resource>getArgument(0).getURI().contains("/c1/"));
+        var filtered = new FilteredDatasetGraph(dsg, metadataPermissions);
+
+        // when
+        var visible = Txn.calculateRead(filtered, () -> Iter.count(filtered.find()));
+
+        // then
+        assertEquals(filesPerCollection, visible);
+        verify(metadataPermissions, times(collections)).canReadMetadata(any());
+    }
+
+    @Test
+    public void testAccessDecisionsAreNotReusedAcrossTransactions() {
+        // give
+        var dsg = DatasetGraphFactory.createTxnMem();
+        var file = createURI("http://localhost/api/webdav/c1/file1");
+        Txn.executeWrite(dsg, () -> dsg.getDefaultGraph().add(file, RDFS.label.asNode(), createLiteral("file1")));
+        when(metadataPermissions.getMetadataAccessOwner(any())).thenReturn(createURI("http://localhost/api/webdav/c1"));
+        when(metadataPermissions.canReadMetadata(any())).thenReturn(true, false);
+        var filtered = new FilteredDatasetGraph(dsg, metadataPermissions);
+
+        // when
+        var first = Txn.calculateRead(filtered, () -> Iter.count(filtered.find()));
+        var second = Txn.calculateRead(filtered, () -> Iter.count(filtered.find()));
+
+        // then
+        assertEquals(1, first);
+        assertEquals(0, second);
+        verify(metadataPermissions, times(2)).canReadMetadata(any());
+    }
+
+    @Test
+    public void testAccessDecisionsAreKeptForReadTransactionsOfTheUnderlyingDataset() {
+        // give
+        var dsg = DatasetGraphFactory.createTxnMem();
+        var tx = new SimpleTransactions(DatasetImpl.wrap(dsg));
+        var file1 = createURI("http://localhost/api/webdav/c1/file1");
+        var file2 = createURI("http://localhost/api/webdav/c1/file2");
+        tx.executeWrite(model -> {
+            dsg.getDefaultGraph().add(file1, RDFS.label.asNode(), createLiteral("file1"));
+            dsg.getDefaultGraph().add(file2, RDFS.label.asNode(), createLiteral("file2"));
+        });
+        when(metadataPermissions.getMetadataAccessOwner(any())).thenReturn(createURI("http://localhost/api/webdav/c1"));
+        when(metadataPermissions.canReadMetadata(any())).thenReturn(true, false);
+        var filtered = new FilteredDatasetGraph(dsg, metadataPermissions);
+
+        // when
+        // reads started on the underlying dataset, which do not begin a transaction on the filtered graph
+        var first = tx.calculateRead(model -> Iter.count(filtered.find()));
+        // access to the collection is revoked
+        var second = tx.calculateRead(model -> Iter.count(filtered.find()));
+        // outside a read transaction access is checked for every quad
+        var unscoped = Txn.calculateWrite(dsg, () -> Iter.count(filtered.find()));
+
+        // then
+        assertEquals(2, first);
+        assertEquals(0, second);
+        assertEquals(0, unscoped);
+        verify(metadataPermissions, times(4)).canReadMetadata(any());
+    }
 }
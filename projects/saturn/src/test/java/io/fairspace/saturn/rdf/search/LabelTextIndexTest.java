@@ -0,0 +1,133 @@
+package io.fairspace.saturn.rdf.search;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.DatasetImpl;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.fairspace.saturn.controller.dto.SearchResultDto;
+import io.fairspace.saturn.controller.dto.request.LookupSearchRequest;
+import io.fairspace.saturn.services.search.SearchService;
+import io.fairspace.saturn.vocabulary.FS;
+
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LabelTextIndexTest {
+    private static final String NS = "http://localhost/iri/";
+    private static final String TYPE = NS + "Sample";
+
+    private static final List<String> LABELS = List.of(
+            "sample-s2-b-rna.fastq",
+            "sample-s2-b-rna_copy.fastq",
+            "coffee.jpg",
+            "Coffee beans",
+            "decaf coffee",
+            "my (special) file",
+            "RNA sequencing",
+            "Sequencing/RNA, run 2",
+            "sample?query!");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Dataset indexed;
+    private Dataset scanned;
+
+    @Before
+    public void before() throws IOException {
+        var dsg = DatasetGraphFactory.createTxnMem();
+        // Values written before the index exists are indexed by the rebuild
+        Txn.executeWrite(dsg, () -> addData(DatasetImpl.wrap(dsg).getDefaultModel(), 0, 5));
+        indexed = DatasetImpl.wrap(LabelTextIndex.wrap(dsg, folder.newFolder(), false));
+        // Values written afterwards are indexed on commit
+        Txn.executeWrite(indexed, () -> addData(indexed.getDefaultModel(), 5, LABELS.size()));
+
+        scanned = DatasetImpl.wrap(DatasetGraphFactory.createTxnMem());
+        Txn.executeWrite(scanned, () -> addData(scanned.getDefaultModel(), 0, LABELS.size()));
+    }
+
+    @Test
+    public void testTextIndexIsAvailable() {
+        assertTrue(LabelTextIndex.isAvailable(indexed));
+        assertFalse(LabelTextIndex.isAvailable(scanned));
+    }
+
+    @Test
+    public void testResultsAreTheSameAsWithRegularExpressions() {
+        var queries = List.of(
+                "coffee", "COF", "ffee", "rna", "fastq", "copy", "s2-b", "b-rna", "rna.fastq", "special", "(special",
+                "sequencing/rna", "rna, run", "corona", "virus", "corona vir", "query", "sample?", "2", "deleted");
+        for (var query : queries) {
+            assertEquals(query, search(scanned, query), search(indexed, query));
+        }
+        assertEquals(4, search(indexed, "rna").size());
+        assertEquals(1, search(indexed, "corona vir").size());
+        assertEquals(0, search(indexed, "deleted").size());
+    }
+
+    @Test
+    public void testDeletedValuesAreRemovedFromTheIndex() {
+        Txn.executeWrite(indexed, () -> indexed.getDefaultModel()
+                .removeAll(createResource(NS + "2"), RDFS.label, null)
+                .add(createResource(NS + "2"), RDFS.label, "tea.jpg"));
+
+        assertEquals(1, search(indexed, "coffee").size());
+        assertEquals(1, search(indexed, "tea").size());
+    }
+
+    @Test
+    public void testQueriesWithoutWordsHaveNoTextQuery() {
+        assertTrue(LabelTextIndex.toTextQuery(" -_ ").isEmpty());
+        assertEquals(
+                "label:(rna* AND fa\\:stq*) OR comment:(rna* AND fa\\:stq*)",
+                LabelTextIndex.toTextQuery("RNA.fa:stq").orElseThrow());
+    }
+
+    @Test
+    public void testQueriesReachingTheLimitScanAllLabels() {
+        // coffee.jpg, Coffee beans and decaf coffee
+        assertTrue(LabelTextIndex.getTextQuery(indexed, "coffee", 4).isPresent());
+        assertTrue(LabelTextIndex.getTextQuery(indexed, "coffee", 3).isEmpty());
+        assertTrue(LabelTextIndex.getTextQuery(scanned, "coffee").isEmpty());
+    }
+
+    private static List<String> search(Dataset ds, String query) {
+        var request = new LookupSearchRequest();
+        request.setQuery(query);
+        request.setResourceType(TYPE);
+        return new SearchService(ds).getLookupSearchResults(request).results().stream()
+                .map(SearchResultDto::id)
+                .toList();
+    }
+
+    private static void addData(Model model, int from, int to) {
+        for (var i = from; i < to; i++) {
+            var resource = model.createResource(NS + i)
+                    .addProperty(RDF.type, createResource(TYPE))
+                    .addProperty(RDFS.label, LABELS.get(i));
+            if (i == 0) {
+                resource.addProperty(RDFS.comment, "corona virus");
+            }
+            if (i == 3) {
+                resource.addProperty(FS.dateDeleted, "2024-01-01");
+            }
+        }
+        model.createResource(NS + "deleted")
+                .addProperty(RDF.type, createResource(TYPE))
+                .addProperty(RDFS.label, "deleted")
+                .addProperty(FS.dateDeleted, "2024-01-01");
+    }
+}
@@ -0,0 +1,93 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.junit.Test;
+
+import static org.apache.jena.graph.NodeFactory.createBlankNode;
+import static org.apache.jena.graph.NodeFactory.createLiteralDT;
+import static org.apache.jena.graph.NodeFactory.createLiteralLang;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class BinaryTransactionCodecTest {
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        var codec = new BinaryTransactionCodec();
+        var out = new ByteArrayOutputStream();
+        var writeListener = codec.write(out);
+
+        var graph = createURI("http://example.com/graph");
+        var subject = createURI("http://example.com/subject");
+        var predicate = createURI("http://example.com/predicate");
+        var blank = createBlankNode();
+        var number = createLiteralDT("42", XSDDatatype.XSDinteger);
+        var text = createLiteralLang("Ünïcödé text", "nl");
+
+        writeListener.onMetadata("userId", "userName", 123L);
+        writeListener.onAdd(graph, subject, predicate, createURI("http://example.com/object"));
+        writeListener.onDelete(graph, subject, predicate, createURI("http://example.com/object"));
+        writeListener.onAdd(graph, subject, predicate, blank);
+        writeListener.onAdd(graph, blank, predicate, number);
+        writeListener.onAdd(graph, subject, predicate, text);
+        writeListener.onCommit();
+
+        var in = new ByteArrayInputStream(out.toByteArray());
+        var readListener = mock(TransactionListener.class);
+        codec.read(in, readListener);
+
+        var inOrder = inOrder(readListener);
+        inOrder.verify(readListener).onBegin();
+        inOrder.verify(readListener).onMetadata("userId", "userName", 123L);
+        inOrder.verify(readListener).onAdd(graph, subject, predicate, createURI("http://example.com/object"));
+        inOrder.verify(readListener).onDelete(graph, subject, predicate, createURI("http://example.com/object"));
+        inOrder.verify(readListener).onAdd(graph, subject, predicate, blank);
+        inOrder.verify(readListener).onAdd(graph, blank, predicate, number);
+        inOrder.verify(readListener).onAdd(graph, subject, predicate, text);
+        inOrder.verify(readListener).onCommit();
+        verifyNoMoreInteractions(readListener);
+    }
+
+    @Test
+    public void testNoMeta() throws IOException {
+        var codec = new BinaryTransactionCodec();
+        var out = new ByteArrayOutputStream();
+        var writeListener = codec.write(out);
+
+        writeListener.onMetadata(null, null, 123L);
+        writeListener.onAbort();
+
+        var in = new ByteArrayInputStream(out.toByteArray());
+        var readListener = mock(TransactionListener.class);
+        codec.read(in, readListener);
+
+        verify(readListener).onBegin();
+        verify(readListener).onMetadata(null, null, 123L);
+        verify(readListener).onAbort();
+        verifyNoMoreInteractions(readListener);
+    }
+
+    @Test
+    public void testRepeatedNodesAreWrittenOnce() throws IOException {
+        var codec = new BinaryTransactionCodec();
+        var out = new ByteArrayOutputStream();
+        var writeListener = codec.write(out);
+        var graph = createURI("http://example.com/graph");
+        var subject = createURI("http://example.com/a-rather-long-subject-iri");
+        var predicate = createURI("http://example.com/a-rather-long-predicate-iri");
+
+        var object = createLiteralDT("1", XSDDatatype.XSDinteger);
+
+        writeListener.onAdd(graph, subject, predicate, object);
+        var size = out.size();
+        writeListener.onDelete(graph, subject, predicate, object);
+
+        // A tag and four references
+        assertEquals(5, out.size() - size);
+    }
+}
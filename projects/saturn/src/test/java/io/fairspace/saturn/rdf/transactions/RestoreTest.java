@@ -85,6 +85,48 @@ public class RestoreTest {
         }
     }
 
+    @Test
+    public void restoreFromBinaryLogWorksAsExpected() throws Exception {
+        config.setTransactionLogFormat(JenaProperties.TransactionLogFormat.BINARY);
+        try (var txn1 = newDataset()) {
+            txn1.executeWrite(m -> m.add(stmt1));
+            txn1.executeWrite(m -> m.add(stmt2));
+        }
+
+        deleteDirectory(config.getDatasetPath());
+
+        try (var txn2 = newDataset()) {
+            txn2.executeRead(m -> {
+                assertTrue(m.contains(stmt1));
+                assertTrue(m.contains(stmt2));
+            });
+        }
+    }
+
+    @Test
+    public void restoreReadsTransactionsNotConvertedFromLegacyLog() throws Exception {
+        try (var txn1 = newDataset()) {
+            txn1.executeWrite(m -> m.add(stmt1));
+        }
+
+        deleteDirectory(config.getDatasetPath());
+        config.setTransactionLogFormat(JenaProperties.TransactionLogFormat.BINARY);
+
+        try (var txn2 = newDataset()) {
+            txn2.executeRead(m -> assertTrue(m.contains(stmt1)));
+            txn2.executeWrite(m -> m.add(stmt2));
+        }
+
+        deleteDirectory(config.getDatasetPath());
+
+        try (var txn3 = newDataset()) {
+            txn3.executeRead(m -> {
+                assertTrue(m.contains(stmt1));
+                assertTrue(m.contains(stmt2));
+            });
+        }
+    }
+
     private Transactions newDataset() {
         var viewProperties = new ViewsProperties();
         return new BulkTransactions(SaturnDatasetFactory.connect(viewProperties, config, null, null));
@@ -0,0 +1,181 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jena.graph.Node;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class SegmentedTransactionLogTest {
+    private static final Node GRAPH = createURI("http://example.com/graph");
+    private static final Node PREDICATE = createURI("http://example.com/predicate");
+    private static final Node OBJECT = createURI("http://example.com/object");
+
+    private File logDir;
+    private SegmentedTransactionLog log;
+
+    @Before
+    public void before() throws IOException {
+        logDir = new File(getTempDirectory(), randomUUID().toString());
+        log = new SegmentedTransactionLog(logDir, new BinaryTransactionCodec(), 1024, false);
+    }
+
+    @After
+    public void after() throws IOException {
+        log.close();
+        deleteDirectory(logDir);
+    }
+
+    @Test
+    public void transactionsCanBeReadBack() throws IOException {
+        write(log, "http://example.com/1");
+        write(log, "http://example.com/2");
+
+        assertEquals(2L, log.size());
+        var listener = mock(TransactionListener.class);
+        log.read(1, listener);
+        verify(listener).onAdd(GRAPH, createURI("http://example.com/2"), PREDICATE, OBJECT);
+        verify(listener).onCommit();
+    }
+
+    @Test
+    public void logContinuesNumberingAcrossSegments() throws IOException {
+        for (var i = 0; i < 100; i++) {
+            write(log, "http://example.com/" + i);
+        }
+        log.close();
+
+        log = new SegmentedTransactionLog(logDir, new BinaryTransactionCodec(), 1024, false);
+        write(log, "http://example.com/100");
+
+        assertEquals(101L, log.size());
+        assertTrue(logDir.list((dir, name) -> name.endsWith(".log")).length > 1);
+        for (var i = 0; i <= 100; i++) {
+            var listener = mock(TransactionListener.class);
+            log.read(i, listener);
+            verify(listener).onAdd(GRAPH, createURI("http://example.com/" + i), PREDICATE, OBJECT);
+        }
+    }
+
+    @Test
+    public void doesNotLogAbortedTransactions() throws IOException {
+        log.onBegin();
+        log.onAdd(GRAPH, createURI("http://example.com/aborted"), PREDICATE, OBJECT);
+        log.onAbort();
+        write(log, "http://example.com/1");
+
+        assertEquals(1L, log.size());
+        var listener = mock(TransactionListener.class);
+        log.read(0, listener);
+        verify(listener).onAdd(GRAPH, createURI("http://example.com/1"), PREDICATE, OBJECT);
+    }
+
+    @Test
+    public void corruptedTransactionsAreDroppedFromTheEnd() throws IOException {
+        write(log, "http://example.com/1");
+        write(log, "http://example.com/2");
+        log.close();
+        long end;
+        try (var index = new RandomAccessFile(new File(logDir, "segment-000000000000.idx"), "r")) {
+            index.seek(12);
+            end = index.readLong();
+        }
+        try (var data = new RandomAccessFile(new File(logDir, "segment-000000000000.log"), "rw")) {
+            data.seek(end - 2);
+            data.write(0xFF);
+        }
+
+        log = new SegmentedTransactionLog(logDir, new BinaryTransactionCodec(), 1024 * 1024, false);
+
+        assertEquals(1L, log.size());
+    }
+
+    @Test
+    public void corruptedTransactionsAreNotPassedToTheListener() throws IOException {
+        write(log, "http://example.com/1");
+        write(log, "http://example.com/2");
+        log.close();
+        long end;
+        try (var index = new RandomAccessFile(new File(logDir, "segment-000000000000.idx"), "r")) {
+            end = index.readLong();
+        }
+        try (var data = new RandomAccessFile(new File(logDir, "segment-000000000000.log"), "rw")) {
+            data.seek(end / 2);
+            var b = data.read();
+            data.seek(end / 2);
+            data.write(~b);
+        }
+
+        log = new SegmentedTransactionLog(logDir, new BinaryTransactionCodec(), 1024 * 1024, false);
+
+        var listener = mock(TransactionListener.class);
+        assertThrows(IOException.class, () -> log.read(0, listener));
+        verifyNoInteractions(listener);
+    }
+
+    @Test
+    public void segmentsArePreallocated() throws IOException {
+        write(log, "http://example.com/1");
+
+        assertEquals(1024, new File(logDir, "segment-000000000000.log").length());
+    }
+
+    @Test
+    public void concurrentCommitsAreDurableWithGroupCommit() throws Exception {
+        log.close();
+        log = new SegmentedTransactionLog(logDir, new BinaryTransactionCodec(), 1024 * 1024, true);
+        // Transactions are written one at a time, as by the write lock of the database
+        var writeLock = new ReentrantLock();
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var commits = new ArrayList<Future<?>>();
+            for (var i = 0; i < 100; i++) {
+                var subject = "http://example.com/" + i;
+                commits.add(executor.submit(() -> {
+                    long size;
+                    writeLock.lock();
+                    try {
+                        write(log, subject);
+                        size = log.size();
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    log.awaitDurable(size);
+                    return null;
+                }));
+            }
+            for (var commit : commits) {
+                commit.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        log.close();
+        log = new SegmentedTransactionLog(logDir, new BinaryTransactionCodec(), 1024 * 1024, true);
+
+        assertEquals(100L, log.size());
+    }
+
+    private static void write(TransactionLog log, String subject) throws IOException {
+        log.onBegin();
+        log.onMetadata("userId", "userName", 0);
+        log.onAdd(GRAPH, createURI(subject), PREDICATE, OBJECT);
+        log.onCommit();
+    }
+}
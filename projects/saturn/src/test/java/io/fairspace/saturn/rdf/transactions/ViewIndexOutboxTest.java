@@ -0,0 +1,127 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.junit.Assert.*;
+
+public class ViewIndexOutboxTest {
+    private File logDir;
+    private ViewIndexOutbox outbox;
+
+    @Before
+    public void before() throws IOException {
+        logDir = new File(getTempDirectory(), randomUUID().toString());
+        outbox = new ViewIndexOutbox(logDir);
+    }
+
+    @After
+    public void after() throws IOException {
+        outbox.close();
+        deleteDirectory(logDir);
+    }
+
+    @Test
+    public void unpublishedRecordsAreNotAvailable() throws IOException, InterruptedException {
+        var first = outbox.append(List.of("http://example.com/a"));
+        outbox.append(List.of("http://example.com/b"));
+        outbox.publish(first);
+
+        var batch = outbox.awaitBatch(100);
+
+        assertEquals(Set.of("http://example.com/a"), batch.subjects());
+        assertEquals(first, batch.lastCommit());
+    }
+
+    @Test
+    public void recordsAreBatchedAndDeduplicated() throws IOException, InterruptedException {
+        outbox.append(List.of("http://example.com/a", "http://example.com/b"));
+        outbox.append(List.of("http://example.com/b"));
+        var last = outbox.append(List.of("http://example.com/c"));
+        outbox.publish(last);
+
+        var batch = outbox.awaitBatch(2);
+
+        assertEquals(Set.of("http://example.com/a", "http://example.com/b"), batch.subjects());
+        outbox.acknowledge(batch);
+        batch = outbox.awaitBatch(2);
+        assertEquals(Set.of("http://example.com/c"), batch.subjects());
+        outbox.acknowledge(batch);
+        assertTrue(outbox.awaitAcknowledged(last, 0));
+    }
+
+    @Test
+    public void indexingResumesFromTheAcknowledgedPosition() throws IOException, InterruptedException {
+        var first = outbox.append(List.of("http://example.com/a"));
+        outbox.publish(first);
+        outbox.acknowledge(outbox.awaitBatch(100));
+        var second = outbox.append(List.of("http://example.com/b"));
+        outbox.close();
+
+        outbox = new ViewIndexOutbox(logDir);
+
+        assertEquals(first, outbox.getAcknowledgedCommit());
+        assertEquals(second, outbox.getLastCommit());
+        var batch = outbox.awaitBatch(100);
+        assertEquals(Set.of("http://example.com/b"), batch.subjects());
+        assertEquals(second + 1, outbox.append(List.of("http://example.com/c")));
+    }
+
+    @Test
+    public void incompleteRecordIsTruncated() throws IOException, InterruptedException {
+        var commit = outbox.append(List.of("http://example.com/a"));
+        outbox.append(List.of("http://example.com/b"));
+        outbox.close();
+        var file = new File(logDir, "view-index-outbox");
+        try (var raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        outbox = new ViewIndexOutbox(logDir);
+
+        assertEquals(commit, outbox.getLastCommit());
+        var batch = outbox.awaitBatch(100);
+        assertEquals(Set.of("http://example.com/a"), batch.subjects());
+    }
+
+    @Test
+    public void outboxIsTruncatedWhenDrained() throws IOException, InterruptedException {
+        var commit = outbox.append(List.of("http://example.com/a"));
+        outbox.publish(commit);
+
+        outbox.acknowledge(outbox.awaitBatch(100));
+
+        assertEquals(0, new File(logDir, "view-index-outbox").length());
+        outbox.close();
+        outbox = new ViewIndexOutbox(logDir);
+        assertEquals(commit, outbox.getAcknowledgedCommit());
+        assertFalse(outbox.awaitAcknowledged(commit + 1, 10));
+    }
+
+    @Test
+    public void closingReleasesWaitingWorker() throws Exception {
+        var worker = new Thread(() -> {
+            try {
+                assertNull(outbox.awaitBatch(100));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        worker.start();
+
+        outbox.close();
+
+        worker.join(5000);
+        assertFalse(worker.isAlive());
+    }
+}
@@ -0,0 +1,109 @@
+package io.fairspace.saturn.rdf.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.fairspace.saturn.PostgresAwareTest;
+import io.fairspace.saturn.services.views.MaterializedViewService;
+import io.fairspace.saturn.services.views.ViewStoreClient;
+import io.fairspace.saturn.services.views.ViewStoreClientFactory;
+
+import static io.fairspace.saturn.TestUtils.loadViewsConfig;
+import static io.fairspace.saturn.TestUtils.setupRequestContext;
+import static io.fairspace.saturn.services.users.UserService.currentUserAsSymbol;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.apache.jena.sparql.core.DatasetImpl.wrap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ViewIndexWorkerTest extends PostgresAwareTest {
+    private static final String SUBJECT_TYPE = "https://institut-curie.org/ontology#Subject";
+
+    @Mock
+    private MaterializedViewService materializedViewService;
+
+    private File logDir;
+    private DataSource dataSource;
+    private ViewIndexOutbox outbox;
+    private ViewIndexWorker worker;
+    private Dataset ds;
+
+    @Before
+    public void before() throws SQLException, IOException {
+        setupRequestContext();
+        var viewDatabase = buildViewDatabaseConfig();
+        var viewsProperties = loadViewsConfig("src/test/resources/test-views.yaml");
+        var configuration = new ViewStoreClient.ViewStoreConfiguration(viewsProperties);
+        dataSource = getDataSource(viewDatabase);
+        var viewStoreClientFactory = new ViewStoreClientFactory(
+                viewsProperties, viewDatabase, materializedViewService, dataSource, configuration);
+
+        logDir = new File(getTempDirectory(), randomUUID().toString());
+        outbox = new ViewIndexOutbox(logDir);
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        // Views are updated for the current user only if switched on explicitly
+        dsg.getContext().set(currentUserAsSymbol(), true);
+        worker = new ViewIndexWorker(viewsProperties, dsg, viewStoreClientFactory, "http://localhost", outbox, 100);
+        ds = wrap(new TxnIndexDatasetGraph(
+                viewsProperties, dsg, viewStoreClientFactory, "http://localhost", outbox, worker));
+        worker.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        ds.close();
+        deleteDirectory(logDir);
+    }
+
+    @Test
+    public void committedSubjectsAreIndexedInTheViews() throws SQLException, InterruptedException {
+        var subject = "http://localhost/iri/subject-" + randomUUID();
+        ds.executeWrite(() -> ds.getDefaultModel()
+                .createResource(subject)
+                .addProperty(RDF.type, ds.getDefaultModel().createResource(SUBJECT_TYPE))
+                .addProperty(RDFS.label, "Indexed subject"));
+
+        assertTrue(outbox.awaitAcknowledged(outbox.getLastCommit(), 10000));
+        assertEquals("Indexed subject", label(subject));
+    }
+
+    @Test
+    public void closingTheDatasetStopsTheWorkerAndClosesTheOutbox() throws IOException, InterruptedException {
+        assertTrue(worker.isRunning());
+
+        ds.close();
+
+        assertFalse(worker.isRunning());
+        assertNull(outbox.awaitBatch(100));
+    }
+
+    private String label(String id) throws SQLException {
+        try (var connection = dataSource.getConnection();
+                var statement = connection.prepareStatement("select label from subject where id = ?")) {
+            statement.setString(1, id);
+            try (var result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        }
+    }
+}
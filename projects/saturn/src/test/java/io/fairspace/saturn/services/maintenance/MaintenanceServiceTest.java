@@ -92,4 +92,28 @@ public class MaintenanceServiceTest {
         verify(sut).recreateIndex();
         verify(viewService).refreshCaches();
     }
+
+    @Test
+    public void testMigratingBlobStoresIsNotAllowedForNotAdmins() {
+        // give
+        var currentUser = new User();
+        currentUser.setAdmin(false);
+        when(userService.currentUser()).thenReturn(currentUser);
+
+        // when/then
+        assertThrows(AccessDeniedException.class, sut::migrateBlobStoresTask);
+    }
+
+    @Test
+    public void testMigratingBlobStoresIsNotAllowedWhenActive() {
+        // give
+        var currentUser = new User();
+        currentUser.setAdmin(true);
+        when(userService.currentUser()).thenReturn(currentUser);
+
+        doReturn(true).when(sut).active();
+
+        // when/then
+        assertThrows(MAINTENANCE_IS_IN_PROGRESS, ConflictException.class, sut::migrateBlobStoresTask);
+    }
 }
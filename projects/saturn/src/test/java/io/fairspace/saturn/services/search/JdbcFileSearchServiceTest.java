@@ -79,6 +79,8 @@ public class JdbcFileSearchServiceTest extends PostgresAwareTest {
     @Mock
     private MaterializedViewService materializedViewService;
 
+    private ViewStoreClientFactory viewStoreClientFactory;
+
     WorkspaceService workspaceService;
     MetadataService api;
     FileSearchService fileSearchService;
@@ -122,7 +124,7 @@ public class JdbcFileSearchServiceTest extends PostgresAwareTest {
         var viewDatabase = buildViewDatabaseConfig();
         var configuration = new ViewStoreClient.ViewStoreConfiguration(viewsProperties);
         var dataSource = getDataSource(viewDatabase);
-        var viewStoreClientFactory = new ViewStoreClientFactory(
+        viewStoreClientFactory = new ViewStoreClientFactory(
                 viewsProperties, viewDatabase, materializedViewService, dataSource, configuration);
         var dsg = new TxnIndexDatasetGraph(
                 viewsProperties, DatasetGraphFactory.createTxnMem(), viewStoreClientFactory, "http://localhost:8080");
@@ -211,7 +213,7 @@ public class JdbcFileSearchServiceTest extends PostgresAwareTest {
         request.setQuery("rna");
         var results = fileSearchService.searchFiles(request);
         Assert.assertEquals(2, results.size());
-        // Expect the results to be sorted by id
+        // Expect equally ranked results to be sorted by id
         Assert.assertEquals("sample-s2-b-rna.fastq", results.get(0).label());
         Assert.assertEquals("sample-s2-b-rna_copy.fastq", results.get(1).label());
     }
@@ -272,4 +274,10 @@ public class JdbcFileSearchServiceTest extends PostgresAwareTest {
         var results = fileSearchService.searchFiles(request);
         Assert.assertEquals(1, results.size());
     }
+
+    @Test
+    public void testSearchIndexesAreCreated() {
+        Assert.assertTrue(viewStoreClientFactory.isTrigramSearchEnabled());
+        Assert.assertTrue(viewStoreClientFactory.isFullTextSearchEnabled());
+    }
 }
@@ -0,0 +1,85 @@
+package io.fairspace.saturn.services.views;
+
+import java.util.List;
+
+import io.milton.resource.CollectionResource;
+import io.milton.resource.Resource;
+import org.apache.jena.query.Dataset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.fairspace.saturn.auth.RequestContext;
+import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
+import io.fairspace.saturn.rdf.transactions.Transactions;
+
+import static org.apache.jena.query.DatasetFactory.createTxnMem;
+import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.apache.jena.vocabulary.RDFS.label;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AccessibleCollectionsCacheTest {
+    private static final String ROOT = "http://localhost:8080/api/webdav";
+
+    private final Dataset ds = createTxnMem();
+    private final Transactions transactions = new SimpleTransactions(ds);
+
+    @Mock
+    private CollectionResource rootSubject;
+
+    private AccessibleCollectionsCache cache;
+
+    @Before
+    public void before() throws Exception {
+        when(rootSubject.getUniqueId()).thenReturn(ROOT);
+        List<Resource> children = List.of(collection("coll2"), collection("coll1"));
+        when(rootSubject.getChildren()).thenAnswer(invocation -> children);
+        RequestContext.setCurrentUserStringUri("http://localhost:8080/api/iri/user1");
+        cache = new AccessibleCollectionsCache(transactions, rootSubject);
+    }
+
+    @After
+    public void after() {
+        RequestContext.setCurrentUserStringUri(null);
+    }
+
+    @Test
+    public void testCollectionNamesAreSorted() {
+        var collections = cache.get();
+
+        assertEquals(List.of("coll1", "coll2"), collections.asList());
+        assertTrue(collections.contains("coll2"));
+        assertFalse(collections.contains("coll3"));
+    }
+
+    @Test
+    public void testCollectionsAreListedOncePerUserAndCommit() throws Exception {
+        cache.get();
+        cache.get();
+        verify(rootSubject, times(1)).getChildren();
+
+        RequestContext.setCurrentUserStringUri("http://localhost:8080/api/iri/user2");
+        cache.get();
+        verify(rootSubject, times(2)).getChildren();
+
+        transactions.executeWrite(m -> m.add(createResource(ROOT + "/coll1"), label, "coll1"));
+        cache.get();
+        verify(rootSubject, times(3)).getChildren();
+    }
+
+    private static CollectionResource collection(String name) {
+        var collection = mock(CollectionResource.class);
+        when(collection.getUniqueId()).thenReturn(ROOT + "/" + name);
+        return collection;
+    }
+}
@@ -3,7 +3,9 @@ package io.fairspace.saturn.services.views;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
@@ -61,9 +63,13 @@ import static io.fairspace.saturn.TestUtils.setupRequestContext;
 import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 
 import static org.apache.jena.query.DatasetFactory.wrap;
+import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -88,6 +94,9 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
     MetadataService api;
     QueryService sut;
     MaintenanceService maintenanceService;
+    ViewStoreReader viewStoreReader;
+    ViewStoreClientFactory viewStoreClientFactory;
+    DataSource dataSource;
 
     private DAO dao;
 
@@ -116,10 +125,10 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
         searchProperties.setPageRequestTimeout(10000);
         searchProperties.setMaxJoinItems(50);
         var configuration = new ViewStoreClient.ViewStoreConfiguration(viewsProperties);
-        DataSource dataSource = getDataSource(viewDatabase);
+        dataSource = getDataSource(viewDatabase);
         MaterializedViewService materializedViewService = new MaterializedViewService(
-                dataSource, configuration, viewsProperties, searchProperties.getMaxJoinItems());
-        var viewStoreClientFactory = new ViewStoreClientFactory(
+                dataSource, configuration, viewsProperties, viewDatabase, searchProperties.getMaxJoinItems());
+        viewStoreClientFactory = new ViewStoreClientFactory(
                 viewsProperties, viewDatabase, materializedViewService, dataSource, configuration);
 
         var dsg = new TxnIndexDatasetGraph(
@@ -133,7 +142,7 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
 
         dao = new DAO(model);
 
-        var viewStoreReader =
+        viewStoreReader =
                 new ViewStoreReader(searchProperties, viewsProperties, viewStoreClientFactory, configuration);
         var viewService = new ViewService(
                 searchProperties,
@@ -240,6 +249,9 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
         Assert.assertEquals(
                 "Blood",
                 row.get("Sample_nature").stream().findFirst().orElseThrow().label());
+        Assert.assertEquals(
+                SAMPLE_NATURE_BLOOD,
+                row.get("Sample_nature").stream().findFirst().orElseThrow().value());
         Assert.assertEquals(
                 "Liver",
                 row.get("Sample_topography").stream().findFirst().orElseThrow().label());
@@ -301,6 +313,41 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
                 0.01);
     }
 
+    @Test
+    public void testRetrieveSamplePagesUsingCursor() {
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setSize(1);
+        var firstPage = sut.retrieveViewPage(request);
+        Assert.assertEquals(1, firstPage.getRows().size());
+        Assert.assertTrue(firstPage.isHasNext());
+        Assert.assertNotNull(firstPage.getNextCursor());
+
+        request.setCursor(firstPage.getNextCursor());
+        var secondPage = sut.retrieveViewPage(request);
+        Assert.assertEquals(1, secondPage.getRows().size());
+        Assert.assertFalse(secondPage.isHasNext());
+        Assert.assertNull(secondPage.getNextCursor());
+
+        request.setCursor(null);
+        request.setSize(10);
+        var allRows = sut.retrieveViewPage(request).getRows();
+        Assert.assertEquals(
+                allRows,
+                List.of(firstPage.getRows().getFirst(), secondPage.getRows().getFirst()));
+    }
+
+    @Test
+    public void testCursorPageQuerySeeksInsteadOfSkippingRows() throws SQLException {
+        try (var connection = viewStoreClientFactory.getConnection();
+                var query = viewStoreReader.query(
+                        connection, "Sample", List.of(), "http://example.com/last-seen", "order by id limit 11", false)) {
+            var sql = query.toString();
+            Assert.assertTrue(sql.contains("v.id > 'http://example.com/last-seen'"));
+            Assert.assertFalse(sql.contains("offset"));
+        }
+    }
+
     @Test
     public void testRetrieveSamplePageUsingSampleFilter() {
         var request = new ViewRequest();
@@ -389,6 +436,70 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
                 row2.get("Resource_analysisType").stream().map(ValueDto::label).collect(Collectors.toSet()));
     }
 
+    @Test
+    public void testRetrieveSamplePageIncludeJoinUsesOneConnection() throws SQLException {
+        var factory = spy(viewStoreClientFactory);
+        var reader = new ViewStoreReader(
+                viewStoreReader.searchProperties,
+                viewStoreReader.viewsProperties,
+                factory,
+                viewStoreReader.configuration);
+
+        var rows = reader.retrieveRows("Sample", List.of(), 0, 10, true);
+
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals(1, rows.getFirst().get("Subject").size());
+        verify(factory, times(1)).getConnection();
+    }
+
+    @Test
+    public void testReindexingRestoresRowsAndIndexes() throws SQLException {
+        var tables = List.of("sample", "subject", "resource");
+        var rowCounts = rowCounts(tables);
+        var indexes = indexDefinitions();
+        Assert.assertTrue(indexes.containsKey("resource_search_vector_idx"));
+        Assert.assertTrue(indexes.containsKey("sample_label_trgm_idx"));
+
+        maintenanceService.recreateIndex();
+
+        Assert.assertEquals(2L, (long) rowCounts.get("sample"));
+        Assert.assertEquals(rowCounts, rowCounts(tables));
+        Assert.assertEquals(indexes, indexDefinitions());
+    }
+
+    private Map<String, Long> rowCounts(List<String> tables) throws SQLException {
+        var counts = new HashMap<String, Long>();
+        try (var connection = dataSource.getConnection();
+                var statement = connection.createStatement()) {
+            for (var table : tables) {
+                try (var result = statement.executeQuery("select count(*) from " + table)) {
+                    result.next();
+                    counts.put(table, result.getLong(1));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the definitions of the indexes of the tables by name, excluding those of materialized views
+     */
+    private Map<String, String> indexDefinitions() throws SQLException {
+        var indexes = new HashMap<String, String>();
+        try (var connection = dataSource.getConnection();
+                var statement = connection.createStatement();
+                var result = statement.executeQuery(
+                        """
+                        select indexname, indexdef from pg_indexes
+                        where schemaname = current_schema()
+                        and tablename in (select tablename from pg_tables where schemaname = current_schema())""")) {
+            while (result.next()) {
+                indexes.put(result.getString(1), result.getString(2));
+            }
+        }
+        return indexes;
+    }
+
     @Test
     public void testRetrieveSamplePageIncludeJoinAfterReindexing() {
         maintenanceService.recreateIndex();
@@ -413,6 +524,31 @@ public class JdbcQueryServiceTest extends PostgresAwareTest {
                 row2.get("Resource_analysisType").stream().map(ValueDto::label).collect(Collectors.toSet()));
     }
 
+    @Test
+    public void testRetrieveSamplePageIncludeJoinAfterUpdateOfJoinedEntity() {
+        var model = createDefaultModel();
+        model.add(
+                model.createResource("http://example.com/subjects#s1"),
+                model.createProperty("https://institut-curie.org/ontology#isOfGender"),
+                model.createResource("http://hl7.org/fhir/administrative-gender#male"));
+        api.patch(model, Boolean.TRUE);
+
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setPage(1);
+        request.setSize(10);
+        request.setIncludeJoinedViews(true);
+        var page = sut.retrieveViewPage(request);
+        var row = page.getRows().stream()
+                .filter(r -> r.get("Sample").stream()
+                        .anyMatch(value -> value.label().equals("Sample A for subject 1")))
+                .findFirst()
+                .orElseThrow();
+        Assert.assertEquals(
+                Set.of("Male"),
+                row.get("Subject_gender").stream().map(ValueDto::label).collect(Collectors.toSet()));
+    }
+
     @Test
     public void testCountSamplesWithoutMaxDisplayCount() {
         selectRegularUser();
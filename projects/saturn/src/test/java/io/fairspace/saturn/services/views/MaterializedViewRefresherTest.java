@@ -0,0 +1,80 @@
+package io.fairspace.saturn.services.views;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MaterializedViewRefresherTest {
+
+    private final MaterializedViewService materializedViewService = mock(MaterializedViewService.class);
+    private MaterializedViewRefresher sut;
+
+    @After
+    public void after() {
+        sut.close();
+    }
+
+    @Test
+    public void testBurstOfChangesIsCoalescedIntoOneRefresh() throws SQLException {
+        sut = new MaterializedViewRefresher(materializedViewService, 10000, 200);
+        sut.start();
+
+        for (var i = 0; i < 1000; i++) {
+            sut.markDirty(i % 2 == 0 ? List.of("mv_sample") : List.of("mv_sample_join_subject"));
+        }
+
+        verify(materializedViewService, timeout(5000).times(1))
+                .refreshMaterializedViews(Set.of("mv_sample", "mv_sample_join_subject"));
+        verify(materializedViewService, after(500).times(1)).refreshMaterializedViews(anyCollection());
+    }
+
+    @Test
+    public void testCommitWithoutAffectedViewsRefreshesNothing() throws SQLException {
+        sut = new MaterializedViewRefresher(materializedViewService, 10000, 100);
+        sut.start();
+
+        sut.markDirty(List.of());
+
+        verify(materializedViewService, after(300).never()).refreshMaterializedViews(anyCollection());
+    }
+
+    @Test
+    public void testFailedRefreshIsRetried() throws SQLException {
+        sut = new MaterializedViewRefresher(materializedViewService, 10000, 100);
+        sut.start();
+        doThrow(new SQLException("Failure"))
+                .doNothing()
+                .when(materializedViewService)
+                .refreshMaterializedViews(anyCollection());
+
+        sut.markDirty(List.of("mv_sample"));
+
+        verify(materializedViewService, timeout(5000).times(2)).refreshMaterializedViews(Set.of("mv_sample"));
+    }
+
+    @Test
+    public void testViewsAreNotRefreshedBeforeTheRefresherIsStarted() throws SQLException {
+        sut = new MaterializedViewRefresher(materializedViewService, 10000, 100);
+
+        sut.markDirty(List.of("mv_sample"));
+
+        verify(materializedViewService, after(300).never()).refreshMaterializedViews(anyCollection());
+        sut.start();
+        verify(materializedViewService, timeout(5000)).refreshMaterializedViews(Set.of("mv_sample"));
+    }
+}
@@ -1,5 +1,6 @@
 package io.fairspace.saturn.services.views;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -22,6 +23,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
 import io.fairspace.saturn.config.properties.JenaProperties;
 import io.fairspace.saturn.config.properties.SearchProperties;
@@ -54,8 +57,10 @@ import static io.fairspace.saturn.TestUtils.mockAuthentication;
 import static io.fairspace.saturn.TestUtils.setupRequestContext;
 import static io.fairspace.saturn.auth.RequestContext.getCurrentRequest;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.jena.query.DatasetFactory.wrap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
@@ -69,6 +74,8 @@ public class SparqlQueryServiceTest {
     static final String SAMPLE_NATURE_BLOOD = "http://ncicb.nci.nih.gov/xml/owl/EVS/Thesaurus.owl#C12434";
     static final String ANALYSIS_TYPE_RNA_SEQ = "https://institut-curie.org/osiris#O6-12";
     static final String ANALYSIS_TYPE_IMAGING = "https://institut-curie.org/osiris#C37-2";
+    static final String SAMPLES_QUERY = "SELECT ?sample "
+            + "WHERE { ?sample a <https://institut-curie.org/ontology#BiologicalSample> } ORDER BY ?sample";
 
     @Mock
     BlobStore store;
@@ -81,7 +88,8 @@ public class SparqlQueryServiceTest {
 
     WorkspaceService workspaceService;
     MetadataService api;
-    QueryService queryService;
+    SparqlQueryService queryService;
+    JenaProperties jenaProperties;
 
     private DAO dao;
 
@@ -148,9 +156,10 @@ public class SparqlQueryServiceTest {
         searchProperties.setCountRequestTimeout(60000);
         searchProperties.setPageRequestTimeout(10000);
         searchProperties.setMaxJoinItems(50);
+        jenaProperties = new JenaProperties("http://localhost/iri/", new StoreParamsProperties());
         queryService = new SparqlQueryService(
                 searchProperties,
-                new JenaProperties("http://localhost/iri/", new StoreParamsProperties()),
+                jenaProperties,
                 loadViewsConfig("src/test/resources/test-views.yaml"),
                 filteredDataset,
                 tx);
@@ -344,4 +353,137 @@ public class SparqlQueryServiceTest {
         var page = queryService.retrieveViewPage(request);
         assertEquals(0, page.getRows().size());
     }
+
+    @Test
+    public void testRequestsOfTheSameShapeShareTheParsedQuery() {
+        var request = new ViewRequest();
+        request.setView("Sample");
+        request.setPage(1);
+        request.setSize(10);
+        request.setFilters(
+                List.of(ViewFilter.builder().field("Sample").prefix("sample a").build()));
+        var otherRequest = new ViewRequest();
+        otherRequest.setView("Sample");
+        otherRequest.setPage(1);
+        otherRequest.setSize(10);
+        otherRequest.setFilters(
+                List.of(ViewFilter.builder().field("Sample").prefix("sample b").build()));
+
+        assertSame(
+                queryService.getQuery(request, false).query(),
+                queryService.getQuery(otherRequest, false).query());
+
+        var page = queryService.retrieveViewPage(request);
+        assertEquals(1, page.getRows().size());
+        assertEquals(
+                "http://example.com/samples#s1-a",
+                page.getRows().get(0).get("Sample").iterator().next().value());
+        var otherPage = queryService.retrieveViewPage(otherRequest);
+        assertEquals(1, otherPage.getRows().size());
+        assertEquals(1, queryService.count(otherRequest).count());
+    }
+
+    @Test
+    public void testExecuteQueryStreamsTheResultsInTheAcceptedFormat() {
+        var out = new ByteArrayOutputStream();
+        var contentType = new String[1];
+        queryService.executeQuery(SAMPLES_QUERY, "text/tab-separated-values", type -> {
+            contentType[0] = type;
+            return out;
+        });
+
+        assertEquals("text/tab-separated-values", contentType[0]);
+        assertEquals(
+                "?sample\n<http://example.com/samples#s1-a>\n<http://example.com/samples#s2-b>\n",
+                out.toString(UTF_8));
+    }
+
+    @Test
+    public void testExecuteQueryLimitsTheNumberOfResults() {
+        jenaProperties.setSparqlQueryMaxRows(1);
+        var out = new ByteArrayOutputStream();
+        queryService.executeQuery(SAMPLES_QUERY, "text/tab-separated-values", type -> out);
+
+        assertEquals("?sample\n<http://example.com/samples#s1-a>\n", out.toString(UTF_8));
+    }
+
+    @Test
+    public void testExecuteQueryFailsWhenTheResultsExceedTheMaximumSize() {
+        jenaProperties.setSparqlQueryMaxBytes(20);
+        var out = new ByteArrayOutputStream();
+
+        assertThrows(
+                RuntimeException.class,
+                () -> queryService.executeQuery(SAMPLES_QUERY, "text/tab-separated-values", type -> out));
+        assertTrue(out.size() <= 20);
+    }
+
+    @Test
+    public void testExecuteConstructQueryAsNTriples() {
+        var out = new ByteArrayOutputStream();
+        var contentType = new String[1];
+        queryService.executeQuery(
+                "CONSTRUCT { ?sample a <http://example.com/Sample> } "
+                        + "WHERE { ?sample a <https://institut-curie.org/ontology#BiologicalSample> }",
+                null,
+                type -> {
+                    contentType[0] = type;
+                    return out;
+                });
+
+        assertEquals("application/n-triples", contentType[0]);
+        assertEquals(2, out.toString(UTF_8).lines().count());
+    }
+
+    @Test
+    public void testExecuteAskQueryInEachSupportedFormat() {
+        var query = "ASK { ?sample a <https://institut-curie.org/ontology#BiologicalSample> }";
+        for (var accept : List.of("application/sparql-results+json", "application/json", "text/tab-separated-values")) {
+            var out = new ByteArrayOutputStream();
+            var contentType = new String[1];
+            queryService.executeQuery(query, accept, type -> {
+                contentType[0] = type;
+                return out;
+            });
+
+            assertEquals(accept, contentType[0]);
+            assertTrue(accept, out.toString(UTF_8).contains("true"));
+        }
+        // Boolean results cannot be written as Thrift
+        var e = assertThrows(
+                ResponseStatusException.class,
+                () -> queryService.executeQuery(
+                        query, "application/sparql-results+thrift", type -> new ByteArrayOutputStream()));
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, e.getStatusCode());
+    }
+
+    @Test
+    public void testExecuteQueryRejectsUnsupportedFormats() {
+        var e = assertThrows(
+                ResponseStatusException.class,
+                () -> queryService.executeQuery(SAMPLES_QUERY, "text/turtle", type -> new ByteArrayOutputStream()));
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, e.getStatusCode());
+    }
+
+    @Test
+    public void testExecuteQueryChoosesTheFormatWithTheHighestQuality() {
+        assertEquals(
+                "text/tab-separated-values",
+                contentType("application/sparql-results+json;q=0.5, text/tab-separated-values, */*;q=0.1"));
+        assertEquals("application/sparql-results+json", contentType("text/turtle, */*;q=0.1"));
+        // A more specific media range overrides the quality of a wildcard
+        assertEquals(
+                "application/sparql-results+thrift",
+                contentType("text/*, text/tab-separated-values;q=0, application/sparql-results+thrift;q=0.5"));
+        assertThrows(ResponseStatusException.class, () -> contentType("text/tab-separated-values;q=0"));
+    }
+
+    private String contentType(String accept) {
+        var contentType = new String[1];
+        queryService.executeQuery(SAMPLES_QUERY, accept, type -> {
+            contentType[0] = type;
+            return new ByteArrayOutputStream();
+        });
+        return contentType[0];
+    }
 }
@@ -0,0 +1,225 @@
+package io.fairspace.saturn.services.views;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fairspace.saturn.PostgresAwareTest;
+import io.fairspace.saturn.config.properties.ViewsProperties;
+
+import static io.fairspace.saturn.TestUtils.loadViewsConfig;
+
+import static java.util.UUID.randomUUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ViewStoreClientTest extends PostgresAwareTest {
+    private static final String EVENT = "TumorPathologyEvent";
+    private static final String TOPOGRAPHY = "https://institut-curie.org/ontology#Topography";
+
+    private ViewStoreClient.ViewStoreConfiguration configuration;
+    private MaterializedViewService materializedViewService;
+    private LabelCache labelCache;
+    private DataSource dataSource;
+    private final AtomicInteger statementCount = new AtomicInteger();
+
+    @Before
+    public void before() throws SQLException {
+        var viewDatabase = buildViewDatabaseConfig();
+        ViewsProperties viewsProperties = loadViewsConfig("src/test/resources/test-views.yaml");
+        configuration = new ViewStoreClient.ViewStoreConfiguration(viewsProperties);
+        dataSource = getDataSource(viewDatabase);
+        materializedViewService = new MaterializedViewService(
+                dataSource, configuration, viewsProperties, viewDatabase, buildSearchProperties().getMaxJoinItems());
+        new ViewStoreClientFactory(viewsProperties, viewDatabase, materializedViewService, dataSource, configuration);
+        labelCache = new LabelCache(viewDatabase.getLabelCacheSize());
+
+        try (var client = buildClient()) {
+            client.truncateViewTables(EVENT);
+            client.commitTables();
+        }
+    }
+
+    @Test
+    public void testStatementCountDoesNotDependOnNumberOfSubjects() throws SQLException {
+        var statementsFor10 = writeEvents(10, Set.of("a", "b"));
+        var statementsFor1000 = writeEvents(1000, Set.of("a", "b"));
+
+        // Before, every subject cost a few round trips per row, value set, link set and label
+        assertEquals(statementsFor10, statementsFor1000);
+        assertTrue("Executed " + statementsFor1000 + " statements", statementsFor1000 < 50);
+    }
+
+    @Test
+    public void testRowsValuesAndLinksAreReplaced() throws SQLException {
+        writeEvents(100, Set.of("a", "b"));
+        writeEvents(100, Set.of("b", "c"));
+
+        assertEquals(100, count("select count(*) from tumorpathologyevent"));
+        assertEquals(100, count("select count(*) from tumorpathologyevent where label like 'Updated%'"));
+        assertEquals(200, count("select count(*) from tumorpathologyevent_topography"));
+        assertEquals(0, count("select count(*) from tumorpathologyevent_topography where topography = 'a'"));
+        assertEquals(100, count("select count(*) from tumorpathologyevent_topography where topography = 'c'"));
+        assertEquals(100, count("select count(*) from tumorpathologyevent_subject"));
+
+        writeEvents(100, Set.of());
+
+        assertEquals(0, count("select count(*) from tumorpathologyevent_topography"));
+    }
+
+    @Test
+    public void testDeletedRowsAreRemovedOnCommit() throws SQLException {
+        writeEvents(10, Set.of("a"));
+        try (var client = buildClient()) {
+            client.deleteRow(EVENT, eventId(3));
+            assertEquals(10, count("select count(*) from tumorpathologyevent"));
+            client.commit();
+        }
+
+        assertEquals(9, count("select count(*) from tumorpathologyevent"));
+    }
+
+    @Test
+    public void testCommittedLabelsOnlyInvalidateTheirCacheEntries() throws SQLException {
+        var known = TOPOGRAPHY + "-" + randomUUID();
+        var added = TOPOGRAPHY + "-" + randomUUID();
+        try (var client = buildClient()) {
+            client.addLabel(known, TOPOGRAPHY, "known");
+            client.commitTables();
+        }
+        try (var connection = countingConnection(dataSource.getConnection())) {
+            assertEquals(Map.of(known, "known"), labelCache.getLabels(connection, List.of(known, added)));
+
+            statementCount.set(0);
+            try (var client = buildClient()) {
+                // Known to the cache, not inserted again
+                client.addLabel(known, TOPOGRAPHY, "known");
+                client.addLabel(added, TOPOGRAPHY, "added");
+                client.commitTables();
+            }
+            assertEquals(1, statementCount.get());
+
+            statementCount.set(0);
+            assertEquals(Map.of(known, "known"), labelCache.getLabels(connection, List.of(known)));
+            assertEquals(0, statementCount.get());
+            assertEquals(Map.of(added, "added"), labelCache.getLabels(connection, List.of(added)));
+            assertEquals(1, statementCount.get());
+        }
+    }
+
+    @Test
+    public void testWrittenLabelsAreCommittedRightAway() throws SQLException {
+        var labels = new HashMap<String, Pair<String, String>>();
+        var prefix = TOPOGRAPHY + "-" + randomUUID() + "-";
+        for (var i = 0; i < 2500; i++) {
+            labels.put(prefix + i, Pair.of(TOPOGRAPHY, "label " + i));
+        }
+        try (var client = buildClient()) {
+            client.writeLabels(labels);
+
+            // Visible to other connections before the client is closed
+            assertEquals(2500, count("select count(*) from label where id like '" + prefix + "%'"));
+            try (var connection = dataSource.getConnection()) {
+                assertEquals(
+                        Map.of(prefix + 1, "label 1"), labelCache.getLabels(connection, List.of(prefix + 1)));
+            }
+
+            // Written labels are not inserted again
+            statementCount.set(0);
+            client.writeLabels(labels);
+            assertEquals(0, statementCount.get());
+        }
+    }
+
+    /**
+     * Writes the row, topography values, subject link and topography labels of a number of events,
+     * the labels of the rows are prefixed with 'Updated' if they existed already.
+     *
+     * @return the number of executed statements
+     */
+    private int writeEvents(int count, Set<String> topography) throws SQLException {
+        var existing = count("select count(*) from tumorpathologyevent");
+        statementCount.set(0);
+        try (var client = buildClient()) {
+            for (var i = 0; i < count; i++) {
+                var id = eventId(i);
+                Map<String, Object> row = new HashMap<>();
+                row.put("id", id);
+                row.put("label", (existing > 0 ? "Updated event " : "Event ") + i);
+                row.put("ageAtDiagnosis", 40 + i % 50);
+                client.updateRows(EVENT, List.of(row), false);
+                var values = new HashSet<String>();
+                for (var value : topography) {
+                    client.addLabel(TOPOGRAPHY + "-" + value, TOPOGRAPHY, value);
+                    values.add(value);
+                }
+                client.updateValues(EVENT, id, "topography", values);
+                client.updateLinks(EVENT, id, "Subject", Set.of("http://localhost/iri/subject-" + i));
+            }
+            client.commit();
+        }
+        return statementCount.get();
+    }
+
+    private static String eventId(int i) {
+        return "http://localhost/iri/event-" + i;
+    }
+
+    private long count(String sql) throws SQLException {
+        try (var connection = dataSource.getConnection();
+                var statement = connection.createStatement();
+                var result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private ViewStoreClient buildClient() throws SQLException {
+        return new ViewStoreClient(
+                countingConnection(dataSource.getConnection()), configuration, materializedViewService, labelCache);
+    }
+
+    /**
+     * @return a connection counting the statements executed on it, i.e., the round trips to the database.
+     */
+    private Connection countingConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    var result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        return Proxy.newProxyInstance(
+                                getClass().getClassLoader(),
+                                new Class<?>[] {method.getReturnType()},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    if (statementMethod.getName().startsWith("execute")) {
+                                        statementCount.incrementAndGet();
+                                    }
+                                    return invoke(statement, statementMethod, statementArgs);
+                                });
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
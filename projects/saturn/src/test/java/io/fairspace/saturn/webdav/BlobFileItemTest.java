@@ -0,0 +1,112 @@
+package io.fairspace.saturn.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.milton.http.FileItem;
+import org.junit.After;
+import org.junit.Test;
+
+import io.fairspace.saturn.webdav.blobstore.BlobFileItem;
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+import io.fairspace.saturn.webdav.blobstore.LocalBlobStore;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BlobFileItemTest {
+    private final File dir = new File(getTempDirectory(), randomUUID().toString());
+    private final BlobStore store = new LocalBlobStore(dir);
+
+    @After
+    public void after() throws IOException {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testAllFilesAreStored() throws IOException {
+        var files = new HashMap<String, FileItem>();
+        for (var i = 0; i < 100; i++) {
+            files.put("dir/file" + i, fileItem("file" + i, ("content " + i).getBytes()));
+        }
+
+        var stored = BlobFileItem.storeAll(files, store);
+
+        assertEquals(files.keySet(), stored.keySet());
+        for (var i = 0; i < 100; i++) {
+            var content = ("content " + i).getBytes();
+            var item = (BlobFileItem) stored.get("dir/file" + i);
+            assertEquals("file" + i, item.getName());
+            assertEquals(content.length, item.getSize());
+            assertEquals(md5Hex(content), item.getBlob().md5);
+
+            var out = new ByteArrayOutputStream();
+            store.read(item.getBlob().id, out, 0, null);
+            assertArrayEquals(content, out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testFailuresAreRethrown() throws IOException {
+        var failingStore = mock(BlobStore.class);
+        when(failingStore.store(any())).thenThrow(new IOException("Disk full"));
+
+        var files = Map.of("a", fileItem("a", new byte[1]));
+
+        var e = assertThrows(RuntimeException.class, () -> BlobFileItem.storeAll(files, failingStore));
+        assertEquals("Disk full", e.getCause().getMessage());
+    }
+
+    private static FileItem fileItem(String name, byte[] content) {
+        return new FileItem() {
+            @Override
+            public String getContentType() {
+                return "text/plain";
+            }
+
+            @Override
+            public String getFieldName() {
+                return name;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public long getSize() {
+                return content.length;
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<String, String> getHeaders() {
+                return Map.of();
+            }
+        };
+    }
+}
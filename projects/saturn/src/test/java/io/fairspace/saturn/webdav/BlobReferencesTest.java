@@ -0,0 +1,50 @@
+package io.fairspace.saturn.webdav;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BlobReferencesTest {
+    @Mock
+    private BlobStore store;
+
+    @Test
+    public void referencesAreRetainedRightAwayAndReleasedAfterTheCommit() throws IOException {
+        var references = new BlobReferences(store);
+
+        references.retain("copied");
+        references.release("deleted");
+        verify(store).retain("copied");
+        verify(store, never()).release("deleted");
+
+        references.commit();
+        verify(store).release("deleted");
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void referencesOfAnAbortedTransactionAreUndone() throws IOException {
+        var references = new BlobReferences(store);
+
+        references.retain("copied");
+        references.release("deleted");
+        references.rollback();
+        verify(store).release("copied");
+
+        // Nothing is left to be applied after a retry of the transaction
+        references.commit();
+        verify(store).retain("copied");
+        verify(store, never()).release("deleted");
+        verifyNoMoreInteractions(store);
+    }
+}
@@ -233,12 +233,22 @@ public class DavFactoryExtraStorageTest {
         assertTrue(file instanceof DeletableResource);
         ((DeletableResource) file).delete();
 
-        verify(store, times(1)).delete("id"); // check if blob is deleted
+        verify(store, times(1)).release("id"); // check if blob is released
 
         assertEquals(0, extraStorageSubdir1.getChildren().size());
         assertNull(extraStorageSubdir1.child("file"));
     }
 
+    @Test
+    public void testFileWithContentStoredAlreadyRetainsTheBlob()
+            throws NotAuthorizedException, BadRequestException, ConflictException, IOException {
+        when(request.getAttribute("BLOB")).thenReturn(new BlobInfo("id", 3, "md5", "id", true));
+        var extraStorageSubdir1 = ((DavFactory) factory).root.createCollection(defaultExtraStorageRootName);
+        ((FolderResource) extraStorageSubdir1).createNew("file", input, FILE_SIZE, "text/abc");
+
+        verify(store, times(1)).retain("id");
+    }
+
     @Test
     public void testDeleteAllInFolder()
             throws NotAuthorizedException, BadRequestException, ConflictException, IOException {
@@ -251,7 +261,7 @@ public class DavFactoryExtraStorageTest {
         ((PostableResource) root.child(defaultExtraStorageRootName))
                 .processForm(Map.of("action", "delete_all_in_directory"), Map.of());
 
-        verify(store, times(3)).delete(any()); // check if all blob are deleted
+        verify(store, times(3)).release(any()); // check if all blobs are released
 
         assertEquals(0, coll.getChildren().size());
         assertNull(coll.child("file1"));
@@ -3,6 +3,7 @@ package io.fairspace.saturn.webdav;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +45,7 @@ import io.fairspace.saturn.webdav.blobstore.BlobInfo;
 import io.fairspace.saturn.webdav.blobstore.BlobStore;
 import io.fairspace.saturn.webdav.resources.DirectoryResource;
 import io.fairspace.saturn.webdav.resources.FileResource;
+import io.fairspace.saturn.webdav.resources.ZipArchive;
 
 import static io.fairspace.saturn.TestUtils.createTestUser;
 import static io.fairspace.saturn.TestUtils.mockAuthentication;
@@ -177,6 +179,25 @@ public class DirectoryResourceTest {
         assertEquals(FILE_SIZE, (long) file.getContentLength());
     }
 
+    @Test
+    public void testZipArchiveContainsAllDescendants()
+            throws NotAuthorizedException, ConflictException, BadRequestException, IOException {
+        dir = (DirectoryResource) davFactory.getResource(null, BASE_PATH + "/coll1");
+        var subdir = (DirectoryResource) dir.createCollection("subdir");
+        subdir.createNew("file.txt", input, 3L, "text/plain");
+
+        var entries = ZipArchive.of(dir).getEntries().stream()
+                .sorted(Comparator.comparing(ZipArchive.Entry::path))
+                .toList();
+
+        assertEquals(
+                List.of("coll1/", "coll1/coffee.jpg", "coll1/subdir/", "coll1/subdir/file.txt"),
+                entries.stream().map(ZipArchive.Entry::path).toList());
+        assertTrue(entries.get(0).isDirectory());
+        assertEquals("id", entries.get(3).blobId());
+        assertEquals(FILE_SIZE, entries.get(3).size());
+    }
+
     @Test
     public void testDeleteAllInDirectory()
             throws NotAuthorizedException, ConflictException, BadRequestException, IOException {
@@ -3,17 +3,31 @@ package io.fairspace.saturn.webdav;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.Arrays;
 
+import org.apache.commons.io.input.BrokenInputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import io.fairspace.saturn.webdav.blobstore.BlobStore;
+import io.fairspace.saturn.webdav.blobstore.DeletableLocalBlobStore;
+import io.fairspace.saturn.webdav.blobstore.FileRangeChannel;
 import io.fairspace.saturn.webdav.blobstore.LocalBlobStore;
 
 import static java.util.UUID.randomUUID;
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
+import static org.apache.commons.codec.digest.DigestUtils.sha256Hex;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
 import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.apache.commons.io.FileUtils.writeByteArrayToFile;
 import static org.junit.Assert.*;
 
 public class LocalBlobStoreTest {
@@ -28,8 +42,8 @@ public class LocalBlobStoreTest {
     }
 
     @After
-    public void after() {
-        dir.delete();
+    public void after() throws IOException {
+        deleteDirectory(dir);
     }
 
     @Test
@@ -47,4 +61,308 @@ public class LocalBlobStoreTest {
         var id2 = blobStore.write(new ByteArrayInputStream(contents2));
         assertNotEquals(id1, id2);
     }
+
+    @Test
+    public void shouldReadRanges() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents2));
+
+        var out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 1, 3L);
+        assertArrayEquals(new byte[] {5, 6, 7}, out.toByteArray());
+
+        out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 4, 100L);
+        assertArrayEquals(new byte[] {8, 9}, out.toByteArray());
+
+        out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 10, null);
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void shouldCopyLargeBlobsThroughBuffer() throws IOException {
+        var contents = new byte[BlobStore.TRANSFER_BUFFER_SIZE * 2 + 123];
+        Arrays.fill(contents, (byte) 42);
+        var id = blobStore.write(new ByteArrayInputStream(contents));
+
+        var out = new ByteArrayOutputStream();
+        try (var channel = blobStore.readChannel(id, 100, contents.length)) {
+            assertEquals(contents.length - 100, BlobStore.transfer(channel, out));
+        }
+        assertArrayEquals(Arrays.copyOfRange(contents, 100, contents.length), out.toByteArray());
+    }
+
+    @Test
+    public void shouldTransferToChannels() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents2));
+        var out = new ChannelOutputStream();
+
+        try (var channel = blobStore.readChannel(id, 2, 3)) {
+            assertTrue(channel instanceof FileRangeChannel);
+            assertEquals(3, BlobStore.transfer(channel, out));
+        }
+        assertArrayEquals(new byte[] {6, 7, 8}, out.toByteArray());
+        assertTrue(out.writtenAsChannel);
+    }
+
+    @Test
+    public void shouldStoreIdenticalContentOnceWhenContentAddressed() throws IOException {
+        blobStore = new LocalBlobStore(dir, true);
+
+        var blob1 = blobStore.store(new ByteArrayInputStream(contents1));
+        var blob2 = blobStore.store(new ByteArrayInputStream(contents1));
+        var blob3 = blobStore.store(new ByteArrayInputStream(contents2));
+
+        assertEquals(sha256Hex(contents1), blob1.id);
+        assertEquals(blob1.id, blob1.sha256);
+        assertEquals(md5Hex(contents1), blob1.md5);
+        assertEquals(contents1.length, blob1.size);
+        assertEquals(blob1.id, blob2.id);
+        assertFalse(blob1.existing);
+        assertTrue(blob2.existing);
+        assertNotEquals(blob1.id, blob3.id);
+        assertTrue(blobFile(blob1.id).exists());
+
+        var out = new ByteArrayOutputStream();
+        blobStore.read(blob2.id, out, 0, null);
+        assertArrayEquals(contents1, out.toByteArray());
+    }
+
+    @Test
+    public void shouldNotComputeContentHashesWhenNotContentAddressed() throws IOException {
+        var blob = blobStore.store(new ByteArrayInputStream(contents1));
+
+        assertNull(blob.sha256);
+        assertEquals(md5Hex(contents1), blob.md5);
+    }
+
+    @Test
+    public void shouldDeleteBlobsWhenTheLastReferenceIsReleased() throws IOException {
+        blobStore = new DeletableLocalBlobStore(dir, true);
+
+        var id = blobStore.store(new ByteArrayInputStream(contents1)).id;
+        // Storing the content again does not count as a reference, until a file version is created for it
+        blobStore.store(new ByteArrayInputStream(contents1));
+        blobStore.retain(id);
+
+        assertFalse(blobStore.release(id));
+        assertTrue(blobFile(id).exists());
+        assertTrue(blobStore.release(id));
+        assertFalse(blobFile(id).exists());
+        assertThrows(NoSuchFileException.class, () -> blobStore.retain(id));
+    }
+
+    @Test
+    public void shouldReadOpenedChannelsOfDeletedBlobs() throws IOException {
+        blobStore = new DeletableLocalBlobStore(dir, true);
+        var id = blobStore.store(new ByteArrayInputStream(contents2)).id;
+        // Deleted blobs are not handed to the servlet container, which opens them later
+        assertNull(blobStore.getFile(id));
+
+        var out = new ByteArrayOutputStream();
+        try (var channel = blobStore.readChannel(id, 0, contents2.length)) {
+            assertTrue(blobStore.release(id));
+            BlobStore.transfer(channel, out);
+        }
+        assertArrayEquals(contents2, out.toByteArray());
+    }
+
+    @Test
+    public void shouldKeepUnreferencedBlobsInTheMainStore() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents1));
+        blobStore.retain(id);
+
+        assertFalse(blobStore.release(id));
+        assertFalse(blobStore.release(id));
+        assertTrue(blobFile(id).exists());
+    }
+
+    @Test
+    public void shouldStoreBlobsInSubdirectories() throws IOException {
+        var id = blobStore.write(new ByteArrayInputStream(contents1));
+
+        assertTrue(blobFile(id).exists());
+        assertFalse(new File(dir, id).exists());
+    }
+
+    @Test
+    public void shouldMoveLegacyBlobsToSubdirectories() throws IOException {
+        var id = randomUUID().toString();
+        writeByteArrayToFile(new File(dir, id), contents2);
+        var shortId = "id";
+        writeByteArrayToFile(new File(dir, shortId), contents1);
+
+        var out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 0, null);
+        assertArrayEquals(contents2, out.toByteArray());
+
+        assertEquals(1, ((LocalBlobStore) blobStore).migrateToShardedLayout());
+        assertFalse(new File(dir, id).exists());
+        assertTrue(blobFile(id).exists());
+
+        out = new ByteArrayOutputStream();
+        blobStore.read(id, out, 0, null);
+        assertArrayEquals(contents2, out.toByteArray());
+        out = new ByteArrayOutputStream();
+        blobStore.read(shortId, out, 0, null);
+        assertArrayEquals(contents1, out.toByteArray());
+
+        assertEquals(0, ((LocalBlobStore) blobStore).migrateToShardedLayout());
+    }
+
+    @Test
+    public void shouldStoreUploadsReceivedInChunks() throws IOException {
+        var uploadId = blobStore.startUpload();
+
+        assertEquals(4, blobStore.appendChunk(uploadId, 0, 4, new ByteArrayInputStream(contents1)));
+        // A chunk not starting at the offset is not appended
+        assertEquals(4, blobStore.appendChunk(uploadId, 2, 6, new ByteArrayInputStream(contents2)));
+        assertEquals(10, blobStore.appendChunk(uploadId, 4, 6, new ByteArrayInputStream(contents2)));
+        assertEquals(10, blobStore.getUploadOffset(uploadId));
+
+        var blob = blobStore.completeUpload(uploadId);
+        var contents = concat(contents1, contents2);
+        assertEquals(10, blob.size);
+        assertEquals(md5Hex(contents), blob.md5);
+        assertNull(blob.sha256);
+
+        var out = new ByteArrayOutputStream();
+        blobStore.read(blob.id, out, 0, null);
+        assertArrayEquals(contents, out.toByteArray());
+        assertFalse(new File(dir, "uploads/" + uploadId).exists());
+
+        // The upload is kept until the file created with it has been committed
+        assertEquals(10, blobStore.getUploadOffset(uploadId));
+        assertEquals(10, blobStore.appendChunk(uploadId, 10, 4, new ByteArrayInputStream(contents1)));
+        assertEquals(blob.id, blobStore.completeUpload(uploadId).id);
+
+        blobStore.finishUpload(uploadId);
+        assertThrows(FileNotFoundException.class, () -> blobStore.getUploadOffset(uploadId));
+        assertThrows(FileNotFoundException.class, () -> blobStore.completeUpload(uploadId));
+    }
+
+    @Test
+    public void shouldResumeUploadsAfterRestart() throws IOException {
+        blobStore = new LocalBlobStore(dir, true);
+        var uploadId = blobStore.startUpload();
+        blobStore.appendChunk(uploadId, 0, 4, new ByteArrayInputStream(contents1));
+
+        blobStore = new LocalBlobStore(dir, true);
+        assertEquals(4, blobStore.getUploadOffset(uploadId));
+        blobStore.appendChunk(uploadId, 4, 6, new ByteArrayInputStream(contents2));
+
+        var blob = blobStore.completeUpload(uploadId);
+        var contents = concat(contents1, contents2);
+        assertEquals(sha256Hex(contents), blob.id);
+        assertEquals(md5Hex(contents), blob.md5);
+        assertEquals(blob.id, blobStore.store(new ByteArrayInputStream(contents)).id);
+    }
+
+    @Test
+    public void shouldResumeUploadsFromTheirSavedState() throws IOException {
+        blobStore = new LocalBlobStore(dir, true);
+        var uploadId = blobStore.startUpload();
+        blobStore.appendChunk(uploadId, 0, 4, new ByteArrayInputStream(contents1));
+        assertTrue(new File(dir, "uploads/" + uploadId + ".state").exists());
+        // Content written after the state was saved, e.g. before a crash
+        writeByteArrayToFile(new File(dir, "uploads/" + uploadId), contents2, true);
+
+        blobStore = new LocalBlobStore(dir, true);
+        assertEquals(4, blobStore.getUploadOffset(uploadId));
+        assertEquals(4, new File(dir, "uploads/" + uploadId).length());
+        blobStore.appendChunk(uploadId, 4, 6, new ByteArrayInputStream(contents2));
+
+        var blob = blobStore.completeUpload(uploadId);
+        var contents = concat(contents1, contents2);
+        assertEquals(sha256Hex(contents), blob.id);
+        assertEquals(md5Hex(contents), blob.md5);
+        assertFalse(new File(dir, "uploads/" + uploadId + ".state").exists());
+    }
+
+    @Test
+    public void shouldDeleteExpiredUploads() throws IOException {
+        var store = new LocalBlobStore(dir, false, Duration.ofHours(1));
+        var expired = store.startUpload();
+        store.appendChunk(expired, 0, 4, new ByteArrayInputStream(contents1));
+        var active = store.startUpload();
+        new File(dir, "uploads/" + expired)
+                .setLastModified(System.currentTimeMillis() - Duration.ofHours(2).toMillis());
+
+        assertEquals(1, store.deleteExpiredUploads());
+
+        assertThrows(FileNotFoundException.class, () -> store.getUploadOffset(expired));
+        assertThrows(
+                FileNotFoundException.class,
+                () -> store.appendChunk(expired, 4, 6, new ByteArrayInputStream(contents2)));
+        assertFalse(new File(dir, "uploads/" + expired).exists());
+        assertFalse(new File(dir, "uploads/" + expired + ".state").exists());
+        assertEquals(0, store.getUploadOffset(active));
+    }
+
+    @Test
+    public void shouldTruncateFailedChunks() throws IOException {
+        var uploadId = blobStore.startUpload();
+        blobStore.appendChunk(uploadId, 0, 4, new ByteArrayInputStream(contents1));
+
+        var failing = new SequenceInputStream(new ByteArrayInputStream(contents2), new BrokenInputStream());
+        assertThrows(IOException.class, () -> blobStore.appendChunk(uploadId, 4, 6, failing));
+        assertEquals(4, blobStore.getUploadOffset(uploadId));
+        assertEquals(4, new File(dir, "uploads/" + uploadId).length());
+
+        blobStore.appendChunk(uploadId, 4, 6, new ByteArrayInputStream(contents2));
+        assertEquals(md5Hex(concat(contents1, contents2)), blobStore.completeUpload(uploadId).md5);
+    }
+
+    @Test
+    public void shouldNotAppendChunksOfAnotherLength() throws IOException {
+        var uploadId = blobStore.startUpload();
+        blobStore.appendChunk(uploadId, 0, 4, new ByteArrayInputStream(contents1));
+
+        // Shorter than declared
+        assertEquals(4, blobStore.appendChunk(uploadId, 4, 7, new ByteArrayInputStream(contents2)));
+        // Longer than declared
+        assertEquals(4, blobStore.appendChunk(uploadId, 4, 5, new ByteArrayInputStream(contents2)));
+        assertEquals(4, new File(dir, "uploads/" + uploadId).length());
+
+        blobStore.appendChunk(uploadId, 4, 6, new ByteArrayInputStream(contents2));
+        assertEquals(md5Hex(concat(contents1, contents2)), blobStore.completeUpload(uploadId).md5);
+    }
+
+    @Test
+    public void shouldRejectUnknownUploads() {
+        assertThrows(FileNotFoundException.class, () -> blobStore.getUploadOffset(randomUUID().toString()));
+        assertThrows(FileNotFoundException.class, () -> blobStore.getUploadOffset("../refs/x"));
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        var result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private File blobFile(String id) {
+        return new File(dir, id.substring(0, 2) + "/" + id.substring(2, 4) + "/" + id);
+    }
+
+    /**
+     * A stream that can be written to as a channel, like the output streams of some servlet containers.
+     */
+    private static class ChannelOutputStream extends ByteArrayOutputStream implements WritableByteChannel {
+        private boolean writtenAsChannel;
+
+        @Override
+        public int write(ByteBuffer src) {
+            writtenAsChannel = true;
+            var count = src.remaining();
+            var bytes = new byte[count];
+            src.get(bytes);
+            write(bytes, 0, count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
 }
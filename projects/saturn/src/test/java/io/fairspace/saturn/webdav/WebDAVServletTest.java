@@ -1,36 +1,56 @@
 package io.fairspace.saturn.webdav;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.pivovarit.function.ThrowingConsumer;
+import com.pivovarit.function.ThrowingFunction;
+import io.milton.http.Request;
 import io.milton.http.ResourceFactory;
 import io.milton.resource.FolderResource;
+import io.milton.servlet.MiltonServlet;
 import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.tdb2.DatabaseMgr;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import io.fairspace.saturn.rdf.transactions.SimpleTransactions;
 import io.fairspace.saturn.rdf.transactions.Transactions;
 import io.fairspace.saturn.webdav.blobstore.BlobInfo;
 import io.fairspace.saturn.webdav.blobstore.BlobStore;
 
 import static io.fairspace.saturn.TestUtils.setupRequestContext;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class WebDAVServletTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Mock
     ResourceFactory factory;
 
@@ -81,6 +101,13 @@ public class WebDAVServletTest {
                 .when(txn)
                 .executeRead(any());
 
+        doAnswer(invocation -> {
+                    ThrowingFunction job = invocation.getArgument(0);
+                    return job.apply(null);
+                })
+                .when(txn)
+                .calculateRead(any());
+
         doAnswer(invocation -> {
                     ThrowingConsumer job = invocation.getArgument(0);
                     job.accept(null);
@@ -121,6 +148,197 @@ public class WebDAVServletTest {
         order.verify(txn).executeWrite(any());
     }
 
+    @Test
+    public void testChunkIsAppendedWithoutTransaction() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 0-99/1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+        when(store.startUpload()).thenReturn("upload");
+        when(store.appendChunk("upload", 0, 100, in)).thenReturn(100L);
+
+        servlet.service(req, res);
+
+        verify(res).setStatus(202);
+        verify(res).setHeader("Upload-Id", "upload");
+        verify(res).setHeader("Upload-Offset", "100");
+        verify(store, never()).completeUpload(any());
+        // Write access is checked in a read transaction, the chunk is appended outside of it
+        verify(resource).authorise(any(), eq(Request.Method.PUT), any());
+        verify(txn, never()).executeWrite(any());
+    }
+
+    @Test
+    public void testUploadCannotBeStartedWithoutWriteAccess() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 0-99/1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+        when(resource.authorise(any(), any(), any())).thenReturn(false);
+
+        servlet.service(req, res);
+
+        verify(res).sendError(eq(403), any());
+        verify(store, never()).startUpload();
+        verify(txn, never()).executeWrite(any());
+    }
+
+    @Test
+    public void testLastChunkCompletesTheUploadBeforeTransaction() throws IOException {
+        var blob = new BlobInfo("id", 1000, "md5");
+
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 900-999/1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+        when(req.getHeader("Upload-Id")).thenReturn("upload");
+        when(store.appendChunk("upload", 900, 100, in)).thenReturn(1000L);
+        when(store.completeUpload("upload")).thenReturn(blob);
+        when(res.getStatus()).thenReturn(201);
+
+        servlet.service(req, res);
+
+        var order = inOrder(store, req, txn);
+
+        order.verify(store).completeUpload("upload");
+        order.verify(req).setAttribute("BLOB", blob);
+        order.verify(txn).executeWrite(any());
+        // The upload is only finished once the file has been committed
+        order.verify(store).finishUpload("upload");
+    }
+
+    @Test
+    public void testUploadIsKeptIfTheFileIsNotWritten() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 900-999/1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+        when(req.getHeader("Upload-Id")).thenReturn("upload");
+        when(store.appendChunk("upload", 900, 100, in)).thenReturn(1000L);
+        when(store.completeUpload("upload")).thenReturn(new BlobInfo("id", 1000, "md5"));
+        when(res.getStatus()).thenReturn(409);
+
+        servlet.service(req, res);
+
+        verify(txn).executeWrite(any());
+        verify(store, never()).finishUpload(any());
+    }
+
+    @Test
+    public void testChunkNotStartingAtTheOffsetIsRejected() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 200-299/1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+        when(req.getHeader("Upload-Id")).thenReturn("upload");
+        when(store.appendChunk("upload", 200, 100, in)).thenReturn(100L);
+
+        servlet.service(req, res);
+
+        verify(res).setStatus(409);
+        verify(res).setHeader("Upload-Offset", "100");
+        verifyNoInteractions(txn);
+    }
+
+    @Test
+    public void testChunkBeyondTheSizeIsRejectedBeforeReading() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 900-1099/1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+
+        servlet.service(req, res);
+
+        verify(res).sendError(eq(400), any());
+        verify(store, never()).startUpload();
+        verify(store, never()).appendChunk(any(), anyLong(), anyLong(), any());
+        verifyNoInteractions(txn);
+    }
+
+    @Test
+    public void testChunksAreNotImplementedWithoutSupportOfTheBlobStore() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes 0-99/1000");
+
+        servlet.service(req, res);
+
+        verify(res).sendError(eq(501), any());
+        verify(store, never()).startUpload();
+        verifyNoInteractions(txn);
+    }
+
+    @Test
+    public void testUploadOffsetCanBeRequested() throws IOException {
+        when(req.getMethod()).thenReturn("PUT");
+        when(req.getHeader("Content-Range")).thenReturn("bytes */1000");
+        when(store.supportsChunkedUploads()).thenReturn(true);
+        when(req.getHeader("Upload-Id")).thenReturn("upload");
+        when(store.getUploadOffset("upload")).thenReturn(300L);
+
+        servlet.service(req, res);
+
+        verify(res).setStatus(202);
+        verify(res).setHeader("Upload-Offset", "300");
+        verify(store, never()).appendChunk(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void testContentIsSentWithoutHoldingAReader() throws Exception {
+        var dsg = DatabaseMgr.connectDatasetGraph(folder.newFolder().getAbsolutePath());
+        var ds = DatasetFactory.wrap(dsg);
+        servlet = new WebDAVServlet(factory, new SimpleTransactions(ds), store);
+
+        var attributes = new HashMap<String, Object>();
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(req)
+                .setAttribute(any(), any());
+        when(req.getAttribute(any())).thenAnswer(invocation -> attributes.get(invocation.<String>getArgument(0)));
+        when(req.getMethod()).thenReturn("GET");
+
+        var sent = new AtomicBoolean();
+        doAnswer(invocation -> {
+                    WebDAVServlet.sendContentAfterTransaction(invocation.getArgument(0), stream -> {
+                        assertFalse(ds.isInTransaction());
+                        // Compaction waits for all readers to finish, so it would not finish if a reader was held
+                        CompletableFuture.runAsync(() -> DatabaseMgr.compact(dsg, true))
+                                .orTimeout(30, TimeUnit.SECONDS)
+                                .join();
+                        sent.set(true);
+                    });
+                    return null;
+                })
+                .when(resource)
+                .sendContent(any(), any(), any(), any());
+
+        servlet.service(req, res);
+
+        assertTrue(sent.get());
+    }
+
+    @Test
+    public void testFileIsSentByTheContainerIfSupported() throws IOException {
+        var file = folder.newFile();
+        when(req.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(true);
+
+        MiltonServlet.setThreadlocals(req, res);
+        try {
+            assertTrue(WebDAVServlet.sendFileByContainer(out, file, 100, 1_000_000));
+        } finally {
+            MiltonServlet.clearThreadlocals();
+        }
+
+        verify(res).setContentLengthLong(1_000_000);
+        verify(req).setAttribute("org.apache.tomcat.sendfile.filename", file.getCanonicalPath());
+        verify(req).setAttribute("org.apache.tomcat.sendfile.start", 100L);
+        verify(req).setAttribute("org.apache.tomcat.sendfile.end", 1_000_100L);
+    }
+
+    @Test
+    public void testFileIsNotSentByTheContainerWithoutSupport() throws IOException {
+        MiltonServlet.setThreadlocals(req, res);
+        try {
+            assertFalse(WebDAVServlet.sendFileByContainer(out, folder.newFile(), 0, 1_000_000));
+        } finally {
+            MiltonServlet.clearThreadlocals();
+        }
+
+        verify(req, never()).setAttribute(eq("org.apache.tomcat.sendfile.filename"), any());
+    }
+
     @Test
     public void testGetPayloadIsReadOutsideTransaction() throws Exception {
         when(req.getMethod()).thenReturn("GET");
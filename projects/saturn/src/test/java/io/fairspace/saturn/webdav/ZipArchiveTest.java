@@ -0,0 +1,83 @@
+package io.fairspace.saturn.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fairspace.saturn.webdav.blobstore.BlobStore;
+import io.fairspace.saturn.webdav.blobstore.LocalBlobStore;
+import io.fairspace.saturn.webdav.resources.ZipArchive;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.apache.commons.io.FileUtils.getTempDirectory;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ZipArchiveTest {
+    private static final int DIRECTORIES = 100;
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    private final File dir = new File(getTempDirectory(), randomUUID().toString());
+    private final BlobStore store = new LocalBlobStore(dir);
+
+    @After
+    public void after() throws IOException {
+        deleteDirectory(dir);
+    }
+
+    @Test
+    public void testArchiveContainsAllEntriesWithTheirContent() throws IOException {
+        var entries = new ArrayList<ZipArchive.Entry>();
+        var contents = new HashMap<String, byte[]>();
+        var modified = new Date(1_700_000_000_000L);
+        entries.add(new ZipArchive.Entry("root/", null, 0, modified));
+        for (var d = 0; d < DIRECTORIES; d++) {
+            entries.add(new ZipArchive.Entry("root/dir" + d + "/", null, 0, modified));
+            for (var f = 0; f < FILES_PER_DIRECTORY; f++) {
+                var path = "root/dir" + d + "/file" + f + ".txt";
+                var content = ("content of " + path).repeat(f).getBytes();
+                var blob = store.store(new ByteArrayInputStream(content));
+                entries.add(new ZipArchive.Entry(path, blob.id, blob.size, modified));
+                contents.put(path, content);
+            }
+        }
+
+        var zipFile = new File(dir, "archive.zip");
+        try (var out = new FileOutputStream(zipFile)) {
+            new ZipArchive(entries).write(store, out);
+        }
+
+        var count = 0;
+        try (var zip = new ZipInputStream(new FileInputStream(zipFile))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                assertEquals(entries.get(count).path(), entry.getName());
+                assertEquals(modified.getTime(), entry.getLastModifiedTime().toMillis());
+                var content = zip.readAllBytes();
+                if (entry.isDirectory()) {
+                    assertEquals(0, content.length);
+                } else {
+                    assertArrayEquals(contents.get(entry.getName()), content);
+                    var crc = new CRC32();
+                    crc.update(content);
+                    // Known after reading the entry, as it is stored in the data descriptor
+                    assertEquals(crc.getValue(), entry.getCrc());
+                }
+                count++;
+            }
+        }
+        assertEquals(1 + DIRECTORIES * (1 + FILES_PER_DIRECTORY), count);
+        assertTrue(contents.size() >= 10_000);
+    }
+}